@@ -74,6 +74,7 @@ import yuku.alkitab.base.dialog.TypeBookmarkDialog;
 import yuku.alkitab.base.dialog.TypeHighlightDialog;
 import yuku.alkitab.base.dialog.VersesDialog;
 import yuku.alkitab.base.dialog.XrefDialog;
+import yuku.alkitab.base.model.ChapterModel;
 import yuku.alkitab.base.model.MVersion;
 import yuku.alkitab.base.model.MVersionDb;
 import yuku.alkitab.base.model.MVersionInternal;
@@ -81,6 +82,7 @@ import yuku.alkitab.base.storage.Prefkey;
 import yuku.alkitab.base.util.Announce;
 import yuku.alkitab.base.util.AppLog;
 import yuku.alkitab.base.util.Appearances;
+import yuku.alkitab.base.util.ChapterLoader;
 import yuku.alkitab.base.util.CurrentReading;
 import yuku.alkitab.base.util.ExtensionManager;
 import yuku.alkitab.base.util.Highlights;
@@ -111,9 +113,7 @@ import yuku.alkitab.model.Book;
 import yuku.alkitab.model.FootnoteEntry;
 import yuku.alkitab.model.Label;
 import yuku.alkitab.model.Marker;
-import yuku.alkitab.model.PericopeBlock;
 import yuku.alkitab.model.ProgressMark;
-import yuku.alkitab.model.SingleChapterVerses;
 import yuku.alkitab.model.Version;
 import yuku.alkitab.ribka.RibkaReportActivity;
 import yuku.alkitab.tracking.Tracker;
@@ -149,6 +149,11 @@ public class IsiActivity extends BaseLeftDrawerActivity implements XrefDialog.Xr
 
 	boolean needsRestart; // whether this activity needs to be restarted
 
+	/**
+	 * Chapters are loaded through this, so the ones around the displayed chapter are ready when the user moves there.
+	 */
+	final ChapterLoader chapterLoader = new ChapterLoader();
+
 	private GotoButton.FloaterDragListener bGoto_floaterDrag = new GotoButton.FloaterDragListener() {
 		final int[] floaterLocationOnScreen = {0, 0};
 
@@ -643,6 +648,8 @@ public class IsiActivity extends BaseLeftDrawerActivity implements XrefDialog.Xr
 		App.getLbm().unregisterReceiver(reloadAttributeMapReceiver);
 
 		App.getLbm().unregisterReceiver(needsRestartReceiver);
+
+		chapterLoader.clear();
 	}
 
 	/**
@@ -1652,6 +1659,15 @@ public class IsiActivity extends BaseLeftDrawerActivity implements XrefDialog.Xr
 
 		displaySplitFollowingMaster(verse_1);
 
+		// the next chapter to display is most likely one of these
+		chapterLoader.prefetchAdjacent(S.activeVersion(), S.activeVersionId(), this.activeBook, chapter_1);
+		if (activeSplitVersion != null) {
+			final Book splitBook = activeSplitVersion.getBook(this.activeBook.bookId);
+			if (splitBook != null) {
+				chapterLoader.prefetchAdjacent(activeSplitVersion, activeSplitVersionId, splitBook, chapter_1);
+			}
+		}
+
 		// set goto button text
 		final String reference = this.activeBook.reference(chapter_1);
 		bGoto.setText(reference.replace(' ', '\u00a0'));
@@ -1696,20 +1712,14 @@ public class IsiActivity extends BaseLeftDrawerActivity implements XrefDialog.Xr
 		}
 	}
 
-	static boolean loadChapterToVersesView(VersesView versesView, Version version, String versionId, Book book, int chapter_1, int current_chapter_1, boolean uncheckAllVerses) {
-		final SingleChapterVerses verses = version.loadChapterText(book, chapter_1);
-		if (verses == null) {
+	boolean loadChapterToVersesView(VersesView versesView, Version version, String versionId, Book book, int chapter_1, int current_chapter_1, boolean uncheckAllVerses) {
+		final ChapterModel model = chapterLoader.get(version, versionId, book, chapter_1);
+		if (model == null) {
 			return false;
 		}
 
-		//# max is set to 30 (one chapter has max of 30 blocks. Already almost impossible)
-		int max = 30;
-		int[] pericope_aris = new int[max];
-		PericopeBlock[] pericope_blocks = new PericopeBlock[max];
-		int nblock = version.loadPericope(book.bookId, chapter_1, pericope_aris, pericope_blocks, max);
-
 		boolean retainSelectedVerses = (!uncheckAllVerses && chapter_1 == current_chapter_1);
-		versesView.setDataWithRetainSelectedVerses(retainSelectedVerses, Ari.encode(book.bookId, chapter_1, 0), pericope_aris, pericope_blocks, nblock, verses, version, versionId);
+		versesView.setDataWithRetainSelectedVerses(retainSelectedVerses, model);
 
 		return true;
 	}
@@ -1811,13 +1821,7 @@ public class IsiActivity extends BaseLeftDrawerActivity implements XrefDialog.Xr
 	class AttributeListener implements VersesView.AttributeListener {
 		void openBookmarkDialog(final long _id) {
 			final TypeBookmarkDialog dialog = TypeBookmarkDialog.EditExisting(IsiActivity.this, _id);
-			dialog.setListener(() -> {
-				lsSplit0.reloadAttributeMap();
-
-				if (activeSplitVersion != null) {
-					lsSplit1.reloadAttributeMap();
-				}
-			});
+			dialog.setListener(() -> reloadBothAttributeMaps());
 			dialog.show();
 		}
 
@@ -2625,6 +2629,8 @@ public class IsiActivity extends BaseLeftDrawerActivity implements XrefDialog.Xr
 	}
 
 	void reloadBothAttributeMaps() {
+		chapterLoader.invalidateAttributes();
+
 		lsSplit0.reloadAttributeMap();
 
 		if (activeSplitVersion != null) {
@@ -5,6 +5,8 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
 import android.os.Bundle;
+import android.os.CancellationSignal;
+import android.os.OperationCanceledException;
 import android.support.annotation.IdRes;
 import android.support.annotation.Nullable;
 import android.support.v7.app.ActionBar;
@@ -21,6 +23,7 @@ import android.widget.ListView;
 import android.widget.SearchView;
 import android.widget.TextView;
 import com.afollestad.materialdialogs.MaterialDialog;
+import gnu.trove.set.hash.TLongHashSet;
 import yuku.afw.storage.Preferences;
 import yuku.afw.widget.EasyAdapter;
 import yuku.alkitab.base.App;
@@ -44,13 +47,16 @@ import yuku.alkitab.model.Label;
 import yuku.alkitab.model.Marker;
 import yuku.alkitab.model.Version;
 import yuku.alkitab.util.Ari;
+import yuku.alkitab.util.IntArrayList;
 import yuku.alkitabintegration.display.Launcher;
 import yuku.devoxx.flowlayout.FlowLayout;
 
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 public class MarkerListActivity extends BaseActivity {
 	public static final String TAG = MarkerListActivity.class.getSimpleName();
@@ -93,6 +99,13 @@ public class MarkerListActivity extends BaseActivity {
 	String versionId = S.activeVersionId();
 	float textSizeMult = S.getDb().getPerVersionSettings(versionId).fontSizeMultiplier;
 
+	/**
+	 * Lowercased verse texts of {@link #version} by ari, kept across keystrokes and marker reloads,
+	 * since the verse texts do not change. Null values are verses that are not available.
+	 * Only used by the {@link #filter} thread.
+	 */
+	final HashMap<Integer, String> verseTexts_lc = new HashMap<>();
+
 	public static Intent createIntent(Context context, Marker.Kind filter_kind, long filter_labelId) {
 		Intent res = new Intent(context, MarkerListActivity.class);
 		res.putExtra(EXTRA_filter_kind, filter_kind.code);
@@ -269,8 +282,21 @@ public class MarkerListActivity extends BaseActivity {
 	}
 
 	final Debouncer<String, FilterResult> filter = new Debouncer<String, FilterResult>(200) {
+		/**
+		 * The markers that were filtered last time, with the tokens and the result, so that when more is typed,
+		 * only the previous result needs to be filtered. Only used by the thread of this debouncer.
+		 */
+		List<Marker> previousAllMarkers;
+		String[] previousTokens;
+		List<Marker> previousResult;
+
 		@Override
 		public FilterResult process(@Nullable final String payload) {
+			return process(payload, null);
+		}
+
+		@Override
+		public FilterResult process(@Nullable final String payload, @Nullable final CancellationSignal cancellationSignal) {
 			final boolean needFilter;
 
 			final String query = payload == null? "": payload.trim();
@@ -294,7 +320,25 @@ public class MarkerListActivity extends BaseActivity {
 
 			final SearchEngine.ReadyTokens rt = tokens == null || tokens.length == 0 ? null : new SearchEngine.ReadyTokens(tokens);
 
-			final List<Marker> filteredMarkers = filterEngine(version, allMarkers, filter_kind, rt);
+			final List<Marker> allMarkers = MarkerListActivity.this.allMarkers;
+			final String[] currentTokens = rt == null ? new String[0] : tokens;
+
+			// "caption" in highlights only stores color information, so it's useless to check
+			final TLongHashSet captionMatchIds = rt == null || filter_kind == Marker.Kind.highlight ? null : S.getDb().listMarkerIdsByCaption(currentTokens);
+
+			// the result of a narrower query is always within the result of the previous one, as long as the markers are the same
+			final List<Marker> candidates;
+			if (allMarkers == previousAllMarkers && QueryTokenizer.isNarrowing(previousTokens, currentTokens)) {
+				candidates = previousResult;
+			} else {
+				candidates = allMarkers;
+			}
+
+			final List<Marker> filteredMarkers = filterEngine(version, candidates, filter_kind, rt, captionMatchIds, verseTexts_lc, cancellationSignal);
+
+			previousAllMarkers = allMarkers;
+			previousTokens = currentTokens;
+			previousResult = filteredMarkers;
 
 			final FilterResult res = new FilterResult();
 			res.query = query;
@@ -510,8 +554,12 @@ public class MarkerListActivity extends BaseActivity {
 	/**
 	 * The real work of filtering happens here.
 	 * @param rt Tokens have to be already lowercased.
+	 * @param captionMatchIds _ids of the markers whose caption may match the tokens, from {@link yuku.alkitab.base.storage.InternalDb#listMarkerIdsByCaption(String[])}.
+	 * Only the captions of these are lowercased and matched here. If null, all captions are.
+	 * @param verseTexts_lc Lowercased verse texts by ari. Verses not in it are loaded all at once, grouped by chapter, and put into it.
+	 * @param cancellationSignal if cancelled, {@link OperationCanceledException} is thrown.
 	 */
-	public static List<Marker> filterEngine(Version version, List<Marker> allMarkers, Marker.Kind filter_kind, @Nullable SearchEngine.ReadyTokens rt) {
+	public static List<Marker> filterEngine(Version version, List<Marker> allMarkers, Marker.Kind filter_kind, @Nullable SearchEngine.ReadyTokens rt, @Nullable TLongHashSet captionMatchIds, Map<Integer, String> verseTexts_lc, @Nullable CancellationSignal cancellationSignal) {
 		final List<Marker> res = new ArrayList<>();
 
 		if (rt == null) {
@@ -519,19 +567,50 @@ public class MarkerListActivity extends BaseActivity {
 			return res;
 		}
 
-		for (final Marker marker : allMarkers) {
+		final int size = allMarkers.size();
+		final boolean[] captionMatches = new boolean[size];
+		final IntArrayList aris_toLoad = new IntArrayList();
+
+		for (int i = 0; i < size; i++) {
+			if (cancellationSignal != null) cancellationSignal.throwIfCanceled();
+
+			final Marker marker = allMarkers.get(i);
 			if (filter_kind != Marker.Kind.highlight) { // "caption" in highlights only stores color information, so it's useless to check
-				String caption_lc = marker.caption.toLowerCase(Locale.getDefault());
-				if (SearchEngine.satisfiesTokens(caption_lc, rt)) {
-					res.add(marker);
+				captionMatches[i] = (captionMatchIds == null || captionMatchIds.contains(marker._id)) && SearchEngine.satisfiesTokens(marker.caption.toLowerCase(Locale.getDefault()), rt);
+				if (captionMatches[i]) {
 					continue;
 				}
 			}
 
-			// try the verse text!
-			String verseText = version.loadVerseText(marker.ari);
-			if (verseText != null) { // this can be null! so beware.
-				String verseText_lc = verseText.toLowerCase(Locale.getDefault());
+			if (!verseTexts_lc.containsKey(marker.ari)) {
+				aris_toLoad.add(marker.ari);
+			}
+		}
+
+		// try the verse text!
+		if (aris_toLoad.size() > 0) {
+			if (cancellationSignal != null) cancellationSignal.throwIfCanceled();
+
+			final int[] aris = new int[aris_toLoad.size()];
+			System.arraycopy(aris_toLoad.buffer(), 0, aris, 0, aris.length);
+			final String[] verseTexts = version.loadVerseTexts(aris);
+			for (int i = 0; i < aris.length; i++) {
+				final String verseText = verseTexts[i];
+				verseTexts_lc.put(aris[i], verseText == null ? null : verseText.toLowerCase(Locale.getDefault()));
+			}
+		}
+
+		for (int i = 0; i < size; i++) {
+			if (cancellationSignal != null) cancellationSignal.throwIfCanceled();
+
+			final Marker marker = allMarkers.get(i);
+			if (captionMatches[i]) {
+				res.add(marker);
+				continue;
+			}
+
+			final String verseText_lc = verseTexts_lc.get(marker.ari);
+			if (verseText_lc != null) { // this can be null! so beware.
 				if (SearchEngine.satisfiesTokens(verseText_lc, rt)) {
 					res.add(marker);
 				}
@@ -6,6 +6,8 @@ import android.database.Cursor;
 import android.database.MatrixCursor;
 import android.os.AsyncTask;
 import android.os.Bundle;
+import android.os.CancellationSignal;
+import android.os.OperationCanceledException;
 import android.os.SystemClock;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
@@ -42,11 +44,14 @@ import yuku.alkitab.base.App;
 import yuku.alkitab.base.S;
 import yuku.alkitab.base.U;
 import yuku.alkitab.base.ac.base.BaseActivity;
+import yuku.alkitab.base.model.MVersion;
+import yuku.alkitab.base.model.MVersionDb;
 import yuku.alkitab.base.model.MVersionInternal;
 import yuku.alkitab.base.storage.Prefkey;
 import yuku.alkitab.base.util.Appearances;
 import yuku.alkitab.base.util.Jumper;
 import yuku.alkitab.base.util.QueryTokenizer;
+import yuku.alkitab.base.util.RevIndexBuilder;
 import yuku.alkitab.base.util.SearchEngine;
 import yuku.alkitab.debug.BuildConfig;
 import yuku.alkitab.debug.R;
@@ -91,10 +96,36 @@ public class SearchActivity extends BaseActivity {
 	SearchAdapter adapter;
 	Version searchInVersion;
 	String searchInVersionId;
+	/** Yes file of the version being searched, or null for the internal version */
+	@Nullable String searchInYesFilename;
 	float textSizeMult;
 	SearchHistoryAdapter searchHistoryAdapter;
 	ActionMode actionMode;
 
+	/**
+	 * The last search that finished, so a query that narrows it down only needs to search its result.
+	 * Only used while synchronized on this activity.
+	 */
+	@Nullable PreviousSearch previousSearch;
+
+	static class PreviousSearch {
+		Version version;
+		String[] tokens;
+		SparseBooleanArray bookIds;
+		IntArrayList result;
+
+		boolean canBeNarrowedTo(final Version version, final String[] tokens, final SparseBooleanArray bookIds) {
+			return this.version == version && sameBookIds(this.bookIds, bookIds) && QueryTokenizer.isNarrowing(this.tokens, tokens);
+		}
+
+		static boolean sameBookIds(final SparseBooleanArray a, final SparseBooleanArray b) {
+			for (int bookId = 0; bookId < 256; bookId++) {
+				if (a.get(bookId, false) != b.get(bookId, false)) return false;
+			}
+			return true;
+		}
+	}
+
 	final AdapterView.OnItemLongClickListener lsSearchResults_itemLongClick = (parent, view, position, id) -> {
 		if (actionMode == null) {
 			actionMode = startSupportActionMode(new ActionMode.Callback() {
@@ -294,6 +325,7 @@ public class SearchActivity extends BaseActivity {
 
 		searchInVersion = S.activeVersion();
 		searchInVersionId = S.activeVersionId();
+		searchInYesFilename = yesFilenameOf(S.activeMVersion());
 		textSizeMult = S.getDb().getPerVersionSettings(searchInVersionId).fontSizeMultiplier;
 		bVersion.setOnClickListener(bVersion_click);
 
@@ -411,9 +443,7 @@ public class SearchActivity extends BaseActivity {
 
 		configureFilterDisplayOldNewTest();
 
-		if (usingRevIndex()) {
-			SearchEngine.preloadRevIndex();
-		}
+		SearchEngine.preloadRevIndex(searchInVersion, searchInYesFilename);
 
 		displaySearchInVersion();
 	}
@@ -615,6 +645,8 @@ public class SearchActivity extends BaseActivity {
 
 		searchInVersion = selectedVersion;
 		searchInVersionId = mv.getVersionId();
+		searchInYesFilename = yesFilenameOf(mv);
+		SearchEngine.preloadRevIndex(searchInVersion, searchInYesFilename);
 		textSizeMult = S.getDb().getPerVersionSettings(searchInVersionId).fontSizeMultiplier;
 		Appearances.applyTextAppearance(tSearchTips, textSizeMult);
 
@@ -679,14 +711,19 @@ public class SearchActivity extends BaseActivity {
 		
 		final String[] tokens = QueryTokenizer.tokenize(query_string);
 
+		final CancellationSignal cancellationSignal = new CancellationSignal();
+
 		final MaterialDialog pd = new MaterialDialog.Builder(this)
 			.content(getString(R.string.search_searching_tokens, Arrays.toString(tokens)))
-			.cancelable(false)
+			.cancelable(true)
+			.cancelListener(dialog -> cancellationSignal.cancel())
 			.progress(true, 0)
 			.show();
 
 		new AsyncTask<Void, Void, IntArrayList>() {
+			boolean canceled;
 			boolean debugstats_revIndexUsed;
+			boolean debugstats_narrowed;
 			long debugstats_totalTimeMs;
 			long debugstats_cpuTimeMs;
 
@@ -698,12 +735,36 @@ public class SearchActivity extends BaseActivity {
 				final IntArrayList res;
 
 				synchronized (SearchActivity.this) {
-					if (usingRevIndex()) {
-						debugstats_revIndexUsed = true;
-						res = SearchEngine.searchByRevIndex(searchInVersion, getQuery());
+					final SearchEngine.Query query = getQuery();
+					final String[] queryTokens = QueryTokenizer.tokenize(query.query_string);
+
+					try {
+						if (usingRevIndex()) {
+							// the revindex does not read the text of all the verses, so it is faster than grep even within a previous result
+							debugstats_revIndexUsed = true;
+							res = SearchEngine.searchByRevIndex(searchInVersion, query, searchInYesFilename, cancellationSignal);
+						} else if (previousSearch != null && previousSearch.canBeNarrowedTo(searchInVersion, queryTokens, query.bookIds)) {
+							debugstats_revIndexUsed = false;
+							debugstats_narrowed = true;
+							res = SearchEngine.searchByGrepWithin(searchInVersion, query, previousSearch.result, cancellationSignal);
+						} else {
+							debugstats_revIndexUsed = false;
+							res = SearchEngine.searchByGrep(searchInVersion, query, cancellationSignal);
+						}
+					} catch (OperationCanceledException e) {
+						canceled = true;
+						return null;
+					}
+
+					if (res == null) {
+						previousSearch = null;
 					} else {
-						debugstats_revIndexUsed = false;
-						res = SearchEngine.searchByGrep(searchInVersion, getQuery());
+						final PreviousSearch ps = new PreviousSearch();
+						ps.version = searchInVersion;
+						ps.tokens = queryTokens;
+						ps.bookIds = query.bookIds.clone();
+						ps.result = res;
+						previousSearch = ps;
 					}
 				}
 
@@ -714,6 +775,11 @@ public class SearchActivity extends BaseActivity {
 			}
 
 			@Override protected void onPostExecute(IntArrayList result) {
+				if (canceled) {
+					// user cancelled the progress dialog, keep the previous results
+					return;
+				}
+
 				if (result == null) {
 					result = new IntArrayList(); // empty result
 				}
@@ -768,7 +834,7 @@ public class SearchActivity extends BaseActivity {
 					new MaterialDialog.Builder(SearchActivity.this)
 						.content("This msg is shown only on DEBUG build\n\n" +
 							"Search results: " + result.size() + "\n" +
-							"Method: " + (debugstats_revIndexUsed? "revindex": "grep") + "\n" +
+							"Method: " + (debugstats_narrowed? "grep within previous result": debugstats_revIndexUsed? "revindex": "grep") + "\n" +
 							"Total time: " + debugstats_totalTimeMs + " ms\n" +
 							"CPU (thread) time: " + debugstats_cpuTimeMs + " ms")
 						.positiveText(R.string.ok)
@@ -847,8 +913,20 @@ public class SearchActivity extends BaseActivity {
 		return sh;
 	}
 
+	/**
+	 * Installed versions can use revindex after it has been built in the background.
+	 * Call this from a background thread.
+	 */
 	boolean usingRevIndex() {
-		return searchInVersionId == null || searchInVersionId.equals(MVersionInternal.getVersionInternalId());
+		if (searchInVersionId == null || searchInVersionId.equals(MVersionInternal.getVersionInternalId())) {
+			return true;
+		}
+		return searchInYesFilename != null && RevIndexBuilder.isUpToDate(searchInYesFilename);
+	}
+
+	@Nullable
+	static String yesFilenameOf(final MVersion mv) {
+		return mv instanceof MVersionDb ? ((MVersionDb) mv).filename : null;
 	}
 
 	class SearchAdapter extends EasyAdapter {
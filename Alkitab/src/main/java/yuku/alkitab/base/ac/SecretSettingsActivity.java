@@ -24,6 +24,7 @@ import yuku.alkitab.base.widget.ConfigurationWrapper;
 import yuku.alkitab.debug.R;
 import yuku.alkitab.model.ProgressMark;
 import yuku.alkitab.model.ProgressMarkHistory;
+import yuku.alkitab.yes2.compress.SnappyBlockCache;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -78,6 +79,18 @@ public class SecretSettingsActivity extends BaseActivity {
 			return true;
 		};
 
+		private Preference.OnPreferenceClickListener secret_cache_stats_click = preference -> {
+			final SnappyBlockCache snappyBlockCache = SnappyBlockCache.getInstance();
+
+			new MaterialDialog.Builder(getActivity())
+				.content(String.format(Locale.US, "Snappy blocks: %d of %d bytes used, %d hits, %d misses, %d evictions",
+					snappyBlockCache.getCurrentBytes(), snappyBlockCache.getMaxBytes(), snappyBlockCache.getHitCount(), snappyBlockCache.getMissCount(), snappyBlockCache.getEvictionCount()))
+				.positiveText(R.string.ok)
+				.show();
+
+			return true;
+		};
+
 		Preference.OnPreferenceClickListener secret_sync_debug = preference -> {
 			startActivity(new Intent(App.context, SecretSyncDebugActivity.class));
 			return true;
@@ -111,6 +124,7 @@ public class SecretSettingsActivity extends BaseActivity {
 
 			findPreference("secret_progress_mark_history").setOnPreferenceClickListener(secret_progress_mark_history_click);
 			findPreference("secret_version_table").setOnPreferenceClickListener(secret_version_table_click);
+			findPreference("secret_cache_stats").setOnPreferenceClickListener(secret_cache_stats_click);
 			findPreference("secret_sync_debug").setOnPreferenceClickListener(secret_sync_debug);
 			findPreference("secret_reset_read_announcements").setOnPreferenceClickListener(secret_reset_read_announcements);
 
@@ -26,8 +26,10 @@ import yuku.alkitab.base.S;
 import yuku.alkitab.base.U;
 import yuku.alkitab.base.ac.base.BaseActivity;
 import yuku.alkitab.base.model.SyncShadow;
+import yuku.alkitab.base.storage.MabelApplyBenchmark;
 import yuku.alkitab.base.storage.Prefkey;
 import yuku.alkitab.base.sync.Sync;
+import yuku.alkitab.base.sync.SyncDiffBenchmark;
 import yuku.alkitab.base.sync.Sync_History;
 import yuku.alkitab.base.sync.Sync_Mabel;
 import yuku.alkitab.base.sync.Sync_Pins;
@@ -101,6 +103,8 @@ public class SecretSyncDebugActivity extends BaseActivity {
 		findViewById(R.id.bGenerateDummies).setOnClickListener(bGenerateDummies_click);
 		findViewById(R.id.bGenerateDummies2).setOnClickListener(bGenerateDummies2_click);
 		findViewById(R.id.bMabelMonkey).setOnClickListener(bMabelMonkey_click);
+		findViewById(R.id.bMabelApplyBenchmark).setOnClickListener(bMabelApplyBenchmark_click);
+		findViewById(R.id.bSyncDiffBenchmark).setOnClickListener(bSyncDiffBenchmark_click);
 		findViewById(R.id.bLogout).setOnClickListener(bLogout_click);
 		findViewById(R.id.bSync).setOnClickListener(bSync_click);
 
@@ -112,7 +116,7 @@ public class SecretSyncDebugActivity extends BaseActivity {
 
 	View.OnClickListener bMabelClientState_click = v -> {
 		final StringBuilder sb = new StringBuilder();
-		final Sync.GetClientStateResult<Sync_Mabel.Content> pair = Sync_Mabel.getClientStateAndCurrentEntities();
+		final Sync.GetClientStateResult<Sync_Mabel.Content> pair = Sync_Mabel.getClientState();
 		final Sync.ClientState<Sync_Mabel.Content> clientState = pair.clientState;
 
 		sb.append("Base revno: ").append(clientState.base_revno).append('\n');
@@ -353,9 +357,8 @@ public class SecretSyncDebugActivity extends BaseActivity {
 			return;
 		}
 
-		final Sync.GetClientStateResult<Sync_Mabel.Content> pair = Sync_Mabel.getClientStateAndCurrentEntities();
+		final Sync.GetClientStateResult<Sync_Mabel.Content> pair = Sync_Mabel.getClientState();
 		final Sync.ClientState<Sync_Mabel.Content> clientState = pair.clientState;
-		final List<Sync.Entity<Sync_Mabel.Content>> entitiesBeforeSync = pair.currentEntities;
 
 		final RequestBody requestBody = new FormBody.Builder()
 			.add("simpleToken", simpleToken)
@@ -411,7 +414,7 @@ public class SecretSyncDebugActivity extends BaseActivity {
 						final int final_revno = debugSyncResponse.final_revno;
 						final Sync.Delta<Sync_Mabel.Content> append_delta = debugSyncResponse.append_delta;
 
-						final Sync.ApplyAppendDeltaResult applyResult = S.getDb().applyMabelAppendDelta(final_revno, pair.shadowEntities, clientState, append_delta, entitiesBeforeSync, simpleToken);
+						final Sync.ApplyAppendDeltaResult applyResult = S.getDb().applyMabelAppendDelta(final_revno, clientState, append_delta, pair.journalSeq, false, simpleToken);
 						new MaterialDialog.Builder(SecretSyncDebugActivity.this)
 							.content("Final revno: " + final_revno + "\nApply result: " + applyResult + "\nAppend delta: " + append_delta)
 							.positiveText(R.string.ok)
@@ -433,6 +436,44 @@ public class SecretSyncDebugActivity extends BaseActivity {
 		});
 	};
 
+	View.OnClickListener bMabelApplyBenchmark_click = v -> {
+		final MaterialDialog pd = new MaterialDialog.Builder(this)
+			.content("Benchmarking…")
+			.cancelable(false)
+			.progress(true, 0)
+			.show();
+
+		Background.run(() -> {
+			final String result = MabelApplyBenchmark.run(getApplicationContext(), 5000);
+			runOnUiThread(() -> {
+				pd.dismiss();
+				new MaterialDialog.Builder(this)
+					.content(result)
+					.positiveText(R.string.ok)
+					.show();
+			});
+		});
+	};
+
+	View.OnClickListener bSyncDiffBenchmark_click = v -> {
+		final MaterialDialog pd = new MaterialDialog.Builder(this)
+			.content("Benchmarking…")
+			.cancelable(false)
+			.progress(true, 0)
+			.show();
+
+		Background.run(() -> {
+			final String result = SyncDiffBenchmark.run(10_000, 100_000);
+			runOnUiThread(() -> {
+				pd.dismiss();
+				new MaterialDialog.Builder(this)
+					.content(result)
+					.positiveText(R.string.ok)
+					.show();
+			});
+		});
+	};
+
 	View.OnClickListener bCheckHash_click = v -> {
 		final String syncSetName = (String) cbSyncSetName.getSelectedItem();
 		final List<Sync.Entity<?>> entities = new ArrayList<>();
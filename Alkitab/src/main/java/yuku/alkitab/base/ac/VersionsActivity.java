@@ -70,10 +70,12 @@ import yuku.alkitab.base.util.AppLog;
 import yuku.alkitab.base.util.Background;
 import yuku.alkitab.base.util.DownloadMapper;
 import yuku.alkitab.base.util.QueryTokenizer;
+import yuku.alkitab.base.util.RevIndexBuilder;
 import yuku.alkitab.debug.BuildConfig;
 import yuku.alkitab.debug.R;
 import yuku.alkitab.io.BibleReader;
 import yuku.alkitab.tracking.Tracker;
+import yuku.alkitab.yes2.compress.SnappyBlockCache;
 import yuku.filechooser.FileChooserActivity;
 import yuku.filechooser.FileChooserConfig;
 import yuku.filechooser.FileChooserResult;
@@ -1002,6 +1004,8 @@ public class VersionsActivity extends BaseActivity {
 								App.getLbm().sendBroadcast(new Intent(ACTION_RELOAD));
 								//noinspection ResultOfMethodCallIgnored
 								new File(filename).delete();
+								RevIndexBuilder.delete(filename);
+								SnappyBlockCache.forgetFile(filename);
 							})
 							.negativeText(R.string.no)
 							.onNegative((dialog1, which1) -> {
@@ -1015,6 +1019,8 @@ public class VersionsActivity extends BaseActivity {
 						App.getLbm().sendBroadcast(new Intent(ACTION_RELOAD));
 						//noinspection ResultOfMethodCallIgnored
 						new File(filename).delete();
+						RevIndexBuilder.delete(filename);
+						SnappyBlockCache.forgetFile(filename);
 					}
 				});
 			}
@@ -17,9 +17,11 @@ import yuku.alkitab.base.util.AppLog;
 import yuku.alkitab.base.util.Background;
 import yuku.alkitab.base.util.DownloadMapper;
 import yuku.alkitab.base.util.Foreground;
+import yuku.alkitab.base.util.RevIndexBuilder;
 import yuku.alkitab.debug.R;
 import yuku.alkitab.io.BibleReader;
 import yuku.alkitab.io.OptionalGzipInputStream;
+import yuku.alkitab.model.Version;
 
 import java.io.File;
 import java.io.FileInputStream;
@@ -149,6 +151,12 @@ public class VersionDownloadCompleteReceiver {
 			S.getDb().insertOrUpdateVersionWithActive(mvDb, true);
 			MVersionDb.clearVersionImplCache();
 
+			// so searching this version is fast from the start, and an updated version does not keep the old index
+			final Version version = mvDb.getVersion();
+			if (version != null) {
+				RevIndexBuilder.buildInBackground(version, mvDb.filename);
+			}
+
 			Foreground.run(() -> {
 				Toast.makeText(App.context, TextUtils.expandTemplate(context.getText(R.string.version_download_complete), mvDb.longName), Toast.LENGTH_LONG).show();
 
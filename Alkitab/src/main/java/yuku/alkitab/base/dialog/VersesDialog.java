@@ -12,6 +12,8 @@ import yuku.alkitab.base.U;
 import yuku.alkitab.base.dialog.base.BaseDialog;
 import yuku.alkitab.base.model.MVersion;
 import yuku.alkitab.base.util.Appearances;
+import yuku.alkitab.base.util.Background;
+import yuku.alkitab.base.util.Foreground;
 import yuku.alkitab.base.widget.VersesView;
 import yuku.alkitab.base.widget.VersesView.VerseSelectionMode;
 import yuku.alkitab.debug.R;
@@ -21,6 +23,7 @@ import yuku.alkitab.util.Ari;
 import yuku.alkitab.util.IntArrayList;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -183,84 +186,92 @@ public class VersesDialog extends BaseDialog {
 				return a - b;
 			});
 
-			final Version[] displayedVersion = new Version[mversions.size()];
 			customCallbackData = new Object[mversions.size()];
 			for (int i = 0; i < customCallbackData.length; i++) {
 				customCallbackData[i] = mversions.get(i);
 			}
 
-			class Verses extends SingleChapterVerses implements SingleChapterVerses.WithTextSizeMult {
-				@Override
-				public String getVerse(int verse_0) {
-					// load version or take from existing if already loaded
-					final MVersion mversion = mversions.get(verse_0);
-					final Version loaded = displayedVersion[verse_0];
-
-					final Version version;
-					if (loaded == null) {
-						version = mversion.getVersion();
-						displayedVersion[verse_0] = version;
-					} else {
-						version = loaded;
-					}
+			// opening every version and reading the verse takes long with many versions, so the rows are shown when they are all loaded
+			Background.run(() -> {
+				final Version[] displayedVersion = new Version[mversions.size()];
+				for (int i = 0; i < displayedVersion.length; i++) {
+					displayedVersion[i] = mversions.get(i).getVersion();
+				}
 
-					if (version == null) {
-						return getString(R.string.version_error_opening, mversion.getVersionId());
-					}
+				// all versions at once, instead of one by one as the rows are shown
+				final String[][] verseTexts = Version.loadVerseTexts(Arrays.asList(displayedVersion), new int[] {ari});
 
-					final String res = version.loadVerseText(ari);
-					if (res == null) {
-						return getString(R.string.generic_verse_not_available_in_this_version);
-					}
+				Foreground.run(() -> {
+					if (!isAdded()) return;
 
-					return res;
-				}
+					versesView.setData(Ari.toBookChapter(ari), new CompareVerses(mversions, displayedVersion, verseTexts), null, null, 0, null, null);
+				});
+			});
+		}
 
-				@Override
-				public int getVerseCount() {
-					return mversions.size();
-				}
+		return res;
+	}
 
-				@Override
-				public String getVerseNumberText(int verse_0) {
-					// load version or take from existing if already loaded
-					final MVersion mversion = mversions.get(verse_0);
-					final Version loaded = displayedVersion[verse_0];
-
-					final Version version;
-					if (loaded == null) {
-						version = mversion.getVersion();
-						displayedVersion[verse_0] = version;
-					} else {
-						version = loaded;
-					}
+	/**
+	 * The verse from every version, one version per row.
+	 */
+	class CompareVerses extends SingleChapterVerses implements SingleChapterVerses.WithTextSizeMult {
+		private final List<MVersion> mversions;
+		private final Version[] displayedVersion;
+		private final String[][] verseTexts;
+
+		CompareVerses(final List<MVersion> mversions, final Version[] displayedVersion, final String[][] verseTexts) {
+			this.mversions = mversions;
+			this.displayedVersion = displayedVersion;
+			this.verseTexts = verseTexts;
+		}
 
-					if (version == null) {
-						return "ERROR"; // could not load version
-					}
+		@Override
+		public String getVerse(int verse_0) {
+			final MVersion mversion = mversions.get(verse_0);
 
-					String res = version.getShortName();
-					if (res == null) {
-						res = mversion.shortName;
-					}
-					if (res == null) { // still null???
-						res = version.getLongName(); // this one may not be null.
-					}
+			if (displayedVersion[verse_0] == null) {
+				return getString(R.string.version_error_opening, mversion.getVersionId());
+			}
 
-					return res;
-				}
+			final String res = verseTexts[verse_0][0];
+			if (res == null) {
+				return getString(R.string.generic_verse_not_available_in_this_version);
+			}
 
-				@Override
-				public float getTextSizeMult(final int verse_0) {
-					final MVersion mversion = mversions.get(verse_0);
-					return S.getDb().getPerVersionSettings(mversion.getVersionId()).fontSizeMultiplier;
-				}
+			return res;
+		}
+
+		@Override
+		public int getVerseCount() {
+			return mversions.size();
+		}
+
+		@Override
+		public String getVerseNumberText(int verse_0) {
+			final MVersion mversion = mversions.get(verse_0);
+			final Version version = displayedVersion[verse_0];
+
+			if (version == null) {
+				return "ERROR"; // could not load version
 			}
 
-			versesView.setData(Ari.toBookChapter(ari), new Verses(), null, null, 0, null, null);
+			String res = version.getShortName();
+			if (res == null) {
+				res = mversion.shortName;
+			}
+			if (res == null) { // still null???
+				res = version.getLongName(); // this one may not be null.
+			}
+
+			return res;
 		}
 
-		return res;
+		@Override
+		public float getTextSizeMult(final int verse_0) {
+			final MVersion mversion = mversions.get(verse_0);
+			return S.getDb().getPerVersionSettings(mversion.getVersionId()).fontSizeMultiplier;
+		}
 	}
 
 	VersesView.SelectedVersesListener versesView_selectedVerses = new VersesView.DefaultSelectedVersesListener() {
@@ -0,0 +1,66 @@
+package yuku.alkitab.base.model;
+
+import android.support.annotation.Nullable;
+import yuku.alkitab.model.Book;
+import yuku.alkitab.model.PericopeBlock;
+import yuku.alkitab.model.SingleChapterVerses;
+import yuku.alkitab.model.Version;
+import yuku.alkitab.util.Ari;
+
+import java.util.Arrays;
+
+/**
+ * Everything needed to display one chapter of one version: the verse texts, the pericopes and the verse attributes.
+ * Instances are loaded completely (usually on a background thread) and never modified afterwards,
+ * so they can be handed to the main thread without locking.
+ */
+public class ChapterModel {
+	public final Version version;
+	public final String versionId;
+	public final Book book;
+	public final int chapter_1;
+
+	public final SingleChapterVerses verses;
+	public final int[] pericopeAris;
+	public final PericopeBlock[] pericopeBlocks;
+	public final int nblock;
+
+	public final VerseAttributes attributes;
+
+	private ChapterModel(final Version version, final String versionId, final Book book, final int chapter_1, final SingleChapterVerses verses, final int[] pericopeAris, final PericopeBlock[] pericopeBlocks, final int nblock, final VerseAttributes attributes) {
+		this.version = version;
+		this.versionId = versionId;
+		this.book = book;
+		this.chapter_1 = chapter_1;
+		this.verses = verses;
+		this.pericopeAris = pericopeAris;
+		this.pericopeBlocks = pericopeBlocks;
+		this.nblock = nblock;
+		this.attributes = attributes;
+	}
+
+	public int getAriBc() {
+		return Ari.encode(book.bookId, chapter_1, 0);
+	}
+
+	/**
+	 * @return null if the chapter is not available in the version.
+	 */
+	@Nullable
+	public static ChapterModel load(final Version version, final String versionId, final Book book, final int chapter_1) {
+		final SingleChapterVerses verses = version.loadChapterText(book, chapter_1);
+		if (verses == null) {
+			return null;
+		}
+
+		//# max is set to 30 (one chapter has max of 30 blocks. Already almost impossible)
+		final int max = 30;
+		final int[] pericope_aris = new int[max];
+		final PericopeBlock[] pericope_blocks = new PericopeBlock[max];
+		final int nblock = version.loadPericope(book.bookId, chapter_1, pericope_aris, pericope_blocks, max);
+
+		final VerseAttributes attributes = VerseAttributes.load(Ari.encode(book.bookId, chapter_1, 0), verses.getVerseCount());
+
+		return new ChapterModel(version, versionId, book, chapter_1, verses, Arrays.copyOf(pericope_aris, nblock), Arrays.copyOf(pericope_blocks, nblock), nblock, attributes);
+	}
+}
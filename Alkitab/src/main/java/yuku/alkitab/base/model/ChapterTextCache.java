@@ -0,0 +1,157 @@
+package yuku.alkitab.base.model;
+
+import yuku.alkitab.model.SingleChapterVerses;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LRU cache of decoded chapter texts of one version, so swiping back to a chapter, opening the split view
+ * or verifying search results does not decode (and for YES2, decompress) the same chapter again.
+ * <p>
+ * The size of the cache is limited by the approximate memory used by the verse texts, not by the number of chapters,
+ * since chapters vary from a few verses to 176.
+ * The cached objects must never be modified (all readers return immutable {@link SingleChapterVerses}).
+ */
+public class ChapterTextCache {
+	public static final String TAG = ChapterTextCache.class.getSimpleName();
+
+	public static final int DEFAULT_MAX_BYTES = 1024 * 1024;
+
+	/** As requested from the reader: split into verses or not, lowercased or not */
+	public static final int VARIANT_ORIGINAL = 0;
+	public static final int VARIANT_LOWERCASED = 1;
+	public static final int VARIANT_LOWERCASED_WITHOUT_SPLIT = 2;
+
+	/** Approximate memory used by a String and its char array, other than the chars themselves */
+	private static final int STRING_OVERHEAD_BYTES = 40;
+
+	private final LinkedHashMap<Integer, Entry> chapters = new LinkedHashMap<>(32, 0.75f, true /* access order */);
+	private int maxBytes;
+	private int currentBytes;
+
+	private long hitCount;
+	private long missCount;
+	private long evictionCount;
+
+	private static class Entry {
+		final SingleChapterVerses verses;
+		final int bytes;
+
+		Entry(final SingleChapterVerses verses, final int bytes) {
+			this.verses = verses;
+			this.bytes = bytes;
+		}
+	}
+
+	public ChapterTextCache(final int maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+
+	private static int key(final int bookId, final int chapter_1, final int variant) {
+		return (bookId << 20) | ((chapter_1 & 0xffff) << 4) | variant;
+	}
+
+	/**
+	 * @return the cached chapter, or null if it is not cached.
+	 */
+	public synchronized SingleChapterVerses get(final int bookId, final int chapter_1, final int variant) {
+		final Entry entry = chapters.get(key(bookId, chapter_1, variant));
+		if (entry != null) {
+			hitCount++;
+			return entry.verses;
+		}
+
+		missCount++;
+		return null;
+	}
+
+	public synchronized void put(final int bookId, final int chapter_1, final int variant, final SingleChapterVerses verses) {
+		final int bytes = weigh(verses);
+		if (bytes > maxBytes) {
+			return;
+		}
+
+		final Entry old = chapters.put(key(bookId, chapter_1, variant), new Entry(verses, bytes));
+		if (old != null) {
+			currentBytes -= old.bytes;
+		}
+		currentBytes += bytes;
+
+		trimTo(maxBytes);
+	}
+
+	private static int weigh(final SingleChapterVerses verses) {
+		int res = 0;
+		for (int i = 0, len = verses.getVerseCount(); i < len; i++) {
+			final String verse = verses.getVerse(i);
+			res += STRING_OVERHEAD_BYTES + (verse == null ? 0 : 2 * verse.length());
+		}
+		return res;
+	}
+
+	private void trimTo(final int bytes) {
+		final Iterator<Map.Entry<Integer, Entry>> it = chapters.entrySet().iterator();
+		while (currentBytes > bytes && it.hasNext()) {
+			final Entry eldest = it.next().getValue();
+			it.remove();
+			currentBytes -= eldest.bytes;
+			evictionCount++;
+		}
+	}
+
+	/**
+	 * Sets the maximum approximate memory used by the cached chapters.
+	 * 0 disables caching. Chapters are evicted immediately if the cache is over the new budget.
+	 */
+	public synchronized void setMaxBytes(final int maxBytes) {
+		this.maxBytes = maxBytes;
+		trimTo(maxBytes);
+	}
+
+	public synchronized int getMaxBytes() {
+		return maxBytes;
+	}
+
+	public synchronized int getCurrentBytes() {
+		return currentBytes;
+	}
+
+	public synchronized long getHitCount() {
+		return hitCount;
+	}
+
+	public synchronized long getMissCount() {
+		return missCount;
+	}
+
+	public synchronized long getEvictionCount() {
+		return evictionCount;
+	}
+
+	/**
+	 * @return hits divided by all lookups, or 0 if nothing has been looked up yet.
+	 */
+	public synchronized float getHitRate() {
+		final long total = hitCount + missCount;
+		return total == 0 ? 0.f : (float) hitCount / total;
+	}
+
+	public synchronized void clear() {
+		chapters.clear();
+		currentBytes = 0;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "ChapterTextCache{" +
+			"chapters=" + chapters.size() +
+			", currentBytes=" + currentBytes +
+			", maxBytes=" + maxBytes +
+			", hitCount=" + hitCount +
+			", missCount=" + missCount +
+			", evictionCount=" + evictionCount +
+			'}';
+	}
+}
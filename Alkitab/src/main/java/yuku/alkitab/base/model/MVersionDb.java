@@ -69,7 +69,12 @@ public class MVersionDb extends MVersion {
 			if (ref != null) {
 				final VersionImpl res = ref.get();
 				if (res != null) {
-					return res;
+					if (!res.isSourceModified()) {
+						return res;
+					}
+
+					// the yes file has been replaced (e.g. updated version downloaded), so its reader and cached texts are out of date
+					res.getChapterTextCache().clear();
 				}
 			}
 
@@ -79,7 +84,7 @@ public class MVersionDb extends MVersion {
 				return null;
 			}
 
-			final VersionImpl res = new VersionImpl(reader);
+			final VersionImpl res = new VersionImpl(reader, new File(filename));
 
 			// put to cache
 			impl_cache.put(filename, new SoftReference<>(res));
@@ -1,6 +1,14 @@
 package yuku.alkitab.base.model;
 
-public class SyncShadow {
+import yuku.alkitab.base.sync.Sync;
+
+import java.util.List;
+
+/**
+ * The entities of a sync set as last agreed with the server, and the revno they belong to.
+ * @param <C> content type of the entities of the sync set.
+ */
+public class SyncShadow<C> {
 	/** Markers and labels */
 	public static final String SYNC_SET_MABEL = "mabel";
 	/** History (recent verses) */
@@ -19,5 +27,5 @@ public class SyncShadow {
 
 	public String syncSetName;
 	public int revno;
-	public byte[] data;
+	public List<Sync.Entity<C>> entities;
 }
@@ -0,0 +1,113 @@
+package yuku.alkitab.base.model;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
+import yuku.alkitab.base.App;
+import yuku.alkitab.base.S;
+import yuku.alkitab.base.util.AppLog;
+import yuku.alkitab.base.util.Highlights;
+import yuku.alkitab.base.widget.AttributeView;
+import yuku.alkitab.model.ProgressMark;
+import yuku.alkitab.util.Ari;
+
+/**
+ * What is shown next to the verses of one chapter: bookmark and note counts, highlights, progress marks
+ * and map locations. Each array is indexed by 0-based verse number, and is null if no verse has that attribute.
+ * <p>
+ * Loading this queries the database and the maps app, so it should not be done on the main thread if possible.
+ * The arrays must not be modified after loading.
+ */
+public class VerseAttributes {
+	public static final String TAG = VerseAttributes.class.getSimpleName();
+
+	public final int[] bookmarkCountMap;
+	public final int[] noteCountMap;
+	public final Highlights.Info[] highlightInfoMap;
+	public final int[] progressMarkBitsMap;
+	public final boolean[] hasMapsMap;
+
+	private VerseAttributes(final int[] bookmarkCountMap, final int[] noteCountMap, final Highlights.Info[] highlightInfoMap, final int[] progressMarkBitsMap, final boolean[] hasMapsMap) {
+		this.bookmarkCountMap = bookmarkCountMap;
+		this.noteCountMap = noteCountMap;
+		this.highlightInfoMap = highlightInfoMap;
+		this.progressMarkBitsMap = progressMarkBitsMap;
+		this.hasMapsMap = hasMapsMap;
+	}
+
+	public static VerseAttributes load(final int ariBc, final int verseCount) {
+		// 1/3: Bookmarks/Notes/Highlights
+		final int[] bookmarkCountMap;
+		final int[] noteCountMap;
+		final Highlights.Info[] highlightColorMap;
+
+		if (S.getDb().countMarkersForBookChapter(ariBc) > 0) {
+			bookmarkCountMap = new int[verseCount];
+			noteCountMap = new int[verseCount];
+			highlightColorMap = new Highlights.Info[verseCount];
+
+			S.getDb().putAttributes(ariBc, bookmarkCountMap, noteCountMap, highlightColorMap);
+		} else {
+			bookmarkCountMap = null;
+			noteCountMap = null;
+			highlightColorMap = null;
+		}
+
+		final int ariMin = ariBc & 0x00ffff00;
+		final int ariMax = ariBc | 0x000000ff;
+
+		// 2/3: Progress marks
+		int[] progressMarkBitsMap = null;
+		for (final ProgressMark progressMark: S.getDb().listAllProgressMarks()) {
+			final int ari = progressMark.ari;
+			if (ari < ariMin || ari >= ariMax) {
+				continue;
+			}
+
+			if (progressMarkBitsMap == null) {
+				progressMarkBitsMap = new int[verseCount];
+			}
+
+			int mapOffset = Ari.toVerse(ari) - 1;
+			if (mapOffset >= progressMarkBitsMap.length) {
+				AppLog.e(TAG, "(for progressMarkBitsMap:) mapOffset out of bounds: " + mapOffset + " happened on ari 0x" + Integer.toHexString(ari));
+			} else {
+				progressMarkBitsMap[mapOffset] |= 1 << (progressMark.preset_id + AttributeView.PROGRESS_MARK_BITS_START);
+			}
+		}
+
+		// 3/3: Location indicators
+		// Look up for maps locations.
+		// If the app is installed, query its content provider to see which verses has locations on the map.
+		boolean[] hasMapsMap = null;
+		{
+			final ContentResolver cr = App.context.getContentResolver();
+			final Uri uri = Uri.parse("content://palki.maps/exists?ari=" + ariBc);
+			try (Cursor c = cr.query(uri, null, null, null, null)) {
+				if (c != null) {
+					final int col_aris = c.getColumnIndexOrThrow("aris");
+
+					if (c.moveToNext()) {
+						final String aris_json = c.getString(col_aris);
+						final int[] aris = App.getDefaultGson().fromJson(aris_json, int[].class);
+
+						if (aris != null) {
+							hasMapsMap = new boolean[verseCount];
+
+							for (final int ari : aris) {
+								int mapOffset = Ari.toVerse(ari) - 1;
+								if (mapOffset >= hasMapsMap.length) {
+									AppLog.e(TAG, "(for hasMapsMap:) mapOffset out of bounds: " + mapOffset + " happened on ari 0x" + Integer.toHexString(ari));
+								} else {
+									hasMapsMap[mapOffset] = true;
+								}
+							}
+						}
+					}
+				}
+			}
+		}
+
+		return new VerseAttributes(bookmarkCountMap, noteCountMap, highlightColorMap, progressMarkBitsMap, hasMapsMap);
+	}
+}
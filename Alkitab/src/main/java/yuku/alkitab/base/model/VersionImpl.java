@@ -1,5 +1,6 @@
 package yuku.alkitab.base.model;
 
+import android.os.SystemClock;
 import android.support.annotation.Nullable;
 import yuku.alkitab.base.config.AppConfig;
 import yuku.alkitab.base.storage.InternalReader;
@@ -7,6 +8,7 @@ import yuku.alkitab.base.storage.OldVerseTextDecoder;
 import yuku.alkitab.base.util.AppLog;
 import yuku.alkitab.io.BibleReader;
 import yuku.alkitab.model.Book;
+import yuku.alkitab.model.ChapterCharView;
 import yuku.alkitab.model.FootnoteEntry;
 import yuku.alkitab.model.PericopeBlock;
 import yuku.alkitab.model.SingleChapterVerses;
@@ -15,6 +17,7 @@ import yuku.alkitab.model.XrefEntry;
 import yuku.alkitab.util.Ari;
 import yuku.alkitab.util.IntArrayList;
 
+import java.io.File;
 import java.util.Arrays;
 import java.util.List;
 
@@ -23,14 +26,46 @@ public class VersionImpl extends Version {
 
 	private BibleReader bibleReader;
 
-	private Book[] cache_books;
-	private Book[] cache_consecutiveBooks;
+	/**
+	 * Book metadata, published once and never modified, so readers do not need to lock.
+	 * Null until first needed.
+	 */
+	private volatile BookSnapshot bookSnapshot;
+
+	private final ChapterTextCache chapterTextCache = new ChapterTextCache(ChapterTextCache.DEFAULT_MAX_BYTES);
+
+	/**
+	 * The file the reader reads from, and its size and modification time when this was created,
+	 * to know whether the cached data is out of date. Null for the internal version.
+	 */
+	@Nullable private final File sourceFile;
+	private final long sourceLength;
+	private final long sourceLastModified;
+
+	/**
+	 * Versions replaced by downloading or importing are removed from the instance cache right away,
+	 * so the file only needs to be looked at once in a while, for files replaced in other ways.
+	 */
+	static final long SOURCE_CHECK_INTERVAL_MILLIS = 5000;
+	private volatile long lastSourceCheckTime;
+	private volatile boolean sourceModified;
 
 	private static Version internalVersion;
 
 	public VersionImpl(BibleReader bibleReader) {
+		this(bibleReader, null);
+	}
+
+	/**
+	 * @param sourceFile the file the reader reads from, so changes to it can be detected with {@link #isSourceModified()}.
+	 */
+	public VersionImpl(BibleReader bibleReader, @Nullable File sourceFile) {
 		super();
 		this.bibleReader = bibleReader;
+		this.sourceFile = sourceFile;
+		this.sourceLength = sourceFile == null ? 0 : sourceFile.length();
+		this.sourceLastModified = sourceFile == null ? 0 : sourceFile.lastModified();
+		this.lastSourceCheckTime = SystemClock.uptimeMillis();
 	}
 
 	public static synchronized Version getInternalVersion() {
@@ -60,102 +95,136 @@ public class VersionImpl extends Version {
 	}
 
 	/**
-	 * Some books can be null. Using this method, the return value indexed will have the same value as the {@link Book#bookId}.
-	 * i.e. return_value[bookId].bookId == bookId.
+	 * Immutable view of the books of a version, with everything the book lookup methods need precomputed.
 	 */
-	private synchronized Book[] getBooks() {
-		if (cache_books == null) {
-			cache_books = this.bibleReader.loadBooks();
+	static final class BookSnapshot {
+		static final BookSnapshot EMPTY = new BookSnapshot(new Book[0]);
+
+		/**
+		 * As returned by the reader. Some books can be null.
+		 */
+		final Book[] books;
+
+		/**
+		 * Same as {@link #books}, but none of the array elements is null.
+		 */
+		final Book[] consecutiveBooks;
+
+		/**
+		 * Indexed by bookId, i.e. byBookId[bookId].bookId == bookId. Elements are null for books not available.
+		 * Length is {@link #maxBookIdPlusOne}.
+		 */
+		final Book[] byBookId;
+
+		final int maxBookIdPlusOne;
+
+		@Nullable final Book firstBook;
+
+		BookSnapshot(final Book[] books) {
+			this.books = books;
+
+			int book_count = 0;
+			int max = -1;
+			for (Book b: books) {
+				if (b != null) {
+					book_count++;
+					if (b.bookId > max) max = b.bookId;
+				}
+			}
+
+			consecutiveBooks = new Book[book_count];
+			byBookId = new Book[max + 1];
+			int c = 0;
+			for (Book b: books) {
+				if (b != null) {
+					consecutiveBooks[c++] = b;
+					if (b.bookId >= 0 && byBookId[b.bookId] == null) {
+						byBookId[b.bookId] = b;
+					}
+				}
+			}
+
+			maxBookIdPlusOne = max + 1;
+			firstBook = book_count == 0 ? null : consecutiveBooks[0];
 		}
-		return cache_books;
 	}
 
 	/**
-	 * @return The highest bookId on this version plus one.
+	 * Loads the books on first use. Only that first load locks;
+	 * after the snapshot is published, this is a single volatile read.
 	 */
-	@Override
-	public synchronized int getMaxBookIdPlusOne() {
-		int max = -1;
-		for (Book b: getBooks()) {
-			if (b != null) {
-				if (b.bookId > max) max = b.bookId;
+	private BookSnapshot getBookSnapshot() {
+		BookSnapshot res = bookSnapshot;
+		if (res != null) {
+			return res;
+		}
+
+		synchronized (this) {
+			res = bookSnapshot;
+			if (res == null) {
+				final Book[] books = this.bibleReader.loadBooks();
+				if (books == null) {
+					// do not publish, so loading is attempted again next time
+					return BookSnapshot.EMPTY;
+				}
+				res = new BookSnapshot(books);
+				bookSnapshot = res;
 			}
+			return res;
 		}
-		return max + 1;
 	}
 
 	/**
-	 * @return same as {@link #getBooks()}, but none of the array elements is null.
+	 * @return The highest bookId on this version plus one.
+	 */
+	@Override
+	public int getMaxBookIdPlusOne() {
+		return getBookSnapshot().maxBookIdPlusOne;
+	}
+
+	/**
+	 * @return all books on this version, none of the array elements is null.
 	 * For enumerating available books.
 	 * Note that using this, no guarantee that return_value[bookId].bookId == bookId.
+	 * The returned array must not be modified.
 	 */
 	@Override
-	public synchronized Book[] getConsecutiveBooks() {
-		if (cache_consecutiveBooks == null) {
-			Book[] books1 = getBooks();
-			// count
-			int book_count = 0;
-			for (Book b: books1) {
-				if (b != null) {
-					book_count++;
-				}
-			}
-			Book[] books2 = new Book[book_count];
-			int c = 0;
-			for (Book b: books1) {
-				if (b != null) {
-					books2[c++] = b;
-				}
-			}
-			cache_consecutiveBooks = books2;
-		}
-		return cache_consecutiveBooks;
+	public Book[] getConsecutiveBooks() {
+		return getBookSnapshot().consecutiveBooks;
 	}
 
 	/**
 	 * @return null if bookId is out of range, or the book is not available on this version.
 	 */
 	@Override
-	public synchronized Book getBook(int bookId) {
-		if (bookId < 0) return null;
-		final Book[] books = getBooks();
-		if (books == null) return null;
-		if (bookId < books.length) {
-			// fast path for OT+NT complete versions
-			Book book = books[bookId];
-			if (book != null && book.bookId == bookId) return book;
-		}
-		// linear search
-		for (Book book: books) {
-			if (book != null && book.bookId == bookId) {
-				return book;
-			}
-		}
-		return null;
+	public Book getBook(int bookId) {
+		final Book[] byBookId = getBookSnapshot().byBookId;
+		if (bookId < 0 || bookId >= byBookId.length) return null;
+		return byBookId[bookId];
 	}
 
 	@Override
-	public synchronized Book getFirstBook() {
-		Book[] books = getBooks();
-		for (Book b: books) {
-			if (b != null) return b;
+	public Book getFirstBook() {
+		final BookSnapshot snapshot = getBookSnapshot();
+		if (snapshot.firstBook != null) {
+			return snapshot.firstBook;
 		}
 
-		AppLog.e(TAG, "No books available on this version. Version info: " + (this.bibleReader == null ? "reader=null" : (this.bibleReader.getLongName() + " books.length=" + books.length)));
+		AppLog.e(TAG, "No books available on this version. Version info: " + (this.bibleReader == null ? "reader=null" : (this.bibleReader.getLongName() + " books.length=" + snapshot.books.length)));
 		return null;
 	}
 
 	@Override
-	@Nullable public synchronized String loadVerseText(int ari) {
+	@Nullable public String loadVerseText(int ari) {
 		return loadVerseText(getBook(Ari.toBook(ari)), Ari.toChapter(ari), Ari.toVerse(ari));
 	}
 
 	@Override
-	@Nullable public synchronized String loadVerseText(Book book, int chapter_1, int verse_1) {
+	@Nullable public String loadVerseText(Book book, int chapter_1, int verse_1) {
 		if (book == null) {
 			return null;
 		}
-		SingleChapterVerses verses = bibleReader.loadVerseText(book, chapter_1, false, false);
+		SingleChapterVerses verses = loadChapter(book, chapter_1, ChapterTextCache.VARIANT_ORIGINAL);
 
 		if (verses == null) {
 			return null;
@@ -175,7 +244,7 @@ public class VersionImpl extends Version {
 	 * @return the number of verses successfully loaded
 	 */
 	@Override
-	public synchronized int loadVersesByAriRanges(IntArrayList ariRanges, IntArrayList result_aris, List<String> result_verses) {
+	public int loadVersesByAriRanges(IntArrayList ariRanges, IntArrayList result_aris, List<String> result_verses) {
 		int res = 0;
 
 		result_aris.clear();
@@ -283,37 +352,37 @@ public class VersionImpl extends Version {
 	 * @return the number of pericopes loaded. 0 if the version does not have pericopes or some errors happen.
 	 */
 	@Override
-	public synchronized int loadPericope(int bookId, int chapter_1, int[] aris, PericopeBlock[] pericopeBlocks, int max) {
+	public int loadPericope(int bookId, int chapter_1, int[] aris, PericopeBlock[] pericopeBlocks, int max) {
 		return bibleReader.loadPericope(bookId, chapter_1, aris, pericopeBlocks, max);
 	}
 
 	@Override
 	@Nullable
-	public synchronized SingleChapterVerses loadChapterText(Book book, int chapter_1) {
+	public SingleChapterVerses loadChapterText(Book book, int chapter_1) {
 		if (book == null) {
 			return null;
 		}
 
-		return bibleReader.loadVerseText(book, chapter_1, false, false);
+		return loadChapter(book, chapter_1, ChapterTextCache.VARIANT_ORIGINAL);
 	}
 
 	@Override
 	@Nullable
-	public synchronized SingleChapterVerses loadChapterTextLowercased(Book book, int chapter_1) {
+	public SingleChapterVerses loadChapterTextLowercased(Book book, int chapter_1) {
 		if (book == null) {
 			return null;
 		}
 
-		return bibleReader.loadVerseText(book, chapter_1, false, true);
+		return loadChapter(book, chapter_1, ChapterTextCache.VARIANT_LOWERCASED);
 	}
 
 	@Override
-	public synchronized String loadChapterTextLowercasedWithoutSplit(Book book, int chapter_1) {
+	public String loadChapterTextLowercasedWithoutSplit(Book book, int chapter_1) {
 		if (book == null) {
 			return null;
 		}
 
-		SingleChapterVerses singleVerse = bibleReader.loadVerseText(book, chapter_1, true, true);
+		SingleChapterVerses singleVerse = loadChapter(book, chapter_1, ChapterTextCache.VARIANT_LOWERCASED_WITHOUT_SPLIT);
 
 		if (singleVerse == null) {
 			return null;
@@ -322,11 +391,77 @@ public class VersionImpl extends Version {
 		return singleVerse.getVerse(0);
 	}
 
+	/**
+	 * Reads from the reader directly. This must not use or fill any chapter cache.
+	 */
+	@Nullable
+	@Override
+	public SingleChapterVerses loadChapterTextUncached(Book book, int chapter_1) {
+		if (book == null) {
+			return null;
+		}
+
+		return bibleReader.loadVerseText(book, chapter_1, false, false);
+	}
+
+	/**
+	 * Decodes directly into the view. This does not use or fill the chapter text cache,
+	 * so scanning the whole Bible does not evict the chapters being read.
+	 */
+	@Override
+	public boolean loadChapterTextLowercasedInto(Book book, int chapter_1, ChapterCharView view) {
+		if (book == null) {
+			return false;
+		}
+
+		return bibleReader.loadChapterCharView(book, chapter_1, true, view);
+	}
+
+	/**
+	 * Loads from the chapter text cache, or from the reader if it is not cached.
+	 */
+	@Nullable
+	private SingleChapterVerses loadChapter(Book book, int chapter_1, int variant) {
+		final SingleChapterVerses cached = chapterTextCache.get(book.bookId, chapter_1, variant);
+		if (cached != null) {
+			return cached;
+		}
+
+		final boolean lowercased = variant != ChapterTextCache.VARIANT_ORIGINAL;
+		final boolean splitVerses = variant != ChapterTextCache.VARIANT_LOWERCASED_WITHOUT_SPLIT;
+		final SingleChapterVerses res = bibleReader.loadVerseText(book, chapter_1, !splitVerses, lowercased);
+		if (res != null) {
+			chapterTextCache.put(book.bookId, chapter_1, variant, res);
+		}
+		return res;
+	}
+
+	public ChapterTextCache getChapterTextCache() {
+		return chapterTextCache;
+	}
+
+	/**
+	 * @return true if the file this version was read from has been replaced or modified since this was created,
+	 * so this object, and everything cached in it, must not be used anymore.
+	 * The file is looked at no more than once every {@link #SOURCE_CHECK_INTERVAL_MILLIS}, since this is called on every
+	 * {@link MVersionDb#getVersion()}.
+	 */
+	public boolean isSourceModified() {
+		if (sourceFile == null) return false;
+		if (sourceModified) return true;
+
+		final long now = SystemClock.uptimeMillis();
+		if (now - lastSourceCheckTime < SOURCE_CHECK_INTERVAL_MILLIS) return false;
+		lastSourceCheckTime = now;
+
+		return sourceModified = sourceFile.length() != sourceLength || sourceFile.lastModified() != sourceLastModified;
+	}
+
 	/**
 	 * @param arif 24bit ari at the MSB + which xref field at the 8bit LSB (starts from 1)
 	 */
 	@Override
-	public synchronized XrefEntry getXrefEntry(final int arif) {
+	public XrefEntry getXrefEntry(final int arif) {
 		return bibleReader.getXrefEntry(arif);
 	}
 
@@ -334,7 +469,7 @@ public class VersionImpl extends Version {
 	 * @param arif 24bit ari at the MSB + which xref field at the 8bit LSB (starts from 1)
 	 */
 	@Override
-	public synchronized FootnoteEntry getFootnoteEntry(final int arif) {
+	public FootnoteEntry getFootnoteEntry(final int arif) {
 		return bibleReader.getFootnoteEntry(arif);
 	}
 
@@ -342,8 +477,8 @@ public class VersionImpl extends Version {
 	public String toString() {
 		return "VersionImpl{" +
 			"bibleReader=" + bibleReader +
-			", cache_books=" + Arrays.toString(cache_books) +
-			", cache_consecutiveBooks=" + Arrays.toString(cache_consecutiveBooks) +
+			", chapterTextCache=" + chapterTextCache +
+			", books=" + (bookSnapshot == null ? "null" : Arrays.toString(bookSnapshot.books)) +
 			'}';
 	}
 }
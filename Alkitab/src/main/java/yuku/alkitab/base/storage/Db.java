@@ -12,6 +12,17 @@ public class Db {
 		public static final String modifyTime = "modifyTime";
 	}
 
+	/**
+	 * Full-text index of the captions of markers other than highlights, with {@link Marker#caption} as the only column,
+	 * stored as {@link yuku.alkitab.base.util.QueryTokenizer#toFullTextDocument(String)}. The docid is the _id of the marker.
+	 */
+	public static final String TABLE_MarkerCaptionIndex = "MarkerCaptionIndex";
+
+	/**
+	 * The _id of the markers whose caption is not yet in {@link #TABLE_MarkerCaptionIndex}, filled by triggers on the Marker table.
+	 */
+	public static final String TABLE_MarkerCaptionIndexPending = "MarkerCaptionIndexPending";
+
 	public static final String TABLE_Version = "Version";
 	public static final class Version {
 		public static final String locale = "locale";
@@ -0,0 +1,141 @@
+package yuku.alkitab.base.storage;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import yuku.alkitab.base.util.AppLog;
+import yuku.alkitab.base.util.Highlights;
+import yuku.alkitab.model.Marker;
+import yuku.alkitab.util.Ari;
+
+import java.util.Arrays;
+
+import static yuku.alkitab.base.util.Literals.ToStringArray;
+
+/**
+ * Highlights of every book, decoded from the marker captions only once and kept in memory in columns,
+ * so that showing the highlights of a chapter does not parse JSON, and does not allocate anything per verse.
+ * <p>
+ * A book is read from the database the first time one of its chapters is requested. Everything is forgotten
+ * whenever any marker is written, which is rare compared to displaying chapters.
+ * <p>
+ * The returned {@link Highlights.Info} objects are shared by all verses covered by the same marker, and must not be modified.
+ */
+public class HighlightIndex {
+	public static final String TAG = HighlightIndex.class.getSimpleName();
+
+	static class BookHighlights {
+		/**
+		 * Ordered by chapter, and within a chapter by modify time, so applying them in order makes
+		 * the latest highlight win when a verse has more than one.
+		 */
+		final int[] aris;
+		final int[] verseCounts;
+		/** Null for a caption that cannot be decoded, which clears the verse just like an undecodable caption always did. */
+		final Highlights.Info[] infos;
+
+		BookHighlights(final int[] aris, final int[] verseCounts, final Highlights.Info[] infos) {
+			this.aris = aris;
+			this.verseCounts = verseCounts;
+			this.infos = infos;
+		}
+
+		/**
+		 * @return index of the first highlight of the chapter, or the index where it would have been.
+		 */
+		int firstIndexOfChapter(final int ari_bc) {
+			int lo = 0;
+			int hi = aris.length;
+			while (lo < hi) {
+				final int mid = (lo + hi) >>> 1;
+				if ((aris[mid] & 0x00ffff00) < ari_bc) {
+					lo = mid + 1;
+				} else {
+					hi = mid;
+				}
+			}
+			return lo;
+		}
+	}
+
+	private final BookHighlights[] books = new BookHighlights[256];
+
+	/** Incremented every time everything is forgotten, so that a book read while markers were being written is not kept. */
+	private int generation;
+
+	/**
+	 * Puts the highlight of each verse of the chapter into highlightInfoMap, indexed by 0-based verse.
+	 * Verses without highlight are not touched.
+	 */
+	public void fill(final SQLiteDatabase db, final int ari_bookchapter, final Highlights.Info[] highlightInfoMap) {
+		final int ari_bc = ari_bookchapter & 0x00ffff00;
+		final BookHighlights book = getBook(db, Ari.toBook(ari_bc));
+
+		final int[] aris = book.aris;
+		for (int i = book.firstIndexOfChapter(ari_bc), len = aris.length; i < len; i++) {
+			final int ari = aris[i];
+			if ((ari & 0x00ffff00) != ari_bc) break;
+
+			final int mapOffset = Ari.toVerse(ari) - 1;
+			if (mapOffset < 0 || mapOffset >= highlightInfoMap.length) {
+				AppLog.e(TAG, "mapOffset out of bounds " + mapOffset + " happens on ari 0x" + Integer.toHexString(ari));
+				continue;
+			}
+
+			// traverse as far as verseCount, but do not go past number of verses in this chapter
+			final int end = Math.min(mapOffset + book.verseCounts[i], highlightInfoMap.length);
+			final Highlights.Info info = book.infos[i];
+			for (int j = mapOffset; j < end; j++) {
+				highlightInfoMap[j] = info;
+			}
+		}
+	}
+
+	/**
+	 * Must be called after any marker is inserted, updated or deleted.
+	 */
+	public synchronized void invalidate() {
+		generation++;
+		Arrays.fill(books, null);
+	}
+
+	private BookHighlights getBook(final SQLiteDatabase db, final int bookId) {
+		final int generation;
+		synchronized (this) {
+			final BookHighlights res = books[bookId];
+			if (res != null) return res;
+			generation = this.generation;
+		}
+
+		final BookHighlights res = load(db, bookId);
+
+		synchronized (this) {
+			if (this.generation == generation) {
+				books[bookId] = res;
+			}
+		}
+		return res;
+	}
+
+	private static BookHighlights load(final SQLiteDatabase db, final int bookId) {
+		final int ariMin = Ari.encode(bookId, 0, 0);
+		final int ariMax = ariMin + 0x10000;
+
+		try (Cursor c = db.rawQuery("select " + Db.Marker.ari + ", " + Db.Marker.caption + ", " + Db.Marker.verseCount + " from " + Db.TABLE_Marker
+			+ " where " + Db.Marker.kind + "=? and " + Db.Marker.ari + ">=? and " + Db.Marker.ari + "<?"
+			+ " order by (" + Db.Marker.ari + " >> 8), " + Db.Marker.modifyTime, ToStringArray(Marker.Kind.highlight.code, ariMin, ariMax))
+		) {
+			final int count = c.getCount();
+			final int[] aris = new int[count];
+			final int[] verseCounts = new int[count];
+			final Highlights.Info[] infos = new Highlights.Info[count];
+
+			for (int i = 0; i < count && c.moveToNext(); i++) {
+				aris[i] = c.getInt(0);
+				infos[i] = Highlights.decode(c.getString(1));
+				verseCounts[i] = c.getInt(2);
+			}
+
+			return new BookHighlights(aris, verseCounts, infos);
+		}
+	}
+}
@@ -11,9 +11,11 @@ import android.provider.BaseColumns;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.util.Pair;
+import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 import gnu.trove.set.TIntSet;
 import gnu.trove.set.hash.TIntHashSet;
+import gnu.trove.set.hash.TLongHashSet;
 import yuku.afw.storage.Preferences;
 import yuku.alkitab.base.App;
 import yuku.alkitab.base.U;
@@ -40,6 +42,7 @@ import yuku.alkitab.base.sync.Sync_Pins;
 import yuku.alkitab.base.sync.Sync_Rp;
 import yuku.alkitab.base.util.AppLog;
 import yuku.alkitab.base.util.Highlights;
+import yuku.alkitab.base.util.QueryTokenizer;
 import yuku.alkitab.base.util.Sqlitil;
 import yuku.alkitab.debug.BuildConfig;
 import yuku.alkitab.model.Label;
@@ -54,6 +57,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -67,6 +71,13 @@ public class InternalDb {
 
 	private final InternalDbHelper helper;
 
+	/**
+	 * Static, because markers are also written by {@link #insertMarker(SQLiteDatabase, Marker)}.
+	 * Invalidated after the transaction that writes markers has ended, so that a book read from another connection
+	 * before the commit is not kept.
+	 */
+	private static final HighlightIndex highlightIndex = new HighlightIndex();
+
 	public InternalDb(InternalDbHelper helper) {
 		this.helper = helper;
 	}
@@ -165,11 +176,20 @@ public class InternalDb {
 	 */
 	public void insertOrUpdateMarker(@NonNull final Marker marker) {
 		final SQLiteDatabase db = helper.getWritableDatabase();
-		if (marker._id != 0) {
-			db.update(Db.TABLE_Marker, markerToContentValues(marker), "_id=?", Array(String.valueOf(marker._id)));
-		} else {
-			marker._id = db.insert(Db.TABLE_Marker, null, markerToContentValues(marker));
+		db.beginTransactionNonExclusive();
+		try {
+			if (marker._id != 0) {
+				db.update(Db.TABLE_Marker, markerToContentValues(marker), "_id=?", Array(String.valueOf(marker._id)));
+				insertMabelJournal(db, Sync.Entity.KIND_MARKER, marker.gid, Sync.Opkind.mod);
+			} else {
+				marker._id = db.insert(Db.TABLE_Marker, null, markerToContentValues(marker));
+				insertMabelJournal(db, Sync.Entity.KIND_MARKER, marker.gid, Sync.Opkind.add);
+			}
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
 		}
+		highlightIndex.invalidate();
 		Sync.notifySyncNeeded(SyncShadow.SYNC_SET_MABEL);
 	}
 
@@ -177,7 +197,15 @@ public class InternalDb {
 		final Marker res = Marker.createNewMarker(ari, kind, caption, verseCount, createTime, modifyTime);
 		final SQLiteDatabase db = helper.getWritableDatabase();
 
-		res._id = db.insert(Db.TABLE_Marker, null, markerToContentValues(res));
+		db.beginTransactionNonExclusive();
+		try {
+			res._id = db.insert(Db.TABLE_Marker, null, markerToContentValues(res));
+			insertMabelJournal(db, Sync.Entity.KIND_MARKER, res.gid, Sync.Opkind.add);
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
+		}
+		highlightIndex.invalidate();
 		Sync.notifySyncNeeded(SyncShadow.SYNC_SET_MABEL);
 
 		return res;
@@ -186,6 +214,8 @@ public class InternalDb {
 	/** Used in migration from v3 */
 	public static long insertMarker(final SQLiteDatabase db, final Marker marker) {
 		marker._id = db.insert(Db.TABLE_Marker, null, markerToContentValues(marker));
+		insertMabelJournal(db, Sync.Entity.KIND_MARKER, marker.gid, Sync.Opkind.add);
+		highlightIndex.invalidate();
 		Sync.notifySyncNeeded(SyncShadow.SYNC_SET_MABEL);
 
 		return marker._id;
@@ -197,18 +227,35 @@ public class InternalDb {
 		final SQLiteDatabase db = helper.getWritableDatabase();
 		db.beginTransactionNonExclusive();
 		try {
+			for (final Marker_Label marker_label : listMarker_LabelsByMarker(marker)) {
+				insertMabelJournal(db, Sync.Entity.KIND_MARKER_LABEL, marker_label.gid, Sync.Opkind.del);
+			}
 			db.delete(Db.TABLE_Marker_Label, Db.Marker_Label.marker_gid + "=?", new String[]{marker.gid});
 			db.delete(Db.TABLE_Marker, "_id=?", new String[]{String.valueOf(_id)});
+			insertMabelJournal(db, Sync.Entity.KIND_MARKER, marker.gid, Sync.Opkind.del);
 			db.setTransactionSuccessful();
 		} finally {
 			db.endTransaction();
 		}
+		highlightIndex.invalidate();
 		Sync.notifySyncNeeded(SyncShadow.SYNC_SET_MABEL);
 	}
 
 	public void deleteNonBookmarkMarkerById(long _id) {
+		final Marker marker = getMarkerById(_id);
+
 		SQLiteDatabase db = helper.getWritableDatabase();
-		db.delete(Db.TABLE_Marker, "_id=?", new String[]{String.valueOf(_id)});
+		db.beginTransactionNonExclusive();
+		try {
+			db.delete(Db.TABLE_Marker, "_id=?", new String[]{String.valueOf(_id)});
+			if (marker != null) {
+				insertMabelJournal(db, Sync.Entity.KIND_MARKER, marker.gid, Sync.Opkind.del);
+			}
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
+		}
+		highlightIndex.invalidate();
 		Sync.notifySyncNeeded(SyncShadow.SYNC_SET_MABEL);
 	}
 
@@ -238,6 +285,61 @@ public class InternalDb {
 		return res;
 	}
 
+	/**
+	 * Finds the markers whose caption may contain all the plussed tokens, using the full-text index of the captions,
+	 * so most captions do not need to be loaded and lowercased. The captions of the markers found still have to be checked
+	 * with {@link yuku.alkitab.base.util.SearchEngine#satisfiesTokens(String, yuku.alkitab.base.util.SearchEngine.ReadyTokens)},
+	 * which also checks the tokens that are not plussed.
+	 * Highlights are never found, since their captions are not indexed.
+	 * @param tokens from {@link QueryTokenizer#tokenize(String)}
+	 * @return _ids of the markers found, or null if the index can't narrow down the tokens, e.g. none of them is plussed.
+	 */
+	@Nullable public TLongHashSet listMarkerIdsByCaption(@NonNull final String[] tokens) {
+		final String match = QueryTokenizer.toFullTextQuery(tokens);
+		if (match == null) {
+			return null;
+		}
+
+		indexPendingMarkerCaptions();
+
+		final TLongHashSet res = new TLongHashSet();
+		try (Cursor c = helper.getReadableDatabase().rawQuery("select docid from " + Db.TABLE_MarkerCaptionIndex + " where " + Db.Marker.caption + " match ?", Array(match))) {
+			while (c.moveToNext()) {
+				res.add(c.getLong(0));
+			}
+		}
+		return res;
+	}
+
+	/**
+	 * Stores the captions of the markers recorded by the triggers in {@link Db#TABLE_MarkerCaptionIndexPending} into the full-text index,
+	 * normalized in Java, since SQLite lowercases only ASCII letters and its simple tokenizer does not split words on e.g. curly apostrophes.
+	 * Done in one transaction, so no marker can be changed between reading the pending ones and clearing them.
+	 */
+	void indexPendingMarkerCaptions() {
+		final SQLiteDatabase db = helper.getWritableDatabase();
+		db.beginTransactionNonExclusive();
+		try {
+			final SQLiteStatement insert = db.compileStatement("insert into " + Db.TABLE_MarkerCaptionIndex + " (docid, " + Db.Marker.caption + ") values (?, ?)");
+			try (Cursor c = db.rawQuery("select p._id, m." + Db.Marker.caption + " from " + Db.TABLE_MarkerCaptionIndexPending + " p, " + Db.TABLE_Marker + " m where p._id = m._id", null)) {
+				while (c.moveToNext()) {
+					final String caption = c.getString(1);
+					if (caption == null) continue;
+
+					insert.bindLong(1, c.getLong(0));
+					insert.bindString(2, QueryTokenizer.toFullTextDocument(caption));
+					insert.executeInsert();
+				}
+			} finally {
+				insert.close();
+			}
+			db.delete(Db.TABLE_MarkerCaptionIndexPending, null, null);
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
+		}
+	}
+
 	public List<Marker> listAllMarkers() {
 		final SQLiteDatabase db = helper.getReadableDatabase();
 		final Cursor c = db.query(Db.TABLE_Marker, null, null, null, null, null, null);
@@ -278,22 +380,17 @@ public class InternalDb {
 		final int ariMin = ari_bookchapter & 0x00ffff00;
 		final int ariMax = ari_bookchapter | 0x000000ff;
 
-		final String[] params = {
-			String.valueOf(ariMin),
-			String.valueOf(ariMax),
-		};
+		final SQLiteDatabase db = helper.getReadableDatabase();
+
+		// highlights are decoded only once per marker, not on every display
+		highlightIndex.fill(db, ari_bookchapter, highlightColorMap);
 
-		// order by modifyTime, so in case a verse has more than one highlight, the latest one is shown
-		final Cursor cursor = helper.getReadableDatabase().rawQuery("select * from " + Db.TABLE_Marker + " where " + Db.Marker.ari + ">=? and " + Db.Marker.ari + "<? order by " + Db.Marker.modifyTime, params);
-		try {
-			final int col_kind = cursor.getColumnIndexOrThrow(Db.Marker.kind);
-			final int col_ari = cursor.getColumnIndexOrThrow(Db.Marker.ari);
-			final int col_caption = cursor.getColumnIndexOrThrow(Db.Marker.caption);
-			final int col_verseCount = cursor.getColumnIndexOrThrow(Db.Marker.verseCount);
+		final String[] params = ToStringArray(ariMin, ariMax, Marker.Kind.highlight.code);
 
+		try (Cursor cursor = db.rawQuery("select " + Db.Marker.ari + ", " + Db.Marker.kind + " from " + Db.TABLE_Marker + " where " + Db.Marker.ari + ">=? and " + Db.Marker.ari + "<? and " + Db.Marker.kind + "!=?", params)) {
 			while (cursor.moveToNext()) {
-				final int ari = cursor.getInt(col_ari);
-				final int kind = cursor.getInt(col_kind);
+				final int ari = cursor.getInt(0);
+				final int kind = cursor.getInt(1);
 
 				int mapOffset = Ari.toVerse(ari) - 1;
 				if (mapOffset >= bookmarkCountMap.length) {
@@ -305,26 +402,18 @@ public class InternalDb {
 					bookmarkCountMap[mapOffset] += 1;
 				} else if (kind == Marker.Kind.note.code) {
 					noteCountMap[mapOffset] += 1;
-				} else if (kind == Marker.Kind.highlight.code) {
-					// traverse as far as verseCount
-					final int verseCount = cursor.getInt(col_verseCount);
-
-					for (int i = 0; i < verseCount; i++) {
-						int mapOffset2 = mapOffset + i;
-						if (mapOffset2 >= highlightColorMap.length) break; // do not go past number of verses in this chapter
-
-						final String caption = cursor.getString(col_caption);
-						final Highlights.Info info = Highlights.decode(caption);
-
-						highlightColorMap[mapOffset2] = info;
-					}
 				}
 			}
-		} finally {
-			cursor.close();
 		}
 	}
 
+	/**
+	 * Must be called after markers are written to the database directly, not through the methods of this class.
+	 */
+	public void invalidateHighlightIndex() {
+		highlightIndex.invalidate();
+	}
+
 	/**
 	 * @param colorRgb may NOT be -1. Use {@link #updateOrInsertHighlights(int, IntArrayList, int)} to delete highlight.
 	 */
@@ -345,16 +434,19 @@ public class InternalDb {
 						marker.modifyTime = now;
 						marker.caption = Highlights.encode(colorRgb, hashCode, startOffset, endOffset);
 						db.update(Db.TABLE_Marker, markerToContentValues(marker), "_id=?", ToStringArray(marker._id));
+						insertMabelJournal(db, Sync.Entity.KIND_MARKER, marker.gid, Sync.Opkind.mod);
 					}
 
 					// remove earlier ones if they exist (caused by sync)
 					while (c.moveToNext()) {
 						final long _id = c.getLong(c.getColumnIndexOrThrow("_id"));
 						db.delete(Db.TABLE_Marker, "_id=?", ToStringArray(_id));
+						insertMabelJournal(db, Sync.Entity.KIND_MARKER, c.getString(c.getColumnIndexOrThrow(Db.Marker.gid)), Sync.Opkind.del);
 					}
 				} else { // insert
 					final Marker marker = Marker.createNewMarker(ari, Marker.Kind.highlight, Highlights.encode(colorRgb, hashCode, startOffset, endOffset), 1, now, now);
 					db.insert(Db.TABLE_Marker, null, markerToContentValues(marker));
+					insertMabelJournal(db, Sync.Entity.KIND_MARKER, marker.gid, Sync.Opkind.add);
 				}
 			} finally {
 				c.close();
@@ -364,6 +456,7 @@ public class InternalDb {
 			db.endTransaction();
 		}
 
+		highlightIndex.invalidate();
 		Sync.notifySyncNeeded(SyncShadow.SYNC_SET_MABEL);
 	}
 
@@ -389,9 +482,11 @@ public class InternalDb {
 							if (colorRgb != -1) {
 								marker.caption = Highlights.encode(colorRgb);
 								db.update(Db.TABLE_Marker, markerToContentValues(marker), "_id=?", ToStringArray(marker._id));
+								insertMabelJournal(db, Sync.Entity.KIND_MARKER, marker.gid, Sync.Opkind.mod);
 							} else {
 								// delete entry
 								db.delete(Db.TABLE_Marker, "_id=?", ToStringArray(marker._id));
+								insertMabelJournal(db, Sync.Entity.KIND_MARKER, marker.gid, Sync.Opkind.del);
 							}
 						}
 
@@ -399,6 +494,7 @@ public class InternalDb {
 						while (c.moveToNext()) {
 							final long _id = c.getLong(c.getColumnIndexOrThrow("_id"));
 							db.delete(Db.TABLE_Marker, "_id=?", ToStringArray(_id));
+							insertMabelJournal(db, Sync.Entity.KIND_MARKER, c.getString(c.getColumnIndexOrThrow(Db.Marker.gid)), Sync.Opkind.del);
 						}
 					} else {
 						if (colorRgb == -1) {
@@ -407,6 +503,7 @@ public class InternalDb {
 							final Date now = new Date();
 							final Marker marker = Marker.createNewMarker(ari, Marker.Kind.highlight, Highlights.encode(colorRgb), 1, now, now);
 							db.insert(Db.TABLE_Marker, null, markerToContentValues(marker));
+							insertMabelJournal(db, Sync.Entity.KIND_MARKER, marker.gid, Sync.Opkind.add);
 						}
 					}
 				} finally {
@@ -418,6 +515,7 @@ public class InternalDb {
 			db.endTransaction();
 		}
 
+		highlightIndex.invalidate();
 		Sync.notifySyncNeeded(SyncShadow.SYNC_SET_MABEL);
 	}
 
@@ -771,7 +869,14 @@ public class InternalDb {
 		final Label res = Label.createNewLabel(title, getLabelMaxOrdering() + 1, bgColor);
 		final SQLiteDatabase db = helper.getWritableDatabase();
 
-		res._id = db.insert(Db.TABLE_Label, null, labelToContentValues(res));
+		db.beginTransactionNonExclusive();
+		try {
+			res._id = db.insert(Db.TABLE_Label, null, labelToContentValues(res));
+			insertMabelJournal(db, Sync.Entity.KIND_LABEL, res.gid, Sync.Opkind.add);
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
+		}
 		Sync.notifySyncNeeded(SyncShadow.SYNC_SET_MABEL);
 		return res;
 	}
@@ -827,12 +932,14 @@ public class InternalDb {
 			// remove
 			for (final Marker_Label removeMl : removeMls) {
 				db.delete(Db.TABLE_Marker_Label, "_id=?", ToStringArray(removeMl._id));
+				insertMabelJournal(db, Sync.Entity.KIND_MARKER_LABEL, removeMl.gid, Sync.Opkind.del);
 			}
 
 			// add
 			for (final Label addLabel : addLabels) {
 				final Marker_Label marker_label = Marker_Label.createNewMarker_Label(marker.gid, addLabel.gid);
 				db.insert(Db.TABLE_Marker_Label, null, marker_labelToContentValues(marker_label));
+				insertMabelJournal(db, Sync.Entity.KIND_MARKER_LABEL, marker_label.gid, Sync.Opkind.add);
 			}
 
 			db.setTransactionSuccessful();
@@ -884,8 +991,14 @@ public class InternalDb {
 		final SQLiteDatabase db = helper.getWritableDatabase();
 		db.beginTransactionNonExclusive();
 		try {
+			try (Cursor c = db.query(Db.TABLE_Marker_Label, Array(Db.Marker_Label.gid), Db.Marker_Label.label_gid + "=?", Array(label.gid), null, null, null)) {
+				while (c.moveToNext()) {
+					insertMabelJournal(db, Sync.Entity.KIND_MARKER_LABEL, c.getString(0), Sync.Opkind.del);
+				}
+			}
 			db.delete(Db.TABLE_Marker_Label, Db.Marker_Label.label_gid + "=?", new String[]{label.gid});
 			db.delete(Db.TABLE_Label, "_id=?", new String[]{String.valueOf(_id)});
+			insertMabelJournal(db, Sync.Entity.KIND_LABEL, label.gid, Sync.Opkind.del);
 			db.setTransactionSuccessful();
 		} finally {
 			db.endTransaction();
@@ -899,10 +1012,18 @@ public class InternalDb {
 	 */
 	public void insertOrUpdateLabel(@NonNull final Label label) {
 		final SQLiteDatabase db = helper.getWritableDatabase();
-		if (label._id != 0) {
-			db.update(Db.TABLE_Label, labelToContentValues(label), "_id=?", Array(String.valueOf(label._id)));
-		} else {
-			label._id = db.insert(Db.TABLE_Label, null, labelToContentValues(label));
+		db.beginTransactionNonExclusive();
+		try {
+			if (label._id != 0) {
+				db.update(Db.TABLE_Label, labelToContentValues(label), "_id=?", Array(String.valueOf(label._id)));
+				insertMabelJournal(db, Sync.Entity.KIND_LABEL, label.gid, Sync.Opkind.mod);
+			} else {
+				label._id = db.insert(Db.TABLE_Label, null, labelToContentValues(label));
+				insertMabelJournal(db, Sync.Entity.KIND_LABEL, label.gid, Sync.Opkind.add);
+			}
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
 		}
 		Sync.notifySyncNeeded(SyncShadow.SYNC_SET_MABEL);
 	}
@@ -913,10 +1034,18 @@ public class InternalDb {
 	 */
 	public void insertOrUpdateMarker_Label(@NonNull final Marker_Label marker_label) {
 		final SQLiteDatabase db = helper.getWritableDatabase();
-		if (marker_label._id != 0) {
-			db.update(Db.TABLE_Marker_Label, marker_labelToContentValues(marker_label), "_id=?", ToStringArray(marker_label._id));
-		} else {
-			marker_label._id = db.insert(Db.TABLE_Marker_Label, null, marker_labelToContentValues(marker_label));
+		db.beginTransactionNonExclusive();
+		try {
+			if (marker_label._id != 0) {
+				db.update(Db.TABLE_Marker_Label, marker_labelToContentValues(marker_label), "_id=?", ToStringArray(marker_label._id));
+				insertMabelJournal(db, Sync.Entity.KIND_MARKER_LABEL, marker_label.gid, Sync.Opkind.mod);
+			} else {
+				marker_label._id = db.insert(Db.TABLE_Marker_Label, null, marker_labelToContentValues(marker_label));
+				insertMabelJournal(db, Sync.Entity.KIND_MARKER_LABEL, marker_label.gid, Sync.Opkind.add);
+			}
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
 		}
 		Sync.notifySyncNeeded(SyncShadow.SYNC_SET_MABEL);
 	}
@@ -931,6 +1060,7 @@ public class InternalDb {
 					marker_label._id = cursor.getLong(0);
 				} else {
 					marker_label._id = db.insert(Db.TABLE_Marker_Label, null, marker_labelToContentValues(marker_label));
+					insertMabelJournal(db, Sync.Entity.KIND_MARKER_LABEL, marker_label.gid, Sync.Opkind.add);
 				}
 			} finally {
 				cursor.close();
@@ -967,6 +1097,7 @@ public class InternalDb {
 				final Label label = labels.get(i);
 				label.ordering = i + 1;
 				db.update(Db.TABLE_Label, labelToContentValues(label), "_id=?", ToStringArray(label._id));
+				insertMabelJournal(db, Sync.Entity.KIND_LABEL, label.gid, Sync.Opkind.mod);
 			}
 
 			db.setTransactionSuccessful();
@@ -998,6 +1129,13 @@ public class InternalDb {
 		SQLiteDatabase db = helper.getWritableDatabase();
 		db.beginTransactionNonExclusive();
 		try {
+			// every label whose ordering may change
+			try (Cursor c = db.query(Db.TABLE_Label, Array(Db.Label.gid), Db.Label.ordering + " between ? and ?", ToStringArray(Math.min(from.ordering, to.ordering), Math.max(from.ordering, to.ordering)), null, null, null)) {
+				while (c.moveToNext()) {
+					insertMabelJournal(db, Sync.Entity.KIND_LABEL, c.getString(0), Sync.Opkind.mod);
+				}
+			}
+
 			if (from.ordering > to.ordering) { // move up
 				db.execSQL("update " + Db.TABLE_Label + " set " + Db.Label.ordering + "=(" + Db.Label.ordering + "+1) where ?<=" + Db.Label.ordering + " and " + Db.Label.ordering + "<?", new Object[] {to.ordering, from.ordering});
 				db.execSQL("update " + Db.TABLE_Label + " set " + Db.Label.ordering + "=? where _id=?", new Object[] {to.ordering, from._id});
@@ -1367,91 +1505,71 @@ public class InternalDb {
 		}
 	}
 
-	@Nullable public SyncShadow getSyncShadowBySyncSetName(final String syncSetName) {
-		// Getting a sync shadow that has a size bigger than 2 MB will cause crash,
-		// because of system CursorWindow implementation that sets the max memory allocated
-		// to be 2 MB, as defined in system resource:
-		// <integer name="config_cursorWindowSize">2048</integer>
-		// So we will get the size first, and then allocate memory,
-		// and get the data in chunks.
+	/**
+	 * Reads the shadow of a sync set with a cursor over its entities, one row per entity,
+	 * so no document containing the whole shadow is ever assembled in memory.
+	 * @param contentClass content type of the entities of the sync set.
+	 * @return null if the sync set does not have a shadow (never synced or reset).
+	 */
+	@Nullable public <C> SyncShadow<C> getSyncShadowBySyncSetName(final String syncSetName, @NonNull final Class<C> contentClass) {
 		final SQLiteDatabase db = helper.getReadableDatabase();
+		final Gson gson = App.getDefaultGson();
 		db.beginTransactionNonExclusive();
 		try {
-			final int data_len;
-			final long _id;
 			final int revno;
-
-			{ // get blob len
-				final Cursor c = db.rawQuery(
-					"select "
-						+ Table.SyncShadow.revno.name() + ", " // col 0
-						+ "length(" + Table.SyncShadow.data.name() + "), " // col 1
-						+ "_id " // col 2
-						+ " from " + Table.SyncShadow.tableName()
-						+ " where " + Table.SyncShadow.syncSetName + "=?",
-					Array(syncSetName)
-				);
-				try {
-					if (c.moveToNext()) {
-						revno = c.getInt(0);
-						data_len = c.getInt(1);
-						_id = c.getLong(2);
-					} else {
-						return null;
-					}
-				} finally {
-					c.close();
+			try (Cursor c = db.rawQuery("select " + Table.SyncShadow.revno + " from " + Table.SyncShadow.tableName() + " where " + Table.SyncShadow.syncSetName + "=?", Array(syncSetName))) {
+				if (c.moveToNext()) {
+					revno = c.getInt(0);
+				} else {
+					return null;
 				}
 			}
 
-			final byte[] data = new byte[data_len];
-
-			{ // fill in blob
-				final int chunkSize = 1000_000;
-				for (int i = 0; i < data_len; i += chunkSize) {
-					final Cursor c = db.rawQuery(
-						// sqlite substr func is 1-indexed
-						"select "
-							+ "substr(" + Table.SyncShadow.data.name() + ", " + (i + 1) + ", " + chunkSize + ")" // col 0
-							+ " from " + Table.SyncShadow.tableName()
-							+ " where _id=?",
-						ToStringArray(_id)
-					);
-
-					try {
-						if (c.moveToNext()) {
-							final byte[] chunk = c.getBlob(0);
-							if (i + chunk.length != data_len) {
-								// not the last one
-								if (chunk.length != chunkSize) {
-									throw new RuntimeException("Not the requested size of chunk retrieved. data_len=" + data_len + " i=" + i + " chunk.len=" + chunk.length);
-								}
-								System.arraycopy(chunk, 0, data, i, chunkSize);
-							} else {
-								// the last one
-								System.arraycopy(chunk, 0, data, i, chunk.length);
-							}
-						} else {
-							throw new RuntimeException("Cursor moveToNext returns false, does not make sense, since previous query has indicated that this cursor has rows.");
-						}
-					} finally {
-						c.close();
-					}
+			final List<Sync.Entity<C>> entities = new ArrayList<>();
+			try (Cursor c = db.rawQuery(
+				"select "
+					+ Table.SyncShadowEntity.kind + ", " // col 0
+					+ Table.SyncShadowEntity.gid + ", " // col 1
+					+ Table.SyncShadowEntity.content // col 2
+					+ " from " + Table.SyncShadowEntity.tableName()
+					+ " where " + Table.SyncShadowEntity.syncSetName + "=?"
+					+ " order by _id",
+				Array(syncSetName)
+			)) {
+				while (c.moveToNext()) {
+					entities.add(new Sync.Entity<>(c.getString(0), c.getString(1), gson.fromJson(c.getString(2), contentClass)));
 				}
 			}
 
 			db.setTransactionSuccessful();
 
-			final SyncShadow res = new SyncShadow();
+			final SyncShadow<C> res = new SyncShadow<>();
 			res.syncSetName = syncSetName;
 			res.revno = revno;
-			res.data = data;
+			res.entities = entities;
 			return res;
 		} finally {
 			db.endTransaction();
 		}
 	}
 
+	/**
+	 * @return null if the shadow of the sync set does not have the entity.
+	 */
+	@Nullable public <C> Sync.Entity<C> getSyncShadowEntity(final String syncSetName, final String kind, final String gid, @NonNull final Class<C> contentClass) {
+		try (Cursor c = helper.getReadableDatabase().rawQuery(
+			"select " + Table.SyncShadowEntity.content
+				+ " from " + Table.SyncShadowEntity.tableName()
+				+ " where " + Table.SyncShadowEntity.syncSetName + "=? and " + Table.SyncShadowEntity.kind + "=? and " + Table.SyncShadowEntity.gid + "=?",
+			Array(syncSetName, kind, gid)
+		)) {
+			if (c.moveToNext()) {
+				return new Sync.Entity<>(kind, gid, App.getDefaultGson().fromJson(c.getString(0), contentClass));
+			}
+			return null;
+		}
+	}
+
 	public int getRevnoFromSyncShadowBySyncSetName(final String syncSetName) {
 		final SQLiteDatabase db = helper.getReadableDatabase();
 		final Cursor c = db.query(Table.SyncShadow.tableName(), Array(
@@ -1467,52 +1585,396 @@ public class InternalDb {
 		return 0;
 	}
 
-	@NonNull private static ContentValues syncShadowToContentValues(@NonNull final SyncShadow ss) {
-		final ContentValues res = new ContentValues();
-		res.put(Table.SyncShadow.syncSetName.name(), ss.syncSetName);
-		res.put(Table.SyncShadow.revno.name(), ss.revno);
-		res.put(Table.SyncShadow.data.name(), ss.data);
+	/**
+	 * Hash of the JSON of an entity content (64-bit FNV-1a), to find out whether a shadow entity has changed
+	 * without reading its content back from the database.
+	 */
+	static long contentHash(@NonNull final String content) {
+		long res = 0xcbf29ce484222325L;
+		for (int i = 0, len = content.length(); i < len; i++) {
+			res ^= content.charAt(i);
+			res *= 0x100000001b3L;
+		}
 		return res;
 	}
 
 	/**
 	 * Create or update a sync shadow, based on the sync set name.
+	 * Only the entities that are new or changed are written, and the ones no longer in the shadow are deleted,
+	 * so a sync that changes a few entities does not rewrite the whole shadow.
 	 * @param ss if the {@link yuku.alkitab.base.model.SyncShadow#syncSetName} is already on the database, this method will replace it. Otherwise, this method will insert a new one.
 	 */
-	public void insertOrUpdateSyncShadowBySyncSetName(@NonNull final SyncShadow ss) {
+	public void insertOrUpdateSyncShadowBySyncSetName(@NonNull final SyncShadow<?> ss) {
 		final SQLiteDatabase db = helper.getWritableDatabase();
+		final Gson gson = App.getDefaultGson();
 		db.beginTransactionNonExclusive();
 		try {
-			final long count = DatabaseUtils.queryNumEntries(db, Table.SyncShadow.tableName(), Table.SyncShadow.syncSetName + "=?", Array(ss.syncSetName));
-			if (count > 0) {
-				db.update(Table.SyncShadow.tableName(), syncShadowToContentValues(ss), Table.SyncShadow.syncSetName + "=?", Array(ss.syncSetName));
-			} else {
-				db.insert(Table.SyncShadow.tableName(), null, syncShadowToContentValues(ss));
+			putSyncShadowRevno(db, ss.syncSetName, ss.revno);
+
+			// content hashes of the stored entities, keyed by kind and gid (kinds do not contain ':')
+			final HashMap<String, Long> storedHashes = new HashMap<>();
+			try (Cursor c = db.rawQuery("select " + Table.SyncShadowEntity.kind + ", " + Table.SyncShadowEntity.gid + ", " + Table.SyncShadowEntity.contentHash + " from " + Table.SyncShadowEntity.tableName() + " where " + Table.SyncShadowEntity.syncSetName + "=?", Array(ss.syncSetName))) {
+				while (c.moveToNext()) {
+					storedHashes.put(c.getString(0) + ':' + c.getString(1), c.getLong(2));
+				}
 			}
+
+			final SQLiteStatement upsert = compileSyncShadowEntityUpsert(db);
+			final SQLiteStatement delete = compileSyncShadowEntityDelete(db);
+			try {
+				for (final Sync.Entity<?> entity : ss.entities) {
+					final String content = gson.toJson(entity.content);
+					final long contentHash = contentHash(content);
+
+					final Long storedHash = storedHashes.remove(entity.kind + ':' + entity.gid);
+					if (storedHash != null && storedHash == contentHash) {
+						continue;
+					}
+
+					upsert.bindString(1, ss.syncSetName);
+					upsert.bindString(2, entity.kind);
+					upsert.bindString(3, entity.gid);
+					upsert.bindLong(4, contentHash);
+					upsert.bindString(5, content);
+					upsert.executeInsert();
+				}
+
+				// what is left is no longer in the shadow
+				for (final String key : storedHashes.keySet()) {
+					final int colon = key.indexOf(':');
+					delete.bindString(1, ss.syncSetName);
+					delete.bindString(2, key.substring(0, colon));
+					delete.bindString(3, key.substring(colon + 1));
+					delete.executeUpdateDelete();
+				}
+			} finally {
+				upsert.close();
+				delete.close();
+			}
+
 			db.setTransactionSuccessful();
 		} finally {
 			db.endTransaction();
 		}
 	}
 
+	/**
+	 * Applies operations to the shadow of a sync set in order, the same way as {@link SyncAdapter#patchNoConflict(List, List)}
+	 * applies them to a list of entities, and sets the revno. Only the entities the operations refer to are written.
+	 */
+	public <C> void patchSyncShadowBySyncSetName(final String syncSetName, final int revno, @NonNull final List<Sync.Operation<C>> operations) {
+		final SQLiteDatabase db = helper.getWritableDatabase();
+		final Gson gson = App.getDefaultGson();
+		db.beginTransactionNonExclusive();
+		try {
+			putSyncShadowRevno(db, syncSetName, revno);
+
+			final SQLiteStatement upsert = compileSyncShadowEntityUpsert(db);
+			final SQLiteStatement delete = compileSyncShadowEntityDelete(db);
+			try {
+				for (final Sync.Operation<C> o : operations) {
+					switch (o.opkind) {
+						case del:
+							delete.bindString(1, syncSetName);
+							delete.bindString(2, o.kind);
+							delete.bindString(3, o.gid);
+							delete.executeUpdateDelete();
+							break;
+						case add:
+						case mod:
+							final String content = gson.toJson(o.content);
+							upsert.bindString(1, syncSetName);
+							upsert.bindString(2, o.kind);
+							upsert.bindString(3, o.gid);
+							upsert.bindLong(4, contentHash(content));
+							upsert.bindString(5, content);
+							upsert.executeInsert();
+							break;
+					}
+				}
+			} finally {
+				upsert.close();
+				delete.close();
+			}
+
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
+		}
+	}
+
+	private static void putSyncShadowRevno(final SQLiteDatabase db, final String syncSetName, final int revno) {
+		final ContentValues cv = new ContentValues();
+		cv.put(Table.SyncShadow.revno.name(), revno);
+		if (db.update(Table.SyncShadow.tableName(), cv, Table.SyncShadow.syncSetName + "=?", Array(syncSetName)) == 0) {
+			cv.put(Table.SyncShadow.syncSetName.name(), syncSetName);
+			db.insert(Table.SyncShadow.tableName(), null, cv);
+		}
+	}
+
+	/**
+	 * Binds: syncSetName, kind, gid, contentHash, content.
+	 */
+	private static SQLiteStatement compileSyncShadowEntityUpsert(final SQLiteDatabase db) {
+		return db.compileStatement("insert or replace into " + Table.SyncShadowEntity.tableName() + " (" + Table.SyncShadowEntity.syncSetName + ", " + Table.SyncShadowEntity.kind + ", " + Table.SyncShadowEntity.gid + ", " + Table.SyncShadowEntity.contentHash + ", " + Table.SyncShadowEntity.content + ") values (?,?,?,?,?)");
+	}
+
+	/**
+	 * Binds: syncSetName, kind, gid.
+	 */
+	private static SQLiteStatement compileSyncShadowEntityDelete(final SQLiteDatabase db) {
+		return db.compileStatement("delete from " + Table.SyncShadowEntity.tableName() + " where " + Table.SyncShadowEntity.syncSetName + "=? and " + Table.SyncShadowEntity.kind + "=? and " + Table.SyncShadowEntity.gid + "=?");
+	}
+
 	public void deleteSyncShadowBySyncSetName(final String syncSetName) {
 		final SQLiteDatabase db = helper.getWritableDatabase();
-		db.delete(Table.SyncShadow.tableName(), Table.SyncShadow.syncSetName + "=?", Array(syncSetName));
+		db.beginTransactionNonExclusive();
+		try {
+			db.delete(Table.SyncShadowEntity.tableName(), Table.SyncShadowEntity.syncSetName + "=?", Array(syncSetName));
+			db.delete(Table.SyncShadow.tableName(), Table.SyncShadow.syncSetName + "=?", Array(syncSetName));
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
+		}
+	}
+
+	/** Kind of the journal entry that makes the next sync compare all entities, not only the ones in the journal. */
+	static final String MABEL_JOURNAL_KIND_ALL = "*";
+
+	/**
+	 * Records that a marker, label or marker-label has been written. Must be called in the same transaction as the write,
+	 * so the journal never misses a change that is in the database. Recording an entity that did not actually change is harmless,
+	 * it is compared with the shadow anyway.
+	 */
+	static void insertMabelJournal(final SQLiteDatabase db, final String kind, @Nullable final String gid, final Sync.Opkind op) {
+		if (gid == null) return;
+
+		final ContentValues cv = new ContentValues(3);
+		cv.put(Table.MabelJournal.kind.name(), kind);
+		cv.put(Table.MabelJournal.gid.name(), gid);
+		cv.put(Table.MabelJournal.op.name(), op.name());
+		// replacing the entry of the same entity gives it a new, higher sequence number
+		db.insertWithOnConflict(Table.MabelJournal.tableName(), null, cv, SQLiteDatabase.CONFLICT_REPLACE);
+	}
+
+	static void insertMabelJournalCompareAll(final SQLiteDatabase db) {
+		insertMabelJournal(db, MABEL_JOURNAL_KIND_ALL, MABEL_JOURNAL_KIND_ALL, Sync.Opkind.mod);
+	}
+
+	@NonNull public Sync_Mabel.Journal getMabelJournal() {
+		long seq = 0;
+		boolean compareAll = false;
+		final List<Pair<String, String>> kindGids = new ArrayList<>();
+
+		try (Cursor c = helper.getReadableDatabase().rawQuery("select _id, " + Table.MabelJournal.kind + ", " + Table.MabelJournal.gid + " from " + Table.MabelJournal.tableName() + " order by _id", null)) {
+			while (c.moveToNext()) {
+				seq = c.getLong(0);
+				final String kind = c.getString(1);
+				if (MABEL_JOURNAL_KIND_ALL.equals(kind)) {
+					compareAll = true;
+				} else {
+					kindGids.add(Pair.create(kind, c.getString(2)));
+				}
+			}
+		}
+
+		return new Sync_Mabel.Journal(seq, compareAll, kindGids);
+	}
+
+	private static long getMabelJournalSeq(final SQLiteDatabase db) {
+		return DatabaseUtils.longForQuery(db, "select ifnull(max(_id), 0) from " + Table.MabelJournal.tableName(), null);
+	}
+
+	/**
+	 * Writes the operations of a server append delta to the markers, labels and marker-labels. Must be called in a transaction.
+	 * The writes are not recorded in the journal, since the caller puts them into the shadow, and nobody is notified,
+	 * since the caller does that once after everything is written.
+	 * <p>
+	 * The existing rows of all the gids are looked up with one query per kind, and all writes go through statements
+	 * compiled once, instead of looking up and writing each entity with its own queries and its own transaction.
+	 * An initial sync easily has thousands of operations.
+	 *
+	 * @return false if an operation has an unknown kind. The transaction must not be committed then.
+	 */
+	static boolean applyMabelOperations(final SQLiteDatabase db, @NonNull final List<Sync.Operation<Sync_Mabel.Content>> operations) {
+		final Set<String> markerGids = new HashSet<>();
+		final Set<String> labelGids = new HashSet<>();
+		final Set<String> marker_labelGids = new HashSet<>();
+		for (final Sync.Operation<Sync_Mabel.Content> o : operations) {
+			switch (o.kind) {
+				case Sync.Entity.KIND_MARKER:
+					markerGids.add(o.gid);
+					break;
+				case Sync.Entity.KIND_LABEL:
+					labelGids.add(o.gid);
+					break;
+				case Sync.Entity.KIND_MARKER_LABEL:
+					marker_labelGids.add(o.gid);
+					break;
+				default:
+					return false;
+			}
+		}
+
+		final GidTableWriter markers = new GidTableWriter(db, Db.TABLE_Marker, markerGids, Db.Marker.gid, Db.Marker.ari, Db.Marker.kind, Db.Marker.caption, Db.Marker.verseCount, Db.Marker.createTime, Db.Marker.modifyTime);
+		final GidTableWriter labels = new GidTableWriter(db, Db.TABLE_Label, labelGids, Db.Label.gid, Db.Label.title, Db.Label.ordering, Db.Label.backgroundColor);
+		final GidTableWriter marker_labels = new GidTableWriter(db, Db.TABLE_Marker_Label, marker_labelGids, Db.Marker_Label.gid, Db.Marker_Label.marker_gid, Db.Marker_Label.label_gid);
+		try {
+			for (final Sync.Operation<Sync_Mabel.Content> o : operations) {
+				switch (o.kind) {
+					case Sync.Entity.KIND_MARKER:
+						if (o.opkind == Sync.Opkind.del) {
+							markers.delete(o.gid);
+						} else {
+							// same values as markerToContentValues
+							final Marker marker = Sync_Mabel.updateMarkerWithEntityContent(null, o.gid, o.content);
+							markers.write(o.gid, marker.ari, marker.kind.code, marker.caption, marker.verseCount, Sqlitil.toInt(marker.createTime), Sqlitil.toInt(marker.modifyTime));
+						}
+						break;
+					case Sync.Entity.KIND_LABEL:
+						if (o.opkind == Sync.Opkind.del) {
+							labels.delete(o.gid);
+						} else {
+							final Label label = Sync_Mabel.updateLabelWithEntityContent(null, o.gid, o.content);
+							labels.write(o.gid, label.title, label.ordering, label.backgroundColor);
+						}
+						break;
+					case Sync.Entity.KIND_MARKER_LABEL:
+						if (o.opkind == Sync.Opkind.del) {
+							marker_labels.delete(o.gid);
+						} else {
+							final Marker_Label marker_label = Sync_Mabel.updateMarker_LabelWithEntityContent(null, o.gid, o.content);
+							marker_labels.write(o.gid, marker_label.marker_gid, marker_label.label_gid);
+						}
+						break;
+				}
+			}
+		} finally {
+			markers.close();
+			labels.close();
+			marker_labels.close();
+		}
+
+		return true;
+	}
+
+	/**
+	 * Inserts, updates and deletes rows of a table identified by their gid, with compiled statements.
+	 * Knows the _id of the rows of the given gids, and keeps it up to date while writing.
+	 */
+	static class GidTableWriter {
+		/** Host parameters per statement. SQLite before 3.32 does not allow more than 999. */
+		static final int MAX_PARAMS = 999;
+
+		final HashMap<String, Long> ids;
+		final SQLiteStatement insert;
+		final SQLiteStatement update;
+		final SQLiteStatement delete;
+
+		/**
+		 * @param columns the first one must be the gid column.
+		 */
+		GidTableWriter(final SQLiteDatabase db, final String table, final Set<String> gids, final String... columns) {
+			final String gidColumn = columns[0];
+			ids = new HashMap<>(gids.size() * 4 / 3 + 1);
+
+			final List<String> chunk = new ArrayList<>(Math.min(gids.size(), MAX_PARAMS));
+			for (final String gid : gids) {
+				chunk.add(gid);
+				if (chunk.size() == MAX_PARAMS) {
+					loadIds(db, table, gidColumn, chunk);
+					chunk.clear();
+				}
+			}
+			if (chunk.size() > 0) {
+				loadIds(db, table, gidColumn, chunk);
+			}
+
+			final StringBuilder insertSql = new StringBuilder("insert into " + table + " (");
+			final StringBuilder updateSql = new StringBuilder("update " + table + " set ");
+			for (int i = 0; i < columns.length; i++) {
+				insertSql.append(i == 0 ? "" : ", ").append(columns[i]);
+				updateSql.append(i == 0 ? "" : ", ").append(columns[i]).append("=?");
+			}
+			insertSql.append(") values (").append(placeholders(columns.length)).append(")");
+			updateSql.append(" where _id=?");
+
+			insert = db.compileStatement(insertSql.toString());
+			update = db.compileStatement(updateSql.toString());
+			delete = db.compileStatement("delete from " + table + " where " + gidColumn + "=?");
+		}
+
+		private void loadIds(final SQLiteDatabase db, final String table, final String gidColumn, final List<String> gids) {
+			try (Cursor c = db.rawQuery("select _id, " + gidColumn + " from " + table + " where " + gidColumn + " in (" + placeholders(gids.size()) + ")", gids.toArray(new String[gids.size()]))) {
+				while (c.moveToNext()) {
+					final String gid = c.getString(1);
+					// like getMarkerByGid and friends, only one row of a gid is updated
+					if (!ids.containsKey(gid)) {
+						ids.put(gid, c.getLong(0));
+					}
+				}
+			}
+		}
+
+		private static String placeholders(final int count) {
+			final StringBuilder sb = new StringBuilder(count * 2);
+			for (int i = 0; i < count; i++) {
+				sb.append(i == 0 ? "?" : ",?");
+			}
+			return sb.toString();
+		}
+
+		/**
+		 * Updates the row of the gid, or inserts one if there is none.
+		 * @param values the values of the columns after the gid column.
+		 */
+		void write(final String gid, final Object... values) {
+			final Long _id = ids.get(gid);
+			final SQLiteStatement stmt = _id == null ? insert : update;
+			stmt.clearBindings();
+			stmt.bindString(1, gid);
+			for (int i = 0; i < values.length; i++) {
+				DatabaseUtils.bindObjectToProgram(stmt, i + 2, values[i]);
+			}
+
+			if (_id == null) {
+				ids.put(gid, stmt.executeInsert());
+			} else {
+				stmt.bindLong(values.length + 2, _id);
+				stmt.executeUpdateDelete();
+			}
+		}
+
+		/**
+		 * Deletes all rows of the gid.
+		 */
+		void delete(final String gid) {
+			delete.bindString(1, gid);
+			delete.executeUpdateDelete();
+			ids.remove(gid);
+		}
+
+		void close() {
+			insert.close();
+			update.close();
+			delete.close();
+		}
 	}
 
 	/**
 	 * Makes the current database updated with patches (append delta) from server.
 	 * Also updates the shadow (both data and the revno).
+	 * @param journalSeq {@link Sync.GetClientStateResult#journalSeq} of the client state sent to the server.
+	 * @param isPartial whether the client delta sent to the server did not contain all the changes.
 	 * @return {@link yuku.alkitab.base.sync.Sync.ApplyAppendDeltaResult#ok} if database and sync shadow are updated. Otherwise else.
 	 */
-	@NonNull public Sync.ApplyAppendDeltaResult applyMabelAppendDelta(final int final_revno, final List<Sync.Entity<Sync_Mabel.Content>> shadowEntities, final Sync.ClientState<Sync_Mabel.Content> clientState, @NonNull final Sync.Delta<Sync_Mabel.Content> append_delta, @NonNull final List<Sync.Entity<Sync_Mabel.Content>> entitiesBeforeSync, @NonNull final String simpleTokenBeforeSync) {
+	@NonNull public Sync.ApplyAppendDeltaResult applyMabelAppendDelta(final int final_revno, @NonNull final Sync.ClientState<Sync_Mabel.Content> clientState, @NonNull final Sync.Delta<Sync_Mabel.Content> append_delta, final long journalSeq, final boolean isPartial, @NonNull final String simpleTokenBeforeSync) {
 		final SQLiteDatabase db = helper.getWritableDatabase();
 		db.beginTransactionNonExclusive();
 		Sync.notifySyncUpdatesOngoing(SyncShadow.SYNC_SET_MABEL, true);
 		try {
-			{ // if the current entities are not the same as the ones had when contacting server, reject this append delta.
-				final List<Sync.Entity<Sync_Mabel.Content>> currentEntities = Sync_Mabel.getEntitiesFromCurrent();
-				if (!Sync.entitiesEqual(currentEntities, entitiesBeforeSync)) {
+			{ // if any entity has been written since contacting server, reject this append delta.
+				if (getMabelJournalSeq(db) != journalSeq) {
 					return Sync.ApplyAppendDeltaResult.dirty_entities;
 				}
 			}
@@ -1525,56 +1987,24 @@ public class InternalDb {
 			}
 
 			// apply changes, which is server append delta, to current entities
-			for (final Sync.Operation<Sync_Mabel.Content> o : append_delta.operations) {
-				switch (o.opkind) {
-					case del:
-						switch (o.kind) {
-							case Sync.Entity.KIND_MARKER:
-								deleteMarkerByGid(o.gid);
-								break;
-							case Sync.Entity.KIND_LABEL:
-								deleteLabelByGid(o.gid);
-								break;
-							case Sync.Entity.KIND_MARKER_LABEL:
-								deleteMarker_LabelByGid(o.gid);
-								break;
-							default:
-								return Sync.ApplyAppendDeltaResult.unknown_kind;
-						}
-						break;
-					case add:
-					case mod:
-						switch (o.kind) {
-							case Sync.Entity.KIND_MARKER:
-								final Marker marker = getMarkerByGid(o.gid);
-								final Marker newMarker = Sync_Mabel.updateMarkerWithEntityContent(marker, o.gid, o.content);
-								insertOrUpdateMarker(newMarker);
-								break;
-							case Sync.Entity.KIND_LABEL:
-								final Label label = getLabelByGid(o.gid);
-								final Label newLabel = Sync_Mabel.updateLabelWithEntityContent(label, o.gid, o.content);
-								insertOrUpdateLabel(newLabel);
-								break;
-							case Sync.Entity.KIND_MARKER_LABEL:
-								final Marker_Label marker_label = getMarker_LabelByGid(o.gid);
-								final Marker_Label newMarker_label = Sync_Mabel.updateMarker_LabelWithEntityContent(marker_label, o.gid, o.content);
-								insertOrUpdateMarker_Label(newMarker_label);
-								break;
-							default:
-								return Sync.ApplyAppendDeltaResult.unknown_kind;
-						}
-						break;
-				}
+			if (!applyMabelOperations(db, append_delta.operations)) {
+				return Sync.ApplyAppendDeltaResult.unknown_kind;
 			}
 
 			// if we reach here, the current entities has been updated with the append delta.
 
 			// apply changes, which are client delta, and server append delta, to shadow entities
-			final List<Sync.Entity<Sync_Mabel.Content>> shadowEntitiesPatched1 = SyncAdapter.patchNoConflict(shadowEntities, clientState.delta.operations);
-			final List<Sync.Entity<Sync_Mabel.Content>> shadowEntitiesPatched2 = SyncAdapter.patchNoConflict(shadowEntitiesPatched1, append_delta.operations);
-
-			final SyncShadow ss = Sync_Mabel.shadowFromEntities(shadowEntitiesPatched2, final_revno);
-			insertOrUpdateSyncShadowBySyncSetName(ss);
+			final List<Sync.Operation<Sync_Mabel.Content>> shadowOperations = new ArrayList<>(clientState.delta.operations.size() + append_delta.operations.size());
+			shadowOperations.addAll(clientState.delta.operations);
+			shadowOperations.addAll(append_delta.operations);
+			patchSyncShadowBySyncSetName(SyncShadow.SYNC_SET_MABEL, final_revno, shadowOperations);
+
+			// the shadow now has every change in the journal, and the ones just made from the append delta
+			db.delete(Table.MabelJournal.tableName(), null, null);
+			if (isPartial) {
+				// the changes that were not sent are not known individually anymore
+				insertMabelJournalCompareAll(db);
+			}
 
 			db.setTransactionSuccessful();
 
@@ -1582,6 +2012,7 @@ public class InternalDb {
 		} finally {
 			Sync.notifySyncUpdatesOngoing(SyncShadow.SYNC_SET_MABEL, false);
 			db.endTransaction();
+			highlightIndex.invalidate();
 		}
 	}
 
@@ -1643,7 +2074,7 @@ public class InternalDb {
 			}
 
 			// if we reach here, the local database has been updated with the append delta.
-			final SyncShadow ss = Sync_Pins.shadowFromEntities(Sync_Pins.getEntitiesFromCurrent(), final_revno);
+			final SyncShadow<Sync_Pins.Content> ss = Sync_Pins.shadowFromEntities(Sync_Pins.getEntitiesFromCurrent(), final_revno);
 			insertOrUpdateSyncShadowBySyncSetName(ss);
 
 			db.setTransactionSuccessful();
@@ -1742,7 +2173,7 @@ public class InternalDb {
 			}
 
 			// if we reach here, the local database has been updated with the append delta.
-			final SyncShadow ss = Sync_Rp.shadowFromEntities(Sync_Rp.getEntitiesFromCurrent(), final_revno);
+			final SyncShadow<Sync_Rp.Content> ss = Sync_Rp.shadowFromEntities(Sync_Rp.getEntitiesFromCurrent(), final_revno);
 			insertOrUpdateSyncShadowBySyncSetName(ss);
 
 			db.setTransactionSuccessful();
@@ -1759,8 +2190,20 @@ public class InternalDb {
 	 * @return true when deleted.
 	 */
 	public boolean deleteMarkerByGid(final String gid) {
-		final boolean deleted = helper.getWritableDatabase().delete(Db.TABLE_Marker, Db.Marker.gid + "=?", Array(gid)) > 0;
+		final SQLiteDatabase db = helper.getWritableDatabase();
+		final boolean deleted;
+		db.beginTransactionNonExclusive();
+		try {
+			deleted = db.delete(Db.TABLE_Marker, Db.Marker.gid + "=?", Array(gid)) > 0;
+			if (deleted) {
+				insertMabelJournal(db, Sync.Entity.KIND_MARKER, gid, Sync.Opkind.del);
+			}
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
+		}
 		if (deleted) {
+			highlightIndex.invalidate();
 			Sync.notifySyncNeeded(SyncShadow.SYNC_SET_MABEL);
 		}
 		return deleted;
@@ -1771,7 +2214,18 @@ public class InternalDb {
 	 * @return true when deleted.
 	 */
 	public boolean deleteLabelByGid(final String gid) {
-		final boolean deleted = helper.getWritableDatabase().delete(Db.TABLE_Label, Db.Label.gid + "=?", Array(gid)) > 0;
+		final SQLiteDatabase db = helper.getWritableDatabase();
+		final boolean deleted;
+		db.beginTransactionNonExclusive();
+		try {
+			deleted = db.delete(Db.TABLE_Label, Db.Label.gid + "=?", Array(gid)) > 0;
+			if (deleted) {
+				insertMabelJournal(db, Sync.Entity.KIND_LABEL, gid, Sync.Opkind.del);
+			}
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
+		}
 		if (deleted) {
 			Sync.notifySyncNeeded(SyncShadow.SYNC_SET_MABEL);
 		}
@@ -1783,7 +2237,18 @@ public class InternalDb {
 	 * @return true when deleted.
 	 */
 	public boolean deleteMarker_LabelByGid(final String gid) {
-		final boolean deleted = helper.getWritableDatabase().delete(Db.TABLE_Marker_Label, Db.Marker_Label.gid + "=?", Array(gid)) > 0;
+		final SQLiteDatabase db = helper.getWritableDatabase();
+		final boolean deleted;
+		db.beginTransactionNonExclusive();
+		try {
+			deleted = db.delete(Db.TABLE_Marker_Label, Db.Marker_Label.gid + "=?", Array(gid)) > 0;
+			if (deleted) {
+				insertMabelJournal(db, Sync.Entity.KIND_MARKER_LABEL, gid, Sync.Opkind.del);
+			}
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
+		}
 		if (deleted) {
 			Sync.notifySyncNeeded(SyncShadow.SYNC_SET_MABEL);
 		}
@@ -7,6 +7,10 @@ import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.os.Build;
 import android.support.v4.util.LongSparseArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import gnu.trove.map.hash.TIntObjectHashMap;
 import yuku.afw.App;
 import yuku.afw.storage.Preferences;
@@ -16,9 +20,14 @@ import yuku.alkitab.base.model.MVersionPreset;
 import yuku.alkitab.base.model.ReadingPlan;
 import yuku.alkitab.base.util.AddonManager;
 import yuku.alkitab.base.util.AppLog;
+import yuku.alkitab.model.Marker;
 import yuku.alkitab.model.util.Gid;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
 
 import static yuku.alkitab.base.util.Literals.Array;
 
@@ -26,7 +35,14 @@ public class InternalDbHelper extends SQLiteOpenHelper {
 	public static final String TAG = InternalDbHelper.class.getSimpleName();
 
 	public InternalDbHelper(Context context) {
-		super(context, "AlkitabDb", null, App.getVersionCode());
+		this(context, "AlkitabDb");
+	}
+
+	/**
+	 * @param name database name. Anything other than the default is only for scratch databases, for example in benchmarks.
+	 */
+	InternalDbHelper(Context context, String name) {
+		super(context, name, null, App.getVersionCode());
 		if (Build.VERSION.SDK_INT >= 16) {
 			setWriteAheadLoggingEnabled(true);
 		}
@@ -44,6 +60,8 @@ public class InternalDbHelper extends SQLiteOpenHelper {
 		
 		createTableMarker(db);
 		createIndexMarker(db);
+		createTableMarkerCaptionIndex(db);
+		createTriggerMarkerCaptionIndex(db);
 		createTableDevotion(db);
 		createIndexDevotion(db);
 		createTableLabel(db);
@@ -62,6 +80,10 @@ public class InternalDbHelper extends SQLiteOpenHelper {
 		createIndexVersion(db);
 		createTableSyncShadow(db);
 		createIndexSyncShadow(db);
+		createTableSyncShadowEntity(db);
+		createIndexSyncShadowEntity(db);
+		createTableMabelJournal(db);
+		createIndexMabelJournal(db);
 		createTableSyncLog(db);
 		createIndexSyncLog(db);
 		createTablePerVersion(db);
@@ -189,6 +211,23 @@ public class InternalDbHelper extends SQLiteOpenHelper {
 			createTablePerVersion(db);
 			createIndexPerVersion(db);
 		}
+
+		if (oldVersion < 17000412) { // 17000412: one row per sync shadow entity, journal of changes to sync
+			createTableSyncShadowEntity(db);
+			createIndexSyncShadowEntity(db);
+			migrateSyncShadowToEntities(db);
+
+			// changes made before this version are not in the journal, so the next sync must compare everything
+			createTableMabelJournal(db);
+			createIndexMabelJournal(db);
+			InternalDb.insertMabelJournalCompareAll(db);
+		}
+
+		if (oldVersion < 17000413) { // 17000413: full-text index of marker captions
+			createTableMarkerCaptionIndex(db);
+			createTriggerMarkerCaptionIndex(db);
+			rebuildMarkerCaptionIndex(db);
+		}
 	}
 
 	private void createTableMarker(SQLiteDatabase db) {
@@ -215,6 +254,46 @@ public class InternalDbHelper extends SQLiteOpenHelper {
 		db.execSQL("create index if not exists index_Marker_06 on " + Db.TABLE_Marker + " (" + Db.Marker.gid + ")");
 	}
 
+	/**
+	 * The simple tokenizer is enough, since the captions are stored already normalized, and it is available on every Android version.
+	 */
+	private void createTableMarkerCaptionIndex(SQLiteDatabase db) {
+		db.execSQL("create virtual table if not exists " + Db.TABLE_MarkerCaptionIndex + " using fts4(" + Db.Marker.caption + ")");
+		db.execSQL("create table if not exists " + Db.TABLE_MarkerCaptionIndexPending + " (_id integer primary key)");
+	}
+
+	/**
+	 * Triggers are used instead of updating the index in {@link InternalDb}, because markers are written in many places, including sync.
+	 * SQLite can't normalize the captions like {@link yuku.alkitab.base.util.QueryTokenizer#toFullTextDocument(String)} does,
+	 * so the triggers only remove the old captions from the index and record the markers to be indexed,
+	 * and {@link InternalDb#listMarkerIdsByCaption(String[])} indexes them before searching.
+	 * Highlights are not indexed, since their captions only contain the colors.
+	 */
+	private void createTriggerMarkerCaptionIndex(SQLiteDatabase db) {
+		final String index = Db.TABLE_MarkerCaptionIndex;
+		final String pending = Db.TABLE_MarkerCaptionIndexPending;
+		final String notHighlight = Db.Marker.kind + " != " + Marker.Kind.highlight.code;
+
+		db.execSQL("create trigger if not exists trigger_Marker_ai after insert on " + Db.TABLE_Marker + " begin"
+			+ " insert or replace into " + pending + " (_id) select new._id where new." + notHighlight + ";"
+			+ " end");
+		db.execSQL("create trigger if not exists trigger_Marker_au after update of " + Db.Marker.kind + ", " + Db.Marker.caption + " on " + Db.TABLE_Marker + " begin"
+			+ " delete from " + index + " where docid = old._id;"
+			+ " delete from " + pending + " where _id = old._id;"
+			+ " insert or replace into " + pending + " (_id) select new._id where new." + notHighlight + ";"
+			+ " end");
+		db.execSQL("create trigger if not exists trigger_Marker_ad after delete on " + Db.TABLE_Marker + " begin"
+			+ " delete from " + index + " where docid = old._id;"
+			+ " delete from " + pending + " where _id = old._id;"
+			+ " end");
+	}
+
+	private void rebuildMarkerCaptionIndex(SQLiteDatabase db) {
+		db.execSQL("delete from " + Db.TABLE_MarkerCaptionIndex);
+		db.execSQL("delete from " + Db.TABLE_MarkerCaptionIndexPending);
+		db.execSQL("insert into " + Db.TABLE_MarkerCaptionIndexPending + " (_id) select _id from " + Db.TABLE_Marker + " where " + Db.Marker.kind + " != " + Marker.Kind.highlight.code);
+	}
+
 	private void createTableDevotion(SQLiteDatabase db) {
 		final StringBuilder sb = new StringBuilder("create table if not exists " + Table.Devotion.tableName() + " ( _id integer primary key ");
 		for (Table.Devotion field: Table.Devotion.values()) {
@@ -297,6 +376,47 @@ public class InternalDbHelper extends SQLiteOpenHelper {
 		db.execSQL("create index if not exists index_SyncShadow_01 on " + Table.SyncShadow.tableName() + " (" + Table.SyncShadow.syncSetName + ")");
 	}
 
+	void createTableSyncShadowEntity(final SQLiteDatabase db) {
+		final StringBuilder sb = new StringBuilder("create table if not exists " + Table.SyncShadowEntity.tableName() + " ( _id integer primary key ");
+		for (Table.SyncShadowEntity field: Table.SyncShadowEntity.values()) {
+			sb.append(',');
+			sb.append(field.name());
+			sb.append(' ');
+			sb.append(field.type.name());
+			if (field.suffix != null) {
+				sb.append(' ');
+				sb.append(field.suffix);
+			}
+		}
+		sb.append(")");
+		db.execSQL(sb.toString());
+	}
+
+	void createIndexSyncShadowEntity(final SQLiteDatabase db) {
+		db.execSQL("create unique index if not exists index_SyncShadowEntity_01 on " + Table.SyncShadowEntity.tableName() + " (" + Table.SyncShadowEntity.syncSetName + "," + Table.SyncShadowEntity.kind + "," + Table.SyncShadowEntity.gid + ")");
+	}
+
+	void createTableMabelJournal(final SQLiteDatabase db) {
+		// autoincrement, so a sequence number is never reused, even after the rows with the highest ones are deleted
+		final StringBuilder sb = new StringBuilder("create table if not exists " + Table.MabelJournal.tableName() + " ( _id integer primary key autoincrement ");
+		for (Table.MabelJournal field: Table.MabelJournal.values()) {
+			sb.append(',');
+			sb.append(field.name());
+			sb.append(' ');
+			sb.append(field.type.name());
+			if (field.suffix != null) {
+				sb.append(' ');
+				sb.append(field.suffix);
+			}
+		}
+		sb.append(")");
+		db.execSQL(sb.toString());
+	}
+
+	void createIndexMabelJournal(final SQLiteDatabase db) {
+		db.execSQL("create unique index if not exists index_MabelJournal_01 on " + Table.MabelJournal.tableName() + " (" + Table.MabelJournal.kind + "," + Table.MabelJournal.gid + ")");
+	}
+
 	void createTableSyncLog(final SQLiteDatabase db) {
 		final StringBuilder sb = new StringBuilder("create table " + Table.SyncLog.tableName() + " ( _id integer primary key ");
 		for (Table.SyncLog field: Table.SyncLog.values()) {
@@ -453,6 +573,96 @@ public class InternalDbHelper extends SQLiteOpenHelper {
 		}
 	}
 
+	/**
+	 * Sync shadows used to be stored as one JSON document per sync set in {@link Table.SyncShadow#data}.
+	 * This splits every document into rows of {@link Table.SyncShadowEntity}, keeping the content of each entity as it was.
+	 */
+	private void migrateSyncShadowToEntities(SQLiteDatabase db) {
+		db.beginTransaction();
+		try {
+			final LongSparseArray<String> syncSetNames = new LongSparseArray<>();
+			try (Cursor c = db.rawQuery("select _id, " + Table.SyncShadow.syncSetName + " from " + Table.SyncShadow.tableName() + " where " + Table.SyncShadow.data + " is not null", null)) {
+				while (c.moveToNext()) {
+					syncSetNames.put(c.getLong(0), c.getString(1));
+				}
+			}
+
+			final ContentValues cv = new ContentValues();
+			for (int i = 0, len = syncSetNames.size(); i < len; i++) {
+				final long _id = syncSetNames.keyAt(i);
+				final String syncSetName = syncSetNames.valueAt(i);
+
+				final byte[] data = readSyncShadowData(db, _id);
+				try (JsonReader reader = new JsonReader(new InputStreamReader(new ByteArrayInputStream(data), Charset.forName("utf-8")))) {
+					reader.beginObject();
+					while (reader.hasNext()) {
+						if (!"entities".equals(reader.nextName()) || reader.peek() != JsonToken.BEGIN_ARRAY) {
+							reader.skipValue();
+							continue;
+						}
+
+						reader.beginArray();
+						while (reader.hasNext()) {
+							final JsonObject entity = new JsonParser().parse(reader).getAsJsonObject();
+							final String content = String.valueOf(entity.get("content"));
+							cv.put(Table.SyncShadowEntity.syncSetName.name(), syncSetName);
+							cv.put(Table.SyncShadowEntity.kind.name(), entity.get("kind").getAsString());
+							cv.put(Table.SyncShadowEntity.gid.name(), entity.get("gid").getAsString());
+							cv.put(Table.SyncShadowEntity.contentHash.name(), InternalDb.contentHash(content));
+							cv.put(Table.SyncShadowEntity.content.name(), content);
+							db.insertWithOnConflict(Table.SyncShadowEntity.tableName(), null, cv, SQLiteDatabase.CONFLICT_REPLACE);
+						}
+						reader.endArray();
+					}
+					reader.endObject();
+				} catch (IOException | RuntimeException e) {
+					// an unreadable shadow is dropped, and the next sync of this sync set starts over from revno 0
+					AppLog.e(TAG, "Error migrating sync shadow " + syncSetName, e);
+					db.delete(Table.SyncShadowEntity.tableName(), Table.SyncShadowEntity.syncSetName + "=?", Array(syncSetName));
+					db.delete(Table.SyncShadow.tableName(), "_id=?", Array(String.valueOf(_id)));
+					continue;
+				}
+
+				final ContentValues nodata = new ContentValues();
+				nodata.putNull(Table.SyncShadow.data.name());
+				db.update(Table.SyncShadow.tableName(), nodata, "_id=?", Array(String.valueOf(_id)));
+			}
+
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
+		}
+	}
+
+	/**
+	 * Getting a blob bigger than 2 MB in one cursor will cause crash,
+	 * because of system CursorWindow implementation that sets the max memory allocated
+	 * to be 2 MB, as defined in system resource:
+	 * <integer name="config_cursorWindowSize">2048</integer>
+	 * So we get the size first, and then get the data in chunks.
+	 */
+	private static byte[] readSyncShadowData(final SQLiteDatabase db, final long _id) {
+		final int data_len;
+		try (Cursor c = db.rawQuery("select length(" + Table.SyncShadow.data + ") from " + Table.SyncShadow.tableName() + " where _id=?", Array(String.valueOf(_id)))) {
+			if (!c.moveToNext()) return new byte[0];
+			data_len = c.getInt(0);
+		}
+
+		final byte[] data = new byte[data_len];
+		final int chunkSize = 1000_000;
+		for (int i = 0; i < data_len; i += chunkSize) {
+			// sqlite substr func is 1-indexed
+			try (Cursor c = db.rawQuery("select substr(" + Table.SyncShadow.data + ", " + (i + 1) + ", " + chunkSize + ") from " + Table.SyncShadow.tableName() + " where _id=?", Array(String.valueOf(_id)))) {
+				if (!c.moveToNext()) {
+					throw new RuntimeException("Cursor moveToNext returns false, does not make sense, since previous query has indicated that this cursor has rows.");
+				}
+				final byte[] chunk = c.getBlob(0);
+				System.arraycopy(chunk, 0, data, i, Math.min(chunk.length, data_len - i));
+			}
+		}
+		return data;
+	}
+
 	// This needs to be kept, for upgrading from version 51-102 to 14000165
 	private void addShortNameColumnAndIndexToEdisi(SQLiteDatabase db) {
 		db.execSQL("alter table Edisi add column shortName text");
@@ -1,32 +1,50 @@
 package yuku.alkitab.base.storage;
 
+import android.content.res.AssetFileDescriptor;
 import yuku.alkitab.base.App;
 import yuku.alkitab.base.config.AppConfig;
 import yuku.alkitab.base.util.AppLog;
 import yuku.alkitab.io.BibleReader;
 import yuku.alkitab.model.Book;
+import yuku.alkitab.model.ChapterCharView;
 import yuku.alkitab.model.FootnoteEntry;
 import yuku.alkitab.model.InternalBook;
 import yuku.alkitab.model.PericopeBlock;
 import yuku.alkitab.model.SingleChapterVerses;
 import yuku.alkitab.model.XrefEntry;
-import yuku.alkitab.util.Ari;
+import yuku.alkitab.yes1.Yes1PericopeBlock;
 import yuku.alkitab.yes1.Yes1PericopeIndex;
 import yuku.alkitab.yes2.io.RandomInputStream;
 import yuku.alkitab.yes2.section.FootnotesSection;
 import yuku.alkitab.yes2.section.XrefsSection;
 import yuku.bintex.BintexReader;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 public class InternalReader implements BibleReader {
 	public static final String TAG = InternalReader.class.getSimpleName();
 
-	// # for asset cache
-	private static InputStream cache_inputStream = null;
-	private static String cache_file = null;
-	private static int cache_posInput = -1;
+	/**
+	 * Number of books whose text is kept. Reading the whole Bible, for example when searching, drops the least recently read ones.
+	 */
+	static final int MAX_BOOK_TEXTS = 8;
+
+	/** Key is the resName of the book. Guarded by itself. */
+	private final LinkedHashMap<String, ByteBuffer> bookTexts = new LinkedHashMap<String, ByteBuffer>(16, 0.75f, true /* access order */) {
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<String, ByteBuffer> eldest) {
+			return size() > MAX_BOOK_TEXTS;
+		}
+	};
 
 	private final String versionPrefix;
 	private final String versionLocale;
@@ -35,6 +53,7 @@ public class InternalReader implements BibleReader {
 	private final VerseTextDecoder verseTextDecoder;
 
 	private Yes1PericopeIndex pericopeIndex_;
+	private byte[] pericopeBlocks_;
 	private XrefsSection xrefsSection_;
 	private boolean xrefsKnownNotAvailable;
 	private FootnotesSection footnotesSection_;
@@ -81,7 +100,7 @@ public class InternalReader implements BibleReader {
 		return null;
 	}
 
-	@Override public Book[] loadBooks() {
+	@Override public synchronized Book[] loadBooks() {
 		BintexReader br = null;
 		try {
 			final InputStream is = App.context.getAssets().open("internal/" + versionPrefix + "_index_bt.bt");
@@ -134,6 +153,37 @@ public class InternalReader implements BibleReader {
 		return res;
 	}
 
+	/**
+	 * Whole text resource of a book, memory-mapped if the asset is stored uncompressed, otherwise read into memory.
+	 * Chapters are read from duplicates of it, so any chapter can be read in any order, from any thread.
+	 */
+	private ByteBuffer getBookText(final InternalBook internalBook) throws IOException {
+		synchronized (bookTexts) {
+			final ByteBuffer res = bookTexts.get(internalBook.resName);
+			if (res != null) return res;
+		}
+
+		final String assetName = "internal/" + internalBook.resName + ".txt";
+		ByteBuffer res;
+		try {
+			final AssetFileDescriptor afd = App.context.getAssets().openFd(assetName);
+			// the mapping stays valid after the file is closed
+			try (FileInputStream fis = afd.createInputStream()) {
+				res = fis.getChannel().map(FileChannel.MapMode.READ_ONLY, afd.getStartOffset(), afd.getLength());
+			}
+		} catch (FileNotFoundException e) {
+			// compressed in the apk, cannot be mapped
+			try (InputStream is = App.context.getAssets().open(assetName)) {
+				res = ByteBuffer.wrap(readAll(is));
+			}
+		}
+
+		synchronized (bookTexts) {
+			bookTexts.put(internalBook.resName, res);
+		}
+		return res;
+	}
+
 	@Override public SingleChapterVerses loadVerseText(Book book, int chapter_1, boolean dontSplitVerses, boolean lowercased) {
 		InternalBook internalBook = (InternalBook) book;
 
@@ -144,64 +194,19 @@ public class InternalReader implements BibleReader {
 		int offset = internalBook.chapter_offsets[chapter_1 - 1];
 
 		try {
-			InputStream in;
-
-			if (cache_inputStream == null) {
-				// case 1: haven't opened anything
-				in = App.context.getAssets().open("internal/" + internalBook.resName + ".txt");
-				cache_inputStream = in;
-				cache_file = internalBook.resName;
-
-				//noinspection ResultOfMethodCallIgnored
-				in.skip(offset);
-				cache_posInput = offset;
-			} else {
-				// case 2: we have ever opened. Check if the file is the same
-				if (internalBook.resName.equals(cache_file)) {
-					// case 2.1: yes the file was the same
-					if (offset >= cache_posInput) {
-						// we can go forward
-						in = cache_inputStream;
-
-						//noinspection ResultOfMethodCallIgnored
-						in.skip(offset - cache_posInput);
-						cache_posInput = offset;
-					} else {
-						// but can't go backward, so we close the stream and reopen it
-						cache_inputStream.close();
-
-						in = App.context.getAssets().open("internal/" + internalBook.resName + ".txt");
-						cache_inputStream = in;
-
-						//noinspection ResultOfMethodCallIgnored
-						in.skip(offset);
-						cache_posInput = offset;
-					}
-				} else {
-					// case 2.2: different file. So close current and open the new one
-					cache_inputStream.close();
-
-					in = App.context.getAssets().open("internal/" + internalBook.resName + ".txt");
-					cache_inputStream = in;
-					cache_file = internalBook.resName;
-
-					//noinspection ResultOfMethodCallIgnored
-					in.skip(offset);
-					cache_posInput = offset;
-				}
-			}
+			// own position and limit, the buffer itself is shared
+			final ByteBuffer text = getBookText(internalBook).duplicate();
 
 			final int length;
 			if (chapter_1 == internalBook.chapter_count) {
-				length = in.available();
+				length = text.limit() - offset;
 			} else {
 				length = internalBook.chapter_offsets[chapter_1] - offset;
 			}
 
 			byte[] ba = new byte[length];
-			in.read(ba);
-			cache_posInput += ba.length;
-			// do not close even though we finished reading. The asset file could be the same as before.
+			text.position(offset);
+			text.get(ba);
 
 			if (dontSplitVerses) {
 				return new InternalSingleChapterVerses(new String[] { verseTextDecoder.makeIntoSingleString(ba, lowercased) });
@@ -213,6 +218,16 @@ public class InternalReader implements BibleReader {
 		}
 	}
 
+	@Override
+	public boolean loadChapterCharView(Book book, int chapter_1, boolean lowercased, ChapterCharView view) {
+		final SingleChapterVerses verses = loadVerseText(book, chapter_1, false, lowercased);
+		if (verses == null) {
+			return false;
+		}
+		view.setVerses(verses);
+		return true;
+	}
+
 	private Yes1PericopeIndex loadPericopeIndex() {
 		if (pericopeIndex_ != null) {
 			return pericopeIndex_;
@@ -241,57 +256,49 @@ public class InternalReader implements BibleReader {
 		}
 	}
 
-	@Override public int loadPericope(int bookId, int chapter_1, int[] aris, PericopeBlock[] pericopeBlocks, int max) {
-		Yes1PericopeIndex pericopeIndex = loadPericopeIndex();
+	/**
+	 * The whole pericope blocks resource, read once. It is small, and reading it once avoids opening the asset for every chapter.
+	 */
+	private byte[] loadPericopeBlocks() throws IOException {
+		if (pericopeBlocks_ != null) {
+			return pericopeBlocks_;
+		}
 
-		if (pericopeIndex == null) {
-			return 0; // no pericopes!
+		try (InputStream is = App.context.getAssets().open("internal/" + versionPrefix + "_pericope_blocks_bt.bt")) {
+			return pericopeBlocks_ = readAll(is);
 		}
+	}
 
-		int ariMin = Ari.encode(bookId, chapter_1, 0);
-		int ariMax = Ari.encode(bookId, chapter_1 + 1, 0);
-		int res = 0;
+	private static byte[] readAll(final InputStream is) throws IOException {
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		final byte[] buf = new byte[8192];
+		while (true) {
+			final int read = is.read(buf);
+			if (read < 0) break;
+			baos.write(buf, 0, read);
+		}
+		return baos.toByteArray();
+	}
 
-		int pertama = pericopeIndex.findFirst(ariMin, ariMax);
+	@Override public synchronized int loadPericope(int bookId, int chapter_1, int[] aris, PericopeBlock[] pericopeBlocks, int max) {
+		Yes1PericopeIndex pericopeIndex = loadPericopeIndex();
 
-		if (pertama == -1) {
-			return 0;
+		if (pericopeIndex == null) {
+			return 0; // no pericopes!
 		}
 
-		int kini = pertama;
-
-		BintexReader in = null;
 		try {
-			in = new BintexReader(App.context.getAssets().open("internal/" + versionPrefix + "_pericope_blocks_bt.bt"));
-			while (true) {
-				int ari = pericopeIndex.getAri(kini);
-
-				if (ari >= ariMax) {
-					// That's all. No longer relevant.
-					break;
-				}
-
-				PericopeBlock pericopeBlock = pericopeIndex.getBlock(in, kini);
-				kini++;
-
-				if (res < max) {
-					aris[res] = ari;
-					pericopeBlocks[res] = pericopeBlock;
-					res++;
-				} else {
-					break;
-				}
-			}
+			return pericopeIndex.getPericopes(bookId, chapter_1, aris, pericopeBlocks, max, position -> {
+				final byte[] blocks = loadPericopeBlocks();
+				final int offset = pericopeIndex.offsets[position];
+				return Yes1PericopeBlock.read(new BintexReader(new ByteArrayInputStream(blocks, offset, blocks.length - offset)));
+			});
 		} catch (IOException e) {
 			throw new RuntimeException(e);
-		} finally {
-			if (in != null) in.close();
 		}
-
-		return res;
 	}
 	
-	@Override public XrefEntry getXrefEntry(int arif) {
+	@Override public synchronized XrefEntry getXrefEntry(int arif) {
 		if (xrefsKnownNotAvailable) return null;
 
 		if (xrefsSection_ == null) {
@@ -315,7 +322,7 @@ public class InternalReader implements BibleReader {
 		return xrefsSection_.getXrefEntry(arif);
 	}
 	
-	@Override public FootnoteEntry getFootnoteEntry(int arif) {
+	@Override public synchronized FootnoteEntry getFootnoteEntry(int arif) {
 		if (footnotesKnownNotAvailable) return null;
 
 		if (footnotesSection_ == null) {
@@ -0,0 +1,124 @@
+package yuku.alkitab.base.storage;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.SystemClock;
+import yuku.alkitab.base.sync.Sync;
+import yuku.alkitab.base.sync.Sync_Mabel;
+import yuku.alkitab.model.Marker;
+import yuku.alkitab.model.util.Gid;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Measures how many server append delta operations per second {@link InternalDb#applyMabelOperations(SQLiteDatabase, List)}
+ * writes, all in one batch as in a sync, compared to one operation per transaction as the apply used to do it.
+ * Runs on a scratch database, so the markers of the user are not touched.
+ */
+public class MabelApplyBenchmark {
+	public static final String TAG = MabelApplyBenchmark.class.getSimpleName();
+
+	static final String DB_NAME = "MabelApplyBenchmarkDb";
+
+	/**
+	 * Must not be called on the main thread.
+	 * @param n number of operations in each of the add, mod and del phases.
+	 * @return human-readable results.
+	 */
+	public static String run(final Context context, final int n) {
+		final List<Sync.Operation<Sync_Mabel.Content>> adds = new ArrayList<>(n);
+		final List<Sync.Operation<Sync_Mabel.Content>> mods = new ArrayList<>(n);
+		final List<Sync.Operation<Sync_Mabel.Content>> dels = new ArrayList<>(n);
+		makeOperations(n, adds, mods, dels);
+
+		final StringBuilder sb = new StringBuilder();
+		sb.append(n).append(" operations per phase\n");
+
+		context.deleteDatabase(DB_NAME);
+		final InternalDbHelper helper = new InternalDbHelper(context, DB_NAME);
+		try {
+			final SQLiteDatabase db = helper.getWritableDatabase();
+			for (final boolean batched : new boolean[] {true, false}) {
+				sb.append(batched ? "Batched:\n" : "One per transaction:\n");
+				phase(sb, db, "add", adds, batched);
+				phase(sb, db, "mod", mods, batched);
+				phase(sb, db, "del", dels, batched);
+			}
+		} finally {
+			helper.close();
+			context.deleteDatabase(DB_NAME);
+		}
+
+		return sb.toString();
+	}
+
+	private static void phase(final StringBuilder sb, final SQLiteDatabase db, final String name, final List<Sync.Operation<Sync_Mabel.Content>> operations, final boolean batched) {
+		final long startTime = SystemClock.elapsedRealtime();
+
+		if (batched) {
+			apply(db, operations);
+		} else {
+			for (final Sync.Operation<Sync_Mabel.Content> o : operations) {
+				apply(db, Collections.singletonList(o));
+			}
+		}
+
+		final long duration = Math.max(1, SystemClock.elapsedRealtime() - startTime);
+		sb.append(String.format(Locale.US, "• %s: %d ms, %.0f ops/sec\n", name, duration, operations.size() * 1000.0 / duration));
+	}
+
+	private static void apply(final SQLiteDatabase db, final List<Sync.Operation<Sync_Mabel.Content>> operations) {
+		db.beginTransactionNonExclusive();
+		try {
+			InternalDb.applyMabelOperations(db, operations);
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
+		}
+	}
+
+	/**
+	 * Mostly markers, with some labels, and marker-labels that attach markers to them, like a typical initial sync.
+	 */
+	static void makeOperations(final int n, final List<Sync.Operation<Sync_Mabel.Content>> adds, final List<Sync.Operation<Sync_Mabel.Content>> mods, final List<Sync.Operation<Sync_Mabel.Content>> dels) {
+		String labelGid = Gid.newGid();
+		String markerGid = Gid.newGid();
+
+		for (int i = 0; i < n; i++) {
+			final String kind;
+			final String gid = Gid.newGid();
+			final Sync_Mabel.Content content = new Sync_Mabel.Content();
+			final Sync_Mabel.Content modified = new Sync_Mabel.Content();
+
+			if (i % 20 == 0) {
+				kind = Sync.Entity.KIND_LABEL;
+				labelGid = gid;
+				content.title = modified.title = "Label " + i;
+				content.ordering = modified.ordering = i;
+				modified.title = "Renamed label " + i;
+			} else if (i % 4 == 0) {
+				kind = Sync.Entity.KIND_MARKER_LABEL;
+				content.marker_gid = modified.marker_gid = markerGid;
+				content.label_gid = modified.label_gid = labelGid;
+			} else {
+				kind = Sync.Entity.KIND_MARKER;
+				markerGid = gid;
+				content.ari = modified.ari = 0x000101 + i % 0x3000;
+				content.kind = modified.kind = Marker.Kind.values()[i % 3].code;
+				content.caption = "Caption " + i;
+				modified.caption = "Modified caption " + i;
+				content.verseCount = modified.verseCount = 1;
+				content.createTime = modified.createTime = 1500000000 + i;
+				content.modifyTime = 1500000000 + i;
+				modified.modifyTime = 1600000000 + i;
+			}
+
+			adds.add(new Sync.Operation<>(Sync.Opkind.add, kind, gid, content));
+			mods.add(new Sync.Operation<>(Sync.Opkind.mod, kind, gid, modified));
+			dels.add(new Sync.Operation<>(Sync.Opkind.del, kind, gid, null));
+		}
+	}
+}
@@ -3,19 +3,22 @@ package yuku.alkitab.base.storage;
 import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.DatabaseUtils;
-import android.database.DatabaseUtils.InsertHelper;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 import android.os.Parcel;
 import android.support.annotation.Nullable;
 import android.util.Pair;
 import yuku.alkitab.songs.SongBookUtil;
+import yuku.alkitab.base.util.QueryTokenizer;
 import yuku.alkitab.songs.SongFilter;
 import yuku.alkitab.songs.SongFilter.CompiledFilter;
 import yuku.alkitab.base.util.Sqlitil;
 import yuku.alkitab.songs.SongInfo;
 import yuku.kpri.model.Song;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 import static yuku.alkitab.base.util.Literals.Array;
@@ -38,7 +41,7 @@ public class SongDb {
 		return buf;
 	}
 	
-	private static Song unmarshallSong(byte[] buf, int dataFormatVersion) {
+	static Song unmarshallSong(byte[] buf, int dataFormatVersion) {
 		Parcel p = Parcel.obtain();
 		p.unmarshall(buf, 0, buf.length);
 		p.setDataPosition(0);
@@ -47,52 +50,100 @@ public class SongDb {
 		return res;
 	}
 
+	/**
+	 * Supplies the songs to {@link #storeSongs(String, SongSource, int)} one by one, for example while they are being downloaded.
+	 */
+	public interface SongSource {
+		/**
+		 * @return null if there are no more songs.
+		 */
+		@Nullable Song nextSong() throws IOException;
+	}
+
 	/**
 	 * Store to db songs in a book. Before the songs are stored, all songs of the specified book are deleted.
 	 */
 	public void storeSongs(String bookName, List<Song> songs, int dataFormatVersion) {
+		final Iterator<Song> it = songs.iterator();
+		try {
+			storeSongs(bookName, () -> it.hasNext() ? it.next() : null, dataFormatVersion);
+		} catch (IOException e) {
+			throw new RuntimeException(e); // not thrown when the songs are already in a list
+		}
+	}
+
+	/**
+	 * Same as {@link #storeSongs(String, List, int)}, but each song is stored as soon as it comes from the source,
+	 * so the songs do not need to be all in memory at the same time.
+	 * If the source throws, the existing songs of the book are left as they were.
+	 * All songs are stored in one write transaction, so the source must not wait for the network; download the songs to a file first.
+	 */
+	public void storeSongs(String bookName, SongSource source, int dataFormatVersion) throws IOException {
 		SQLiteDatabase db = helper.getWritableDatabase();
 		db.beginTransactionNonExclusive();
 		try {
 			// remove existing songs from the same book if any
+			final String[] whereArgs = ToStringArray(bookName, dataFormatVersion);
+			db.execSQL("delete from " + Table.SongInfoText.tableName() + " where docid in (select _id from " + Table.SongInfo.tableName() + " where " + Table.SongInfo.bookName + "=? and " + Table.SongInfo.dataFormatVersion + "=?)", whereArgs);
 			db.delete(Table.SongInfo.tableName(),
 				Table.SongInfo.bookName + "=? and " + Table.SongInfo.dataFormatVersion + "=?",
-				ToStringArray(bookName, dataFormatVersion)
+				whereArgs
 			);
 
 			int ordering = 1; // ordering of the songs for display
-			
+			final int updateTime = Sqlitil.nowDateTime();
+
 			// insert new ones
-			@SuppressWarnings("deprecation") final InsertHelper ih = new InsertHelper(db, Table.SongInfo.tableName());
-			
-			int col_bookName = ih.getColumnIndex(Table.SongInfo.bookName.name());
-			int col_code = ih.getColumnIndex(Table.SongInfo.code.name());
-			int col_title = ih.getColumnIndex(Table.SongInfo.title.name());
-			int col_title_original = ih.getColumnIndex(Table.SongInfo.title_original.name());
-			int col_ordering = ih.getColumnIndex(Table.SongInfo.ordering.name());
-			int col_dataFormatVersion = ih.getColumnIndex(Table.SongInfo.dataFormatVersion.name());
-			int col_data = ih.getColumnIndex(Table.SongInfo.data.name());
-			int col_updateTime = ih.getColumnIndex(Table.SongInfo.updateTime.name());
-
-			for (Song song: songs) {
-				ih.prepareForInsert();
-				ih.bind(col_bookName, bookName);
-				ih.bind(col_code, song.code);
-				ih.bind(col_title, song.title);
-				ih.bind(col_title_original, song.title_original);
-				ih.bind(col_ordering, ordering++);
-				ih.bind(col_dataFormatVersion, dataFormatVersion);
-				ih.bind(col_data, marshallSong(song, dataFormatVersion));
-				ih.bind(col_updateTime, Sqlitil.nowDateTime());
-				ih.execute();
+			final SQLiteStatement stmt = db.compileStatement("insert into " + Table.SongInfo.tableName() + " ("
+				+ Table.SongInfo.bookName + ", "
+				+ Table.SongInfo.code + ", "
+				+ Table.SongInfo.title + ", "
+				+ Table.SongInfo.title_original + ", "
+				+ Table.SongInfo.ordering + ", "
+				+ Table.SongInfo.dataFormatVersion + ", "
+				+ Table.SongInfo.data + ", "
+				+ Table.SongInfo.updateTime
+				+ ") values (?,?,?,?,?,?,?,?)");
+			final SQLiteStatement stmt_text = compileInsertSongInfoText(db);
+
+			try {
+				Song song;
+				while ((song = source.nextSong()) != null) {
+					DatabaseUtils.bindObjectToProgram(stmt, 1, bookName);
+					DatabaseUtils.bindObjectToProgram(stmt, 2, song.code);
+					DatabaseUtils.bindObjectToProgram(stmt, 3, song.title);
+					DatabaseUtils.bindObjectToProgram(stmt, 4, song.title_original);
+					stmt.bindLong(5, ordering++);
+					stmt.bindLong(6, dataFormatVersion);
+					stmt.bindBlob(7, marshallSong(song, dataFormatVersion));
+					stmt.bindLong(8, updateTime);
+					final long _id = stmt.executeInsert();
+
+					insertSongInfoText(stmt_text, _id, song);
+				}
+			} finally {
+				stmt_text.close();
+				stmt.close();
 			}
-			
+
 			db.setTransactionSuccessful();
 		} finally {
 			db.endTransaction();
 		}
 	}
-	
+
+	static SQLiteStatement compileInsertSongInfoText(final SQLiteDatabase db) {
+		return db.compileStatement("insert into " + Table.SongInfoText.tableName() + " (docid, " + Table.SongInfoText.text + ", " + Table.SongInfoText.words + ") values (?,?,?)");
+	}
+
+	static void insertSongInfoText(final SQLiteStatement stmt, final long _id, final Song song) {
+		final String text = SongFilter.getSearchText(song);
+		stmt.bindLong(1, _id);
+		stmt.bindString(2, text);
+		stmt.bindString(3, QueryTokenizer.toFullTextDocument(text));
+		stmt.executeInsert();
+	}
+
 	public Song getSong(String bookName, String code) {
 		SQLiteDatabase db = helper.getReadableDatabase();
 		
@@ -210,41 +261,65 @@ public class SongDb {
 		return res;
 	}
 
+	/**
+	 * Searches the code, titles, authors, tune and lyrics of the songs in their stored lowercased text, without reading the songs.
+	 * The full-text index only narrows down the songs by the plussed tokens, and every song found is then checked
+	 * with {@link SongFilter#compileFilter(String)}, so the tokens are matched the same way as in the songs themselves.
+	 * Tokens that are not plussed can't use the index, so when there are no plussed tokens, the text of every song is scanned.
+	 */
 	public List<SongInfo> listSongInfosByBookNameAndDeepFilter(String bookName, String filter_string) {
-		SQLiteDatabase db = helper.getReadableDatabase();
-		
-		List<SongInfo> res = new ArrayList<>();
+		final String[] tokens = filter_string == null ? new String[0] : QueryTokenizer.tokenize(filter_string);
+		if (tokens.length == 0) { // empty filter? consider it passes
+			return listSongInfosByBookName(bookName);
+		}
 
-		String[] columns = { // column indexes!
-		Table.SongInfo.bookName.name(), // 0
-		Table.SongInfo.code.name(), // 1
-		Table.SongInfo.title.name(), // 2
-		Table.SongInfo.title_original.name(), // 3
-		Table.SongInfo.data.name(), // 4
-		Table.SongInfo.dataFormatVersion.name(), // 5
-		};
-		
-		CompiledFilter cf = SongFilter.compileFilter(filter_string);
-		
-		Cursor c = querySongs(db, columns, bookName);
-		try {
+		final StringBuilder selection = new StringBuilder();
+		final List<String> selectionArgs = new ArrayList<>();
+
+		// the index only finds whole words
+		final String match = QueryTokenizer.toFullTextQuery(tokens);
+		if (match != null) {
+			selection.append("t." + Table.SongInfoText.words + " match ?");
+			selectionArgs.add(match);
+		}
+
+		// the others can be anywhere in the text, which is lowercased like the tokens
+		for (final String token : tokens) {
+			if (QueryTokenizer.isPlussedToken(token)) continue;
+
+			if (selection.length() != 0) selection.append(" and ");
+			selection.append("t." + Table.SongInfoText.text + " like ? escape '\\'");
+			selectionArgs.add("%" + token.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%");
+		}
+
+		if (bookName != null) {
+			if (selection.length() != 0) selection.append(" and ");
+			selection.append("s." + Table.SongInfo.bookName + "=?");
+			selectionArgs.add(bookName);
+		}
+
+		final SQLiteDatabase db = helper.getReadableDatabase();
+		final CompiledFilter cf = SongFilter.compileFilter(filter_string);
+		final List<SongInfo> res = new ArrayList<>();
+
+		final String sql = "select "
+			+ "s." + Table.SongInfo.bookName + ", " // 0
+			+ "s." + Table.SongInfo.code + ", " // 1
+			+ "s." + Table.SongInfo.title + ", " // 2
+			+ "s." + Table.SongInfo.title_original + ", " // 3
+			+ "t." + Table.SongInfoText.text // 4
+			+ " from " + Table.SongInfo.tableName() + " s join " + Table.SongInfoText.tableName() + " t on t.docid = s._id"
+			+ " where " + selection
+			+ " order by s." + Table.SongInfo.bookName + " asc, s." + Table.SongInfo.ordering + " asc";
+
+		try (Cursor c = db.rawQuery(sql, selectionArgs.toArray(new String[selectionArgs.size()]))) {
 			while (c.moveToNext()) {
-				String bookName2 = c.getString(0);
-				String code = c.getString(1);
-				String title = c.getString(2);
-				String title_original = c.getString(3);
-				byte[] data = c.getBlob(4);
-				int dataFormatVersion = c.getInt(5);
-				
-				Song song = unmarshallSong(data, dataFormatVersion);
-				if (SongFilter.match(song, cf)) {
-					res.add(new SongInfo(bookName2, code, title, title_original));
+				if (SongFilter.matchSearchText(c.getString(4), cf)) {
+					res.add(new SongInfo(c.getString(0), c.getString(1), c.getString(2), c.getString(3)));
 				}
 			}
-		} finally {
-			c.close();
 		}
-		
+
 		return res;
 	}
 
@@ -278,6 +353,7 @@ public class SongDb {
 			db.delete(Table.SongBookInfo.tableName(), Table.SongBookInfo.name + "=?", Array(songBookName));
 
 			// delete songs
+			db.execSQL("delete from " + Table.SongInfoText.tableName() + " where docid in (select _id from " + Table.SongInfo.tableName() + " where " + Table.SongInfo.bookName + "=?)", Array(songBookName));
 			final int count = db.delete(Table.SongInfo.tableName(), Table.SongInfo.bookName + "=?", Array(songBookName));
 
 			db.setTransactionSuccessful();
@@ -3,9 +3,12 @@ package yuku.alkitab.base.storage;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
 import android.os.Build;
 import yuku.alkitab.base.App;
+import yuku.alkitab.base.util.AppLog;
 import yuku.alkitab.songs.SongBookUtil;
+import yuku.kpri.model.Song;
 
 public class SongDbHelper extends SQLiteOpenHelper {
 	public static final String TAG = SongDbHelper.class.getSimpleName();
@@ -28,6 +31,7 @@ public class SongDbHelper extends SQLiteOpenHelper {
 	@Override
 	public void onCreate(final SQLiteDatabase db) {
 		setupTableSongInfo(db);
+		setupTableSongInfoText(db);
 		setupTableSongBookInfo(db);
 	}
 
@@ -38,6 +42,26 @@ public class SongDbHelper extends SQLiteOpenHelper {
 			setupTableSongBookInfo(db);
 			insertSongBookInfosFromSongInfos(db);
 		}
+
+		if (oldVersion < 17000414) { // 17000414: full-text index for deep search
+			setupTableSongInfoText(db);
+			insertSongInfoTextsFromSongInfos(db);
+		}
+	}
+
+	/**
+	 * Reads every stored song once, to index the songs that were stored before there was a full-text index.
+	 */
+	private void insertSongInfoTextsFromSongInfos(final SQLiteDatabase db) {
+		final SQLiteStatement stmt = SongDb.compileInsertSongInfoText(db);
+		try (Cursor c = db.query(Table.SongInfo.tableName(), new String[] {"_id", Table.SongInfo.data.name(), Table.SongInfo.dataFormatVersion.name()}, null, null, null, null, null)) {
+			while (c.moveToNext()) {
+				final Song song = SongDb.unmarshallSong(c.getBlob(1), c.getInt(2));
+				SongDb.insertSongInfoText(stmt, c.getLong(0), song);
+			}
+		} finally {
+			stmt.close();
+		}
 	}
 
 	/**
@@ -91,6 +115,14 @@ public class SongDbHelper extends SQLiteOpenHelper {
 			+ ")");
 	}
 
+	/**
+	 * The simple tokenizer is enough, since only {@link Table.SongInfoText#words} is matched, which is already normalized,
+	 * and it is available on every Android version.
+	 */
+	private void setupTableSongInfoText(final SQLiteDatabase db) {
+		db.execSQL("create virtual table " + Table.SongInfoText.tableName() + " using fts4(" + Table.SongInfoText.text + ", " + Table.SongInfoText.words + ")");
+	}
+
 	private void setupTableSongBookInfo(final SQLiteDatabase db) {
 		{ // table
 			final StringBuilder sb = new StringBuilder("create table " + Table.SongBookInfo.tableName() + " ( _id integer primary key ");
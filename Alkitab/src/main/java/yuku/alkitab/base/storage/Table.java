@@ -40,6 +40,28 @@ public class Table {
 		}
 	}
 
+	/**
+	 * Full-text index of the songs in {@link SongInfo}, with the _id of the song as the docid,
+	 * so deep search does not need to read the song data.
+	 */
+	public enum SongInfoText {
+		/** Code, titles, authors, tune and all lyric lines, lowercased, one per line */
+		text(Type.text),
+		/** The same as {@link #text}, as {@link yuku.alkitab.base.util.QueryTokenizer#toFullTextDocument(String)}, to be matched by the full-text queries */
+		words(Type.text),
+		;
+
+		public final Type type;
+
+		SongInfoText(Type type) {
+			this.type = type;
+		}
+
+		public static String tableName() {
+			return SongInfoText.class.getSimpleName();
+		}
+	}
+
 	public enum SongBookInfo {
 		name(text),
 		title(text),
@@ -86,6 +108,62 @@ public class Table {
 		}
 	}
 
+	/**
+	 * The entities of a sync shadow, one row per entity, so the shadow can be read with a cursor
+	 * and updated by writing only the entities that changed. The revno stays in {@link SyncShadow}.
+	 */
+	public enum SyncShadowEntity {
+		syncSetName(text),
+		kind(text),
+		gid(text),
+		contentHash(integer),
+		content(text),
+		;
+
+		public final Type type;
+		public final String suffix;
+
+		SyncShadowEntity(Type type) {
+			this(type, null);
+		}
+
+		SyncShadowEntity(Type type, String suffix) {
+			this.type = type;
+			this.suffix = suffix;
+		}
+
+		public static String tableName() {
+			return SyncShadowEntity.class.getSimpleName();
+		}
+	}
+
+	/**
+	 * Markers, labels and marker-labels (the "mabel" sync set) that have been written since the last sync,
+	 * at most one row per entity. The _id, which never decreases, is the sequence number of the latest write.
+	 */
+	public enum MabelJournal {
+		kind(text),
+		gid(text),
+		op(text),
+		;
+
+		public final Type type;
+		public final String suffix;
+
+		MabelJournal(Type type) {
+			this(type, null);
+		}
+
+		MabelJournal(Type type, String suffix) {
+			this.type = type;
+			this.suffix = suffix;
+		}
+
+		public static String tableName() {
+			return MabelJournal.class.getSimpleName();
+		}
+	}
+
 	public enum SyncLog {
 		createTime(integer),
 		kind(integer),
@@ -4,7 +4,9 @@ import yuku.alkitab.base.util.AppLog;
 import yuku.alkitab.io.BibleReader;
 import yuku.alkitab.yes1.Yes1Reader;
 import yuku.alkitab.yes2.Yes2Reader;
+import yuku.alkitab.yes2.io.MappedRandomInputStream;
 import yuku.alkitab.yes2.io.RandomAccessFileRandomInputStream;
+import yuku.alkitab.yes2.io.RandomInputStream;
 
 import java.io.IOException;
 import java.io.RandomAccessFile;
@@ -13,10 +15,25 @@ import java.util.Arrays;
 public class YesReaderFactory {
 	public static final String TAG = YesReaderFactory.class.getSimpleName();
 	
+	public enum Backend {
+		/** Each read is a seek and a read system call on one shared file pointer. */
+		RANDOM_ACCESS_FILE,
+		/** The whole file is memory-mapped, and every thread reads with its own cursor. */
+		MEMORY_MAPPED,
+	}
+
 	/**
 	 * @return A {@link Yes1Reader}, {@link Yes2Reader}, or null if there is any error.
 	 */
 	public static BibleReader createYesReader(String filename) {
+		return createYesReader(filename, Backend.MEMORY_MAPPED);
+	}
+
+	/**
+	 * @param backend How a YES2 file is read. Ignored for YES1 files.
+	 * @return A {@link Yes1Reader}, {@link Yes2Reader}, or null if there is any error.
+	 */
+	public static BibleReader createYesReader(String filename, Backend backend) {
 		try {
 			byte[] header = new byte[8];
 
@@ -40,7 +57,7 @@ public class YesReaderFactory {
 			if (header[7] == 0x01) { // VERSION 1 YES
 				return new Yes1Reader(filename);
 			} else if (header[7] == 0x02) { // VERSION 2 YES
-				return new Yes2Reader(new RandomAccessFileRandomInputStream(filename));
+				return new Yes2Reader(openYes2Input(filename, backend));
 			} else {
 				AppLog.e(TAG, "Yes file version unsupported: " + header[7]);
 				return null;
@@ -50,4 +67,16 @@ public class YesReaderFactory {
 			return null;
 		}
 	}
+
+	static RandomInputStream openYes2Input(String filename, Backend backend) throws IOException {
+		if (backend == Backend.MEMORY_MAPPED) {
+			try {
+				return new MappedRandomInputStream(filename);
+			} catch (IOException e) {
+				AppLog.w(TAG, "Yes file '" + filename + "' could not be memory-mapped, falling back to RandomAccessFile", e);
+			}
+		}
+
+		return new RandomAccessFileRandomInputStream(filename);
+	}
 }
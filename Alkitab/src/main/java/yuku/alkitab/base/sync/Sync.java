@@ -10,8 +10,10 @@ import com.google.gson.JsonIOException;
 import com.google.gson.JsonSyntaxException;
 import okhttp3.Call;
 import okhttp3.FormBody;
+import okhttp3.MediaType;
 import okhttp3.Request;
 import okhttp3.RequestBody;
+import okio.BufferedSink;
 import yuku.afw.storage.Preferences;
 import yuku.alkitab.base.App;
 import yuku.alkitab.base.U;
@@ -23,9 +25,10 @@ import yuku.alkitab.debug.BuildConfig;
 import yuku.alkitab.debug.R;
 
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executors;
@@ -154,8 +157,31 @@ public class Sync {
 		}
 	}
 
-	public static class SyncShadowDataJson<C> {
-		public List<Entity<C>> entities;
+	/**
+	 * Form field value for {@link okhttp3.MultipartBody.Builder#addFormDataPart(String, String, RequestBody)} (with a null file name),
+	 * that is converted to JSON while the request is being sent, straight to the connection.
+	 * The client state of a sync with many entities is large, and converting it to a string first
+	 * kept it in memory several times over.
+	 */
+	@NonNull public static RequestBody jsonFormDataPart(@NonNull final Object src) {
+		return new RequestBody() {
+			@Override
+			public MediaType contentType() {
+				// like a form field added as a string
+				return null;
+			}
+
+			@Override
+			public void writeTo(@NonNull final BufferedSink sink) throws IOException {
+				final Writer writer = new OutputStreamWriter(sink.outputStream(), "utf-8");
+				try {
+					App.getDefaultGson().toJson(src, writer);
+				} catch (JsonIOException e) {
+					throw new IOException(e);
+				}
+				writer.flush();
+			}
+		};
 	}
 
 	public static class SyncResponseJson<C> extends ResponseJson {
@@ -165,30 +191,27 @@ public class Sync {
 
 	public static class GetClientStateResult<C> {
 		public final ClientState<C> clientState;
-		public final List<Entity<C>> shadowEntities;
-		public final List<Entity<C>> currentEntities;
+		/**
+		 * Sequence number of the latest journal entry when the client state was made.
+		 * Any change after it makes the append delta rejected as dirty.
+		 */
+		public final long journalSeq;
+		/** Number of current entities that were compared with the shadow to make the client delta. */
+		public final int comparedEntityCount;
 
-		public GetClientStateResult(final ClientState<C> clientState, final List<Entity<C>> shadowEntities, final List<Entity<C>> currentEntities) {
+		public GetClientStateResult(final ClientState<C> clientState, final long journalSeq, final int comparedEntityCount) {
 			this.clientState = clientState;
-			this.shadowEntities = shadowEntities;
-			this.currentEntities = currentEntities;
+			this.journalSeq = journalSeq;
+			this.comparedEntityCount = comparedEntityCount;
 		}
 	}
 
 	/**
 	 * Ignoring order, check if all the entities are the same.
+	 * @see SyncDiff#entitiesEqual(List, List)
 	 */
-	public static <C> boolean entitiesEqual(@NonNull final List<Entity<C>> a_, @NonNull final List<Entity<C>> b_) {
-		if (a_.size() != b_.size()) return false;
-
-		final ArrayList<Entity<C>> a = new ArrayList<>(a_);
-		final ArrayList<Entity<C>> b = new ArrayList<>(b_);
-
-		final Comparator<Entity<C>> cmp = (lhs, rhs) -> lhs.gid.compareTo(rhs.gid);
-		Collections.sort(a, cmp);
-		Collections.sort(b, cmp);
-
-		return a.equals(b);
+	public static <C> boolean entitiesEqual(@NonNull final List<Entity<C>> a, @NonNull final List<Entity<C>> b) {
+		return SyncDiff.entitiesEqual(a, b);
 	}
 
 	private static final ArrayMap<String, AtomicInteger> syncUpdatesOngoingCounters = new ArrayMap<>();
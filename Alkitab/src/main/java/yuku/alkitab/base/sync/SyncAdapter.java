@@ -12,7 +12,6 @@ import com.google.gson.JsonIOException;
 import com.google.gson.JsonSyntaxException;
 import com.google.gson.reflect.TypeToken;
 import okhttp3.Call;
-import okhttp3.FormBody;
 import okhttp3.MultipartBody;
 import okhttp3.Request;
 import okhttp3.RequestBody;
@@ -265,12 +264,10 @@ public class SyncAdapter extends AbstractThreadedSyncAdapter {
 		}
 
 		AppLog.d(TAG, "@@syncMabel step 10: gathering client state");
-		final Sync.GetClientStateResult<Sync_Mabel.Content> pair = Sync_Mabel.getClientStateAndCurrentEntities();
+		final Sync.GetClientStateResult<Sync_Mabel.Content> pair = Sync_Mabel.getClientState();
 		final Sync.ClientState<Sync_Mabel.Content> clientState = pair.clientState;
-		final List<Sync.Entity<Sync_Mabel.Content>> shadowEntities = pair.shadowEntities;
-		final List<Sync.Entity<Sync_Mabel.Content>> entitiesBeforeSync = pair.currentEntities;
 
-		SyncRecorder.log(SyncRecorder.EventKind.current_entities_gathered, syncSetName, "base_revno", clientState.base_revno, "client_delta_operations_size", clientState.delta.operations.size(), "client_entities_size", entitiesBeforeSync.size());
+		SyncRecorder.log(SyncRecorder.EventKind.current_entities_gathered, syncSetName, "base_revno", clientState.base_revno, "client_delta_operations_size", clientState.delta.operations.size(), "client_entities_size", pair.comparedEntityCount);
 
 		final boolean isPartial = chopClientState(clientState, syncSetName);
 
@@ -281,7 +278,7 @@ public class SyncAdapter extends AbstractThreadedSyncAdapter {
 			.addFormDataPart("simpleToken", simpleToken)
 			.addFormDataPart("syncSetName", syncSetName)
 			.addFormDataPart("installation_id", U.getInstallationId())
-			.addFormDataPart("clientState", App.getDefaultGson().toJson(clientState))
+			.addFormDataPart("clientState", null, Sync.jsonFormDataPart(clientState))
 			.build();
 
 		final Call call = App.getLongTimeoutOkHttpClient().newCall(
@@ -297,9 +294,8 @@ public class SyncAdapter extends AbstractThreadedSyncAdapter {
 			// arbritrary amount of time may pass on the next line. It is possible for the current data to be modified during this operation.
 			SyncRecorder.log(SyncRecorder.EventKind.sync_to_server_pre, syncSetName, "serverPrefix", Sync.getEffectiveServerPrefix());
 			final long startTime = System.currentTimeMillis();
-			final String response_s = U.inputStreamUtf8ToString(call.execute().body().byteStream());
-			AppLog.d(TAG, "@@syncMabel server response string: " + response_s);
-			final Sync.SyncResponseJson<Sync_Mabel.Content> response = App.getDefaultGson().fromJson(response_s, new TypeToken<Sync.SyncResponseJson<Sync_Mabel.Content>>() {}.getType());
+			// parsed while being received, not read into a string first
+			final Sync.SyncResponseJson<Sync_Mabel.Content> response = App.getDefaultGson().fromJson(call.execute().body().charStream(), new TypeToken<Sync.SyncResponseJson<Sync_Mabel.Content>>() {}.getType());
 			SyncRecorder.log(SyncRecorder.EventKind.sync_to_server_post_response_ok, syncSetName, "duration_ms", System.currentTimeMillis() - startTime);
 
 			if (!response.success) {
@@ -321,7 +317,7 @@ public class SyncAdapter extends AbstractThreadedSyncAdapter {
 
 			SyncRecorder.log(SyncRecorder.EventKind.sync_to_server_got_success_data, syncSetName, "final_revno", final_revno, "append_delta_operations_size", append_delta.operations.size());
 
-			final Sync.ApplyAppendDeltaResult applyResult = S.getDb().applyMabelAppendDelta(final_revno, shadowEntities, clientState, append_delta, entitiesBeforeSync, simpleToken);
+			final Sync.ApplyAppendDeltaResult applyResult = S.getDb().applyMabelAppendDelta(final_revno, clientState, append_delta, pair.journalSeq, isPartial, simpleToken);
 
 			SyncRecorder.log(SyncRecorder.EventKind.apply_result, syncSetName, "apply_result", applyResult.name());
 
@@ -378,11 +374,12 @@ public class SyncAdapter extends AbstractThreadedSyncAdapter {
 
 		final String serverPrefix = Sync.getEffectiveServerPrefix();
 		AppLog.d(TAG, "@@syncHistory step 20: building http request. Server prefix: " + serverPrefix);
-		final RequestBody requestBody = new FormBody.Builder()
-			.add("simpleToken", simpleToken)
-			.add("syncSetName", syncSetName)
-			.add("installation_id", U.getInstallationId())
-			.add("clientState", App.getDefaultGson().toJson(clientState))
+		final RequestBody requestBody = new MultipartBody.Builder()
+			.setType(MultipartBody.FORM)
+			.addFormDataPart("simpleToken", simpleToken)
+			.addFormDataPart("syncSetName", syncSetName)
+			.addFormDataPart("installation_id", U.getInstallationId())
+			.addFormDataPart("clientState", null, Sync.jsonFormDataPart(clientState))
 			.build();
 
 		final Call call = App.getLongTimeoutOkHttpClient().newCall(
@@ -398,9 +395,7 @@ public class SyncAdapter extends AbstractThreadedSyncAdapter {
 			// arbritrary amount of time may pass on the next line. It is possible for the current data to be modified during this operation.
 			SyncRecorder.log(SyncRecorder.EventKind.sync_to_server_pre, syncSetName, "serverPrefix", Sync.getEffectiveServerPrefix());
 			final long startTime = System.currentTimeMillis();
-			final String response_s = U.inputStreamUtf8ToString(call.execute().body().byteStream());
-			AppLog.d(TAG, "@@syncHistory server response string: " + response_s);
-			final Sync.SyncResponseJson<Sync_History.Content> response = App.getDefaultGson().fromJson(response_s, new TypeToken<Sync.SyncResponseJson<Sync_History.Content>>() {}.getType());
+			final Sync.SyncResponseJson<Sync_History.Content> response = App.getDefaultGson().fromJson(call.execute().body().charStream(), new TypeToken<Sync.SyncResponseJson<Sync_History.Content>>() {}.getType());
 			SyncRecorder.log(SyncRecorder.EventKind.sync_to_server_post_response_ok, syncSetName, "duration_ms", System.currentTimeMillis() - startTime);
 
 			if (!response.success) {
@@ -471,11 +466,12 @@ public class SyncAdapter extends AbstractThreadedSyncAdapter {
 
 		final String serverPrefix = Sync.getEffectiveServerPrefix();
 		AppLog.d(TAG, "@@syncPins step 20: building http request. Server prefix: " + serverPrefix);
-		final RequestBody requestBody = new FormBody.Builder()
-			.add("simpleToken", simpleToken)
-			.add("syncSetName", syncSetName)
-			.add("installation_id", U.getInstallationId())
-			.add("clientState", App.getDefaultGson().toJson(clientState))
+		final RequestBody requestBody = new MultipartBody.Builder()
+			.setType(MultipartBody.FORM)
+			.addFormDataPart("simpleToken", simpleToken)
+			.addFormDataPart("syncSetName", syncSetName)
+			.addFormDataPart("installation_id", U.getInstallationId())
+			.addFormDataPart("clientState", null, Sync.jsonFormDataPart(clientState))
 			.build();
 
 		final Call call = App.getLongTimeoutOkHttpClient().newCall(
@@ -491,9 +487,7 @@ public class SyncAdapter extends AbstractThreadedSyncAdapter {
 			// arbritrary amount of time may pass on the next line. It is possible for the current data to be modified during this operation.
 			SyncRecorder.log(SyncRecorder.EventKind.sync_to_server_pre, syncSetName, "serverPrefix", Sync.getEffectiveServerPrefix());
 			final long startTime = System.currentTimeMillis();
-			final String response_s = U.inputStreamUtf8ToString(call.execute().body().byteStream());
-			AppLog.d(TAG, "@@syncPins server response string: " + response_s);
-			final Sync.SyncResponseJson<Sync_Pins.Content> response = App.getDefaultGson().fromJson(response_s, new TypeToken<Sync.SyncResponseJson<Sync_Pins.Content>>() {}.getType());
+			final Sync.SyncResponseJson<Sync_Pins.Content> response = App.getDefaultGson().fromJson(call.execute().body().charStream(), new TypeToken<Sync.SyncResponseJson<Sync_Pins.Content>>() {}.getType());
 			SyncRecorder.log(SyncRecorder.EventKind.sync_to_server_post_response_ok, syncSetName, "duration_ms", System.currentTimeMillis() - startTime);
 
 			if (!response.success) {
@@ -566,11 +560,12 @@ public class SyncAdapter extends AbstractThreadedSyncAdapter {
 
 		final String serverPrefix = Sync.getEffectiveServerPrefix();
 		AppLog.d(TAG, "@@syncRp step 20: building http request. Server prefix: " + serverPrefix);
-		final RequestBody requestBody = new FormBody.Builder()
-			.add("simpleToken", simpleToken)
-			.add("syncSetName", syncSetName)
-			.add("installation_id", U.getInstallationId())
-			.add("clientState", App.getDefaultGson().toJson(clientState))
+		final RequestBody requestBody = new MultipartBody.Builder()
+			.setType(MultipartBody.FORM)
+			.addFormDataPart("simpleToken", simpleToken)
+			.addFormDataPart("syncSetName", syncSetName)
+			.addFormDataPart("installation_id", U.getInstallationId())
+			.addFormDataPart("clientState", null, Sync.jsonFormDataPart(clientState))
 			.build();
 
 		final Call call = App.getLongTimeoutOkHttpClient().newCall(
@@ -586,9 +581,7 @@ public class SyncAdapter extends AbstractThreadedSyncAdapter {
 			// arbritrary amount of time may pass on the next line. It is possible for the current data to be modified during this operation.
 			SyncRecorder.log(SyncRecorder.EventKind.sync_to_server_pre, syncSetName, "serverPrefix", Sync.getEffectiveServerPrefix());
 			final long startTime = System.currentTimeMillis();
-			final String response_s = U.inputStreamUtf8ToString(call.execute().body().byteStream());
-			AppLog.d(TAG, "@@syncRp server response string: " + response_s);
-			final Sync.SyncResponseJson<Sync_Rp.Content> response = App.getDefaultGson().fromJson(response_s, new TypeToken<Sync.SyncResponseJson<Sync_Rp.Content>>() {}.getType());
+			final Sync.SyncResponseJson<Sync_Rp.Content> response = App.getDefaultGson().fromJson(call.execute().body().charStream(), new TypeToken<Sync.SyncResponseJson<Sync_Rp.Content>>() {}.getType());
 			SyncRecorder.log(SyncRecorder.EventKind.sync_to_server_post_response_ok, syncSetName, "duration_ms", System.currentTimeMillis() - startTime);
 
 			if (!response.success) {
@@ -0,0 +1,79 @@
+package yuku.alkitab.base.sync;
+
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Measures how long {@link SyncDiff#computeDelta(List, List)} and {@link Sync#entitiesEqual(List, List)} take
+ * with many entities, such as for users with a lot of markers. Only made-up entities are used.
+ */
+public class SyncDiffBenchmark {
+	public static final String TAG = SyncDiffBenchmark.class.getSimpleName();
+
+	/**
+	 * Must not be called on the main thread.
+	 * @param sizes numbers of entities in the shadow.
+	 * @return human-readable results.
+	 */
+	public static String run(final int... sizes) {
+		final StringBuilder sb = new StringBuilder();
+
+		for (final int n : sizes) {
+			final Random r = new Random(n);
+			final List<Sync.Entity<Sync_Mabel.Content>> shadow = new ArrayList<>(n);
+			for (int i = 0; i < n; i++) {
+				shadow.add(entity(i % 20 == 0 ? Sync.Entity.KIND_LABEL : Sync.Entity.KIND_MARKER, "g2:" + i, "caption " + r.nextInt(), 1400000000 + i));
+			}
+
+			// some deleted, some modified, some added
+			final List<Sync.Entity<Sync_Mabel.Content>> current = new ArrayList<>(n);
+			for (final Sync.Entity<Sync_Mabel.Content> e : shadow) {
+				final int action = r.nextInt(100);
+				if (action < 5) {
+					continue;
+				}
+				current.add(entity(e.kind, e.gid, e.content.caption, action < 10 ? 1500000000 : e.content.modifyTime));
+			}
+			for (int i = 0; i < n / 20; i++) {
+				current.add(entity(Sync.Entity.KIND_MARKER, "g2:new" + i, "new " + i, 1500000000));
+			}
+			Collections.shuffle(current, r);
+
+			// warm up
+			SyncDiff.computeDelta(shadow, current);
+
+			long startTime = SystemClock.elapsedRealtime();
+			final Sync.Delta<Sync_Mabel.Content> delta = SyncDiff.computeDelta(shadow, current);
+			final long deltaDuration = SystemClock.elapsedRealtime() - startTime;
+
+			startTime = SystemClock.elapsedRealtime();
+			Sync.entitiesEqual(current, new ArrayList<>(current));
+			final long equalDuration = SystemClock.elapsedRealtime() - startTime;
+
+			sb.append(String.format(Locale.US, "• %d entities, %d operations: computeDelta %d ms, entitiesEqual %d ms\n", n, delta.operations.size(), deltaDuration, equalDuration));
+		}
+
+		return sb.toString();
+	}
+
+	static Sync.Entity<Sync_Mabel.Content> entity(final String kind, final String gid, final String caption, final int modifyTime) {
+		final Sync_Mabel.Content content = new Sync_Mabel.Content();
+		if (Sync.Entity.KIND_LABEL.equals(kind)) {
+			content.title = caption;
+			content.ordering = 1;
+		} else {
+			content.ari = 0x000101;
+			content.kind = 1;
+			content.caption = caption;
+			content.verseCount = 1;
+			content.createTime = 1400000000;
+			content.modifyTime = modifyTime;
+		}
+		return new Sync.Entity<>(kind, gid, content);
+	}
+}
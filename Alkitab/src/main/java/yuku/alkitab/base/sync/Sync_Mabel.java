@@ -2,8 +2,7 @@ package yuku.alkitab.base.sync;
 
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
-import com.google.gson.reflect.TypeToken;
-import yuku.alkitab.base.App;
+import android.util.Pair;
 import yuku.alkitab.base.S;
 import yuku.alkitab.base.U;
 import yuku.alkitab.base.model.SyncShadow;
@@ -13,80 +12,78 @@ import yuku.alkitab.model.Label;
 import yuku.alkitab.model.Marker;
 import yuku.alkitab.model.Marker_Label;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
-import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
 
 public class Sync_Mabel {
-	public static Sync.GetClientStateResult<Content> getClientStateAndCurrentEntities() {
-		final SyncShadow ss = S.getDb().getSyncShadowBySyncSetName(SyncShadow.SYNC_SET_MABEL);
+	/**
+	 * Entities of this sync set that have been written since the last sync, read from the journal at one point in time.
+	 */
+	public static class Journal {
+		/** Sequence number of the latest entry, or 0 if the journal is empty. */
+		public final long seq;
+		/** Whether the journal may be missing some changes, so all entities must be compared with the shadow. */
+		public final boolean compareAll;
+		/** Kind (first) and gid (second) of every entity written since the last sync. */
+		public final List<Pair<String, String>> kindGids;
+
+		public Journal(final long seq, final boolean compareAll, final List<Pair<String, String>> kindGids) {
+			this.seq = seq;
+			this.compareAll = compareAll;
+			this.kindGids = kindGids;
+		}
+	}
 
-		final List<Sync.Entity<Content>> srcs = ss == null? Literals.List(): entitiesFromShadow(ss);
-		final List<Sync.Entity<Content>> dsts = getEntitiesFromCurrent();
+	/**
+	 * Makes the client delta from the entities in the journal, so only the entities written since the last sync
+	 * are read and compared with the shadow. All entities are compared only when there is no shadow yet,
+	 * or when the journal cannot be relied on.
+	 */
+	public static Sync.GetClientStateResult<Content> getClientState() {
+		final Journal journal = S.getDb().getMabelJournal();
+		final int revno = S.getDb().getRevnoFromSyncShadowBySyncSetName(SyncShadow.SYNC_SET_MABEL);
 
-		final Sync.Delta<Content> delta = new Sync.Delta<>();
+		if (revno == 0 || journal.compareAll) {
+			final SyncShadow<Content> ss = S.getDb().getSyncShadowBySyncSetName(SyncShadow.SYNC_SET_MABEL, Content.class);
 
-		// additions and modifications
-		for (final Sync.Entity<Content> dst : dsts) {
-			final Sync.Entity<Content> existing = findEntity(srcs, dst.gid, dst.kind);
+			final List<Sync.Entity<Content>> srcs = ss == null? Literals.List(): ss.entities;
+			final List<Sync.Entity<Content>> dsts = getEntitiesFromCurrent();
 
-			if (existing == null) {
-				delta.operations.add(new Sync.Operation<>(Sync.Opkind.add, dst.kind, dst.gid, dst.content));
-			} else {
-				if (!isSameContent(dst, existing)) { // only when it changes
-					delta.operations.add(new Sync.Operation<>(Sync.Opkind.mod, dst.kind, dst.gid, dst.content));
-				}
-			}
-		}
+			final Sync.Delta<Content> delta = SyncDiff.computeDelta(srcs, dsts);
 
-		// deletions
-		for (final Sync.Entity<Content> src : srcs) {
-			final Sync.Entity<Content> still_have = findEntity(dsts, src.gid, src.kind);
-			if (still_have == null) {
-				delta.operations.add(new Sync.Operation<>(Sync.Opkind.del, src.kind, src.gid, null));
-			}
+			return new Sync.GetClientStateResult<>(new Sync.ClientState<>(ss == null ? 0 : ss.revno, delta), journal.seq, dsts.size());
 		}
 
-		return new Sync.GetClientStateResult<>(new Sync.ClientState<>(ss == null ? 0 : ss.revno, delta), srcs, dsts);
-	}
+		// same order as SyncDiff#computeDelta: additions and modifications first, then deletions
+		final Sync.Delta<Content> delta = new Sync.Delta<>();
+		final List<Sync.Operation<Content>> dels = new ArrayList<>();
 
-	private static boolean isSameContent(final Sync.Entity<Content> a, final Sync.Entity<Content> b) {
-		if (!U.equals(a.gid, b.gid)) return false;
-		if (!U.equals(a.kind, b.kind)) return false;
+		for (final Pair<String, String> kindGid : journal.kindGids) {
+			final String kind = kindGid.first;
+			final String gid = kindGid.second;
 
-		return U.equals(a.content, b.content);
-	}
+			final Sync.Entity<Content> src = S.getDb().getSyncShadowEntity(SyncShadow.SYNC_SET_MABEL, kind, gid, Content.class);
+			final Sync.Entity<Content> dst = getEntityFromCurrent(kind, gid);
 
-	private static Sync.Entity<Content> findEntity(final List<Sync.Entity<Content>> list, final String gid, final String kind) {
-		for (final Sync.Entity<Content> entity : list) {
-			if (U.equals(gid, entity.gid) && U.equals(kind, entity.kind)) {
-				return entity;
+			if (dst != null) {
+				if (src == null) {
+					delta.operations.add(new Sync.Operation<>(Sync.Opkind.add, kind, gid, dst.content));
+				} else if (!U.equals(dst.content, src.content)) { // only when it changes
+					delta.operations.add(new Sync.Operation<>(Sync.Opkind.mod, kind, gid, dst.content));
+				}
+			} else if (src != null) {
+				dels.add(new Sync.Operation<>(Sync.Opkind.del, kind, gid, null));
 			}
 		}
-		return null;
-	}
 
-	private static List<Sync.Entity<Content>> entitiesFromShadow(@NonNull final SyncShadow ss) {
-		final BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(ss.data), Charset.forName("utf-8")));
-		final Sync.SyncShadowDataJson<Content> data = App.getDefaultGson().fromJson(reader, new TypeToken<Sync.SyncShadowDataJson<Content>>() {}.getType());
-		return data.entities;
+		delta.operations.addAll(dels);
+
+		return new Sync.GetClientStateResult<>(new Sync.ClientState<>(revno, delta), journal.seq, journal.kindGids.size());
 	}
 
-	@NonNull public static SyncShadow shadowFromEntities(@NonNull final List<Sync.Entity<Content>> entities, final int revno) {
-		final Sync.SyncShadowDataJson<Content> data = new Sync.SyncShadowDataJson<>();
-		data.entities = entities;
-		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
-		final BufferedWriter w = new BufferedWriter(new OutputStreamWriter(baos, Charset.forName("utf-8")));
-		App.getDefaultGson().toJson(data, new TypeToken<Sync.SyncShadowDataJson<Content>>() {}.getType(), w);
-		U.wontThrow(() -> w.flush());
-		final SyncShadow res = new SyncShadow();
-		res.data = baos.toByteArray();
+	@NonNull public static SyncShadow<Content> shadowFromEntities(@NonNull final List<Sync.Entity<Content>> entities, final int revno) {
+		final SyncShadow<Content> res = new SyncShadow<>();
+		res.entities = entities;
 		res.syncSetName = SyncShadow.SYNC_SET_MABEL;
 		res.revno = revno;
 		return res;
@@ -97,45 +94,75 @@ public class Sync_Mabel {
 
 		{ // markers
 			for (final Marker marker : S.getDb().listAllMarkers()) {
-				final Content content = new Content();
-				content.ari = marker.ari;
-				content.caption = marker.caption;
-				content.kind = marker.kind.code;
-				content.verseCount = marker.verseCount;
-				content.createTime = Sqlitil.toInt(marker.createTime);
-				content.modifyTime = Sqlitil.toInt(marker.modifyTime);
-
-				final Sync.Entity<Content> entity = new Sync.Entity<>(Sync.Entity.KIND_MARKER, marker.gid, content);
-				res.add(entity);
+				res.add(entityFromMarker(marker));
 			}
 		}
 
 		{ // labels
 			for (final Label label : S.getDb().listAllLabels()) {
-				final Content content = new Content();
-				content.title = label.title;
-				content.backgroundColor = label.backgroundColor;
-				content.ordering = label.ordering;
-
-				final Sync.Entity<Content> entity = new Sync.Entity<>(Sync.Entity.KIND_LABEL, label.gid, content);
-				res.add(entity);
+				res.add(entityFromLabel(label));
 			}
 		}
 
 		{ // marker_labels
 			for (final Marker_Label marker_label : S.getDb().listAllMarker_Labels()) {
-				final Content content = new Content();
-				content.marker_gid = marker_label.marker_gid;
-				content.label_gid = marker_label.label_gid;
-
-				final Sync.Entity<Content> entity = new Sync.Entity<>(Sync.Entity.KIND_MARKER_LABEL, marker_label.gid, content);
-				res.add(entity);
+				res.add(entityFromMarker_Label(marker_label));
 			}
 		}
 
 		return res;
 	}
 
+	/**
+	 * @return null if there is no entity of the kind with the gid.
+	 */
+	@Nullable public static Sync.Entity<Content> getEntityFromCurrent(@NonNull final String kind, @NonNull final String gid) {
+		switch (kind) {
+			case Sync.Entity.KIND_MARKER: {
+				final Marker marker = S.getDb().getMarkerByGid(gid);
+				return marker == null ? null : entityFromMarker(marker);
+			}
+			case Sync.Entity.KIND_LABEL: {
+				final Label label = S.getDb().getLabelByGid(gid);
+				return label == null ? null : entityFromLabel(label);
+			}
+			case Sync.Entity.KIND_MARKER_LABEL: {
+				final Marker_Label marker_label = S.getDb().getMarker_LabelByGid(gid);
+				return marker_label == null ? null : entityFromMarker_Label(marker_label);
+			}
+		}
+		return null;
+	}
+
+	@NonNull static Sync.Entity<Content> entityFromMarker(@NonNull final Marker marker) {
+		final Content content = new Content();
+		content.ari = marker.ari;
+		content.caption = marker.caption;
+		content.kind = marker.kind.code;
+		content.verseCount = marker.verseCount;
+		content.createTime = Sqlitil.toInt(marker.createTime);
+		content.modifyTime = Sqlitil.toInt(marker.modifyTime);
+
+		return new Sync.Entity<>(Sync.Entity.KIND_MARKER, marker.gid, content);
+	}
+
+	@NonNull static Sync.Entity<Content> entityFromLabel(@NonNull final Label label) {
+		final Content content = new Content();
+		content.title = label.title;
+		content.backgroundColor = label.backgroundColor;
+		content.ordering = label.ordering;
+
+		return new Sync.Entity<>(Sync.Entity.KIND_LABEL, label.gid, content);
+	}
+
+	@NonNull static Sync.Entity<Content> entityFromMarker_Label(@NonNull final Marker_Label marker_label) {
+		final Content content = new Content();
+		content.marker_gid = marker_label.marker_gid;
+		content.label_gid = marker_label.label_gid;
+
+		return new Sync.Entity<>(Sync.Entity.KIND_MARKER_LABEL, marker_label.gid, content);
+	}
+
 	/**
 	 * Modify or create a label from an entity content. This is called when the server append delta
 	 * asks for an add or a mod operation.
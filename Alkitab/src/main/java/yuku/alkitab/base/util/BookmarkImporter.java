@@ -305,6 +305,8 @@ public class BookmarkImporter {
 			db.endTransaction();
 		}
 
+		S.getDb().invalidateHighlightIndex();
+
 		App.getLbm().sendBroadcast(new Intent(IsiActivity.ACTION_ATTRIBUTE_MAP_CHANGED));
 	}
 }
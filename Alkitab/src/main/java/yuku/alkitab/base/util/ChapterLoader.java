@@ -0,0 +1,184 @@
+package yuku.alkitab.base.util;
+
+import android.support.annotation.Nullable;
+import yuku.alkitab.base.model.ChapterModel;
+import yuku.alkitab.model.Book;
+import yuku.alkitab.model.Version;
+import yuku.alkitab.util.Ari;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads {@link ChapterModel}s for the reading screen on background threads, and keeps the few that are
+ * likely to be displayed soon, so that going to the previous or next chapter does not need to read text,
+ * pericopes or verse attributes on the main thread.
+ * <p>
+ * Only the most recently requested chapters are kept. Older ones are dropped, and if they have not started loading yet,
+ * they are cancelled, so navigating quickly over many chapters does not leave a queue of loads nobody will look at.
+ * <p>
+ * All methods must be called from the main thread.
+ */
+public class ChapterLoader {
+	public static final String TAG = ChapterLoader.class.getSimpleName();
+
+	/**
+	 * The displayed chapter and the ones before and after it, in both the main and the split version,
+	 * plus a few for going back and forth.
+	 */
+	static final int MAX_LOADS = 10;
+
+	static final int THREAD_COUNT = 2;
+	private static ExecutorService executor;
+
+	private static synchronized ExecutorService getExecutor() {
+		if (executor == null) {
+			final ThreadPoolExecutor e = new ThreadPoolExecutor(THREAD_COUNT, THREAD_COUNT, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> new Thread(r, "ChapterLoader"));
+			e.allowCoreThreadTimeOut(true);
+			executor = e;
+		}
+		return executor;
+	}
+
+	static class Load extends FutureTask<ChapterModel> {
+		final Version version;
+		final String versionId;
+		final Book book;
+		final int chapter_1;
+		boolean submitted;
+
+		Load(final Version version, final String versionId, final Book book, final int chapter_1) {
+			super(() -> ChapterModel.load(version, versionId, book, chapter_1));
+			this.version = version;
+			this.versionId = versionId;
+			this.book = book;
+			this.chapter_1 = chapter_1;
+		}
+	}
+
+	private final LinkedHashMap<String, Load> loads = new LinkedHashMap<String, Load>(16, 0.75f, true /* access order */) {
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<String, Load> eldest) {
+			if (size() > MAX_LOADS) {
+				// does nothing if it is already loading or loaded
+				eldest.getValue().cancel(false);
+				return true;
+			}
+			return false;
+		}
+	};
+
+	private static String key(final String versionId, final Book book, final int chapter_1) {
+		return versionId + ' ' + Ari.encode(book.bookId, chapter_1, 0);
+	}
+
+	/**
+	 * Returns the chapter, waiting for it if it is being loaded in the background.
+	 * If loading it has not started yet, it is loaded immediately on the calling thread.
+	 *
+	 * @return null if the chapter is not available in the version.
+	 */
+	@Nullable
+	public ChapterModel get(final Version version, final String versionId, final Book book, final int chapter_1) {
+		final Load load = obtain(version, versionId, book, chapter_1);
+
+		// does nothing if the executor has already started or finished it
+		load.run();
+
+		try {
+			return load.get();
+		} catch (InterruptedException | ExecutionException e) {
+			AppLog.e(TAG, "Error loading chapter " + key(versionId, book, chapter_1), e);
+			loads.remove(key(versionId, book, chapter_1));
+			return ChapterModel.load(version, versionId, book, chapter_1);
+		}
+	}
+
+	/**
+	 * Starts loading the chapter in the background, if it is not loaded or being loaded already.
+	 */
+	public void prefetch(final Version version, final String versionId, final Book book, final int chapter_1) {
+		final Load load = obtain(version, versionId, book, chapter_1);
+		if (!load.submitted && !load.isDone()) {
+			load.submitted = true;
+			getExecutor().execute(load);
+		}
+	}
+
+	/**
+	 * Starts loading the chapters before and after the given one, also across book boundaries,
+	 * since those are where the previous and next buttons and swipes go.
+	 */
+	public void prefetchAdjacent(final Version version, final String versionId, final Book book, final int chapter_1) {
+		if (chapter_1 < book.chapter_count) {
+			prefetch(version, versionId, book, chapter_1 + 1);
+		} else {
+			final Book next = findBook(version, book.bookId, +1);
+			if (next != null) prefetch(version, versionId, next, 1);
+		}
+
+		if (chapter_1 > 1) {
+			prefetch(version, versionId, book, chapter_1 - 1);
+		} else {
+			final Book prev = findBook(version, book.bookId, -1);
+			if (prev != null) prefetch(version, versionId, prev, prev.chapter_count);
+		}
+	}
+
+	@Nullable
+	private static Book findBook(final Version version, final int bookId, final int direction) {
+		final int maxBookId = version.getMaxBookIdPlusOne();
+		for (int tryBookId = bookId + direction; tryBookId >= 0 && tryBookId < maxBookId; tryBookId += direction) {
+			final Book book = version.getBook(tryBookId);
+			if (book != null) {
+				return book;
+			}
+		}
+		return null;
+	}
+
+	private Load obtain(final Version version, final String versionId, final Book book, final int chapter_1) {
+		final String key = key(versionId, book, chapter_1);
+		Load load = loads.get(key);
+
+		// the version object changes when the version file is replaced
+		if (load == null || load.isCancelled() || load.version != version) {
+			load = new Load(version, versionId, book, chapter_1);
+			loads.put(key, load);
+		}
+
+		return load;
+	}
+
+	/**
+	 * Must be called when bookmarks, notes, highlights or progress marks change, since the loaded chapters contain them.
+	 * Chapters that were kept are loaded again in the background.
+	 */
+	public void invalidateAttributes() {
+		final List<Load> olds = new ArrayList<>(loads.values());
+		loads.clear();
+
+		for (final Load old : olds) {
+			old.cancel(false);
+			prefetch(old.version, old.versionId, old.book, old.chapter_1);
+		}
+	}
+
+	/**
+	 * Forgets all chapters, for example when the activity is no longer visible.
+	 */
+	public void clear() {
+		for (final Load load : loads.values()) {
+			load.cancel(false);
+		}
+		loads.clear();
+	}
+}
@@ -1,7 +1,9 @@
 package yuku.alkitab.base.util;
 
+import android.os.CancellationSignal;
 import android.os.Handler;
 import android.os.Message;
+import android.os.OperationCanceledException;
 
 import java.lang.ref.WeakReference;
 import java.util.concurrent.Executors;
@@ -26,6 +28,9 @@ public abstract class Debouncer<RequestType, ResultType> {
 
 	final AtomicInteger serial = new AtomicInteger();
 
+	/** Signal of the last submitted task, cancelled when a newer payload is submitted. */
+	private CancellationSignal lastCancellationSignal;
+
 	static class DebounceHandler<RequestType, ResultType> extends Handler {
 		private final WeakReference<Debouncer<RequestType, ResultType>> ref;
 
@@ -76,13 +81,23 @@ public abstract class Debouncer<RequestType, ResultType> {
 	 * @param payload Payload to be sent to the {@link #process(RequestType)} method.
 	 */
 	public void submit(final RequestType payload, final long delay) {
+		if (lastCancellationSignal != null) {
+			lastCancellationSignal.cancel();
+		}
+		final CancellationSignal cancellationSignal = lastCancellationSignal = new CancellationSignal();
+
 		final Task t = new Task(serial.incrementAndGet()) {
 			@Override
 			public void run() {
 				// check if this is still needed
 				if (isOutdated(1, this.id, serial.get())) return;
 
-				final ResultType result = process(payload);
+				final ResultType result;
+				try {
+					result = process(payload, cancellationSignal);
+				} catch (OperationCanceledException e) {
+					return;
+				}
 
 				// check again if this is still needed
 				if (isOutdated(2, this.id, serial.get())) return;
@@ -106,6 +121,17 @@ public abstract class Debouncer<RequestType, ResultType> {
 	 */
 	public abstract ResultType process(final RequestType payload);
 
+	/**
+	 * Called in non-UI thread.
+	 * Override this instead of {@link #process(RequestType)} if the processing takes long and can be cancelled.
+	 * The cancellationSignal is cancelled as soon as another payload is submitted, so long-running work
+	 * (e.g. {@link SearchEngine#searchByGrep(yuku.alkitab.model.Version, SearchEngine.Query, CancellationSignal)})
+	 * can stop early. Throwing {@link OperationCanceledException} discards the result.
+	 */
+	public ResultType process(final RequestType payload, final CancellationSignal cancellationSignal) {
+		return process(payload);
+	}
+
 	/**
 	 * Called in the UI thread.
 	 * Override this to receive the process result and e.g. update UI.
@@ -168,7 +168,7 @@ public class History {
 			this.entries.addAll(new ArrayList<>(entriesCopy));
 
 			// if we reach here, the local database has been updated with the append delta.
-			final SyncShadow ss = Sync_History.shadowFromEntities(Sync_History.getEntitiesFromCurrent(), final_revno);
+			final SyncShadow<Sync_History.Content> ss = Sync_History.shadowFromEntities(Sync_History.getEntitiesFromCurrent(), final_revno);
 			S.getDb().insertOrUpdateSyncShadowBySyncSetName(ss);
 			this.save();
 
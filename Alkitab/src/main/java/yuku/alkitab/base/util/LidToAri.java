@@ -4,6 +4,10 @@ import java.util.Arrays;
 
 public class LidToAri {
 	public static final String TAG = LidToAri.class.getSimpleName();
+
+	/** Lid of the last verse, Rev 22:21 */
+	public static final int MAX_LID = 31102;
+	public static final int BOOK_COUNT = 66;
 	
 	/**
 	 * lid for the verse 1 of each book-chapter.
@@ -30,7 +34,7 @@ public class LidToAri {
 	 * @return 0 when lid is not valid
 	 */
 	public static int lidToAri(int lid) {
-		if (lid <= 0 || lid > 31102) return 0;
+		if (lid <= 0 || lid > MAX_LID) return 0;
 		int pos = Arrays.binarySearch(lids, lid);
 		if (pos >= 0) { // exactly at verse 1
 			return (bcs[pos] << 8) + 1;
@@ -54,7 +58,7 @@ public class LidToAri {
 	 * @param bookId 0 for Gen, 65 for Rev
 	 */
 	public static int endLidForBookId(int bookId) {
-		if (bookId == 65) return 31102;
+		if (bookId == BOOK_COUNT - 1) return MAX_LID;
 		return startBookLids[bookId + 1] - 1;
 	}
 	
@@ -68,7 +72,7 @@ public class LidToAri {
 		if (pos >= 0) {
 			return pos;
 		} else {
-			if (lid < 1 || lid > 31102) return -1;
+			if (lid < 1 || lid > MAX_LID) return -1;
 			return -pos - 2;
 		}
 	}
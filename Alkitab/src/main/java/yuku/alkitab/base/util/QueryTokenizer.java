@@ -89,6 +89,104 @@ public class QueryTokenizer {
 		return token;
 	}
 
+	/**
+	 * Checks whether every text that satisfies all the tokens also satisfies all the previous tokens,
+	 * so the result of the previous tokens can be filtered instead of searching everything again.
+	 * This is the case when e.g. more characters are typed to a token that is not plussed, or a token is added.
+	 * Returns false when not sure.
+	 * @param previousTokens tokens from {@link #tokenize(String)} of the previous query
+	 * @param tokens tokens from {@link #tokenize(String)} of the current query
+	 */
+	public static boolean isNarrowing(@NonNull String[] previousTokens, @NonNull String[] tokens) {
+		for (final String previousToken : previousTokens) {
+			boolean implied = false;
+			for (final String token : tokens) {
+				if (implies(token, previousToken)) {
+					implied = true;
+					break;
+				}
+			}
+			if (!implied) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Whether a text where the token is found always contains the previous token as well.
+	 */
+	static boolean implies(String token, String previousToken) {
+		if (token.equals(previousToken)) {
+			return true;
+		}
+
+		if (!isPlussedToken(token)) {
+			// found as is, so anything inside it is found too, but not necessarily as a whole word
+			return !isPlussedToken(previousToken) && token.contains(previousToken);
+		}
+
+		// the words of a multiword token are found each as a whole word, but the text between them is not necessarily the same
+		final String bare = tokenWithoutPlus(token);
+		final String[] multiword = tokenizeMultiwordToken(bare);
+		final String[] words = multiword != null ? multiword : new String[] {bare};
+
+		if (isPlussedToken(previousToken)) {
+			final String previousBare = tokenWithoutPlus(previousToken);
+			if (tokenizeMultiwordToken(previousBare) != null) {
+				return false;
+			}
+			for (final String word : words) {
+				if (word.equals(previousBare)) return true;
+			}
+		} else {
+			for (final String word : words) {
+				if (word.contains(previousToken)) return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Converts the plussed tokens into an SQLite FTS query where every token is a phrase of its words, so characters that mean something
+	 * in FTS queries are not used. Tokens that are not plussed are left out, since they may be found inside words, which an FTS index can't do.
+	 * When the text is stored as {@link #toFullTextDocument(String)}, every text that satisfies the plussed tokens is found by the query,
+	 * but the query may find more, e.g. because it ignores what is between the words of a phrase, so the texts found still have to be checked.
+	 * @return null if there are no plussed tokens with words.
+	 */
+	@Nullable public static String toFullTextQuery(@NonNull String[] tokens) {
+		final StringBuilder sb = new StringBuilder();
+		for (final String token : tokens) {
+			if (!isPlussedToken(token)) continue;
+
+			final StringBuilder phrase = new StringBuilder();
+			for (final String word : toFullTextDocument(tokenWithoutPlus(token)).split(" +")) {
+				if (word.length() == 0) continue;
+				if (phrase.length() != 0) phrase.append(' ');
+				phrase.append(word);
+			}
+			if (phrase.length() == 0) continue;
+
+			if (sb.length() != 0) sb.append(' ');
+			sb.append('"').append(phrase).append('"');
+		}
+		return sb.length() == 0 ? null : sb.toString();
+	}
+
+	/**
+	 * Converts a text to be stored in an SQLite FTS table that is searched with {@link #toFullTextQuery(String[])}.
+	 * The text is lowercased like the tokens, and every char that is not a letter or digit becomes a space,
+	 * so the words in the index end exactly where {@link SearchEngine} and \b in patterns see the ends of words.
+	 * Without this, the simple tokenizer would keep "love’s" as one word, and would not fold the case of non-ASCII letters.
+	 */
+	@NonNull public static String toFullTextDocument(@NonNull String text) {
+		final char[] cs = text.toLowerCase(Locale.getDefault()).toCharArray();
+		for (int i = 0; i < cs.length; i++) {
+			if (!Character.isLetterOrDigit(cs[i])) cs[i] = ' ';
+		}
+		return new String(cs);
+	}
+
 	public static Matcher[] matcherizeTokens(String[] tokens) {
 		final Matcher[] res = new Matcher[tokens.length];
 		for (int i = 0; i < tokens.length; i++) {
@@ -0,0 +1,385 @@
+package yuku.alkitab.base.util;
+
+import android.support.annotation.Nullable;
+import android.util.SparseBooleanArray;
+import yuku.alkitab.util.Ari;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Revindex: an index used for searching quickly.
+ * The index is keyed on the word for searching, and the value is the list of verses' lid.
+ * For the internal version, lid is the KJV verse number, 1..31102.
+ * For revindexes built on the device for installed versions, lid is the position of the verse in that version (starting from 1),
+ * so that versions with different versification can be indexed.
+ *
+ * The file is memory-mapped and queried in place, so loading it takes almost no time and no heap,
+ * and the OS can drop the pages when memory is low and read them again when needed.
+ * See {@link RevIndexBuilder} for how the files are made. All ints are big-endian.
+ *
+ * Header ({@link #HEADER_SIZE} bytes):
+ *   int magic // 0x52566958 ("RViX")
+ *   int format_version // currently 2
+ *   int source_length // length of the yes file this index was built from (-1 for the internal version)
+ *   int source_mtime // last modified time in seconds of the yes file (app version code for the internal version)
+ *   int verse_count // 0 for the internal version
+ *   int word_count
+ *   int suffix_count
+ *   int aris_offset
+ *   int words_offset
+ *   int word_chars_offset
+ *   int suffixes_offset
+ *   int lids_offset
+ *   int file_length
+ *   int[3] reserved
+ *
+ * Sections, at the offsets in the header:
+ *   int[verse_count] aris // ari of lid 1, lid 2, ... in that order
+ *   {
+ *       int word_chars_pos // relative to word_chars_offset
+ *       int lids_pos // relative to lids_offset
+ *       int lid_count
+ *       uint8 word_len
+ *       uint8[3] reserved
+ *   }[word_count] words // sorted by the word (unsigned byte-by-byte), so a whole word can be found by binary search
+ *   byte[] word_chars // the words, stored as 8-bit per character
+ *   int[suffix_count] suffixes // (word index << 8 | start position in the word), sorted by the suffix of the word starting there
+ *   byte[] lids // per word, lid_count varuints (as in BintexWriter.writeVarUint), each the difference to the previous lid of the word (the first to 0)
+ *
+ * Finding all words containing a substring is a binary search in the suffixes plus the number of matches,
+ * instead of a scan over all words. Suffixes end at the end of the word, they do not continue to the next word.
+ */
+public class RevIndex {
+	public static final String TAG = RevIndex.class.getSimpleName();
+
+	static final int MAGIC = 0x52566958;
+	static final int FORMAT_VERSION = 2;
+	static final int HEADER_SIZE = 64;
+	static final int WORD_ENTRY_SIZE = 16;
+
+	private final ByteBuffer buf;
+	private final int verse_count;
+	private final int word_count;
+	private final int suffix_count;
+	private final int aris_offset;
+	private final int words_offset;
+	private final int word_chars_offset;
+	private final int suffixes_offset;
+	private final int lids_offset;
+
+	/** To know whether the file has been replaced since it was mapped */
+	private final long fileLength;
+	private final long fileLastModified;
+
+	private RevIndex(final ByteBuffer buf, final long fileLength, final long fileLastModified) throws IOException {
+		this.buf = buf;
+		this.fileLength = fileLength;
+		this.fileLastModified = fileLastModified;
+
+		if (buf.capacity() < HEADER_SIZE || buf.getInt(0) != MAGIC || buf.getInt(4) != FORMAT_VERSION) {
+			throw new IOException("Not a revindex file or unsupported format version");
+		}
+		if (buf.getInt(48) != buf.capacity()) {
+			throw new IOException("Revindex file is truncated: expected " + buf.getInt(48) + " bytes, actual " + buf.capacity());
+		}
+
+		verse_count = buf.getInt(16);
+		word_count = buf.getInt(20);
+		suffix_count = buf.getInt(24);
+		aris_offset = buf.getInt(28);
+		words_offset = buf.getInt(32);
+		word_chars_offset = buf.getInt(36);
+		suffixes_offset = buf.getInt(40);
+		lids_offset = buf.getInt(44);
+	}
+
+	/**
+	 * Maps the revindex file to memory. Nothing except the header is read.
+	 */
+	public static RevIndex map(final File file) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			final FileChannel channel = raf.getChannel();
+			// the mapping stays valid after the channel is closed
+			return new RevIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), file.length(), file.lastModified());
+		}
+	}
+
+	/**
+	 * @return whether this was mapped from the file in its current state, i.e. the file has not been rebuilt since.
+	 */
+	public boolean isMappedFrom(final File file) {
+		return file.length() == fileLength && file.lastModified() == fileLastModified;
+	}
+
+	/**
+	 * @return the largest valid lid. Lids start from 1.
+	 */
+	public int getMaxLid() {
+		return verse_count == 0 ? LidToAri.MAX_LID : verse_count;
+	}
+
+	/**
+	 * @return 0 when lid is not valid
+	 */
+	public int lidToAri(final int lid) {
+		if (verse_count == 0) {
+			return LidToAri.lidToAri(lid);
+		}
+
+		if (lid <= 0 || lid > verse_count) return 0;
+		return buf.getInt(aris_offset + 4 * (lid - 1));
+	}
+
+	/**
+	 * Makes a bitset of lids that belong to the searched books, so filtering the results by book is one AND operation.
+	 * @return null if all books are searched (no filtering needed).
+	 */
+	@Nullable
+	public BitSet lidMaskForBooks(@Nullable final SparseBooleanArray bookIds) {
+		if (bookIds == null) {
+			return null;
+		}
+
+		final BitSet res = new BitSet(getMaxLid() + 1);
+		boolean wholeBibleSearched = true;
+
+		if (verse_count == 0) {
+			for (int bookId = 0; bookId < LidToAri.BOOK_COUNT; bookId++) {
+				if (bookIds.get(bookId, false)) {
+					res.set(LidToAri.startLidForBookId(bookId), LidToAri.endLidForBookId(bookId) + 1);
+				} else {
+					wholeBibleSearched = false;
+				}
+			}
+		} else {
+			// aris are sorted, so each book is one range of lids
+			int start = 1;
+			while (start <= verse_count) {
+				final int bookId = Ari.toBook(lidToAri(start));
+				int end = start + 1;
+				while (end <= verse_count && Ari.toBook(lidToAri(end)) == bookId) end++;
+
+				if (bookIds.get(bookId, false)) {
+					res.set(start, end);
+				} else {
+					wholeBibleSearched = false;
+				}
+				start = end;
+			}
+		}
+
+		return wholeBibleSearched ? null : res;
+	}
+
+	/**
+	 * Revindexes only contain words made of a-z, hyphens and apostrophes (see ReverseIndexer in AlkitabConverter).
+	 * @param token lowercased token without plusses
+	 * @return false if the token contains other characters, so the revindex can't be used to find it.
+	 */
+	public static boolean isIndexable(final String token) {
+		for (int i = 0, len = token.length(); i < len; i++) {
+			final char c = token.charAt(i);
+			if ((c < 'a' || c > 'z') && c != '-' && c != '\'') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public int getWordCount() {
+		return word_count;
+	}
+
+	public String getWord(final int wordIndex) {
+		final int pos = wordCharsPos(wordIndex);
+		final char[] chars = new char[wordLen(wordIndex)];
+		for (int i = 0; i < chars.length; i++) {
+			chars[i] = (char) (buf.get(pos + i) & 0xff);
+		}
+		return new String(chars);
+	}
+
+	public int getLidCount(final int wordIndex) {
+		return buf.getInt(words_offset + WORD_ENTRY_SIZE * wordIndex + 8);
+	}
+
+	/**
+	 * Binary search for the word that is exactly the same as the specified word.
+	 * @return word index, or -1 if not found.
+	 */
+	public int findWord(final String word) {
+		int lo = 0;
+		int hi = word_count - 1;
+
+		while (lo <= hi) {
+			final int mid = (lo + hi) >>> 1;
+			final int c = compareWithString(wordCharsPos(mid), wordLen(mid), word, false);
+			if (c < 0) {
+				lo = mid + 1;
+			} else if (c > 0) {
+				hi = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Finds all words that contain the specified substring, using the suffix array.
+	 * @return word indexes, sorted ascending, without duplicates.
+	 */
+	public int[] findWordsContaining(final String substring) {
+		if (substring.length() == 0) {
+			final int[] res = new int[word_count];
+			for (int i = 0; i < res.length; i++) res[i] = i;
+			return res;
+		}
+
+		// first suffix that has the substring as prefix or is greater
+		int lo = 0;
+		int hi = suffix_count;
+		while (lo < hi) {
+			final int mid = (lo + hi) >>> 1;
+			if (compareSuffixPrefix(suffix(mid), substring) < 0) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		final int start = lo;
+
+		// first suffix after that does not have the substring as prefix
+		hi = suffix_count;
+		while (lo < hi) {
+			final int mid = (lo + hi) >>> 1;
+			if (compareSuffixPrefix(suffix(mid), substring) <= 0) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		final int end = lo;
+
+		if (start == end) {
+			return new int[0];
+		}
+
+		final int[] wordIndexes = new int[end - start];
+		for (int i = start; i < end; i++) {
+			wordIndexes[i - start] = suffix(i) >>> 8;
+		}
+		Arrays.sort(wordIndexes);
+
+		// remove duplicates (a word can contain the substring more than once)
+		int len = 1;
+		for (int i = 1; i < wordIndexes.length; i++) {
+			if (wordIndexes[i] != wordIndexes[len - 1]) {
+				wordIndexes[len++] = wordIndexes[i];
+			}
+		}
+		return len == wordIndexes.length ? wordIndexes : Arrays.copyOf(wordIndexes, len);
+	}
+
+	/**
+	 * Decodes the lids of a word.
+	 */
+	public int[] getLids(final int wordIndex) {
+		final int lid_count = getLidCount(wordIndex);
+		final int[] res = new int[lid_count];
+
+		int pos = lidsPos(wordIndex);
+		int lid = 0;
+		for (int j = 0; j < lid_count; j++) {
+			final int b = buf.get(pos) & 0xff;
+			lid += readVarUint(pos, b);
+			pos += varUintSize(b);
+			res[j] = lid;
+		}
+		return res;
+	}
+
+	/**
+	 * Decodes the lids of a word directly into a bitset, without allocating anything.
+	 * @param bitmap indexed by lid. The bits for the lids of the word will be set.
+	 */
+	public void orLidsInto(final int wordIndex, final BitSet bitmap) {
+		final int lid_count = getLidCount(wordIndex);
+
+		int pos = lidsPos(wordIndex);
+		int lid = 0;
+		for (int j = 0; j < lid_count; j++) {
+			final int b = buf.get(pos) & 0xff;
+			lid += readVarUint(pos, b);
+			pos += varUintSize(b);
+			bitmap.set(lid);
+		}
+	}
+
+	/**
+	 * Same encoding as {@link yuku.bintex.BintexWriter#writeVarUint(int)}.
+	 * @param b the first byte, at pos
+	 */
+	private int readVarUint(final int pos, final int b) {
+		if ((b & 0x80) == 0) return b;
+		if ((b & 0xc0) == 0x80) return ((b & 0x3f) << 8) | (buf.get(pos + 1) & 0xff);
+		if ((b & 0xe0) == 0xc0) return ((b & 0x1f) << 16) | ((buf.get(pos + 1) & 0xff) << 8) | (buf.get(pos + 2) & 0xff);
+		if ((b & 0xf0) == 0xe0) return ((b & 0x0f) << 24) | ((buf.get(pos + 1) & 0xff) << 16) | ((buf.get(pos + 2) & 0xff) << 8) | (buf.get(pos + 3) & 0xff);
+		return buf.getInt(pos + 1);
+	}
+
+	private static int varUintSize(final int b) {
+		if ((b & 0x80) == 0) return 1;
+		if ((b & 0xc0) == 0x80) return 2;
+		if ((b & 0xe0) == 0xc0) return 3;
+		if ((b & 0xf0) == 0xe0) return 4;
+		return 5;
+	}
+
+	private int wordCharsPos(final int wordIndex) {
+		return word_chars_offset + buf.getInt(words_offset + WORD_ENTRY_SIZE * wordIndex);
+	}
+
+	private int lidsPos(final int wordIndex) {
+		return lids_offset + buf.getInt(words_offset + WORD_ENTRY_SIZE * wordIndex + 4);
+	}
+
+	private int wordLen(final int wordIndex) {
+		return buf.get(words_offset + WORD_ENTRY_SIZE * wordIndex + 12) & 0xff;
+	}
+
+	private int suffix(final int i) {
+		return buf.getInt(suffixes_offset + 4 * i);
+	}
+
+	/**
+	 * Compares the suffix with the string, but only up to the length of the string.
+	 * @return 0 if the suffix starts with the string.
+	 */
+	private int compareSuffixPrefix(final int suffix, final String s) {
+		final int w = suffix >>> 8;
+		final int start = suffix & 0xff;
+		return compareWithString(wordCharsPos(w) + start, wordLen(w) - start, s, true);
+	}
+
+	/**
+	 * @param prefixOnly if true, the bytes are considered equal to the string when they start with the string.
+	 */
+	private int compareWithString(final int pos, final int len, final String s, final boolean prefixOnly) {
+		final int slen = s.length();
+		final int n = Math.min(len, slen);
+		for (int i = 0; i < n; i++) {
+			final int c = (buf.get(pos + i) & 0xff) - s.charAt(i);
+			if (c != 0) return c;
+		}
+		if (prefixOnly && len >= slen) return 0;
+		return len - slen;
+	}
+}
@@ -0,0 +1,512 @@
+package yuku.alkitab.base.util;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import yuku.alkitab.base.App;
+import yuku.alkitab.base.U;
+import yuku.alkitab.base.config.AppConfig;
+import yuku.alkitab.model.Book;
+import yuku.alkitab.model.SingleChapterVerses;
+import yuku.alkitab.model.Version;
+import yuku.alkitab.util.Ari;
+import yuku.alkitab.util.IntArrayList;
+import yuku.bintex.BintexReader;
+import yuku.bintex.BintexWriter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.text.Normalizer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Builds revindexes for installed (non-internal) versions on the device, so they can be searched
+ * without reading the whole Bible text for every query.
+ *
+ * The index is stored next to the yes file, and records the size and modification time of the yes file
+ * it was built from, so it is rebuilt only when the version is updated.
+ * The revindex of the internal version is shipped in the assets in the older, compact format made by AlkitabConverter,
+ * and is converted once per app version into the mappable format. See {@link RevIndex} for the file format.
+ */
+public class RevIndexBuilder {
+	public static final String TAG = RevIndexBuilder.class.getSimpleName();
+
+	/** Must be the same as in ReverseIndexer.createReverseIndex in AlkitabConverter, which makes the revindex of the internal version */
+	static final Pattern p_word = Pattern.compile("[A-Za-z]+(?:[-'][A-Za-z]+)*");
+	static final Pattern p_combiningDiacriticalMarks = Pattern.compile("\\p{InCombiningDiacriticalMarks}+");
+
+	static final Charset ascii = Charset.forName("ascii");
+
+	/** Indexing one version at a time is enough, and it should not compete with the UI for CPU. */
+	private static final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+		final Thread res = new Thread(r, "RevIndexBuilder");
+		res.setPriority(Thread.MIN_PRIORITY);
+		return res;
+	});
+
+	private static final Set<String> building = Collections.synchronizedSet(new HashSet<>());
+
+	/**
+	 * Yes files whose revindex could not be built, with the stamp (see {@link #sourceStamp(File)}) they had then,
+	 * so we do not try again until the file changes or the app restarts.
+	 * This is either because the text can't be indexed (e.g. non-latin scripts), or because of an error
+	 * that would most likely happen again, such as a full disk or a directory that can't be written to.
+	 */
+	private static final Map<String, String> failed = Collections.synchronizedMap(new HashMap<>());
+
+	public static File getRevIndexFile(@NonNull final String yesFilename) {
+		return new File(yesFilename + ".revindex");
+	}
+
+	/**
+	 * @return true if the revindex file exists and was built from the current yes file.
+	 */
+	public static boolean isUpToDate(@NonNull final String yesFilename) {
+		final File yesFile = new File(yesFilename);
+		return isStampedWith(getRevIndexFile(yesFilename), (int) yesFile.length(), sourceMtime(yesFile));
+	}
+
+	/**
+	 * Converts the revindex of the internal version from the assets, if it has not been converted for this app version.
+	 * @return the converted file, or null if the internal version has no revindex.
+	 */
+	@Nullable
+	public static synchronized File getInternalRevIndexFile() {
+		final File res = new File(App.context.getFilesDir(), "revindex/" + AppConfig.get().internalPrefix + ".revindex");
+		final int versionCode = App.getVersionCode();
+		if (isStampedWith(res, -1, versionCode)) {
+			return res;
+		}
+
+		final Map<String, IntArrayList> map;
+		try (InputStream is = new BufferedInputStream(App.context.getAssets().open("internal/" + AppConfig.get().internalPrefix + "_revindex_bt.bt"), 65536)) {
+			map = readCompact(new BintexReader(is));
+		} catch (IOException e) {
+			AppLog.d(TAG, "RevIndex is not available");
+			return null;
+		}
+
+		try {
+			//noinspection ResultOfMethodCallIgnored
+			res.getParentFile().mkdirs();
+			write(res, -1, versionCode, null, map);
+		} catch (IOException e) {
+			AppLog.e(TAG, "Error converting internal revindex", e);
+			return null;
+		}
+
+		return res;
+	}
+
+	/**
+	 * @return true if the revindex file exists, is in the current format, and was made from the source with the specified stamp.
+	 */
+	private static boolean isStampedWith(final File revIndexFile, final int source_length, final int source_mtime) {
+		if (!revIndexFile.exists()) {
+			return false;
+		}
+
+		final byte[] header = new byte[16];
+		try (InputStream is = new FileInputStream(revIndexFile)) {
+			int pos = 0;
+			while (pos < header.length) {
+				final int read = is.read(header, pos, header.length - pos);
+				if (read < 0) return false;
+				pos += read;
+			}
+		} catch (IOException e) {
+			return false;
+		}
+
+		return readInt(header, 0) == RevIndex.MAGIC
+			&& readInt(header, 4) == RevIndex.FORMAT_VERSION
+			&& readInt(header, 8) == source_length
+			&& readInt(header, 12) == source_mtime;
+	}
+
+	/**
+	 * Builds the revindex of the version in the background if it does not exist or is out of date.
+	 * Does nothing if it is already being built.
+	 */
+	public static void buildInBackground(@NonNull final Version version, @NonNull final String yesFilename) {
+		final File yesFile = new File(yesFilename);
+		final String stamp = sourceStamp(yesFile);
+		if (stamp.equals(failed.get(yesFilename)) || !building.add(yesFilename)) {
+			return;
+		}
+
+		executor.execute(() -> {
+			try {
+				if (isUpToDate(yesFilename)) {
+					return;
+				}
+
+				final long startTime = System.currentTimeMillis();
+				if (build(version, yesFile, getRevIndexFile(yesFilename))) {
+					AppLog.d(TAG, "Revindex for " + yesFilename + " built in " + (System.currentTimeMillis() - startTime) + " ms");
+				} else {
+					failed.put(yesFilename, stamp);
+				}
+			} catch (Exception e) {
+				AppLog.e(TAG, "Error building revindex for " + yesFilename, e);
+				failed.put(yesFilename, stamp);
+			} finally {
+				building.remove(yesFilename);
+			}
+		});
+	}
+
+	/**
+	 * Delete the revindex, e.g. when the version is deleted.
+	 */
+	public static void delete(@NonNull final String yesFilename) {
+		//noinspection ResultOfMethodCallIgnored
+		getRevIndexFile(yesFilename).delete();
+		failed.remove(yesFilename);
+	}
+
+	/**
+	 * Builds the revindex of the version in the calling thread.
+	 * @return false if the version can't be indexed. In that case no file is written.
+	 */
+	public static boolean build(final Version version, final File yesFile, final File outFile) throws IOException {
+		// stamp the source before reading it, so a concurrent update makes this index out of date
+		final int source_length = (int) yesFile.length();
+		final int source_mtime = sourceMtime(yesFile);
+
+		final IntArrayList aris = new IntArrayList(32768);
+		final Map<String, IntArrayList> map = new HashMap<>();
+		int versesWithWords = 0;
+
+		for (final Book book : version.getConsecutiveBooks()) {
+			for (int chapter_1 = 1; chapter_1 <= book.chapter_count; chapter_1++) {
+				// every chapter is read once, so none of them needs to be cached
+				final SingleChapterVerses verses = version.loadChapterTextUncached(book, chapter_1);
+				if (verses == null) continue;
+
+				for (int verse_0 = 0, verseCount = verses.getVerseCount(); verse_0 < verseCount; verse_0++) {
+					aris.add(Ari.encode(book.bookId, chapter_1, verse_0 + 1));
+					final int lid = aris.size();
+
+					if (addWords(map, lid, verses.getVerse(verse_0))) {
+						versesWithWords++;
+					}
+				}
+			}
+		}
+
+		// If most verses have no words, the version is not written in latin script, and the index would make searches return nothing.
+		if (versesWithWords < aris.size() / 2) {
+			AppLog.d(TAG, "Not indexing " + yesFile + ", only " + versesWithWords + " of " + aris.size() + " verses have indexable words");
+			return false;
+		}
+
+		write(outFile, source_length, source_mtime, aris, map);
+
+		return true;
+	}
+
+	/**
+	 * Tokenizes the verse text the same way as ReverseIndexer.createReverseIndex.
+	 * @return whether the verse has any word
+	 */
+	static boolean addWords(final Map<String, IntArrayList> map, final int lid, @Nullable final String verseText) {
+		if (verseText == null) return false;
+
+		String text = Normalizer.normalize(U.removeSpecialCodes(verseText), Normalizer.Form.NFD);
+		text = p_combiningDiacriticalMarks.matcher(text).replaceAll("");
+		text = text.toLowerCase();
+
+		boolean hasWords = false;
+		final Matcher m = p_word.matcher(text);
+		while (m.find()) {
+			final String word = m.group();
+			if (word.length() > 0xff) continue; // word_len is uint8
+
+			IntArrayList lids = map.get(word);
+			if (lids == null) {
+				lids = new IntArrayList(4);
+				map.put(word, lids);
+			}
+
+			// lids come in increasing order, so checking the last one is enough to prevent duplicates
+			if (lids.size() == 0 || lids.get(lids.size() - 1) != lid) {
+				lids.add(lid);
+			}
+			hasWords = true;
+		}
+		return hasWords;
+	}
+
+	/**
+	 * Reads the compact revindex format made by ReverseIndexer.createReverseIndex in AlkitabConverter:
+	 *   int total_word_count
+	 *   {
+	 *      uint8 word_len
+	 *      int word_by_len_count // the number of words having length of word_len
+	 *      {
+	 *          byte[word_len] word // the word itself, stored as 8-bit per character
+	 *          uint16 lid_count // the number of verses having this word
+	 *          byte[] verse_list // see below
+	 *      }[word_by_len_count]
+	 *   }[] // until total_word_count is taken
+	 *
+	 * The verses in verse_list are stored in either 8bit or 16bit, depending on the difference to the last entry before the current entry.
+	 * The first entry on the list is always 16 bit.
+	 * If one verse is specified in 16 bits, the 15-bit LSB is the verse lid itself (max 32767, although 31102 is the real max)
+	 * in binary: 1xxxxxxx xxxxxxxx where x is the absolute verse lid as 15 bit uint.
+	 * If one verse is specified in 8 bits, the 7-bit LSB is the difference between this verse and the last verse.
+	 * in binary: 0ddddddd where d is the relative verse lid as 7 bit uint.
+	 * For example, if a word is located at lids [0xff, 0x100, 0x300, 0x305], the stored data in the disk will be
+	 * in bytes: 0x80, 0xff, 0x01, 0x83, 0x00, 0x05.
+	 */
+	static Map<String, IntArrayList> readCompact(final BintexReader br) throws IOException {
+		final int total_word_count = br.readInt();
+		final Map<String, IntArrayList> res = new HashMap<>(total_word_count * 2);
+
+		final byte[] word = new byte[256];
+		while (res.size() < total_word_count) {
+			final int word_len = br.readUint8();
+			final int word_by_len_count = br.readInt();
+			if (word_len < 0) {
+				throw new IOException("Revindex data is truncated at word " + res.size() + " of " + total_word_count);
+			}
+
+			for (int i = 0; i < word_by_len_count; i++) {
+				if (br.readRaw(word, 0, word_len) != word_len) {
+					throw new IOException("Revindex data is truncated at word " + res.size() + " of " + total_word_count);
+				}
+
+				final int lid_count = br.readUint16();
+				final IntArrayList lids = new IntArrayList(lid_count);
+				int last_lid = 0;
+				for (int j = 0; j < lid_count; j++) {
+					final int h = br.readUint8();
+					final int lid;
+					if (h < 0x80) {
+						lid = last_lid + h;
+					} else {
+						lid = ((h << 8) | br.readUint8()) & 0x7fff;
+					}
+					lids.add(lid);
+					last_lid = lid;
+				}
+
+				res.put(new String(word, 0, word_len, ascii), lids);
+			}
+		}
+
+		return res;
+	}
+
+	/**
+	 * Writes the revindex in the format described in {@link RevIndex}, to a temporary file first
+	 * so that a mapped index is never seen half-written.
+	 * @param aris ari for each lid (lid 1 is at index 0), or null for the internal version.
+	 */
+	static void write(final File outFile, final int source_length, final int source_mtime, @Nullable final IntArrayList aris, final Map<String, IntArrayList> map) throws IOException {
+		// sort the words; all characters are ascii, so String order is the same as unsigned byte order
+		final TreeMap<String, IntArrayList> sorted = new TreeMap<>(map);
+		final int word_count = sorted.size();
+
+		final byte[][] words = new byte[word_count][];
+		final int[] wordCharsPos = new int[word_count];
+		final int[] lidsPos = new int[word_count];
+		final int[] lidCounts = new int[word_count];
+
+		int word_chars_length = 0;
+		final ByteArrayOutputStream lidsBuf = new ByteArrayOutputStream(1 << 20);
+		final BintexWriter lidsWriter = new BintexWriter(lidsBuf);
+		{
+			int i = 0;
+			for (final Map.Entry<String, IntArrayList> e : sorted.entrySet()) {
+				words[i] = e.getKey().getBytes(ascii);
+				wordCharsPos[i] = word_chars_length;
+				word_chars_length += words[i].length;
+
+				final IntArrayList lids = e.getValue();
+				lidsPos[i] = lidsWriter.getPos();
+				lidCounts[i] = lids.size();
+				int last_lid = 0;
+				for (int j = 0, len = lids.size(); j < len; j++) {
+					final int lid = lids.get(j);
+					lidsWriter.writeVarUint(lid - last_lid);
+					last_lid = lid;
+				}
+				i++;
+			}
+		}
+
+		// build suffix array
+		final int[] suffixes = new int[word_chars_length];
+		{
+			int k = 0;
+			for (int i = 0; i < word_count; i++) {
+				for (int start = 0; start < words[i].length; start++) {
+					suffixes[k++] = (i << 8) | start;
+				}
+			}
+		}
+		new IntSorter() {
+			@Override
+			int compare(final int a, final int b) {
+				final byte[] wa = words[a >>> 8];
+				final byte[] wb = words[b >>> 8];
+				final int sa = a & 0xff;
+				final int sb = b & 0xff;
+				final int n = Math.min(wa.length - sa, wb.length - sb);
+				for (int i = 0; i < n; i++) {
+					final int c = (wa[sa + i] & 0xff) - (wb[sb + i] & 0xff);
+					if (c != 0) return c;
+				}
+				return (wa.length - sa) - (wb.length - sb);
+			}
+		}.sort(suffixes);
+
+		final int verse_count = aris == null ? 0 : aris.size();
+		final int aris_offset = RevIndex.HEADER_SIZE;
+		final int words_offset = aris_offset + 4 * verse_count;
+		final int word_chars_offset = words_offset + RevIndex.WORD_ENTRY_SIZE * word_count;
+		final int word_chars_padding = (4 - (word_chars_length & 3)) & 3;
+		final int suffixes_offset = word_chars_offset + word_chars_length + word_chars_padding;
+		final int lids_offset = suffixes_offset + 4 * suffixes.length;
+		final int file_length = lids_offset + lidsWriter.getPos();
+
+		final File tmpFile = new File(outFile.getPath() + ".tmp");
+		try (BintexWriter bw = new BintexWriter(new BufferedOutputStream(new FileOutputStream(tmpFile), 65536))) {
+			bw.writeInt(RevIndex.MAGIC);
+			bw.writeInt(RevIndex.FORMAT_VERSION);
+			bw.writeInt(source_length);
+			bw.writeInt(source_mtime);
+			bw.writeInt(verse_count);
+			bw.writeInt(word_count);
+			bw.writeInt(suffixes.length);
+			bw.writeInt(aris_offset);
+			bw.writeInt(words_offset);
+			bw.writeInt(word_chars_offset);
+			bw.writeInt(suffixes_offset);
+			bw.writeInt(lids_offset);
+			bw.writeInt(file_length);
+			while (bw.getPos() < RevIndex.HEADER_SIZE) {
+				bw.writeInt(0);
+			}
+
+			for (int i = 0; i < verse_count; i++) {
+				bw.writeInt(aris.get(i));
+			}
+
+			for (int i = 0; i < word_count; i++) {
+				bw.writeInt(wordCharsPos[i]);
+				bw.writeInt(lidsPos[i]);
+				bw.writeInt(lidCounts[i]);
+				bw.writeInt(words[i].length << 24);
+			}
+
+			for (final byte[] word : words) {
+				bw.writeRaw(word);
+			}
+			for (int i = 0; i < word_chars_padding; i++) {
+				bw.writeUint8(0);
+			}
+
+			for (final int suffix : suffixes) {
+				bw.writeInt(suffix);
+			}
+
+			lidsBuf.writeTo(bw.getOutputStream());
+		}
+
+		if (!tmpFile.renameTo(outFile)) {
+			//noinspection ResultOfMethodCallIgnored
+			tmpFile.delete();
+			throw new IOException("Can't rename " + tmpFile + " to " + outFile);
+		}
+	}
+
+	private static String sourceStamp(final File yesFile) {
+		return yesFile.length() + ":" + yesFile.lastModified();
+	}
+
+	private static int sourceMtime(final File yesFile) {
+		return (int) (yesFile.lastModified() / 1000);
+	}
+
+	private static int readInt(final byte[] data, final int pos) {
+		return ((data[pos] & 0xff) << 24) | ((data[pos + 1] & 0xff) << 16) | ((data[pos + 2] & 0xff) << 8) | (data[pos + 3] & 0xff);
+	}
+
+	/**
+	 * Sorts int arrays using a custom comparison, without boxing.
+	 */
+	static abstract class IntSorter {
+		abstract int compare(int a, int b);
+
+		void sort(final int[] a) {
+			sort(a, 0, a.length - 1);
+		}
+
+		private void sort(final int[] a, int lo, int hi) {
+			while (hi - lo > 16) {
+				// median of three as pivot
+				final int mid = (lo + hi) >>> 1;
+				if (compare(a[mid], a[lo]) < 0) swap(a, mid, lo);
+				if (compare(a[hi], a[lo]) < 0) swap(a, hi, lo);
+				if (compare(a[hi], a[mid]) < 0) swap(a, hi, mid);
+				final int pivot = a[mid];
+
+				int i = lo;
+				int j = hi;
+				while (i <= j) {
+					while (compare(a[i], pivot) < 0) i++;
+					while (compare(a[j], pivot) > 0) j--;
+					if (i <= j) {
+						swap(a, i, j);
+						i++;
+						j--;
+					}
+				}
+
+				// recurse into the smaller part, loop on the larger part
+				if (j - lo < hi - i) {
+					sort(a, lo, j);
+					lo = i;
+				} else {
+					sort(a, i, hi);
+					hi = j;
+				}
+			}
+
+			// insertion sort for small ranges
+			for (int i = lo + 1; i <= hi; i++) {
+				final int v = a[i];
+				int j = i - 1;
+				while (j >= lo && compare(a[j], v) > 0) {
+					a[j + 1] = a[j];
+					j--;
+				}
+				a[j + 1] = v;
+			}
+		}
+
+		private static void swap(final int[] a, final int i, final int j) {
+			final int t = a[i];
+			a[i] = a[j];
+			a[j] = t;
+		}
+	}
+}
@@ -1,6 +1,8 @@
 package yuku.alkitab.base.util;
 
 import android.graphics.Typeface;
+import android.os.CancellationSignal;
+import android.os.OperationCanceledException;
 import android.os.Parcel;
 import android.os.Parcelable;
 import android.support.annotation.NonNull;
@@ -11,26 +13,28 @@ import android.text.style.ForegroundColorSpan;
 import android.text.style.StyleSpan;
 import android.util.SparseBooleanArray;
 import android.util.TimingLogger;
-import yuku.alkitab.base.App;
-import yuku.alkitab.base.config.AppConfig;
 import yuku.alkitab.debug.BuildConfig;
 import yuku.alkitab.model.Book;
+import yuku.alkitab.model.ChapterCharView;
 import yuku.alkitab.model.SingleChapterVerses;
 import yuku.alkitab.model.Version;
 import yuku.alkitab.util.Ari;
 import yuku.alkitab.util.IntArrayList;
-import yuku.bintex.BintexReader;
 
-import java.io.BufferedInputStream;
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.lang.ref.SoftReference;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.BitSet;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.Semaphore;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 public class SearchEngine {
 	public static final String TAG = SearchEngine.class.getSimpleName();
@@ -62,12 +66,6 @@ public class SearchEngine {
 		};
 	}
 
-	static class RevIndex extends HashMap<String, int[]> {
-		public RevIndex() {
-			super(32768);
-		}
-	}
-
 	/**
 	 * Contains processed tokens that is more efficient to be passed in to methods here such as
 	 * {@link #hilite(CharSequence, ReadyTokens, int)} and {@link #satisfiesTokens(String, ReadyTokens)}.
@@ -105,10 +103,75 @@ public class SearchEngine {
 		}
 	}
 
-	private static SoftReference<RevIndex> cache_revIndex;
-	private static Semaphore revIndexLoading = new Semaphore(1);
+	/**
+	 * Chapter text buffer for each thread doing grep search, so no String is made for the chapters.
+	 */
+	private static final ThreadLocal<ChapterCharView> grepView_ = new ThreadLocal<ChapterCharView>() {
+		@Override
+		protected ChapterCharView initialValue() {
+			return new ChapterCharView();
+		}
+	};
+
+	/**
+	 * Mapped revindexes, by revindex file path. They are kept for the lifetime of the process,
+	 * since a mapping costs almost no heap, and the OS manages the pages.
+	 */
+	private static final ConcurrentHashMap<String, RevIndex> mappedRevIndexes = new ConcurrentHashMap<>();
+
+	/**
+	 * Grep is split into one task per book (or per book of the previous token result), and the tasks are run
+	 * on this many threads. ForkJoinPool is not available on all API levels we support, so a plain bounded
+	 * thread pool is used.
+	 */
+	static final int GREP_THREAD_COUNT = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+	private static ExecutorService grepExecutor;
+
+	/**
+	 * @return null if grep should be done serially in the calling thread.
+	 */
+	private static synchronized ExecutorService getGrepExecutor() {
+		if (GREP_THREAD_COUNT <= 1) {
+			return null;
+		}
+
+		if (grepExecutor == null) {
+			final ThreadPoolExecutor executor = new ThreadPoolExecutor(GREP_THREAD_COUNT, GREP_THREAD_COUNT, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> new Thread(r, "SearchEngine-grep"));
+			executor.allowCoreThreadTimeOut(true);
+			grepExecutor = executor;
+		}
+		return grepExecutor;
+	}
 
 	public static IntArrayList searchByGrep(final Version version, final Query query) {
+		return searchByGrep(version, query, null);
+	}
+
+	/**
+	 * Same as {@link #searchByGrep(Version, Query)}, but can be cancelled.
+	 * The books are searched in parallel, but the result is exactly the same as searching them one by one.
+	 * @throws OperationCanceledException if the cancellationSignal is cancelled before the search finishes.
+	 */
+	public static IntArrayList searchByGrep(final Version version, final Query query, @Nullable final CancellationSignal cancellationSignal) {
+		return searchByGrep(version, query, null, cancellationSignal, getGrepExecutor());
+	}
+
+	/**
+	 * Same as {@link #searchByGrep(Version, Query, CancellationSignal)}, but only looks at the given verses,
+	 * for a query that narrows down a previous one (see {@link QueryTokenizer#isNarrowing(String[], String[])}),
+	 * so only the chapters in the previous result are read, instead of all the selected books.
+	 * @param within the result of the previous query, sorted by ari. The books of the query are not checked again.
+	 * @throws OperationCanceledException if the cancellationSignal is cancelled before the search finishes.
+	 */
+	public static IntArrayList searchByGrepWithin(final Version version, final Query query, @NonNull final IntArrayList within, @Nullable final CancellationSignal cancellationSignal) {
+		return searchByGrep(version, query, within, cancellationSignal, getGrepExecutor());
+	}
+
+	/**
+	 * @param within if not null, only these verses are searched.
+	 * @param executor where the per-book tasks are run. If null, everything is done in the calling thread.
+	 */
+	static IntArrayList searchByGrep(final Version version, final Query query, @Nullable final IntArrayList within, @Nullable final CancellationSignal cancellationSignal, @Nullable final ExecutorService executor) {
 		String[] tokens = QueryTokenizer.tokenize(query.query_string);
 
 		// sort by word length, then alphabetically
@@ -138,14 +201,14 @@ public class SearchEngine {
 		}
 
 		// really search
-		IntArrayList result = null;
+		IntArrayList result = within;
 
 		for (final String token : tokens) {
 			final IntArrayList prev = result;
 
 			{
 				long ms = System.currentTimeMillis();
-				result = searchByGrepInside(version, token, prev, query.bookIds);
+				result = searchByGrepInside(version, token, prev, query.bookIds, cancellationSignal, executor);
 				AppLog.d(TAG, "search token '" + token + "' needed: " + (System.currentTimeMillis() - ms) + " ms");
 			}
 
@@ -218,52 +281,134 @@ public class SearchEngine {
 		}
 	}
 
-	static IntArrayList searchByGrepInside(final Version version, String token, final IntArrayList source, final SparseBooleanArray bookIds) {
-		final IntArrayList res = new IntArrayList();
+	static IntArrayList searchByGrepInside(final Version version, String token, final IntArrayList source, final SparseBooleanArray bookIds, @Nullable final CancellationSignal cancellationSignal, @Nullable final ExecutorService executor) {
 		final boolean hasPlus = QueryTokenizer.isPlussedToken(token);
 
 		if (hasPlus) {
 			token = QueryTokenizer.tokenWithoutPlus(token);
 		}
 
+		final String _token = token;
+		final List<Callable<IntArrayList>> tasks = new ArrayList<>();
+
 		if (source == null) {
-			for (Book book: version.getConsecutiveBooks()) {
+			for (final Book book: version.getConsecutiveBooks()) {
 				if (!bookIds.get(book.bookId, false)) {
 					continue; // the book is not included in selected books to be searched
 				}
 
-				for (int chapter_1 = 1; chapter_1 <= book.chapter_count; chapter_1++) {
-					// try to find it wholly in a chapter
-					final int ariBc = Ari.encode(book.bookId, chapter_1, 0);
-					searchByGrepForOneChapter(version, book, chapter_1, token, hasPlus, ariBc, res);
-				}
+				tasks.add(() -> {
+					final IntArrayList res = new IntArrayList();
 
-				if (BuildConfig.DEBUG) AppLog.d(TAG, "searchByGrepInside book " + book.shortName + " done. res.size = " + res.size());
+					for (int chapter_1 = 1; chapter_1 <= book.chapter_count; chapter_1++) {
+						if (cancellationSignal != null) cancellationSignal.throwIfCanceled();
+
+						// try to find it wholly in a chapter
+						final int ariBc = Ari.encode(book.bookId, chapter_1, 0);
+						searchByGrepForOneChapter(version, book, chapter_1, _token, hasPlus, ariBc, res, grepView_.get());
+					}
+
+					if (BuildConfig.DEBUG) AppLog.d(TAG, "searchByGrepInside book " + book.shortName + " done. res.size = " + res.size());
+					return res;
+				});
 			}
 		} else {
-			// search only on book-chapters that are in the source
-			int count = 0; // for stats
-
+			// search only on book-chapters that are in the source, grouped per book
 			int[] ppos = new int[1];
 			int curAriBc = 0x000000;
+			IntArrayList bookAriBcs = null;
 
 			while (true) {
 				curAriBc = nextAri(source, ppos, curAriBc);
 				if (curAriBc == 0) break; // no more
 
-				// No need to check null book, because we go here only after searching a previous token which is based on
-				// getConsecutiveBooks, which is impossible to have null books.
-				final Book book = version.getBook(Ari.toBook(curAriBc));
-				final int chapter_1 = Ari.toChapter(curAriBc);
+				if (bookAriBcs == null || Ari.toBook(bookAriBcs.get(0)) != Ari.toBook(curAriBc)) {
+					final IntArrayList ariBcs = bookAriBcs = new IntArrayList();
+
+					tasks.add(() -> {
+						final IntArrayList res = new IntArrayList();
 
-				searchByGrepForOneChapter(version, book, chapter_1, token, hasPlus, curAriBc, res);
+						// No need to check null book, because we go here only after searching a previous token which is based on
+						// getConsecutiveBooks, which is impossible to have null books.
+						final Book book = version.getBook(Ari.toBook(ariBcs.get(0)));
 
-				count++;
+						for (int i = 0, len = ariBcs.size(); i < len; i++) {
+							if (cancellationSignal != null) cancellationSignal.throwIfCanceled();
+
+							final int ariBc = ariBcs.get(i);
+							searchByGrepForOneChapter(version, book, Ari.toChapter(ariBc), _token, hasPlus, ariBc, res, grepView_.get());
+						}
+
+						return res;
+					});
+				}
+
+				bookAriBcs.add(curAriBc);
 			}
 
-			if (BuildConfig.DEBUG) AppLog.d(TAG, "searchByGrepInside book with source " + source.size() + " needed to read as many as " + count + " book-chapter. res.size=" + res.size());
+			if (BuildConfig.DEBUG) AppLog.d(TAG, "searchByGrepInside book with source " + source.size() + " needs to read " + tasks.size() + " books");
 		}
 
+		return runGrepTasks(tasks, cancellationSignal, executor);
+	}
+
+	/**
+	 * Runs the tasks and concatenates their results in the order of the tasks.
+	 * Since each task covers books or chapters later than the previous task, the result is sorted by ari.
+	 */
+	private static IntArrayList runGrepTasks(final List<Callable<IntArrayList>> tasks, @Nullable final CancellationSignal cancellationSignal, @Nullable final ExecutorService executor) {
+		final IntArrayList[] results = new IntArrayList[tasks.size()];
+
+		if (executor == null || tasks.size() <= 1) {
+			for (int i = 0; i < results.length; i++) {
+				try {
+					results[i] = tasks.get(i).call();
+				} catch (RuntimeException e) {
+					throw e;
+				} catch (Exception e) {
+					throw new RuntimeException(e);
+				}
+			}
+		} else {
+			final List<Future<IntArrayList>> futures = new ArrayList<>(tasks.size());
+			for (final Callable<IntArrayList> task : tasks) {
+				futures.add(executor.submit(task));
+			}
+
+			try {
+				for (int i = 0; i < results.length; i++) {
+					results[i] = futures.get(i).get();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new OperationCanceledException();
+			} catch (ExecutionException e) {
+				final Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+				if (cause instanceof Error) throw (Error) cause;
+				throw new RuntimeException(cause);
+			} finally {
+				// no-op for the finished ones, prevents the pending ones from running when we bail out early
+				for (final Future<IntArrayList> future : futures) {
+					future.cancel(false);
+				}
+			}
+		}
+
+		if (cancellationSignal != null) cancellationSignal.throwIfCanceled();
+
+		int size = 0;
+		for (final IntArrayList result : results) {
+			size += result.size();
+		}
+
+		final IntArrayList res = new IntArrayList(Math.max(16, size));
+		for (final IntArrayList result : results) {
+			final int[] buf = result.buffer();
+			for (int i = 0, len = result.size(); i < len; i++) {
+				res.add(buf[i]);
+			}
+		}
 		return res;
 	}
 
@@ -273,14 +418,14 @@ public class SearchEngine {
 	 * @param ariBc book-chapter ari, with verse must be set to 0
 	 * @param hasPlus whether the token had plus
 	 */
-	private static void searchByGrepForOneChapter(final Version version, final Book book, final int chapter_1, final String token, final boolean hasPlus, final int ariBc, final IntArrayList res) {
-		// This is a string of one chapter with verses joined by 0x0a ('\n')
-		final String oneChapter = version.loadChapterTextLowercasedWithoutSplit(book, chapter_1);
-		if (oneChapter == null) {
+	/**
+	 * @param oneChapter reusable buffer for the text of the chapter, with verses joined by 0x0a ('\n')
+	 */
+	private static void searchByGrepForOneChapter(final Version version, final Book book, final int chapter_1, final String token, final boolean hasPlus, final int ariBc, final IntArrayList res, final ChapterCharView oneChapter) {
+		if (!version.loadChapterTextLowercasedInto(book, chapter_1, oneChapter)) {
 			return;
 		}
 
-		int verse_0 = 0;
 		int lastV = -1;
 
 		// Initial search
@@ -308,63 +453,50 @@ public class SearchEngine {
 			consumedLength = token.length();
 		}
 
-		if (posToken == -1) {
-			// initial search does not return results. It means the whole chapter does not contain the token.
-			return;
-		}
-
-		int posN = oneChapter.indexOf(0x0a);
+		while (posToken != -1) {
+			final int verse_0 = oneChapter.getVerseIndexAt(posToken);
+			if (verse_0 != lastV) {
+				res.add(ariBc + verse_0 + 1); // +1 to make it verse_1
+				lastV = verse_0;
+			}
 
-		while (true) {
-			if (posN < posToken) {
-				verse_0++;
-				posN = oneChapter.indexOf(0x0a, posN + 1);
-				if (posN == -1) {
-					return;
-				}
-			} else {
-				if (verse_0 != lastV) {
-					res.add(ariBc + verse_0 + 1); // +1 to make it verse_1
-					lastV = verse_0;
-				}
-				if (hasPlus) {
-					if (multiword != null) {
-						posToken = indexOfWholeMultiword(oneChapter, multiword, posToken + consumedLength, true, consumedLengthPtr);
-						consumedLength = consumedLengthPtr[0];
-					} else {
-						posToken = indexOfWholeWord(oneChapter, token, posToken + consumedLength);
-						consumedLength = token.length();
-					}
+			if (hasPlus) {
+				if (multiword != null) {
+					posToken = indexOfWholeMultiword(oneChapter, multiword, posToken + consumedLength, true, consumedLengthPtr);
+					consumedLength = consumedLengthPtr[0];
 				} else {
-					posToken = oneChapter.indexOf(token, posToken + consumedLength);
+					posToken = indexOfWholeWord(oneChapter, token, posToken + consumedLength);
 					consumedLength = token.length();
 				}
-				if (posToken == -1) {
-					return;
-				}
+			} else {
+				posToken = oneChapter.indexOf(token, posToken + consumedLength);
+				consumedLength = token.length();
 			}
 		}
 	}
 
+	/**
+	 * Searches the internal version using its revindex.
+	 */
 	public static IntArrayList searchByRevIndex(final Version version, final Query query) {
+		return searchByRevIndex(version, query, null, null);
+	}
+
+	/**
+	 * Searches using the revindex of the version, falling back to {@link #searchByGrep(Version, Query, CancellationSignal)}
+	 * if the revindex is not available (yet) or can't answer the query.
+	 * @param yesFilename the yes file of the version, or null for the internal version.
+	 * @throws OperationCanceledException if the search falls back to grep and the cancellationSignal is cancelled.
+	 */
+	public static IntArrayList searchByRevIndex(final Version version, final Query query, @Nullable final String yesFilename, @Nullable final CancellationSignal cancellationSignal) {
 		TimingLogger timing = new TimingLogger("RevIndex", "searchByRevIndex");
-		RevIndex revIndex;
-		revIndexLoading.acquireUninterruptibly();
-		try {
-			revIndex = loadRevIndex();
-			if (revIndex == null) {
-				AppLog.w(TAG, "Cannot load revindex (internal error)!");
-				return searchByGrep(version, query);
-			}
-		} finally {
-			revIndexLoading.release();
+		final RevIndex revIndex = loadRevIndex(version, yesFilename);
+		if (revIndex == null) {
+			AppLog.w(TAG, "Cannot load revindex, using grep instead");
+			return searchByGrep(version, query, cancellationSignal);
 		}
 		timing.addSplit("Load rev index");
 
-		boolean[] passBitmapOr = new boolean[32768];
-		boolean[] passBitmapAnd = new boolean[32768];
-		Arrays.fill(passBitmapAnd, true);
-
 		final ReadyTokens rt = new ReadyTokens(QueryTokenizer.tokenize(query.query_string));
 
 		if (BuildConfig.DEBUG) {
@@ -381,20 +513,17 @@ public class SearchEngine {
 
 		timing.addSplit("Tokenize query");
 
-		// optimization, if user doesn't filter any books
-		boolean wholeBibleSearched = true;
-		boolean[] searchedBookIds = new boolean[66];
-		if (query.bookIds == null) {
-			Arrays.fill(searchedBookIds, true);
-		} else {
-			for (int i = 0; i < 66; i++) {
-				searchedBookIds[i] = query.bookIds.get(i, false);
-				if (!searchedBookIds[i]) {
-					wholeBibleSearched = false;
-				}
+		for (int i = 0; i < rt.token_count; i++) {
+			if (rt.multiwords_tokens[i] == null && !RevIndex.isIndexable(rt.tokens[i])) {
+				AppLog.d(TAG, "Token '" + rt.tokens[i] + "' can't be in revindex, using grep instead");
+				return searchByGrep(version, query, cancellationSignal);
 			}
 		}
 
+		// Bitsets indexed by lid. null passBitmapAnd means no token has been processed yet (all lids pass).
+		BitSet passBitmapAnd = null;
+		final BitSet passBitmapOr = new BitSet(revIndex.getMaxLid() + 1);
+
 		for (int i = 0; i < rt.token_count; i++) {
 			if (rt.multiwords_tokens[i] != null) {
 				// This is multiword token, handled separately below
@@ -404,55 +533,50 @@ public class SearchEngine {
 			final String token_bare = rt.tokens[i];
 			final boolean plussed = rt.hasPlusses[i];
 
-			Arrays.fill(passBitmapOr, false);
-
-			for (Map.Entry<String, int[]> e : revIndex.entrySet()) {
-				String word = e.getKey();
+			passBitmapOr.clear();
 
-				boolean match = false;
-				if (plussed) {
-					if (word.equals(token_bare)) match = true;
-				} else {
-					if (word.contains(token_bare)) match = true;
+			if (plussed) {
+				final int wordIndex = revIndex.findWord(token_bare);
+				if (wordIndex >= 0) {
+					revIndex.orLidsInto(wordIndex, passBitmapOr);
 				}
-
-				if (match) {
-					int[] lids = e.getValue();
-					for (int lid : lids) {
-						passBitmapOr[lid] = true; // OR operation
-					}
+			} else {
+				for (final int wordIndex : revIndex.findWordsContaining(token_bare)) {
+					revIndex.orLidsInto(wordIndex, passBitmapOr); // OR operation
 				}
 			}
 
-			int c = 0;
-			for (boolean b : passBitmapOr) {
-				if (b) c++;
-			}
-			timing.addSplit("gather lid for token '" + token_bare + "' (" + c + ")");
+			timing.addSplit("gather lid for token '" + token_bare + "' (" + passBitmapOr.cardinality() + ")");
 
 			// AND operation with existing word(s)
-			for (int j = passBitmapOr.length - 1; j >= 0; j--) {
-				passBitmapAnd[j] &= passBitmapOr[j];
+			if (passBitmapAnd == null) {
+				passBitmapAnd = (BitSet) passBitmapOr.clone();
+			} else {
+				passBitmapAnd.and(passBitmapOr);
 			}
 			timing.addSplit("AND operation");
-		}
 
-		IntArrayList res = new IntArrayList();
-		for (int i = 0, len = passBitmapAnd.length; i < len; i++) {
-			if (passBitmapAnd[i]) {
-				if (wholeBibleSearched) {
-					int ari = LidToAri.lidToAri(i);
-					if (ari > 0) res.add(ari);
-				} else {
-					// check first if this lid is in the searched portion
-					int bookId = LidToAri.bookIdForLid(i);
-					if (bookId >= 0 && searchedBookIds[bookId]) {
-						int ari = LidToAri.lidToAri(i);
-						if (ari > 0) res.add(ari);
-					}
-				}
+			if (passBitmapAnd.isEmpty()) {
+				break; // no need to look at the other tokens
 			}
 		}
+
+		if (passBitmapAnd == null) { // only multiword tokens
+			passBitmapAnd = new BitSet(revIndex.getMaxLid() + 1);
+			passBitmapAnd.set(1, revIndex.getMaxLid() + 1);
+		}
+
+		// optimization, if user doesn't filter any books, no need to AND with the book mask
+		final BitSet searchedLids = revIndex.lidMaskForBooks(query.bookIds);
+		if (searchedLids != null) {
+			passBitmapAnd.and(searchedLids);
+		}
+
+		IntArrayList res = new IntArrayList(Math.max(16, passBitmapAnd.cardinality()));
+		for (int lid = passBitmapAnd.nextSetBit(0); lid >= 0; lid = passBitmapAnd.nextSetBit(lid + 1)) {
+			final int ari = revIndex.lidToAri(lid);
+			if (ari > 0) res.add(ari);
+		}
 		timing.addSplit("convert matching lids to aris (" + res.size() + ")");
 
 		// last check: whether multiword tokens are all matching. No way to find this except by loading the text
@@ -517,111 +641,57 @@ public class SearchEngine {
 		return res;
 	}
 
-	public static void preloadRevIndex() {
+	/**
+	 * Loads the revindex in the background, so the first search is fast.
+	 * For installed versions, this starts building the revindex if it does not exist or is out of date.
+	 * @param yesFilename the yes file of the version, or null for the internal version.
+	 */
+	public static void preloadRevIndex(final Version version, @Nullable final String yesFilename) {
 		Background.run(() -> {
 			TimingLogger timing = new TimingLogger("RevIndex", "preloadRevIndex");
-			revIndexLoading.acquireUninterruptibly();
-			try {
-				loadRevIndex();
-				timing.addSplit("loadRevIndex");
-			} finally {
-				revIndexLoading.release();
-				timing.dumpToLog();
-			}
+			loadRevIndex(version, yesFilename);
+			timing.addSplit("loadRevIndex");
+			timing.dumpToLog();
 		});
 	}
 
 	/**
-	 * Revindex: an index used for searching quickly.
-	 * The index is keyed on the word for searching, and the value is the list of verses' lid (KJV verse number, 1..31102).
-	 *
-	 * Format of the Revindex file:
-	 *   int total_word_count
-	 *   {
-	 *      uint8 word_len
-	 *      int word_by_len_count // the number of words having length of word_len
-	 *      {
-	 *          byte[word_len] word // the word itself, stored as 8-bit per character
-	 *          uint16 lid_count // the number of verses having this word
-	 *          byte[] verse_list // see below
-	 *      }[word_by_len_count]
-	 *   }[] // until total_word_count is taken
-	 *
-	 * The verses in verse_list are stored in either 8bit or 16bit, depending on the difference to the last entry before the current entry.
-	 * The first entry on the list is always 16 bit.
-	 * If one verse is specified in 16 bits, the 15-bit LSB is the verse lid itself (max 32767, although 31102 is the real max)
-	 * in binary: 1xxxxxxx xxxxxxxx where x is the absolute verse lid as 15 bit uint.
-	 * If one verse is specified in 8 bits, the 7-bit LSB is the difference between this verse and the last verse.
-	 * in binary: 0ddddddd where d is the relative verse lid as 7 bit uint.
-	 * For example, if a word is located at lids [0xff, 0x100, 0x300, 0x305], the stored data in the disk will be
-	 * in bytes: 0x80, 0xff, 0x01, 0x83, 0x00, 0x05.
+	 * Maps the revindex of the internal version (yesFilename == null), converted from the assets,
+	 * or of an installed version from the file made by {@link RevIndexBuilder}.
+	 * See {@link RevIndex} for the file format.
+	 * @return null if not available. For installed versions, it will be built in the background.
 	 */
-	private static RevIndex loadRevIndex() {
-		if (cache_revIndex != null) {
-			RevIndex res = cache_revIndex.get();
-			if (res != null) {
-				return res;
+	@Nullable
+	private static RevIndex loadRevIndex(final Version version, @Nullable final String yesFilename) {
+		final File revIndexFile;
+		if (yesFilename == null) {
+			revIndexFile = RevIndexBuilder.getInternalRevIndexFile();
+			if (revIndexFile == null) {
+				return null;
 			}
+		} else {
+			if (!RevIndexBuilder.isUpToDate(yesFilename)) {
+				RevIndexBuilder.buildInBackground(version, yesFilename);
+				return null;
+			}
+			revIndexFile = RevIndexBuilder.getRevIndexFile(yesFilename);
 		}
 
-		final InputStream assetInputStream;
-		try {
-			assetInputStream = App.context.getAssets().open("internal/" + AppConfig.get().internalPrefix + "_revindex_bt.bt");
-		} catch (IOException e) {
-			AppLog.d(TAG, "RevIndex is not available");
-			return null;
+		final String key = revIndexFile.getPath();
+		final RevIndex mapped = mappedRevIndexes.get(key);
+		if (mapped != null && mapped.isMappedFrom(revIndexFile)) {
+			return mapped;
 		}
 
-		final RevIndex res = new RevIndex();
-		final InputStream raw = new BufferedInputStream(assetInputStream, 65536);
-
-		byte[] buf = new byte[256];
+		final RevIndex res;
 		try {
-			BintexReader br = new BintexReader(raw);
-
-			int total_word_count = br.readInt();
-			int word_count = 0;
-
-			while (true) {
-				int word_len = br.readUint8();
-				int word_by_len_count = br.readInt();
-
-				for (int i = 0; i < word_by_len_count; i++) {
-					br.readRaw(buf, 0, word_len);
-					@SuppressWarnings("deprecation") String word = new String(buf, 0, 0, word_len);
-
-					int lid_count = br.readUint16();
-					int last_lid = 0;
-					int[] lids = new int[lid_count];
-					int pos = 0;
-					for (int j = 0; j < lid_count; j++) {
-						int lid;
-						int h = br.readUint8();
-						if (h < 0x80) {
-							lid = last_lid + h;
-						} else {
-							int l = br.readUint8();
-							lid = ((h << 8) | l) & 0x7fff;
-						}
-						last_lid = lid;
-						lids[pos++] = lid;
-					}
-
-					res.put(word, lids);
-				}
-
-				word_count += word_by_len_count;
-				if (word_count >= total_word_count) {
-					break;
-				}
-			}
-
-			br.close();
+			res = RevIndex.map(revIndexFile);
 		} catch (IOException e) {
+			AppLog.e(TAG, "Error mapping revindex " + revIndexFile, e);
 			return null;
 		}
 
-		cache_revIndex = new SoftReference<>(res);
+		mappedRevIndexes.put(key, res);
 		return res;
 	}
 
@@ -651,6 +721,19 @@ public class SearchEngine {
 		return true;
 	}
 
+	/**
+	 * {@link String#indexOf(String, int)} for the kinds of text searched here, without converting them to String.
+	 */
+	private static int indexOf(CharSequence text, String s, int start) {
+		if (text instanceof String) {
+			return ((String) text).indexOf(s, start);
+		} else if (text instanceof ChapterCharView) {
+			return ((ChapterCharView) text).indexOf(s, start);
+		} else {
+			return text.toString().indexOf(s, start);
+		}
+	}
+
 	/**
 	 * This looks for a word that is surrounded by non-letter-or-digit characters.
 	 * This works well only if the word is not a multiword.
@@ -659,11 +742,11 @@ public class SearchEngine {
 	 * @param start start at character
 	 * @return -1 or position of the word
 	 */
-	private static int indexOfWholeWord(String text, String word, int start) {
+	private static int indexOfWholeWord(CharSequence text, String word, int start) {
 		final int len = text.length();
 
 		while (true) {
-			final int pos = text.indexOf(word, start);
+			final int pos = indexOf(text, word, start);
 			if (pos == -1) return -1;
 
 			// check left
@@ -708,7 +791,7 @@ public class SearchEngine {
 	 * @param consumedLengthPtr (length-1 array output) how many characters matched from the source text to satisfy the multiword. Will be 0 if this method returns -1.
 	 * @return -1 or position of the multiword.
 	 */
-	private static int indexOfWholeMultiword(String text, String[] multiword, int start, boolean isNewlineDelimitedText, @Nullable int[] consumedLengthPtr) {
+	private static int indexOfWholeMultiword(CharSequence text, String[] multiword, int start, boolean isNewlineDelimitedText, @Nullable int[] consumedLengthPtr) {
 		final int len = text.length();
 		final String firstWord = multiword[0];
 
@@ -736,7 +819,7 @@ public class SearchEngine {
 							pos++;
 							final char d = text.charAt(pos);
 							if (d == '<') {
-								final int closingTagStart = text.indexOf("@>", pos + 1);
+								final int closingTagStart = indexOf(text, "@>", pos + 1);
 								if (closingTagStart == -1) {
 									// bad data (no closing tag)
 								} else {
@@ -762,8 +845,8 @@ public class SearchEngine {
 				if (BuildConfig.DEBUG) {
 					AppLog.d(TAG, "=========================");
 					AppLog.d(TAG, "multiword: " + Arrays.toString(multiword));
-					AppLog.d(TAG, "text     : #" + text.substring(Math.max(0, posBeforeConsume - multiword[i - 1].length()), Math.min(len, posBeforeConsume + 80)) + "#");
-					AppLog.d(TAG, "skipped  : #" + text.substring(posBeforeConsume, pos) + "#");
+					AppLog.d(TAG, "text     : #" + text.subSequence(Math.max(0, posBeforeConsume - multiword[i - 1].length()), Math.min(len, posBeforeConsume + 80)) + "#");
+					AppLog.d(TAG, "skipped  : #" + text.subSequence(posBeforeConsume, pos) + "#");
 					AppLog.d(TAG, "=========================////");
 				}
 
@@ -1,20 +1,16 @@
 package yuku.alkitab.base.widget;
 
-import android.content.ContentResolver;
 import android.content.Context;
-import android.database.Cursor;
-import android.net.Uri;
 import android.support.annotation.Nullable;
 import android.view.LayoutInflater;
 import android.widget.BaseAdapter;
 import gnu.trove.set.TIntSet;
 import gnu.trove.set.hash.TIntHashSet;
-import yuku.alkitab.base.App;
 import yuku.alkitab.base.S;
+import yuku.alkitab.base.model.VerseAttributes;
 import yuku.alkitab.base.util.AppLog;
 import yuku.alkitab.base.util.Highlights;
 import yuku.alkitab.model.PericopeBlock;
-import yuku.alkitab.model.ProgressMark;
 import yuku.alkitab.model.SingleChapterVerses;
 import yuku.alkitab.model.Version;
 import yuku.alkitab.util.Ari;
@@ -99,86 +95,18 @@ public abstract class VerseAdapter extends BaseAdapter {
 		// book_ can be empty when the selected (book, chapter) is not available in this version
 		if (ari_bc_ == 0) return;
 
-		// 1/3: Bookmarks/Notes/Highlights
-		final int[] bookmarkCountMap;
-		final int[] noteCountMap;
-		final Highlights.Info[] highlightColorMap;
-
-		final int verseCount = verses_.getVerseCount();
-		final int ariBc = ari_bc_;
-		if (S.getDb().countMarkersForBookChapter(ariBc) > 0) {
-			bookmarkCountMap = new int[verseCount];
-			noteCountMap = new int[verseCount];
-			highlightColorMap = new Highlights.Info[verseCount];
-
-			S.getDb().putAttributes(ariBc, bookmarkCountMap, noteCountMap, highlightColorMap);
-		} else {
-			bookmarkCountMap = null;
-			noteCountMap = null;
-			highlightColorMap = null;
-		}
-
-		final int ariMin = ariBc & 0x00ffff00;
-		final int ariMax = ariBc | 0x000000ff;
-
-		// 2/3: Progress marks
-		int[] progressMarkBitsMap = null;
-		for (final ProgressMark progressMark: S.getDb().listAllProgressMarks()) {
-			final int ari = progressMark.ari;
-			if (ari < ariMin || ari >= ariMax) {
-				continue;
-			}
-
-			if (progressMarkBitsMap == null) {
-				progressMarkBitsMap = new int[verseCount];
-			}
-
-			int mapOffset = Ari.toVerse(ari) - 1;
-			if (mapOffset >= progressMarkBitsMap.length) {
-				AppLog.e(TAG, "(for progressMarkBitsMap:) mapOffset out of bounds: " + mapOffset + " happened on ari 0x" + Integer.toHexString(ari));
-			} else {
-				progressMarkBitsMap[mapOffset] |= 1 << (progressMark.preset_id + AttributeView.PROGRESS_MARK_BITS_START);
-			}
-		}
-
-		// 3/3: Location indicators
-		// Look up for maps locations.
-		// If the app is installed, query its content provider to see which verses has locations on the map.
-		boolean[] hasMapsMap = null;
-		{
-			final ContentResolver cr = App.context.getContentResolver();
-			final Uri uri = Uri.parse("content://palki.maps/exists?ari=" + ariBc);
-			try (Cursor c = cr.query(uri, null, null, null, null)) {
-				if (c != null) {
-					final int col_aris = c.getColumnIndexOrThrow("aris");
-
-					if (c.moveToNext()) {
-						final String aris_json = c.getString(col_aris);
-						final int[] aris = App.getDefaultGson().fromJson(aris_json, int[].class);
-
-						if (aris != null) {
-							hasMapsMap = new boolean[verseCount];
-
-							for (final int ari : aris) {
-								int mapOffset = Ari.toVerse(ari) - 1;
-								if (mapOffset >= hasMapsMap.length) {
-									AppLog.e(TAG, "(for hasMapsMap:) mapOffset out of bounds: " + mapOffset + " happened on ari 0x" + Integer.toHexString(ari));
-								} else {
-									hasMapsMap[mapOffset] = true;
-								}
-							}
-						}
-					}
-				}
-			}
-		}
+		setAttributes(VerseAttributes.load(ari_bc_, verses_.getVerseCount()));
+	}
 
-		// Finish calculating
-		bookmarkCountMap_ = bookmarkCountMap;
-		noteCountMap_ = noteCountMap;
-		highlightInfoMap_ = highlightColorMap;
-		progressMarkBitsMap_ = progressMarkBitsMap;
-		hasMapsMap_ = hasMapsMap;
+	/**
+	 * Uses attributes that have been loaded beforehand for the current data, instead of querying them on this thread.
+	 */
+	/* non-public */ synchronized void setAttributes(final VerseAttributes attributes) {
+		bookmarkCountMap_ = attributes.bookmarkCountMap;
+		noteCountMap_ = attributes.noteCountMap;
+		highlightInfoMap_ = attributes.highlightInfoMap;
+		progressMarkBitsMap_ = attributes.progressMarkBitsMap;
+		hasMapsMap_ = attributes.hasMapsMap;
 
 		notifyDataSetChanged();
 	}
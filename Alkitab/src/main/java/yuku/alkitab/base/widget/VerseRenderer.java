@@ -7,6 +7,7 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.text.SpannableStringBuilder;
 import android.text.TextPaint;
+import android.text.TextUtils;
 import android.text.style.BackgroundColorSpan;
 import android.text.style.ForegroundColorSpan;
 import android.text.style.LeadingMarginSpan;
@@ -73,10 +74,11 @@ public class VerseRenderer {
 	/**
 	 * @param lText TextView for verse text, but can be null if rendering is for non-display
 	 * @param lVerseNumber TextView for verse number, but can be null if rendering is for non-display
+	 * @param text verse text. This can be a verse of a {@link yuku.alkitab.model.ChapterCharView}, so no String needs to be made for it.
 	 * @param ftr optional container for result that contains the verse text with span formattings, without the verse numbers
 	 * @return how many characters was used before the real start of verse text. This will be > 0 if the verse number is embedded inside lText.
 	 */
-	public static int render(@Nullable final TextView lText, @Nullable final TextView lVerseNumber, final int ari, @NonNull final String text, final String verseNumberText, @Nullable final Highlights.Info highlightInfo, final boolean checked, @Nullable final VerseInlineLinkSpan.Factory inlineLinkSpanFactory, @Nullable final FormattedTextResult ftr) {
+	public static int render(@Nullable final TextView lText, @Nullable final TextView lVerseNumber, final int ari, @NonNull final CharSequence text, final String verseNumberText, @Nullable final Highlights.Info highlightInfo, final boolean checked, @Nullable final VerseInlineLinkSpan.Factory inlineLinkSpanFactory, @Nullable final FormattedTextResult ftr) {
 		// @@ = start a verse containing paragraphs or formatting
 		// @0 = start with indent 0 [paragraph]
 		// @1 = start with indent 1 [paragraph]
@@ -110,7 +112,7 @@ public class VerseRenderer {
 			text_c = new char[text_len];
 			buf_char_.set(text_c);
 		}
-		text.getChars(0, text_len, text_c, 0);
+		TextUtils.getChars(text, 0, text_len, text_c, 0);
 		
 		/**
 		 * '0'..'4', '^' indent 0..4 or new para
@@ -168,7 +170,13 @@ public class VerseRenderer {
 				break;
 			}
 
-			int nextAt = text.indexOf('@', pos);
+			int nextAt = -1;
+			for (int i = pos; i < text_len; i++) {
+				if (text_c[i] == '@') {
+					nextAt = i;
+					break;
+				}
+			}
 
 			if (nextAt == -1) { // no more, just append till the end of everything and exit
 				sb.append(text, pos, text_len);
@@ -397,7 +405,7 @@ public class VerseRenderer {
 	/**
 	 * @return how many characters was used before the real start of verse text. This will be > 0 if the verse number is embedded inside lText.
 	 */
-	public static int simpleRender(@Nullable TextView lText, @Nullable TextView lVerseNumber, String text, String verseNumberText, @Nullable final Highlights.Info highlightInfo, boolean checked) {
+	public static int simpleRender(@Nullable TextView lText, @Nullable TextView lVerseNumber, CharSequence text, String verseNumberText, @Nullable final Highlights.Info highlightInfo, boolean checked) {
 		final SpannableStringBuilder sb = new SpannableStringBuilder();
 
 		// verse number
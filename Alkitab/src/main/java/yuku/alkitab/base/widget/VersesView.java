@@ -16,6 +16,7 @@ import android.widget.AdapterView;
 import android.widget.ListView;
 import yuku.afw.storage.Preferences;
 import yuku.alkitab.base.U;
+import yuku.alkitab.base.model.ChapterModel;
 import yuku.alkitab.base.util.AppLog;
 import yuku.alkitab.debug.R;
 import yuku.alkitab.model.PericopeBlock;
@@ -466,7 +467,7 @@ public class VersesView extends ListView implements AbsListView.OnScrollListener
 		}, smoothScrollDuration + 17);
 	}
 
-	public void setDataWithRetainSelectedVerses(boolean retainSelectedVerses, int ariBc, int[] pericope_aris, PericopeBlock[] pericope_blocks, int nblock, SingleChapterVerses verses, @NonNull Version version, @NonNull String versionId) {
+	public void setDataWithRetainSelectedVerses(boolean retainSelectedVerses, @NonNull ChapterModel model) {
 		IntArrayList selectedVerses_1 = null;
 		if (retainSelectedVerses) {
 			selectedVerses_1 = getSelectedVerses_1();
@@ -474,8 +475,8 @@ public class VersesView extends ListView implements AbsListView.OnScrollListener
 		
 		//# fill adapter with new data. make sure all checked states are reset
 		uncheckAllVerses(true);
-		setData(ariBc, verses, pericope_aris, pericope_blocks, nblock, version, versionId);
-		reloadAttributeMap();
+		setData(model.getAriBc(), model.verses, model.pericopeAris, model.pericopeBlocks, model.nblock, model.version, model.versionId);
+		adapter.setAttributes(model.attributes);
 		
 		boolean anySelected = false;
 		if (selectedVerses_1 != null) {
@@ -0,0 +1,127 @@
+package yuku.alkitab.songs;
+
+import android.support.annotation.Nullable;
+import yuku.bintex.BintexReader;
+import yuku.kpri.model.Lyric;
+import yuku.kpri.model.Song;
+import yuku.kpri.model.Verse;
+import yuku.kpri.model.VerseKind;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads the songs in the format written by {@link SongBookWriter} one at a time,
+ * without having the whole song book in memory.
+ */
+public class SongBookReader {
+	private final BintexReader br;
+	private final int songCount;
+	private int songsRead;
+
+	/**
+	 * Reads the header and the song count.
+	 * @throws IOException if the stream is not a song book or is of a newer version.
+	 */
+	public SongBookReader(InputStream is) throws IOException {
+		br = new BintexReader(is);
+
+		final byte[] header = new byte[SongBookWriter.HEADER.length];
+		if (br.readRaw(header) != header.length) {
+			throw new EOFException("Song book header is incomplete");
+		}
+		if (!Arrays.equals(header, SongBookWriter.HEADER)) {
+			throw new IOException("Song book header is incorrect. Found: " + Arrays.toString(header));
+		}
+
+		songCount = br.readValueInt();
+	}
+
+	public int getSongCount() {
+		return songCount;
+	}
+
+	public int getSongsRead() {
+		return songsRead;
+	}
+
+	/**
+	 * @return the next song, or null if all the songs have been read.
+	 */
+	@Nullable public Song readSong() throws IOException {
+		if (songsRead == songCount) {
+			if (br.readUint8() != 0) {
+				throw new IOException("Song book footer is incorrect");
+			}
+			return null;
+		}
+
+		final Song song = new Song();
+		song.code = br.readValueString();
+		song.title = br.readValueString();
+		song.title_original = br.readValueString();
+		song.authors_lyric = readStringList();
+		song.authors_music = readStringList();
+		song.tune = br.readValueString();
+		song.keySignature = br.readValueString();
+		song.timeSignature = br.readValueString();
+		song.scriptureReferences = br.readValueString();
+
+		final int lyric_count = br.readValueInt();
+		if (lyric_count >= 0) {
+			song.lyrics = new ArrayList<>(lyric_count);
+			for (int i = 0; i < lyric_count; i++) {
+				final Lyric lyric = new Lyric();
+				lyric.caption = br.readValueString();
+
+				final int verse_count = br.readValueInt();
+				if (verse_count >= 0) {
+					lyric.verses = new ArrayList<>(verse_count);
+					for (int j = 0; j < verse_count; j++) {
+						final Verse verse = new Verse();
+						verse.ordering = br.readValueInt();
+						verse.kind = readVerseKind();
+						verse.lines = readStringList();
+						lyric.verses.add(verse);
+					}
+				}
+
+				song.lyrics.add(lyric);
+			}
+		}
+
+		songsRead++;
+		return song;
+	}
+
+	private List<String> readStringList() throws IOException {
+		final int size = br.readValueInt();
+		if (size < 0) {
+			return null;
+		}
+
+		final List<String> res = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			res.add(br.readValueString());
+		}
+		return res;
+	}
+
+	private VerseKind readVerseKind() throws IOException {
+		final int value = br.readValueInt();
+		if (value == -1) {
+			return null;
+		}
+
+		for (final VerseKind kind : VerseKind.values()) {
+			if (kind.value == value) {
+				return kind;
+			}
+		}
+		throw new IOException("Unknown verse kind: " + value);
+	}
+}
@@ -27,9 +27,14 @@ import yuku.alkitab.debug.R;
 import yuku.alkitab.io.OptionalGzipInputStream;
 import yuku.kpri.model.Song;
 
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -190,6 +195,9 @@ public class SongBookUtil {
 		}
 	}
 
+	static class CancelledException extends IOException {
+	}
+
 	public static void downloadSongBook(final Activity activity, final SongBookInfo songBookInfo, final int dataFormatVersion, final OnDownloadSongBookListener listener) {
 		final AtomicBoolean cancelled = new AtomicBoolean();
 
@@ -201,29 +209,76 @@ public class SongBookUtil {
 
 		Background.run(() -> {
 			try {
-				final Call call = App.downloadCall(BuildConfig.SERVER_HOST + "addon/songs/get_songs?name=" + songBookInfo.name + "&dataFormatVersion=" + dataFormatVersion);
+				final Call call = App.downloadCall(BuildConfig.SERVER_HOST + "addon/songs/get_songs?name=" + songBookInfo.name + "&dataFormatVersion=" + dataFormatVersion + "&songBookFormatVersion=" + SongBookWriter.VERSION);
 
 				final Response response = call.execute();
 				if (response.code() != 200) {
 					throw new NotOkException(response.code());
 				}
 
-				final InputStream ogis = new OptionalGzipInputStream(response.body().byteStream());
-				final ObjectInputStream ois = new ObjectInputStream(ogis);
-				@SuppressWarnings("unchecked") final List<Song> songs = (List<Song>) ois.readObject();
-				ois.close();
-
-				if (cancelled.get()) {
-					listener.onFailedOrCancelled(songBookInfo, null);
-					return;
+				// the whole song book is downloaded first, so the database is not kept locked while waiting for the network
+				final File downloaded = File.createTempFile("songbook", null, App.context.getCacheDir());
+				try {
+					final InputStream body = response.body().byteStream();
+					try (OutputStream os = new FileOutputStream(downloaded)) {
+						final byte[] buf = new byte[4096];
+						while (true) {
+							if (cancelled.get()) {
+								throw new CancelledException();
+							}
+
+							final int read = body.read(buf, 0, buf.length);
+							if (read < 0) break;
+							os.write(buf, 0, read);
+						}
+					} finally {
+						body.close();
+					}
+
+					final InputStream in = new BufferedInputStream(new OptionalGzipInputStream(new FileInputStream(downloaded)));
+					try {
+						if (isJavaSerialization(in)) {
+							// servers that do not know the song book format yet
+							final ObjectInputStream ois = new ObjectInputStream(in);
+							@SuppressWarnings("unchecked") final List<Song> songs = (List<Song>) ois.readObject();
+
+							if (cancelled.get()) {
+								throw new CancelledException();
+							}
+
+							S.getSongDb().storeSongs(songBookInfo.name, songs, dataFormatVersion);
+						} else {
+							final SongBookReader reader = new SongBookReader(in);
+
+							// insert songs to db while they are read, without keeping them all in memory
+							S.getSongDb().storeSongs(songBookInfo.name, () -> {
+								if (cancelled.get()) {
+									throw new CancelledException();
+								}
+
+								final Song song = reader.readSong();
+								if (song != null) {
+									final String progress = activity.getString(R.string.sn_downloading_progress, reader.getSongsRead(), reader.getSongCount());
+									Foreground.run(() -> pd.setContent(progress));
+								}
+								return song;
+							}, dataFormatVersion);
+						}
+					} finally {
+						in.close();
+					}
+				} finally {
+					//noinspection ResultOfMethodCallIgnored
+					downloaded.delete();
 				}
 
-				// insert songs to db
 				S.getSongDb().insertSongBookInfo(songBookInfo);
-				S.getSongDb().storeSongs(songBookInfo.name, songs, dataFormatVersion);
 
 				Foreground.run(() -> listener.onDownloadedAndInserted(songBookInfo));
 
+			} catch (CancelledException e) {
+				listener.onFailedOrCancelled(songBookInfo, null);
+
 			} catch (IOException | ClassNotFoundException e) {
 				Foreground.run(() -> listener.onFailedOrCancelled(songBookInfo, e));
 
@@ -233,6 +288,17 @@ public class SongBookUtil {
 		});
 	}
 
+	/**
+	 * Checks for the magic number of a Java serialization stream, without consuming the stream.
+	 */
+	private static boolean isJavaSerialization(final InputStream in) throws IOException {
+		in.mark(2);
+		final int b0 = in.read();
+		final int b1 = in.read();
+		in.reset();
+		return b0 == 0xac && b1 == 0xed;
+	}
+
 	public static CharSequence escapeSongBookName(final String name) {
 		if (name != null && name.startsWith("_")) {
 			final int color = ResourcesCompat.getColor(App.context.getResources(), R.color.escape, App.context.getTheme());
@@ -0,0 +1,105 @@
+package yuku.alkitab.songs;
+
+import yuku.bintex.BintexWriter;
+import yuku.kpri.model.Lyric;
+import yuku.kpri.model.Song;
+import yuku.kpri.model.Verse;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Song book file format version 1, made to be read as a stream by {@link SongBookReader},
+ * so every song can be stored as soon as it is read.
+ *
+ * Note: value is Bintex value type
+ * Note: value list is value&lt;int&gt; size (-1 for null), followed by value[size]
+ *
+ * {
+ * | uint8[8] header = 0x98 0x53 0x0d 0x0a 0x00 0x5d 0xe0 0x01 // version 1
+ * | value<int> song_count
+ * | {
+ * | | value<string> code
+ * | | value<string> title
+ * | | value<string> title_original
+ * | | value list<string> authors_lyric
+ * | | value list<string> authors_music
+ * | | value<string> tune
+ * | | value<string> keySignature
+ * | | value<string> timeSignature
+ * | | value<string> scriptureReferences
+ * | | value<int> lyric_count (-1 for null)
+ * | | {
+ * | | | value<string> caption
+ * | | | value<int> verse_count (-1 for null)
+ * | | | {
+ * | | | | value<int> ordering
+ * | | | | value<int> kind (-1 for null)
+ * | | | | value list<string> lines
+ * | | | }[verse_count] verses
+ * | | }[lyric_count] lyrics
+ * | }[song_count] songs
+ * | uint8 footer = 0
+ * }
+ */
+public class SongBookWriter {
+	static final byte VERSION = 0x01;
+	static final byte[] HEADER = { (byte) 0x98, 0x53, 0x0d, 0x0a, 0x00, 0x5d, (byte) 0xe0, VERSION };
+
+	public static void write(OutputStream os, List<Song> songs) throws IOException {
+		final BintexWriter bw = new BintexWriter(os);
+
+		bw.writeRaw(HEADER);
+		bw.writeValueInt(songs.size());
+
+		for (final Song song : songs) {
+			bw.writeValueString(song.code);
+			bw.writeValueString(song.title);
+			bw.writeValueString(song.title_original);
+			writeStringList(bw, song.authors_lyric);
+			writeStringList(bw, song.authors_music);
+			bw.writeValueString(song.tune);
+			bw.writeValueString(song.keySignature);
+			bw.writeValueString(song.timeSignature);
+			bw.writeValueString(song.scriptureReferences);
+
+			if (song.lyrics == null) {
+				bw.writeValueInt(-1);
+				continue;
+			}
+
+			bw.writeValueInt(song.lyrics.size());
+			for (final Lyric lyric : song.lyrics) {
+				bw.writeValueString(lyric.caption);
+
+				if (lyric.verses == null) {
+					bw.writeValueInt(-1);
+					continue;
+				}
+
+				bw.writeValueInt(lyric.verses.size());
+				for (final Verse verse : lyric.verses) {
+					bw.writeValueInt(verse.ordering);
+					bw.writeValueInt(verse.kind == null ? -1 : verse.kind.value);
+					writeStringList(bw, verse.lines);
+				}
+			}
+		}
+
+		bw.writeUint8(0); // footer
+		os.flush();
+	}
+
+	private static void writeStringList(final BintexWriter bw, final List<String> list) throws IOException {
+		if (list == null) {
+			bw.writeValueInt(-1);
+			return;
+		}
+
+		bw.writeValueInt(list.size());
+		for (final String s : list) {
+			bw.writeValueString(s);
+		}
+	}
+}
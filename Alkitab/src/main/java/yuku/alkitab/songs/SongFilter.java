@@ -7,6 +7,7 @@ import yuku.kpri.model.Verse;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -67,17 +68,6 @@ public class SongFilter {
 		return matches == ps.length;
 	}
 
-	public static boolean match(Song song, CompiledFilter cf) {
-		Pattern[] ps = cf.ps;
-		if (ps == null) return true; // empty filter? consider it passes
-
-		int matches = 0;
-		for (final Pattern p : ps) {
-			if (match(song, p)) matches++;
-		}
-		return matches == ps.length;
-	}
-
 	private static boolean match(SongInfo song, Pattern p) {
 		Matcher m = p.matcher("");
 
@@ -88,28 +78,56 @@ public class SongFilter {
 		return false;
 	}
 
-	private static boolean match(Song song, Pattern p) {
-		Matcher m = p.matcher("");
+	/**
+	 * Everything that deep search looks at, lowercased, with every field and lyric line on its own line,
+	 * to be stored in {@link yuku.alkitab.base.storage.Table.SongInfoText} when the song is stored.
+	 */
+	public static String getSearchText(Song song) {
+		final StringBuilder sb = new StringBuilder();
 
-		if (find(song.code, m)) return true;
-		if (find(song.title, m)) return true;
-		if (song.title_original != null && find(song.title_original, m)) return true;
+		appendLine(sb, song.code);
+		appendLine(sb, song.title);
+		appendLine(sb, song.title_original);
 		if (song.authors_lyric != null) for (String author_lyric : song.authors_lyric) {
-			if (find(author_lyric, m)) return true;
+			appendLine(sb, author_lyric);
 		}
 		if (song.authors_music != null) for (String author_music : song.authors_music) {
-			if (find(author_music, m)) return true;
+			appendLine(sb, author_music);
 		}
-		if (song.tune != null && find(song.tune, m)) return true;
+		appendLine(sb, song.tune);
 
-		for (Lyric lyric : song.lyrics) {
-			for (Verse verse : lyric.verses) {
-				for (String line : verse.lines) {
-					if (find(line, m)) return true;
+		if (song.lyrics != null) for (Lyric lyric : song.lyrics) {
+			if (lyric.verses != null) for (Verse verse : lyric.verses) {
+				if (verse.lines != null) for (String line : verse.lines) {
+					appendLine(sb, line);
 				}
 			}
 		}
-		return false;
+
+		return sb.toString().toLowerCase(Locale.getDefault());
+	}
+
+	/**
+	 * Same as matching the song itself, since every field and lyric line is on its own line in the search text.
+	 * @param searchText as returned by {@link #getSearchText(Song)}.
+	 */
+	public static boolean matchSearchText(String searchText, CompiledFilter cf) {
+		Pattern[] ps = cf.ps;
+		if (ps == null) return true; // empty filter? consider it passes
+		if (searchText == null) return false;
+
+		Matcher m = ps[0].matcher("");
+		for (final Pattern p : ps) {
+			m.usePattern(p);
+			if (!find(searchText, m)) return false;
+		}
+		return true;
+	}
+
+	private static void appendLine(StringBuilder sb, String s) {
+		if (s == null) return;
+		if (sb.length() != 0) sb.append('\n');
+		sb.append(s);
 	}
 
 	private static boolean find(CharSequence s, Matcher m) {
@@ -6,6 +6,7 @@ import yuku.alkitab.base.util.AppLog;
 import yuku.alkitab.debug.BuildConfig;
 import yuku.alkitab.io.BibleReader;
 import yuku.alkitab.model.Book;
+import yuku.alkitab.model.ChapterCharView;
 import yuku.alkitab.model.FootnoteEntry;
 import yuku.alkitab.model.PericopeBlock;
 import yuku.alkitab.model.SingleChapterVerses;
@@ -202,7 +203,7 @@ public class Yes1Reader implements BibleReader {
 	}
 
 	@Override
-	public Book[] loadBooks() {
+	public synchronized Book[] loadBooks() {
 		try {
 			AppLog.d(TAG, "bacaInfoKitab dipanggil");
 
@@ -306,7 +307,7 @@ public class Yes1Reader implements BibleReader {
 	}
 
 	@Override
-	public Yes1SingleChapterVerses loadVerseText(Book book, int pasal_1, boolean janganPisahAyat, boolean hurufKecil) {
+	public synchronized Yes1SingleChapterVerses loadVerseText(Book book, int pasal_1, boolean janganPisahAyat, boolean hurufKecil) {
 		// init pembacaDecoder
 		if (verseTextDecoder == null) {
 			if (encoding == 1) {
@@ -352,6 +353,16 @@ public class Yes1Reader implements BibleReader {
 		}
 	}
 
+	@Override
+	public boolean loadChapterCharView(Book book, int chapter_1, boolean lowercased, ChapterCharView view) {
+		final SingleChapterVerses verses = loadVerseText(book, chapter_1, false, lowercased);
+		if (verses == null) {
+			return false;
+		}
+		view.setVerses(verses);
+		return true;
+	}
+
 	@SuppressWarnings("deprecation")
 	static String readSectionName(RandomAccessFile f) throws IOException {
 		byte[] buf = new byte[12];
@@ -396,7 +407,7 @@ public class Yes1Reader implements BibleReader {
 	}
 
 	@Override
-	public int loadPericope(int kitab, int pasal, int[] xari, PericopeBlock[] xblok, int max) {
+	public synchronized int loadPericope(int kitab, int pasal, int[] xari, PericopeBlock[] xblok, int max) {
 		try {
 			init();
 
@@ -468,13 +479,13 @@ public class Yes1Reader implements BibleReader {
 	}
 
 	@Override
-	public XrefEntry getXrefEntry(int arif) {
+	public synchronized XrefEntry getXrefEntry(int arif) {
 		// YES1 file cannot contain xref entries.
 		return null;
 	}
 
 	@Override
-	public FootnoteEntry getFootnoteEntry(final int arif) {
+	public synchronized FootnoteEntry getFootnoteEntry(final int arif) {
 		// YES1 file cannot contain footnote entries.
 		return null;
 	}
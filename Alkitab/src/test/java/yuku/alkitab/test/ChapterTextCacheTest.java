@@ -0,0 +1,110 @@
+package yuku.alkitab.test;
+
+import junit.framework.TestCase;
+import yuku.alkitab.base.model.ChapterTextCache;
+import yuku.alkitab.model.SingleChapterVerses;
+
+public class ChapterTextCacheTest extends TestCase {
+	/**
+	 * @return a chapter of one verse that weighs 40 + 2 * 30 = 100 bytes in the cache.
+	 */
+	static SingleChapterVerses chapter(final String text) {
+		final StringBuilder sb = new StringBuilder(text);
+		while (sb.length() < 30) sb.append(' ');
+		final String verse = sb.toString();
+
+		return new SingleChapterVerses() {
+			@Override
+			public String getVerse(final int verse_0) {
+				return verse;
+			}
+
+			@Override
+			public int getVerseCount() {
+				return 1;
+			}
+		};
+	}
+
+	public void testEvictsLeastRecentlyUsed() throws Exception {
+		final ChapterTextCache cache = new ChapterTextCache(300);
+
+		cache.put(0, 1, ChapterTextCache.VARIANT_ORIGINAL, chapter("gen 1"));
+		cache.put(0, 2, ChapterTextCache.VARIANT_ORIGINAL, chapter("gen 2"));
+		cache.put(1, 1, ChapterTextCache.VARIANT_ORIGINAL, chapter("exo 1"));
+		assertEquals(300, cache.getCurrentBytes());
+
+		// touch gen 1 so gen 2 becomes the eldest
+		assertNotNull(cache.get(0, 1, ChapterTextCache.VARIANT_ORIGINAL));
+
+		cache.put(1, 2, ChapterTextCache.VARIANT_ORIGINAL, chapter("exo 2"));
+		assertEquals(300, cache.getCurrentBytes());
+		assertEquals(1, cache.getEvictionCount());
+		assertNull(cache.get(0, 2, ChapterTextCache.VARIANT_ORIGINAL));
+		assertNotNull(cache.get(0, 1, ChapterTextCache.VARIANT_ORIGINAL));
+		assertNotNull(cache.get(1, 1, ChapterTextCache.VARIANT_ORIGINAL));
+		assertNotNull(cache.get(1, 2, ChapterTextCache.VARIANT_ORIGINAL));
+
+		assertEquals(4, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+		assertEquals(0.8f, cache.getHitRate(), 0.0001f);
+	}
+
+	public void testByteBudget() throws Exception {
+		final ChapterTextCache cache = new ChapterTextCache(1000);
+		for (int i = 1; i <= 10; i++) {
+			cache.put(0, i, ChapterTextCache.VARIANT_ORIGINAL, chapter("gen " + i));
+		}
+		assertEquals(1000, cache.getCurrentBytes());
+
+		// replacing a chapter does not count it twice
+		cache.put(0, 10, ChapterTextCache.VARIANT_ORIGINAL, chapter("gen 10 again"));
+		assertEquals(1000, cache.getCurrentBytes());
+		assertEquals(0, cache.getEvictionCount());
+
+		cache.setMaxBytes(250);
+		assertEquals(200, cache.getCurrentBytes());
+		assertNotNull(cache.get(0, 10, ChapterTextCache.VARIANT_ORIGINAL));
+		assertNull(cache.get(0, 1, ChapterTextCache.VARIANT_ORIGINAL));
+
+		// a chapter bigger than the whole budget is not cached
+		cache.setMaxBytes(0);
+		cache.put(0, 1, ChapterTextCache.VARIANT_ORIGINAL, chapter("gen 1"));
+		assertEquals(0, cache.getCurrentBytes());
+		assertNull(cache.get(0, 1, ChapterTextCache.VARIANT_ORIGINAL));
+	}
+
+	public void testKeysDoNotCollide() throws Exception {
+		final ChapterTextCache cache = new ChapterTextCache(1024 * 1024);
+		final int[] bookIds = {0, 1, 18, 65, 200};
+		final int[] chapters = {1, 2, 16, 17, 150, 0xffff};
+		final int[] variants = {ChapterTextCache.VARIANT_ORIGINAL, ChapterTextCache.VARIANT_LOWERCASED, ChapterTextCache.VARIANT_LOWERCASED_WITHOUT_SPLIT};
+
+		for (final int bookId : bookIds) {
+			for (final int chapter_1 : chapters) {
+				for (final int variant : variants) {
+					cache.put(bookId, chapter_1, variant, chapter(bookId + " " + chapter_1 + " " + variant));
+				}
+			}
+		}
+		assertEquals(100 * bookIds.length * chapters.length * variants.length, cache.getCurrentBytes());
+
+		for (final int bookId : bookIds) {
+			for (final int chapter_1 : chapters) {
+				for (final int variant : variants) {
+					final SingleChapterVerses verses = cache.get(bookId, chapter_1, variant);
+					assertNotNull(verses);
+					assertEquals(bookId + " " + chapter_1 + " " + variant, verses.getVerse(0).trim());
+				}
+			}
+		}
+	}
+
+	public void testClear() throws Exception {
+		final ChapterTextCache cache = new ChapterTextCache(1000);
+		cache.put(0, 1, ChapterTextCache.VARIANT_LOWERCASED, chapter("gen 1"));
+		cache.clear();
+		assertEquals(0, cache.getCurrentBytes());
+		assertNull(cache.get(0, 1, ChapterTextCache.VARIANT_LOWERCASED));
+	}
+}
@@ -0,0 +1,157 @@
+package yuku.alkitab.test;
+
+import junit.framework.TestCase;
+import yuku.alkitab.base.util.QueryTokenizer;
+import yuku.alkitab.base.util.SearchEngine;
+import yuku.alkitab.songs.SongFilter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+public class QueryTokenizerTest extends TestCase {
+	static boolean narrowing(final String previousQuery, final String query) {
+		return QueryTokenizer.isNarrowing(QueryTokenizer.tokenize(previousQuery), QueryTokenizer.tokenize(query));
+	}
+
+	public void testNarrowingByTyping() {
+		assertTrue(narrowing("", "a"));
+		assertTrue(narrowing("lov", "love"));
+		assertTrue(narrowing("ove", "love"));
+		assertTrue(narrowing("love", "love"));
+		assertTrue(narrowing("love", "love god"));
+		assertTrue(narrowing("love god", "god love"));
+		assertTrue(narrowing("love god", "loved gods"));
+		assertTrue(narrowing("Love", "love"));
+	}
+
+	public void testNotNarrowing() {
+		assertFalse(narrowing("love", ""));
+		assertFalse(narrowing("love", "lov"));
+		assertFalse(narrowing("love god", "love"));
+		assertFalse(narrowing("love", "god"));
+	}
+
+	public void testNarrowingWithWholeWords() {
+		// a whole word is found as is
+		assertTrue(narrowing("lov", "\"love\""));
+		assertTrue(narrowing("\"love\"", "\"love\" god"));
+
+		// but more characters on it find other words
+		assertFalse(narrowing("\"lov\"", "\"love\""));
+		assertFalse(narrowing("\"love\"", "love"));
+		assertFalse(narrowing("\"love\"", "loves"));
+
+		// each word of a phrase is found as a whole word
+		assertTrue(narrowing("\"love\"", "\"love of god\""));
+		assertTrue(narrowing("lov", "\"love of god\""));
+		assertTrue(narrowing("\"love of\"", "\"love of\" god"));
+
+		// but not a shorter phrase, since the text between the words is not compared
+		assertFalse(narrowing("\"love of\"", "\"love of god\""));
+	}
+
+	public void testToFullTextQuery() {
+		assertEquals("\"love\"", QueryTokenizer.toFullTextQuery(QueryTokenizer.tokenize("\"Love\"")));
+		assertEquals("\"love of god\"", QueryTokenizer.toFullTextQuery(QueryTokenizer.tokenize("\"love, of god\"")));
+		assertEquals("\"god s\"", QueryTokenizer.toFullTextQuery(QueryTokenizer.tokenize("+god's")));
+
+		// tokens that are not plussed can be found inside words, so they are left to be checked outside the index
+		assertEquals("\"love\"", QueryTokenizer.toFullTextQuery(QueryTokenizer.tokenize("\"love\" god")));
+		assertNull(QueryTokenizer.toFullTextQuery(QueryTokenizer.tokenize("love god")));
+
+		// FTS syntax is not passed through
+		assertEquals("\"a b\"", QueryTokenizer.toFullTextQuery(QueryTokenizer.tokenize("+a*\"b*")));
+
+		assertNull(QueryTokenizer.toFullTextQuery(new String[0]));
+		assertNull(QueryTokenizer.toFullTextQuery(QueryTokenizer.tokenize("\"...\"")));
+	}
+
+	public void testToFullTextDocument() {
+		assertEquals("ärger über σοφία", QueryTokenizer.toFullTextDocument("Ärger über ΣΟΦΊΑ"));
+		assertEquals("love s grace mercy ", QueryTokenizer.toFullTextDocument("love’s grace—mercy."));
+		assertEquals("\"love s\"", QueryTokenizer.toFullTextQuery(QueryTokenizer.tokenize("+love’s")));
+	}
+
+	public void testFullTextFindsWhatSearchEngineFinds() {
+		final String[] captions = {
+			"Ärger über ΣΟΦΊΑ",
+			"love’s grace—mercy",
+			"“Lord’s” prayer",
+			"god's love",
+		};
+		final String[] queries = {
+			"+ärger", "+über", "+σοφία", "\"über σοφία\"",
+			"+love", "+love’s", "+love's", "\"grace mercy\"", "+mercy",
+			"+lord", "\"lord’s prayer\"", "+prayer",
+			"+god", "\"god's love\"",
+			"+lov", "+gracemercy", "\"love grace\"",
+		};
+
+		int found = 0;
+		for (final String caption : captions) {
+			for (final String query : queries) {
+				final String[] tokens = QueryTokenizer.tokenize(query);
+				if (SearchEngine.satisfiesTokens(caption.toLowerCase(Locale.getDefault()), new SearchEngine.ReadyTokens(tokens))) {
+					found++;
+					assertTrue(query + " in " + caption, fullTextFinds(tokens, caption));
+				}
+			}
+		}
+		assertEquals(14, found);
+
+		assertFalse(fullTextFinds(QueryTokenizer.tokenize("+lov"), "love’s grace—mercy"));
+		assertFalse(fullTextFinds(QueryTokenizer.tokenize("\"love grace\""), "love’s grace—mercy"));
+	}
+
+	public void testFullTextFindsWhatSongFilterFinds() {
+		// stored lowercased, as from SongFilter.getSearchText
+		final String searchText = "kj 12\nthe lord’s prayer\n“holy, holy” grace—mercy\nüber alles";
+		final String[] queries = {"+lord", "\"lord’s prayer\"", "+holy", "\"holy, holy\"", "+grace", "+mercy", "\"grace—mercy\"", "+über", "+12"};
+
+		for (final String query : queries) {
+			assertTrue(query, SongFilter.matchSearchText(searchText, SongFilter.compileFilter(query)));
+			assertTrue(query, fullTextFinds(QueryTokenizer.tokenize(query), searchText));
+		}
+	}
+
+	/**
+	 * Whether the query from {@link QueryTokenizer#toFullTextQuery(String[])} finds the text stored as {@link QueryTokenizer#toFullTextDocument(String)}
+	 * in an FTS table with the simple tokenizer, which is what is available on every Android version.
+	 */
+	static boolean fullTextFinds(final String[] tokens, final String text) {
+		final List<String> words = simpleTokenizerWords(QueryTokenizer.toFullTextDocument(text));
+		final String[] parts = QueryTokenizer.toFullTextQuery(tokens).split("\"");
+		for (int i = 1; i < parts.length; i += 2) { // the phrases are between quotes
+			final List<String> phrase = simpleTokenizerWords(parts[i]);
+			if (indexOf(words, phrase) == -1) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Like the simple tokenizer of SQLite: every ASCII char that is not a letter or digit separates words,
+	 * all other chars, including all non-ASCII chars, are part of words, and only ASCII letters are lowercased.
+	 */
+	static List<String> simpleTokenizerWords(final String text) {
+		final List<String> res = new ArrayList<>();
+		final StringBuilder word = new StringBuilder();
+		for (int i = 0; i <= text.length(); i++) {
+			final char c = i < text.length() ? text.charAt(i) : ' ';
+			if (c < 0x80 && !Character.isLetterOrDigit(c)) {
+				if (word.length() != 0) res.add(word.toString());
+				word.setLength(0);
+			} else {
+				word.append(c >= 'A' && c <= 'Z' ? (char) (c + 'a' - 'A') : c);
+			}
+		}
+		return res;
+	}
+
+	static int indexOf(final List<String> words, final List<String> phrase) {
+		for (int i = 0; i + phrase.size() <= words.size(); i++) {
+			if (words.subList(i, i + phrase.size()).equals(phrase)) return i;
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,237 @@
+package yuku.alkitab.test;
+
+import android.support.annotation.Nullable;
+import junit.framework.TestCase;
+import yuku.alkitab.base.util.RevIndex;
+import yuku.alkitab.base.util.RevIndexBuilder;
+import yuku.alkitab.model.Book;
+import yuku.alkitab.model.FootnoteEntry;
+import yuku.alkitab.model.PericopeBlock;
+import yuku.alkitab.model.SingleChapterVerses;
+import yuku.alkitab.model.Version;
+import yuku.alkitab.model.XrefEntry;
+import yuku.alkitab.util.Ari;
+import yuku.alkitab.util.IntArrayList;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class RevIndexTest extends TestCase {
+	static final String[][][] texts = {
+		{ // book 0
+			{"In the beginning God created the heaven and the earth.", "And the earth was without form, and void."},
+			{"Thus the heavens and the earth were finished."},
+		},
+		{ // book 1
+			{"Now these are the names of the children of Israel.", "Reuben, Simeon, Levi, and Judah,", "Issachar, Zebulun, and Benjamin, élève-l'âme."},
+		},
+	};
+
+	static final String[][][] nonLatinTexts = {
+		{
+			{"太初有道", "道与神同在"},
+		},
+	};
+
+	File yesFile;
+
+	@Override
+	protected void setUp() throws Exception {
+		yesFile = File.createTempFile("revindextest", ".yes");
+		try (FileOutputStream os = new FileOutputStream(yesFile)) {
+			os.write(new byte[100]);
+		}
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		RevIndexBuilder.delete(yesFile.getPath());
+		//noinspection ResultOfMethodCallIgnored
+		yesFile.delete();
+	}
+
+	public void testRoundTrip() throws Exception {
+		final File revIndexFile = RevIndexBuilder.getRevIndexFile(yesFile.getPath());
+		assertFalse(RevIndexBuilder.isUpToDate(yesFile.getPath()));
+		assertTrue(RevIndexBuilder.build(fakeVersion(texts), yesFile, revIndexFile));
+		assertTrue(RevIndexBuilder.isUpToDate(yesFile.getPath()));
+
+		final RevIndex ri = RevIndex.map(revIndexFile);
+		assertTrue(ri.isMappedFrom(revIndexFile));
+
+		// lids are positions of the verses in the version
+		assertEquals(6, ri.getMaxLid());
+		assertEquals(Ari.encode(0, 1, 1), ri.lidToAri(1));
+		assertEquals(Ari.encode(0, 2, 1), ri.lidToAri(3));
+		assertEquals(Ari.encode(1, 1, 3), ri.lidToAri(6));
+		assertEquals(0, ri.lidToAri(7));
+
+		assertLids(ri, "the", 1, 2, 3, 4);
+		assertLids(ri, "earth", 1, 2, 3);
+		assertLids(ri, "and", 1, 2, 3, 5, 6);
+		assertLids(ri, "heavens", 3);
+		assertLids(ri, "judah", 5);
+
+		// diacritics are removed, hyphens and apostrophes are kept in the word
+		assertLids(ri, "eleve-l'ame", 6);
+
+		assertEquals(-1, ri.findWord("heave"));
+		assertEquals(-1, ri.findWord("zzz"));
+
+		// the words are sorted, and the suffix array finds every word containing a substring
+		final List<String> words = new ArrayList<>();
+		for (int i = 0; i < ri.getWordCount(); i++) {
+			words.add(ri.getWord(i));
+		}
+		final List<String> sorted = new ArrayList<>(words);
+		Collections.sort(sorted);
+		assertEquals(sorted, words);
+
+		for (final String substring : new String[] {"ea", "e", "the", "heaven", "n", "'", "zz", "children", "ildr"}) {
+			final IntArrayList expected = new IntArrayList();
+			for (int i = 0; i < words.size(); i++) {
+				if (words.get(i).contains(substring)) expected.add(i);
+			}
+			final int[] actual = ri.findWordsContaining(substring);
+			assertEquals(substring, Arrays.toString(Arrays.copyOf(expected.buffer(), expected.size())), Arrays.toString(actual));
+		}
+	}
+
+	public void testRebuiltWhenSourceChanges() throws Exception {
+		final File revIndexFile = RevIndexBuilder.getRevIndexFile(yesFile.getPath());
+		assertTrue(RevIndexBuilder.build(fakeVersion(texts), yesFile, revIndexFile));
+		assertTrue(RevIndexBuilder.isUpToDate(yesFile.getPath()));
+
+		try (FileOutputStream os = new FileOutputStream(yesFile, true)) {
+			os.write(new byte[10]);
+		}
+		assertFalse(RevIndexBuilder.isUpToDate(yesFile.getPath()));
+	}
+
+	public void testNonLatinIsNotIndexed() throws Exception {
+		final File revIndexFile = RevIndexBuilder.getRevIndexFile(yesFile.getPath());
+		assertFalse(RevIndexBuilder.build(fakeVersion(nonLatinTexts), yesFile, revIndexFile));
+		assertFalse(revIndexFile.exists());
+	}
+
+	static void assertLids(final RevIndex ri, final String word, final int... lids) {
+		final int wordIndex = ri.findWord(word);
+		assertTrue(word, wordIndex >= 0);
+		assertEquals(word, ri.getWord(wordIndex));
+		assertEquals(lids.length, ri.getLidCount(wordIndex));
+		assertEquals(Arrays.toString(lids), Arrays.toString(ri.getLids(wordIndex)));
+	}
+
+	static Version fakeVersion(final String[][][] texts) {
+		final Book[] books = new Book[texts.length];
+		for (int i = 0; i < texts.length; i++) {
+			final Book book = new Book();
+			book.bookId = i;
+			book.chapter_count = texts[i].length;
+			book.verse_counts = new int[texts[i].length];
+			for (int j = 0; j < texts[i].length; j++) {
+				book.verse_counts[j] = texts[i][j].length;
+			}
+			books[i] = book;
+		}
+
+		return new Version() {
+			@Override
+			public String getShortName() {
+				return null;
+			}
+
+			@Override
+			public String getLongName() {
+				return null;
+			}
+
+			@Override
+			public String getLocale() {
+				return null;
+			}
+
+			@Override
+			public int getMaxBookIdPlusOne() {
+				return books.length;
+			}
+
+			@Override
+			public Book[] getConsecutiveBooks() {
+				return books;
+			}
+
+			@Override
+			public Book getBook(final int bookId) {
+				return books[bookId];
+			}
+
+			@Override
+			public Book getFirstBook() {
+				return books[0];
+			}
+
+			@Nullable
+			@Override
+			public String loadVerseText(final int ari) {
+				return null;
+			}
+
+			@Nullable
+			@Override
+			public String loadVerseText(final Book book, final int chapter_1, final int verse_1) {
+				return null;
+			}
+
+			@Override
+			public int loadVersesByAriRanges(final IntArrayList ariRanges, final IntArrayList result_aris, final List<String> result_verses) {
+				return 0;
+			}
+
+			@Override
+			public int loadPericope(final int bookId, final int chapter_1, final int[] aris, final PericopeBlock[] pericopeBlocks, final int max) {
+				return 0;
+			}
+
+			@Override
+			public SingleChapterVerses loadChapterText(final Book book, final int chapter_1) {
+				final String[] verses = texts[book.bookId][chapter_1 - 1];
+				return new SingleChapterVerses() {
+					@Override
+					public String getVerse(final int verse_0) {
+						return verses[verse_0];
+					}
+
+					@Override
+					public int getVerseCount() {
+						return verses.length;
+					}
+				};
+			}
+
+			@Override
+			public SingleChapterVerses loadChapterTextLowercased(final Book book, final int chapter_1) {
+				return null;
+			}
+
+			@Override
+			public String loadChapterTextLowercasedWithoutSplit(final Book book, final int chapter_1) {
+				return null;
+			}
+
+			@Override
+			public XrefEntry getXrefEntry(final int arif) {
+				return null;
+			}
+
+			@Override
+			public FootnoteEntry getFootnoteEntry(final int arif) {
+				return null;
+			}
+		};
+	}
+}
@@ -0,0 +1,164 @@
+package yuku.alkitab.test;
+
+import junit.framework.TestCase;
+import yuku.alkitab.songs.SongBookReader;
+import yuku.alkitab.songs.SongBookWriter;
+import yuku.kpri.model.Lyric;
+import yuku.kpri.model.Song;
+import yuku.kpri.model.Verse;
+import yuku.kpri.model.VerseKind;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class SongBookFormatTest extends TestCase {
+	static Verse verse(final int ordering, final VerseKind kind, final String... lines) {
+		final Verse res = new Verse();
+		res.ordering = ordering;
+		res.kind = kind;
+		res.lines = new ArrayList<>(Arrays.asList(lines));
+		return res;
+	}
+
+	static List<Song> songs() {
+		final List<Song> res = new ArrayList<>();
+
+		{
+			final Song song = new Song();
+			song.code = "1";
+			song.title = "Haleluya, Pujilah";
+			song.title_original = "Hallelujah, Praise Jehovah";
+			song.authors_lyric = new ArrayList<>(Arrays.asList("William J. Kirkpatrick", "Terj. Yamuger"));
+			song.authors_music = new ArrayList<>(Collections.singletonList("William J. Kirkpatrick"));
+			song.tune = "HALLELUJAH, PRAISE JEHOVAH";
+			song.keySignature = "do = f";
+			song.timeSignature = "4/4";
+			song.scriptureReferences = "Mzm. 148";
+
+			final Lyric lyric = new Lyric();
+			lyric.caption = null;
+			lyric.verses = new ArrayList<>();
+			lyric.verses.add(verse(1, VerseKind.NORMAL, "Haleluya, pujilah Tuhan Allah,", "yang di surga mulia!"));
+			lyric.verses.add(verse(0, VerseKind.REFRAIN, "Haleluya, haleluya!", ""));
+			lyric.verses.add(verse(2, VerseKind.TEXT));
+			song.lyrics = new ArrayList<>(Collections.singletonList(lyric));
+			res.add(song);
+		}
+
+		{ // nulls and characters outside 8 bits
+			final Song song = new Song();
+			song.code = "2a";
+			song.title = "主是我牧者 — é";
+			song.lyrics = new ArrayList<>();
+
+			final Lyric lyric = new Lyric();
+			lyric.caption = "Versi 2";
+			song.lyrics.add(lyric);
+			res.add(song);
+		}
+
+		res.add(new Song());
+
+		return res;
+	}
+
+	static byte[] write(final List<Song> songs) throws IOException {
+		final ByteArrayOutputStream os = new ByteArrayOutputStream();
+		SongBookWriter.write(os, songs);
+		return os.toByteArray();
+	}
+
+	public void testRoundTrip() throws Exception {
+		final List<Song> expected = songs();
+
+		final SongBookReader reader = new SongBookReader(new ByteArrayInputStream(write(expected)));
+		assertEquals(expected.size(), reader.getSongCount());
+
+		for (final Song e : expected) {
+			final Song a = reader.readSong();
+			assertNotNull(a);
+			assertSongEquals(e, a);
+		}
+		assertEquals(expected.size(), reader.getSongsRead());
+		assertNull(reader.readSong());
+	}
+
+	public void testEmpty() throws Exception {
+		final SongBookReader reader = new SongBookReader(new ByteArrayInputStream(write(new ArrayList<>())));
+		assertEquals(0, reader.getSongCount());
+		assertNull(reader.readSong());
+	}
+
+	public void testTruncated() throws Exception {
+		final byte[] bytes = write(songs());
+
+		final SongBookReader reader = new SongBookReader(new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length - 1)));
+		try {
+			while (reader.readSong() != null) {
+				// keep reading
+			}
+			fail("missing footer must not be taken as the end of the song book");
+		} catch (IOException expected) {
+		}
+	}
+
+	public void testNotSongBook() throws Exception {
+		final byte[] bytes = write(songs());
+		bytes[7] = 0x02; // newer version
+
+		try {
+			new SongBookReader(new ByteArrayInputStream(bytes));
+			fail("unknown version must not be read");
+		} catch (IOException expected) {
+		}
+
+		try {
+			new SongBookReader(new ByteArrayInputStream(new byte[] {(byte) 0xac, (byte) 0xed, 0x00, 0x05}));
+			fail("java serialization must not be read");
+		} catch (IOException expected) {
+		}
+	}
+
+	static void assertSongEquals(final Song e, final Song a) {
+		assertEquals(e.code, a.code);
+		assertEquals(e.title, a.title);
+		assertEquals(e.title_original, a.title_original);
+		assertEquals(e.authors_lyric, a.authors_lyric);
+		assertEquals(e.authors_music, a.authors_music);
+		assertEquals(e.tune, a.tune);
+		assertEquals(e.keySignature, a.keySignature);
+		assertEquals(e.timeSignature, a.timeSignature);
+		assertEquals(e.scriptureReferences, a.scriptureReferences);
+
+		if (e.lyrics == null) {
+			assertNull(a.lyrics);
+			return;
+		}
+
+		assertEquals(e.lyrics.size(), a.lyrics.size());
+		for (int i = 0; i < e.lyrics.size(); i++) {
+			final Lyric el = e.lyrics.get(i);
+			final Lyric al = a.lyrics.get(i);
+			assertEquals(el.caption, al.caption);
+
+			if (el.verses == null) {
+				assertNull(al.verses);
+				continue;
+			}
+
+			assertEquals(el.verses.size(), al.verses.size());
+			for (int j = 0; j < el.verses.size(); j++) {
+				final Verse ev = el.verses.get(j);
+				final Verse av = al.verses.get(j);
+				assertEquals(ev.ordering, av.ordering);
+				assertEquals(ev.kind, av.kind);
+				assertEquals(ev.lines, av.lines);
+			}
+		}
+	}
+}
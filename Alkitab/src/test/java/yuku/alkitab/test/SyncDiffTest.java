@@ -0,0 +1,178 @@
+package yuku.alkitab.test;
+
+import junit.framework.TestCase;
+import yuku.alkitab.base.sync.Sync;
+import yuku.alkitab.base.sync.SyncDiff;
+import yuku.alkitab.base.sync.Sync_Mabel;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public class SyncDiffTest extends TestCase {
+	static Sync.Entity<Sync_Mabel.Content> marker(final String gid, final int ari, final String caption, final int modifyTime) {
+		final Sync_Mabel.Content content = new Sync_Mabel.Content();
+		content.ari = ari;
+		content.kind = 1;
+		content.caption = caption;
+		content.verseCount = 1;
+		content.createTime = 1400000000;
+		content.modifyTime = modifyTime;
+		return new Sync.Entity<>(Sync.Entity.KIND_MARKER, gid, content);
+	}
+
+	static Sync.Entity<Sync_Mabel.Content> label(final String gid, final String title) {
+		final Sync_Mabel.Content content = new Sync_Mabel.Content();
+		content.title = title;
+		content.ordering = 1;
+		return new Sync.Entity<>(Sync.Entity.KIND_LABEL, gid, content);
+	}
+
+	static Sync.Entity<Sync_Mabel.Content> copy(final Sync.Entity<Sync_Mabel.Content> e) {
+		final Sync_Mabel.Content c = new Sync_Mabel.Content();
+		c.ari = e.content.ari;
+		c.kind = e.content.kind;
+		c.caption = e.content.caption;
+		c.verseCount = e.content.verseCount;
+		c.createTime = e.content.createTime;
+		c.modifyTime = e.content.modifyTime;
+		c.title = e.content.title;
+		c.ordering = e.content.ordering;
+		return new Sync.Entity<>(e.kind, e.gid, c);
+	}
+
+	/**
+	 * Shadow of n entities, and the current entities after some were added, modified and deleted.
+	 */
+	static List<List<Sync.Entity<Sync_Mabel.Content>>> makeShadowAndCurrent(final int n, final long seed) {
+		final Random r = new Random(seed);
+		final List<Sync.Entity<Sync_Mabel.Content>> shadow = new ArrayList<>();
+		for (int i = 0; i < n; i++) {
+			if (i % 20 == 0) {
+				shadow.add(label("g2:label" + i, "Label " + i));
+			} else {
+				shadow.add(marker("g2:marker" + i, 0x000101 + r.nextInt(0x400000), "caption " + r.nextInt(), 1400000000 + i));
+			}
+		}
+
+		final List<Sync.Entity<Sync_Mabel.Content>> current = new ArrayList<>();
+		for (final Sync.Entity<Sync_Mabel.Content> e : shadow) {
+			final int action = r.nextInt(100);
+			if (action < 5) {
+				// deleted
+			} else if (action < 10) {
+				final Sync.Entity<Sync_Mabel.Content> modified = copy(e);
+				modified.content.modifyTime = 1500000000;
+				current.add(modified);
+			} else {
+				current.add(copy(e));
+			}
+		}
+		for (int i = 0; i < n / 20; i++) {
+			current.add(marker("g2:new" + i, 0x000101, "new " + i, 1500000000));
+		}
+		// same gid as an existing marker, but another kind
+		current.add(label("g2:marker1", "not a marker"));
+
+		Collections.shuffle(current, r);
+
+		final List<List<Sync.Entity<Sync_Mabel.Content>>> res = new ArrayList<>();
+		res.add(shadow);
+		res.add(current);
+		return res;
+	}
+
+	/**
+	 * How the delta was computed before, by scanning the other list for every entity.
+	 */
+	static <C> Sync.Delta<C> computeDeltaByScanning(final List<Sync.Entity<C>> srcs, final List<Sync.Entity<C>> dsts) {
+		final Sync.Delta<C> delta = new Sync.Delta<>();
+
+		for (final Sync.Entity<C> dst : dsts) {
+			final Sync.Entity<C> existing = findEntity(srcs, dst.gid, dst.kind);
+			if (existing == null) {
+				delta.operations.add(new Sync.Operation<>(Sync.Opkind.add, dst.kind, dst.gid, dst.content));
+			} else if (!dst.content.equals(existing.content)) {
+				delta.operations.add(new Sync.Operation<>(Sync.Opkind.mod, dst.kind, dst.gid, dst.content));
+			}
+		}
+
+		for (final Sync.Entity<C> src : srcs) {
+			if (findEntity(dsts, src.gid, src.kind) == null) {
+				delta.operations.add(new Sync.Operation<>(Sync.Opkind.del, src.kind, src.gid, null));
+			}
+		}
+
+		return delta;
+	}
+
+	static <C> Sync.Entity<C> findEntity(final List<Sync.Entity<C>> list, final String gid, final String kind) {
+		for (final Sync.Entity<C> entity : list) {
+			if (gid.equals(entity.gid) && kind.equals(entity.kind)) {
+				return entity;
+			}
+		}
+		return null;
+	}
+
+	static <C> void assertSameOperations(final Sync.Delta<C> expected, final Sync.Delta<C> actual) {
+		assertEquals(expected.operations.size(), actual.operations.size());
+		for (int i = 0; i < expected.operations.size(); i++) {
+			final Sync.Operation<C> e = expected.operations.get(i);
+			final Sync.Operation<C> a = actual.operations.get(i);
+			assertEquals(e.opkind, a.opkind);
+			assertEquals(e.kind, a.kind);
+			assertEquals(e.gid, a.gid);
+			assertEquals(e.content, a.content);
+		}
+	}
+
+	public void testComputeDeltaSameAsScanning() {
+		for (long seed = 0; seed < 5; seed++) {
+			final List<List<Sync.Entity<Sync_Mabel.Content>>> lists = makeShadowAndCurrent(2000, seed);
+			final List<Sync.Entity<Sync_Mabel.Content>> shadow = lists.get(0);
+			final List<Sync.Entity<Sync_Mabel.Content>> current = lists.get(1);
+
+			assertSameOperations(computeDeltaByScanning(shadow, current), SyncDiff.computeDelta(shadow, current));
+		}
+	}
+
+	public void testComputeDeltaEmpty() {
+		final List<Sync.Entity<Sync_Mabel.Content>> empty = new ArrayList<>();
+		final List<Sync.Entity<Sync_Mabel.Content>> one = new ArrayList<>();
+		one.add(label("g2:a", "A"));
+
+		assertEquals(0, SyncDiff.computeDelta(empty, empty).operations.size());
+		assertEquals(0, SyncDiff.computeDelta(one, one).operations.size());
+		assertEquals(Sync.Opkind.add, SyncDiff.computeDelta(empty, one).operations.get(0).opkind);
+		assertEquals(Sync.Opkind.del, SyncDiff.computeDelta(one, empty).operations.get(0).opkind);
+	}
+
+	public void testEntitiesEqual() {
+		final List<Sync.Entity<Sync_Mabel.Content>> shadow = makeShadowAndCurrent(1000, 42).get(0);
+
+		final List<Sync.Entity<Sync_Mabel.Content>> shuffled = new ArrayList<>();
+		for (final Sync.Entity<Sync_Mabel.Content> e : shadow) {
+			shuffled.add(copy(e));
+		}
+		Collections.shuffle(shuffled, new Random(1));
+		assertTrue(Sync.entitiesEqual(shadow, shuffled));
+
+		final Sync.Entity<Sync_Mabel.Content> modified = copy(shuffled.get(500));
+		modified.content.caption = "changed";
+		shuffled.set(500, modified);
+		assertFalse(Sync.entitiesEqual(shadow, shuffled));
+
+		// same size, but one entity twice and another one missing
+		final List<Sync.Entity<Sync_Mabel.Content>> a = new ArrayList<>();
+		a.add(label("g2:a", "A"));
+		a.add(label("g2:b", "B"));
+		final List<Sync.Entity<Sync_Mabel.Content>> b = new ArrayList<>();
+		b.add(label("g2:a", "A"));
+		b.add(label("g2:a", "A"));
+		assertFalse(Sync.entitiesEqual(a, b));
+		assertFalse(Sync.entitiesEqual(b, a));
+		assertTrue(Sync.entitiesEqual(b, b));
+	}
+}
@@ -1,11 +1,16 @@
 package yuku.alkitab.io;
 
 import yuku.alkitab.model.Book;
+import yuku.alkitab.model.ChapterCharView;
 import yuku.alkitab.model.FootnoteEntry;
 import yuku.alkitab.model.PericopeBlock;
 import yuku.alkitab.model.SingleChapterVerses;
 import yuku.alkitab.model.XrefEntry;
 
+/**
+ * Implementations must be safe to call from multiple threads at the same time,
+ * since verses may be loaded by parallel searches while the UI is also reading.
+ */
 public interface BibleReader {
 	String getLocale();
 
@@ -22,6 +27,12 @@ public interface BibleReader {
 	 */
 	SingleChapterVerses loadVerseText(Book book, int chapter_1, boolean dontSplitVerses, boolean lowercased);
 
+	/**
+	 * Loads the verses of a chapter into the view, which is reset first.
+	 * @return false if the requested is not available
+	 */
+	boolean loadChapterCharView(Book book, int chapter_1, boolean lowercased, ChapterCharView view);
+
 	int loadPericope(int bookId, int chapter_1, int[] aris, PericopeBlock[] pericopeBlocks, int max);
 
 	/**
@@ -1,5 +1,6 @@
 package yuku.alkitab.io;
 
+import yuku.alkitab.model.ChapterCharView;
 import yuku.bintex.BintexReader;
 
 import java.io.IOException;
@@ -8,8 +9,6 @@ import java.io.IOException;
  * This class is an intentionally incomplete UTF-8 decoder that only supports up to U+FFFF.
  */
 public class Utf8Decoder {
-	public static char[] buf = new char[1000];
-
 	static ThreadLocal<byte[]> byte_buf_ = new ThreadLocal<byte[]>() {
 		@Override
 		protected byte[] initialValue() {
@@ -24,13 +23,23 @@ public class Utf8Decoder {
 		}
 	};
 
+	static ThreadLocal<ChapterCharView> view_ = new ThreadLocal<ChapterCharView>() {
+		@Override
+		protected ChapterCharView initialValue() {
+			return new ChapterCharView();
+		}
+	};
+
 	public static String toString(byte[] ba) {
 		return toString(ba, 0, ba.length);
 	}
 
 	public static String toString(byte[] ba, int start, int length) {
-		if (buf.length < ba.length) {
-			buf = new char[ba.length + 1000];
+		// per-thread, because verses can be decoded from many threads at the same time
+		char[] buf = char_buf_.get();
+		if (buf.length < length) {
+			buf = new char[length + 1000];
+			char_buf_.set(buf);
 		}
 
 		int pos = 0;
@@ -72,8 +81,10 @@ public class Utf8Decoder {
 	}
 
 	public static String toStringLowerCase(byte[] ba, int start, int length) {
-		if (buf.length < ba.length) {
-			buf = new char[ba.length + 1000];
+		char[] buf = char_buf_.get();
+		if (buf.length < length) {
+			buf = new char[length + 1000];
+			char_buf_.set(buf);
 		}
 
 		int pos = 0;
@@ -121,10 +132,19 @@ public class Utf8Decoder {
 	}
 
 	public static String toStringFromVersesWithPrependedLengths(BintexReader br, int verse_count, boolean lowercased) throws IOException {
+		final ChapterCharView view = view_.get();
+		decodeVersesWithPrependedLengths(br, verse_count, lowercased, view);
+		return view.toString();
+	}
+
+	/**
+	 * Decodes verses, each prepended by its length in bytes as varuint, into the view, without making Strings.
+	 * The view is reset first.
+	 */
+	public static void decodeVersesWithPrependedLengths(BintexReader br, int verse_count, boolean lowercased, ChapterCharView view) throws IOException {
 		byte[] byte_buf = byte_buf_.get();
-		char[] char_buf = char_buf_.get();
 
-		int char_pos = 0;
+		view.reset();
 		for (int v = 0; v < verse_count; v++) {
 			int verse_len = br.readVarUint();
 
@@ -133,13 +153,10 @@ public class Utf8Decoder {
 				byte_buf_.set(byte_buf);
 			}
 
-			int will_need_char_len = char_pos + verse_len + 1 /*for separator*/;
-			if (will_need_char_len > char_buf.length) {
-				final char[] new_char_buf = new char[will_need_char_len + 1000];
-				System.arraycopy(char_buf, 0, new_char_buf, 0, char_buf.length);
-				char_buf = new_char_buf;
-				char_buf_.set(char_buf);
-			}
+			// a verse never has more chars than bytes
+			final char[] char_buf = view.reserve(verse_len);
+			final int verse_start = view.length();
+			int char_pos = verse_start;
 
 			br.readRaw(byte_buf, 0, verse_len);
 
@@ -186,10 +203,8 @@ public class Utf8Decoder {
 				}
 			}
 
-			// verse separator
-			char_buf[char_pos++] = '\n';
+			// verse separator is added by the view
+			view.commitVerse(char_pos - verse_start);
 		}
-
-		return new String(char_buf, 0, char_pos);
 	}
 }
@@ -0,0 +1,265 @@
+package yuku.alkitab.model;
+
+/**
+ * The text of one chapter, decoded into one reusable char array, with the offsets where each verse starts.
+ * This is for scanning many chapters (e.g. searching) without allocating a String for every verse or chapter.
+ * <p>
+ * The layout is the same as the text returned by {@link Version#loadChapterTextLowercasedWithoutSplit(Book, int)}:
+ * every verse is followed by '\n'. As a {@link CharSequence}, this is the whole chapter text in that layout.
+ * <p>
+ * One instance is meant to be reused for many chapters by one thread. The char array, and the CharSequences
+ * returned by {@link #getVerse(int)} and {@link #subSequence(int, int)}, are only valid until this is filled again.
+ */
+public class ChapterCharView implements CharSequence {
+	private char[] chars;
+	private int length;
+
+	/**
+	 * verseStarts[verse_0] is the offset of the first char of the verse.
+	 * verseStarts[verseCount] is {@link #length}, so that the end of every verse (excluding '\n') is verseStarts[verse_0 + 1] - 1.
+	 */
+	private int[] verseStarts;
+	private int verseCount;
+
+	public ChapterCharView() {
+		this(8000);
+	}
+
+	public ChapterCharView(final int initialCapacity) {
+		chars = new char[initialCapacity];
+		verseStarts = new int[200];
+	}
+
+	// Filling
+
+	/**
+	 * Empties this view, to be filled again with verses.
+	 */
+	public void reset() {
+		length = 0;
+		verseCount = 0;
+		verseStarts[0] = 0;
+	}
+
+	/**
+	 * Makes sure a verse of up to maxVerseLength chars can be written at {@link #length()}.
+	 * Write the chars of the verse there, and then call {@link #commitVerse(int)}.
+	 * @return the char array to write into. This can be a different array than before.
+	 */
+	public char[] reserve(final int maxVerseLength) {
+		final int needed = length + maxVerseLength + 1 /* for separator */;
+		if (needed > chars.length) {
+			final char[] newChars = new char[needed + 1000];
+			System.arraycopy(chars, 0, newChars, 0, length);
+			chars = newChars;
+		}
+		return chars;
+	}
+
+	/**
+	 * Ends the verse whose chars have been written at {@link #length()} into the array returned by {@link #reserve(int)}.
+	 * @param verseLength the number of chars actually written
+	 */
+	public void commitVerse(final int verseLength) {
+		length += verseLength;
+		chars[length++] = '\n';
+
+		verseCount++;
+		if (verseCount >= verseStarts.length) {
+			final int[] newVerseStarts = new int[verseStarts.length * 2];
+			System.arraycopy(verseStarts, 0, newVerseStarts, 0, verseStarts.length);
+			verseStarts = newVerseStarts;
+		}
+		verseStarts[verseCount] = length;
+	}
+
+	public void appendVerse(final CharSequence verse) {
+		final int verse_len = verse.length();
+		final char[] buf = reserve(verse_len);
+		if (verse instanceof String) {
+			((String) verse).getChars(0, verse_len, buf, length);
+		} else {
+			for (int i = 0; i < verse_len; i++) {
+				buf[length + i] = verse.charAt(i);
+			}
+		}
+		commitVerse(verse_len);
+	}
+
+	/**
+	 * Fills this view with the verses, for readers that can only produce Strings.
+	 */
+	public void setVerses(final SingleChapterVerses verses) {
+		reset();
+		for (int i = 0, len = verses.getVerseCount(); i < len; i++) {
+			final String verse = verses.getVerse(i);
+			appendVerse(verse == null ? "" : verse);
+		}
+	}
+
+	// Reading
+
+	public int getVerseCount() {
+		return verseCount;
+	}
+
+	/**
+	 * @return offset in {@link #getChars()} of the first char of the verse
+	 */
+	public int getVerseStart(final int verse_0) {
+		return verseStarts[verse_0];
+	}
+
+	/**
+	 * @return offset in {@link #getChars()} after the last char of the verse, that is the offset of the '\n' after the verse.
+	 */
+	public int getVerseEnd(final int verse_0) {
+		return verseStarts[verse_0 + 1] - 1;
+	}
+
+	public int getVerseLength(final int verse_0) {
+		return verseStarts[verse_0 + 1] - 1 - verseStarts[verse_0];
+	}
+
+	/**
+	 * @param pos offset of a char in the chapter
+	 * @return the verse (0-based) that contains the char at pos. The '\n' after a verse belongs to that verse.
+	 */
+	public int getVerseIndexAt(final int pos) {
+		int lo = 0;
+		int hi = verseCount - 1;
+		while (lo < hi) {
+			final int mid = (lo + hi + 1) >>> 1;
+			if (verseStarts[mid] <= pos) {
+				lo = mid;
+			} else {
+				hi = mid - 1;
+			}
+		}
+		return lo;
+	}
+
+	/**
+	 * @return the text of the verse without the '\n', without copying the chars.
+	 */
+	public CharSequence getVerse(final int verse_0) {
+		return subSequence(getVerseStart(verse_0), getVerseEnd(verse_0));
+	}
+
+	public String getVerseString(final int verse_0) {
+		return new String(chars, getVerseStart(verse_0), getVerseLength(verse_0));
+	}
+
+	/**
+	 * The underlying array. Only the first {@link #length()} chars are valid.
+	 */
+	public char[] getChars() {
+		return chars;
+	}
+
+	public int indexOf(final char c, final int fromIndex) {
+		final char[] chars = this.chars;
+		for (int i = Math.max(0, fromIndex), len = length; i < len; i++) {
+			if (chars[i] == c) return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * Same as {@link String#indexOf(String, int)} on {@link #toString()}, but without making the String.
+	 */
+	public int indexOf(final String s, final int fromIndex) {
+		final int slen = s.length();
+		if (slen == 0) {
+			return fromIndex < 0 ? 0 : Math.min(fromIndex, length);
+		}
+
+		final char[] chars = this.chars;
+		final char first = s.charAt(0);
+		final int max = length - slen;
+
+		for (int i = Math.max(0, fromIndex); i <= max; i++) {
+			if (chars[i] != first) {
+				while (++i <= max && chars[i] != first) ;
+			}
+
+			if (i <= max) {
+				int j = i + 1;
+				final int end = i + slen;
+				for (int k = 1; j < end && chars[j] == s.charAt(k); j++, k++) ;
+
+				if (j == end) {
+					return i;
+				}
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public int length() {
+		return length;
+	}
+
+	@Override
+	public char charAt(final int index) {
+		if (index < 0 || index >= length) {
+			throw new IndexOutOfBoundsException("index " + index + ", length " + length);
+		}
+		return chars[index];
+	}
+
+	/**
+	 * @return a view of the chars, without copying them.
+	 */
+	@Override
+	public CharSequence subSequence(final int start, final int end) {
+		if (start < 0 || end > length || start > end) {
+			throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + length);
+		}
+		return new Slice(chars, start, end - start);
+	}
+
+	@Override
+	public String toString() {
+		return new String(chars, 0, length);
+	}
+
+	static class Slice implements CharSequence {
+		private final char[] chars;
+		private final int offset;
+		private final int length;
+
+		Slice(final char[] chars, final int offset, final int length) {
+			this.chars = chars;
+			this.offset = offset;
+			this.length = length;
+		}
+
+		@Override
+		public int length() {
+			return length;
+		}
+
+		@Override
+		public char charAt(final int index) {
+			if (index < 0 || index >= length) {
+				throw new IndexOutOfBoundsException("index " + index + ", length " + length);
+			}
+			return chars[offset + index];
+		}
+
+		@Override
+		public CharSequence subSequence(final int start, final int end) {
+			if (start < 0 || end > length || start > end) {
+				throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + length);
+			}
+			return new Slice(chars, offset + start, end - start);
+		}
+
+		@Override
+		public String toString() {
+			return new String(chars, offset, length);
+		}
+	}
+}
@@ -1,5 +1,8 @@
 package yuku.alkitab.model;
 
+import yuku.alkitab.util.Ari;
+
+import java.io.IOException;
 import java.util.Arrays;
 
 public class PericopeIndex {
@@ -7,7 +10,24 @@ public class PericopeIndex {
 	
 	public int[] aris;
 	public int[] offsets;
-	
+
+	/**
+	 * Decodes the pericope block at a position of this index.
+	 */
+	public interface BlockReader {
+		PericopeBlock read(int position) throws IOException;
+	}
+
+	/**
+	 * Index by book id, then by chapter_1, of the position of the first pericope of the chapter, or where it would have been.
+	 * The array of a book has one more element, for the position after its last pericope. Null for books without pericopes.
+	 * Built the first time it is needed.
+	 */
+	private int[][] chapterStarts_;
+
+	/** Blocks decoded so far, by position. */
+	private PericopeBlock[] blocks_;
+
 	public int findFirst(int ariMin, int ariMax) {
 		int x = Arrays.binarySearch(aris, ariMin);
 		
@@ -49,4 +69,74 @@ public class PericopeIndex {
 		
 		return aris[index];
 	}
+
+	/**
+	 * Gets the pericopes of a chapter. Blocks are decoded only the first time they are needed, so showing a chapter again,
+	 * or every chapter of a book, does not read anything.
+	 *
+	 * @param aris (result param) the aris of the pericopes
+	 * @param blocks (result param) the pericope blocks
+	 * @param max maximum number of results to return, must be less than or equal to min(aris.length, blocks.length)
+	 * @param reader used to decode the blocks that have not been decoded before.
+	 * @return number of pericopes put into aris and blocks.
+	 */
+	public int getPericopes(final int bookId, final int chapter_1, final int[] aris, final PericopeBlock[] blocks, final int max, final BlockReader reader) throws IOException {
+		final int[][] chapterStarts = getChapterStarts();
+		if (bookId < 0 || bookId >= chapterStarts.length) return 0;
+
+		final int[] starts = chapterStarts[bookId];
+		if (starts == null || chapter_1 < 0 || chapter_1 + 1 >= starts.length) return 0;
+
+		int res = 0;
+		for (int pos = starts[chapter_1], end = starts[chapter_1 + 1]; pos < end && res < max; pos++) {
+			aris[res] = this.aris[pos];
+			blocks[res] = getBlock(pos, reader);
+			res++;
+		}
+		return res;
+	}
+
+	private synchronized PericopeBlock getBlock(final int position, final BlockReader reader) throws IOException {
+		if (blocks_ == null) {
+			blocks_ = new PericopeBlock[aris.length];
+		}
+
+		PericopeBlock res = blocks_[position];
+		if (res == null) {
+			res = blocks_[position] = reader.read(position);
+		}
+		return res;
+	}
+
+	private synchronized int[][] getChapterStarts() {
+		if (chapterStarts_ != null) {
+			return chapterStarts_;
+		}
+
+		final int[][] res = new int[256][];
+
+		// aris are sorted, so the pericopes of a book are together
+		int pos = 0;
+		while (pos < aris.length) {
+			final int bookId = Ari.toBook(aris[pos]);
+			int bookEnd = pos;
+			while (bookEnd < aris.length && Ari.toBook(aris[bookEnd]) == bookId) {
+				bookEnd++;
+			}
+
+			final int[] starts = new int[Ari.toChapter(aris[bookEnd - 1]) + 2];
+			int p = pos;
+			for (int chapter_1 = 0; chapter_1 < starts.length; chapter_1++) {
+				while (p < bookEnd && Ari.toChapter(aris[p]) < chapter_1) {
+					p++;
+				}
+				starts[chapter_1] = p;
+			}
+
+			res[bookId] = starts;
+			pos = bookEnd;
+		}
+
+		return chapterStarts_ = res;
+	}
 }
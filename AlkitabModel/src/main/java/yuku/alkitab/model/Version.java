@@ -5,9 +5,32 @@ import android.support.annotation.Nullable;
 import yuku.alkitab.util.Ari;
 import yuku.alkitab.util.IntArrayList;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 public abstract class Version {
+	/**
+	 * Reading verses is mostly waiting for storage, so a few versions can be read at the same time even on few cores.
+	 */
+	static final int PARALLEL_LOAD_THREAD_COUNT = 4;
+	private static ExecutorService parallelLoadExecutor;
+
+	private static synchronized ExecutorService getParallelLoadExecutor() {
+		if (parallelLoadExecutor == null) {
+			final ThreadPoolExecutor e = new ThreadPoolExecutor(PARALLEL_LOAD_THREAD_COUNT, PARALLEL_LOAD_THREAD_COUNT, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> new Thread(r, "Version.loadVerseTexts"));
+			e.allowCoreThreadTimeOut(true);
+			parallelLoadExecutor = e;
+		}
+		return parallelLoadExecutor;
+	}
+
 	/**
 	 * Get the short name (abbreviation) of this version.
 	 */
@@ -47,6 +70,94 @@ public abstract class Version {
 	 */
 	@Nullable public abstract String loadVerseText(Book book, int chapter_1, int verse_1);
 
+	/**
+	 * Load many verses from this version, in any order, e.g. the verses of all markers.
+	 * The verses are grouped by chapter, so every chapter is loaded with {@link #loadChapterText(Book, int)} only once,
+	 * instead of once for every verse in it, which with few cached chapters means reading them again and again.
+	 *
+	 * @return verse texts in the same order as aris. Null where the verse is not available.
+	 */
+	@NonNull public String[] loadVerseTexts(@NonNull final int[] aris) {
+		final String[] res = new String[aris.length];
+
+		// ari in the upper half, index in the lower half, so sorting groups the aris by chapter and keeps the index
+		final long[] keys = new long[aris.length];
+		for (int i = 0; i < aris.length; i++) {
+			keys[i] = ((long) aris[i] << 32) | i;
+		}
+		Arrays.sort(keys);
+
+		int i = 0;
+		while (i < keys.length) {
+			final int ari_bc = Ari.toBookChapter((int) (keys[i] >>> 32));
+
+			int end = i + 1;
+			while (end < keys.length && Ari.toBookChapter((int) (keys[end] >>> 32)) == ari_bc) {
+				end++;
+			}
+
+			final Book book = getBook(Ari.toBook(ari_bc));
+			final SingleChapterVerses verses = book == null ? null : loadChapterText(book, Ari.toChapter(ari_bc));
+			if (verses != null) {
+				final int verseCount = verses.getVerseCount();
+				for (int j = i; j < end; j++) {
+					final int verse_0 = Ari.toVerse((int) (keys[j] >>> 32)) - 1;
+					if (verse_0 >= 0 && verse_0 < verseCount) {
+						res[(int) keys[j]] = verses.getVerse(verse_0);
+					}
+				}
+			}
+
+			i = end;
+		}
+
+		return res;
+	}
+
+	/**
+	 * Load the same verses from several versions, reading the versions in parallel, so comparing a verse
+	 * across many versions takes about as long as reading it from one of them, not from all of them in turn.
+	 * The verses are loaded with {@link #loadVerseTexts(int[])}, so the caches of each version are used as usual.
+	 *
+	 * @param versions may contain nulls, for versions that could not be opened.
+	 * @return verse texts indexed by the position in versions and then the position in aris. Null where the verse is not available.
+	 */
+	@NonNull public static String[][] loadVerseTexts(@NonNull final List<? extends Version> versions, @NonNull final int[] aris) {
+		final String[][] res = new String[versions.size()][aris.length];
+
+		final List<FutureTask<Void>> loads = new ArrayList<>(versions.size());
+		for (int i = 0; i < versions.size(); i++) {
+			final Version version = versions.get(i);
+			if (version == null) {
+				continue;
+			}
+
+			final int index = i;
+			final FutureTask<Void> load = new FutureTask<>(() -> {
+				res[index] = version.loadVerseTexts(aris);
+				return null;
+			});
+			loads.add(load);
+			getParallelLoadExecutor().execute(load);
+		}
+
+		for (final FutureTask<Void> load : loads) {
+			// does nothing if a thread of the executor has already started or finished it, so this thread helps instead of only waiting
+			load.run();
+
+			try {
+				load.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException(e);
+			} catch (ExecutionException e) {
+				throw new RuntimeException(e.getCause());
+			}
+		}
+
+		return res;
+	}
+
 	/**
 	 * @param ariRanges list of aris where even-indexed elements are start and odd-indexed elements are end (inclusive) aris
 	 * @param result_aris (non-null, will be cleared first) list of aris loaded
@@ -70,11 +181,36 @@ public abstract class Version {
 	@Nullable
 	public abstract SingleChapterVerses loadChapterTextLowercased(Book book, int chapter_1);
 
+	/**
+	 * Same as {@link #loadChapterText(Book, int)}, but for reading every chapter once, such as for building an index,
+	 * so the chapters do not need to be kept in any cache.
+	 * Subclasses should override this if they cache chapters, so the chapters being read are not evicted.
+	 */
+	@Nullable
+	public SingleChapterVerses loadChapterTextUncached(Book book, int chapter_1) {
+		return loadChapterText(book, chapter_1);
+	}
+
 	/**
 	 * Load a whole chapter as a single string with verses separated by '\n' from this version.
 	 * @return null if the chapter is not available.
 	 */
 	public abstract String loadChapterTextLowercasedWithoutSplit(Book book, int chapter_1);
+
+	/**
+	 * Load a whole chapter lowercased into a reusable view, for scanning many chapters without making Strings.
+	 * The view is reset first. The layout is the same as {@link #loadChapterTextLowercasedWithoutSplit(Book, int)}.
+	 * Subclasses should override this if they can decode into the view directly.
+	 * @return false if the chapter is not available.
+	 */
+	public boolean loadChapterTextLowercasedInto(Book book, int chapter_1, ChapterCharView view) {
+		final SingleChapterVerses verses = loadChapterTextLowercased(book, chapter_1);
+		if (verses == null) {
+			return false;
+		}
+		view.setVerses(verses);
+		return true;
+	}
 	
 	/**
 	 * @param arif 24bit ari at the MSB + which xref field at the 8bit LSB (starts from 1)
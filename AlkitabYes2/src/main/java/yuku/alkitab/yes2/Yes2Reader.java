@@ -3,14 +3,14 @@ package yuku.alkitab.yes2;
 import android.util.Log;
 import yuku.alkitab.io.BibleReader;
 import yuku.alkitab.model.Book;
+import yuku.alkitab.model.ChapterCharView;
 import yuku.alkitab.model.FootnoteEntry;
 import yuku.alkitab.model.PericopeBlock;
 import yuku.alkitab.model.SingleChapterVerses;
 import yuku.alkitab.model.XrefEntry;
-import yuku.alkitab.util.Ari;
 import yuku.alkitab.yes2.compress.SnappyInputStream;
-import yuku.alkitab.yes2.io.RandomAccessFileRandomInputStream;
 import yuku.alkitab.yes2.io.RandomInputStream;
+import yuku.alkitab.yes2.io.RandomInputStreamCursors;
 import yuku.alkitab.yes2.io.Yes2VerseTextDecoder;
 import yuku.alkitab.yes2.model.SectionIndex;
 import yuku.alkitab.yes2.model.Yes2Book;
@@ -30,15 +30,19 @@ import java.util.List;
 public class Yes2Reader implements BibleReader {
 	private static final String TAG = Yes2Reader.class.getSimpleName();
 
-	private RandomAccessFileRandomInputStream file_;
+	/**
+	 * Shared by all sections for reading the metadata. Synchronize on this while seeking and reading.
+	 * Verse texts, xrefs and footnotes are read through per-thread cursors if the stream supports it.
+	 */
+	private final RandomInputStream file_;
 	private SectionIndex sectionIndex_;
 
 	// cached in memory
-	private VersionInfoSection versionInfo_;
-	private PericopesSection pericopesSection_;
-	private TextSectionReader textSectionReader_;
-	private XrefsSection xrefsSection_;
-	private FootnotesSection footnotesSection_;
+	private volatile VersionInfoSection versionInfo_;
+	private volatile PericopesSection pericopesSection_;
+	private volatile TextSectionReader textSectionReader_;
+	private volatile XrefsSection xrefsSection_;
+	private volatile FootnotesSection footnotesSection_;
 
 	static class Yes2SingleChapterVerses extends SingleChapterVerses {
 		private final String[] verses;
@@ -62,86 +66,116 @@ public class Yes2Reader implements BibleReader {
 	 * and also understands the text section attributes (compression, encryption etc.)
 	 */
 	static class TextSectionReader {
-		private final RandomAccessFileRandomInputStream file_;
 		private final Yes2VerseTextDecoder decoder_;
-		private final long sectionContentOffset_;
-		private BintexReader br_;
-		
-		private SnappyInputStream snappyInputStream;  // null means no compression
-		
-		public TextSectionReader(RandomAccessFileRandomInputStream file, Yes2VerseTextDecoder decoder, ValueMap sectionAttributes, long sectionContentOffset) throws Exception {
-			file_ = file;
+		private final long baseOffset_;
+		private final RandomInputStreamCursors cursors_;
+		private final ThreadLocal<BintexReader> br_ = new ThreadLocal<BintexReader>() {
+			@Override protected BintexReader initialValue() {
+				return new BintexReader(null);
+			}
+		};
+
+		public TextSectionReader(RandomInputStream file, Yes2VerseTextDecoder decoder, ValueMap sectionAttributes, long sectionContentOffset) throws Exception {
 			decoder_ = decoder;
-			sectionContentOffset_ = sectionContentOffset;
-			br_ = new BintexReader(null);
-			
+
+			SnappyInputStream snappyInputStream = null;  // null means no compression
 			if (sectionAttributes != null) {
 				String compressionName = sectionAttributes.getString("compression.name");
 				if (compressionName != null) {
 					if ("snappy-blocks".equals(compressionName)) {
-						snappyInputStream = SnappyInputStream.getInstanceFromAttributes(file_, sectionAttributes, sectionContentOffset);
+						snappyInputStream = SnappyInputStream.getInstanceFromAttributes(file, sectionAttributes, sectionContentOffset);
 					} else {
 						throw new Exception("Compression " + compressionName + " is not supported");
 					}
 				}
 			}
+
+			if (snappyInputStream != null) {
+				// offsets in the snappy stream are already relative to the section content
+				baseOffset_ = 0;
+				cursors_ = new RandomInputStreamCursors(snappyInputStream);
+			} else {
+				baseOffset_ = sectionContentOffset;
+				cursors_ = new RandomInputStreamCursors(file);
+			}
 		}
 
 		public Yes2SingleChapterVerses loadVerseText(Yes2Book yes2Book, int chapter_1, boolean dontSeparateVerses, boolean lowercase) throws Exception {
 			int contentOffset = yes2Book.offset; 
 			contentOffset += yes2Book.chapter_offsets[chapter_1 - 1];
 			
-			BintexReader br;
-			if (snappyInputStream != null) {
-				snappyInputStream.seek(contentOffset);
-				br = br_.reuse(snappyInputStream);
-			} else {
-				file_.seek(sectionContentOffset_ + contentOffset);
-				br = br_.reuse(file_);
+			final RandomInputStream input = cursors_.get();
+			synchronized (input) {
+				input.seek(baseOffset_ + contentOffset);
+				final BintexReader br = br_.get().reuse(input);
+
+				int verse_count = yes2Book.verse_counts[chapter_1 - 1];
+				if (dontSeparateVerses) {
+					return new Yes2SingleChapterVerses(new String[] {
+						decoder_.makeIntoSingleString(br, verse_count, lowercase),
+					});
+				} else {
+					return new Yes2SingleChapterVerses(decoder_.separateIntoVerses(br, verse_count, lowercase));
+				}
 			}
+		}
 
-			int verse_count = yes2Book.verse_counts[chapter_1 - 1];
-			if (dontSeparateVerses) {
-				return new Yes2SingleChapterVerses(new String[] { 
-					decoder_.makeIntoSingleString(br, verse_count, lowercase),
-				});
-			} else {
-				return new Yes2SingleChapterVerses(decoder_.separateIntoVerses(br, verse_count, lowercase));
+		public void loadChapterCharView(Yes2Book yes2Book, int chapter_1, boolean lowercase, ChapterCharView view) throws Exception {
+			int contentOffset = yes2Book.offset;
+			contentOffset += yes2Book.chapter_offsets[chapter_1 - 1];
+
+			final RandomInputStream input = cursors_.get();
+			synchronized (input) {
+				input.seek(baseOffset_ + contentOffset);
+				final BintexReader br = br_.get().reuse(input);
+
+				decoder_.decodeIntoView(br, yes2Book.verse_counts[chapter_1 - 1], lowercase, view);
 			}
 		}
 	}
 	
-	public Yes2Reader(RandomAccessFileRandomInputStream input) {
+	/**
+	 * @param input If this supports {@link RandomInputStream#duplicate()}, such as {@link yuku.alkitab.yes2.io.MappedRandomInputStream},
+	 * verse texts can be read by many threads at the same time without waiting for each other.
+	 */
+	public Yes2Reader(RandomInputStream input) {
 		this.file_ = input;
 	}
 
 	/** Read section index */
-	private synchronized void loadSectionIndex() throws IOException {
-		if (sectionIndex_ != null) { // we have read it previously.
-			return;
-		}
-			
-		file_.seek(0);
+	private void loadSectionIndex() throws IOException {
+		synchronized (file_) {
+			if (sectionIndex_ != null) { // we have read it previously.
+				return;
+			}
 
-		{ // check header
-			byte[] buf = new byte[8];
-			file_.read(buf);
-			if (!Arrays.equals(buf, new byte[] { (byte) 0x98, 0x58, 0x0d, 0x0a, 0x00, 0x5d, (byte) 0xe0, 0x02 /* yes version 2 */})) {
-				throw new RuntimeException("YES2: Header is incorrect. Found: " + Arrays.toString(buf));
+			file_.seek(0);
+
+			{ // check header
+				byte[] buf = new byte[8];
+				file_.read(buf);
+				if (!Arrays.equals(buf, new byte[] { (byte) 0x98, 0x58, 0x0d, 0x0a, 0x00, 0x5d, (byte) 0xe0, 0x02 /* yes version 2 */})) {
+					throw new RuntimeException("YES2: Header is incorrect. Found: " + Arrays.toString(buf));
+				}
 			}
+
+			file_.seek(12); // start of sectionIndex
+			sectionIndex_ = SectionIndex.read(file_);
 		}
-		
-		file_.seek(12); // start of sectionIndex
-		sectionIndex_ = SectionIndex.read(file_);
 	}
 	
-	private synchronized void loadVersionInfo() throws Exception {
-		if (seekToSection("versionInfo")) {
-			versionInfo_ = new VersionInfoSection.Reader().read(file_);
+	private void loadVersionInfo() throws Exception {
+		synchronized (file_) {
+			if (seekToSection("versionInfo")) {
+				versionInfo_ = new VersionInfoSection.Reader().read(file_);
+			}
 		}
 	}
 	
-	private synchronized boolean seekToSection(String sectionName) throws IOException {
+	/**
+	 * Caller must synchronize on {@link #file_} to keep the file pointer until the section is read.
+	 */
+	private boolean seekToSection(String sectionName) throws IOException {
 		loadSectionIndex();
 		
 		if (sectionIndex_ == null) {
@@ -203,10 +237,12 @@ public class Yes2Reader implements BibleReader {
 		try {
 			loadVersionInfo();
 
-			if (seekToSection(BooksInfoSection.SECTION_NAME)) {
-				BooksInfoSection section = new BooksInfoSection.Reader().read(file_);
-				List<Yes2Book> books = section.yes2Books;
-				return books.toArray(new Yes2Book[books.size()]);
+			synchronized (file_) {
+				if (seekToSection(BooksInfoSection.SECTION_NAME)) {
+					BooksInfoSection section = new BooksInfoSection.Reader().read(file_);
+					List<Yes2Book> books = section.yes2Books;
+					return books.toArray(new Yes2Book[books.size()]);
+				}
 			}
 			
 			Log.e(TAG, "no section named " + BooksInfoSection.SECTION_NAME);
@@ -217,6 +253,33 @@ public class Yes2Reader implements BibleReader {
 		}
 	}
 
+	private TextSectionReader getTextSectionReader() throws Exception {
+		TextSectionReader textSectionReader = textSectionReader_;
+		if (textSectionReader == null) {
+			synchronized (file_) {
+				textSectionReader = textSectionReader_;
+				if (textSectionReader == null) {
+					// init text decoder
+					Yes2VerseTextDecoder decoder;
+					int textEncoding = versionInfo_.textEncoding;
+					if (textEncoding == 1) {
+						decoder = new Yes2VerseTextDecoder.Ascii();
+					} else if (textEncoding == 2) {
+						decoder = new Yes2VerseTextDecoder.Utf8();
+					} else {
+						Log.e(TAG, "Text encoding " + textEncoding + " not supported! Fallback to ascii.");
+						decoder = new Yes2VerseTextDecoder.Ascii();
+					}
+
+					ValueMap sectionAttributes = sectionIndex_.getSectionAttributes(TextSection.SECTION_NAME, file_);
+					long sectionContentOffset = sectionIndex_.getAbsoluteOffsetForSectionContent(TextSection.SECTION_NAME);
+					textSectionReader_ = textSectionReader = new TextSectionReader(file_, decoder, sectionAttributes, sectionContentOffset);
+				}
+			}
+		}
+		return textSectionReader;
+	}
+
 	@Override public Yes2SingleChapterVerses loadVerseText(Book book, int chapter_1, boolean dontSeparateVerses, boolean lowercase) {
 		Yes2Book yes2Book = (Yes2Book) book;
 		
@@ -225,31 +288,29 @@ public class Yes2Reader implements BibleReader {
 				return null;
 			}
 
-			if (textSectionReader_ == null) {
-				// init text decoder 
-				Yes2VerseTextDecoder decoder;
-				int textEncoding = versionInfo_.textEncoding;
-				if (textEncoding == 1) {
-					decoder = new Yes2VerseTextDecoder.Ascii();
-				} else if (textEncoding == 2) {
-					decoder = new Yes2VerseTextDecoder.Utf8();
-				} else {
-					Log.e(TAG, "Text encoding " + textEncoding + " not supported! Fallback to ascii.");
-					decoder = new Yes2VerseTextDecoder.Ascii();
-				}
-				
-				ValueMap sectionAttributes = sectionIndex_.getSectionAttributes(TextSection.SECTION_NAME, file_);
-				long sectionContentOffset = sectionIndex_.getAbsoluteOffsetForSectionContent(TextSection.SECTION_NAME);
-				textSectionReader_ = new TextSectionReader(file_, decoder, sectionAttributes, sectionContentOffset);
-			}
-			
-			return textSectionReader_.loadVerseText(yes2Book, chapter_1, dontSeparateVerses, lowercase);
+			return getTextSectionReader().loadVerseText(yes2Book, chapter_1, dontSeparateVerses, lowercase);
 		} catch (Exception e) {
 			Log.e(TAG, "@@loadVerseText error book=" + book + " chapter_1=" + chapter_1 + " dontSeparateVerses=" + dontSeparateVerses + " lowercase=" + lowercase, e);
 			return null;
 		}
 	}
 
+	@Override public boolean loadChapterCharView(Book book, int chapter_1, boolean lowercased, ChapterCharView view) {
+		Yes2Book yes2Book = (Yes2Book) book;
+
+		try {
+			if (chapter_1 <= 0 || chapter_1 > yes2Book.chapter_count) {
+				return false;
+			}
+
+			getTextSectionReader().loadChapterCharView(yes2Book, chapter_1, lowercased, view);
+			return true;
+		} catch (Exception e) {
+			Log.e(TAG, "@@loadChapterCharView error book=" + book + " chapter_1=" + chapter_1 + " lowercased=" + lowercased, e);
+			return false;
+		}
+	}
+
 	@Override public int loadPericope(int bookId, int chapter_1, int[] aris, PericopeBlock[] blocks, int max) {
 		try {
 			loadVersionInfo();
@@ -258,25 +319,28 @@ public class Yes2Reader implements BibleReader {
 				return 0;
 			}
 			
-			if (pericopesSection_ == null) { // not yet loaded!
-				final RandomInputStream sectionInput = prepareLoadSection(PericopesSection.SECTION_NAME);
-
-				if (sectionInput == null) {
-					return 0;
+			PericopesSection pericopesSection = pericopesSection_;
+			if (pericopesSection == null) { // not yet loaded!
+				synchronized (file_) {
+					pericopesSection = pericopesSection_;
+					if (pericopesSection == null) {
+						final RandomInputStream sectionInput = prepareLoadSection(PericopesSection.SECTION_NAME);
+
+						if (sectionInput == null) {
+							return 0;
+						}
+
+						pericopesSection_ = pericopesSection = new PericopesSection.Reader().read(sectionInput);
+					}
 				}
-
-				pericopesSection_ = new PericopesSection.Reader().read(sectionInput);
 			}
 			
-			if (pericopesSection_ == null) { 
+			if (pericopesSection == null) {
 				Log.e(TAG, "Didn't succeed in loading pericopes section");
 				return 0;
 			}
 		
-			int ariMin = Ari.encode(bookId, chapter_1, 0);
-			int ariMax = Ari.encode(bookId, chapter_1 + 1, 0);
-
-			return pericopesSection_.getPericopesForAris(ariMin, ariMax, aris, blocks, max);
+			return pericopesSection.getPericopesForChapter(bookId, chapter_1, aris, blocks, max);
 		} catch (Exception e) {
 			Log.e(TAG, "General exception in loading pericope block", e);
 			return 0;
@@ -285,44 +349,57 @@ public class Yes2Reader implements BibleReader {
 
 	@Override
 	public XrefEntry getXrefEntry(int arif) {
-		if (xrefsSection_ == null) { // not yet loaded!
-			try {
-				final RandomInputStream sectionInput = prepareLoadSection(XrefsSection.SECTION_NAME);
-				if (sectionInput == null) {
-					return null;
+		XrefsSection xrefsSection = xrefsSection_;
+		if (xrefsSection == null) { // not yet loaded!
+			synchronized (file_) {
+				xrefsSection = xrefsSection_;
+				if (xrefsSection == null) {
+					try {
+						final RandomInputStream sectionInput = prepareLoadSection(XrefsSection.SECTION_NAME);
+						if (sectionInput == null) {
+							return null;
+						}
+
+						xrefsSection_ = xrefsSection = new XrefsSection.Reader().read(sectionInput);
+					} catch (Exception e) {
+						Log.e(TAG, "General exception in loading xref section", e);
+						return null;
+					}
 				}
-
-				xrefsSection_ = new XrefsSection.Reader().read(sectionInput);
-			} catch (Exception e) {
-				Log.e(TAG, "General exception in loading xref section", e);
-				return null;
 			}
 		}
 
-		return xrefsSection_.getXrefEntry(arif);
+		return xrefsSection.getXrefEntry(arif);
 	}
 
 	@Override
 	public FootnoteEntry getFootnoteEntry(final int arif) {
-		if (footnotesSection_ == null) { // not yet loaded!
-			try {
-				final RandomInputStream sectionInput = prepareLoadSection(FootnotesSection.SECTION_NAME);
-				if (sectionInput == null) {
-					return null;
+		FootnotesSection footnotesSection = footnotesSection_;
+		if (footnotesSection == null) { // not yet loaded!
+			synchronized (file_) {
+				footnotesSection = footnotesSection_;
+				if (footnotesSection == null) {
+					try {
+						final RandomInputStream sectionInput = prepareLoadSection(FootnotesSection.SECTION_NAME);
+						if (sectionInput == null) {
+							return null;
+						}
+
+						footnotesSection_ = footnotesSection = new FootnotesSection.Reader().read(sectionInput);
+					} catch (Exception e) {
+						Log.e(TAG, "General exception in loading footnote section", e);
+						return null;
+					}
 				}
-
-				footnotesSection_ = new FootnotesSection.Reader().read(sectionInput);
-			} catch (Exception e) {
-				Log.e(TAG, "General exception in loading footnote section", e);
-				return null;
 			}
 		}
 
-		return footnotesSection_.getFootnoteEntry(arif);
+		return footnotesSection.getFootnoteEntry(arif);
 	}
 
 	/**
 	 * Prepares an input stream for a section.
+	 * Caller must synchronize on {@link #file_} until the section is read.
 	 * @return an input stream that transparently handles compressed/uncompressed data. Null if the section name is not found.
 	 */
 	RandomInputStream prepareLoadSection(final String sectionName) throws IOException {
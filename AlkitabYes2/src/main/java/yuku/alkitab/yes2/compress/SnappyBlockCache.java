@@ -0,0 +1,214 @@
+package yuku.alkitab.yes2.compress;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Process-wide LRU cache of decompressed snappy blocks, shared by all {@link SnappyInputStream}s,
+ * so going back and forth between chapters, versions and search results
+ * does not read and decompress the same blocks again.
+ * <p>
+ * Entries are keyed by the source id of a compressed section (see {@link #sourceIdFor(String, String, long)}) and the block index.
+ * The cached arrays must never be modified.
+ */
+public class SnappyBlockCache {
+	public static final String TAG = SnappyBlockCache.class.getSimpleName();
+
+	public static final int DEFAULT_MAX_BYTES = 4 * 1024 * 1024;
+
+	private static final AtomicInteger lastSourceId = new AtomicInteger();
+	/** Source ids of the compressed sections of every file read so far, for as long as the file stays the same. */
+	private static final HashMap<String /* source name */, FileSourceIds> fileSourceIds = new HashMap<>();
+
+	static class FileSourceIds {
+		final String sourceIdentity;
+		final HashMap<Long /* offset */, Integer> sourceIds = new HashMap<>();
+
+		FileSourceIds(final String sourceIdentity) {
+			this.sourceIdentity = sourceIdentity;
+		}
+	}
+
+	private static final SnappyBlockCache instance = new SnappyBlockCache(DEFAULT_MAX_BYTES);
+
+	private final LinkedHashMap<Long, byte[]> blocks = new LinkedHashMap<>(64, 0.75f, true /* access order */);
+	private int maxBytes;
+	private int currentBytes;
+
+	private long hitCount;
+	private long missCount;
+	private long evictionCount;
+
+	SnappyBlockCache(final int maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+
+	public static SnappyBlockCache getInstance() {
+		return instance;
+	}
+
+	/**
+	 * A compressed section gets the same source id every time its file is opened, so the blocks cached
+	 * while it was open before are used again. Duplicated streams keep the id of the original,
+	 * so they share the cached blocks. When the file is replaced, the ids of the old file are forgotten
+	 * and its blocks are removed, so only the current files are remembered.
+	 * @param sourceName from {@link yuku.alkitab.yes2.io.RandomInputStream#getSourceName()}.
+	 * @param sourceIdentity from {@link yuku.alkitab.yes2.io.RandomInputStream#getSourceIdentity()}.
+	 * If this or sourceName is null, the section gets a new source id that is never used again after it is no longer read.
+	 * @param offset where the section starts in the source.
+	 */
+	static int sourceIdFor(final String sourceName, final String sourceIdentity, final long offset) {
+		if (sourceName == null || sourceIdentity == null) {
+			return lastSourceId.incrementAndGet();
+		}
+
+		FileSourceIds replaced = null;
+		final int res;
+		synchronized (fileSourceIds) {
+			FileSourceIds ids = fileSourceIds.get(sourceName);
+			if (ids == null || !ids.sourceIdentity.equals(sourceIdentity)) {
+				replaced = ids;
+				ids = new FileSourceIds(sourceIdentity);
+				fileSourceIds.put(sourceName, ids);
+			}
+
+			final Integer id = ids.sourceIds.get(offset);
+			if (id != null) {
+				res = id;
+			} else {
+				res = lastSourceId.incrementAndGet();
+				ids.sourceIds.put(offset, res);
+			}
+		}
+
+		// the old file is gone, so its blocks will never be read again
+		if (replaced != null) {
+			instance.removeSources(replaced.sourceIds.values());
+		}
+
+		return res;
+	}
+
+	/**
+	 * Forgets the source ids of a file and removes its cached blocks. Call this when the file is deleted.
+	 */
+	public static void forgetFile(final String filename) {
+		final FileSourceIds ids;
+		synchronized (fileSourceIds) {
+			ids = fileSourceIds.remove(new File(filename).getAbsolutePath());
+		}
+
+		if (ids != null) {
+			instance.removeSources(ids.sourceIds.values());
+		}
+	}
+
+	static int getFileCount() {
+		synchronized (fileSourceIds) {
+			return fileSourceIds.size();
+		}
+	}
+
+	private static long key(final int sourceId, final int blockIndex) {
+		return ((long) sourceId << 32) | (blockIndex & 0xffffffffL);
+	}
+
+	/**
+	 * @return the decompressed block, or null if it is not cached.
+	 */
+	synchronized byte[] get(final int sourceId, final int blockIndex) {
+		final byte[] res = blocks.get(key(sourceId, blockIndex));
+		if (res != null) {
+			hitCount++;
+		} else {
+			missCount++;
+		}
+		return res;
+	}
+
+	synchronized void put(final int sourceId, final int blockIndex, final byte[] block) {
+		if (block.length > maxBytes) {
+			return;
+		}
+
+		final byte[] old = blocks.put(key(sourceId, blockIndex), block);
+		if (old != null) {
+			currentBytes -= old.length;
+		}
+		currentBytes += block.length;
+
+		trimTo(maxBytes);
+	}
+
+	synchronized void removeSources(final Collection<Integer> sourceIds) {
+		final Iterator<Map.Entry<Long, byte[]>> it = blocks.entrySet().iterator();
+		while (it.hasNext()) {
+			final Map.Entry<Long, byte[]> e = it.next();
+			if (sourceIds.contains((int) (e.getKey() >>> 32))) {
+				it.remove();
+				currentBytes -= e.getValue().length;
+			}
+		}
+	}
+
+	private void trimTo(final int bytes) {
+		final Iterator<Map.Entry<Long, byte[]>> it = blocks.entrySet().iterator();
+		while (currentBytes > bytes && it.hasNext()) {
+			final byte[] eldest = it.next().getValue();
+			it.remove();
+			currentBytes -= eldest.length;
+			evictionCount++;
+		}
+	}
+
+	/**
+	 * Sets the maximum total size of the decompressed blocks kept in memory.
+	 * 0 disables caching. Blocks are evicted immediately if the cache is over the new budget.
+	 */
+	public synchronized void setMaxBytes(final int maxBytes) {
+		this.maxBytes = maxBytes;
+		trimTo(maxBytes);
+	}
+
+	public synchronized int getMaxBytes() {
+		return maxBytes;
+	}
+
+	public synchronized int getCurrentBytes() {
+		return currentBytes;
+	}
+
+	public synchronized long getHitCount() {
+		return hitCount;
+	}
+
+	public synchronized long getMissCount() {
+		return missCount;
+	}
+
+	public synchronized long getEvictionCount() {
+		return evictionCount;
+	}
+
+	public synchronized void clear() {
+		blocks.clear();
+		currentBytes = 0;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "SnappyBlockCache{" +
+			"blocks=" + blocks.size() +
+			", currentBytes=" + currentBytes +
+			", maxBytes=" + maxBytes +
+			", hitCount=" + hitCount +
+			", missCount=" + missCount +
+			", evictionCount=" + evictionCount +
+			'}';
+	}
+}
@@ -1,18 +1,20 @@
 package yuku.alkitab.yes2.compress;
 
-import yuku.alkitab.yes2.io.RandomAccessFileRandomInputStream;
 import yuku.alkitab.yes2.io.RandomInputStream;
 import yuku.bintex.ValueMap;
 import yuku.snappy.codec.Snappy;
 
 import java.io.IOException;
+import java.util.Arrays;
 
 public class SnappyInputStream extends RandomInputStream {
 	public final String TAG = SnappyInputStream.class.getSimpleName();
 	
-	private final RandomAccessFileRandomInputStream input;
+	private final RandomInputStream input;
 
 	private final Snappy snappy;
+	private final SnappyBlockCache cache;
+	private final int sourceId;
 	private final long baseOffset;
 	private final int block_size;
 	private final int[] compressed_block_sizes;
@@ -21,18 +23,23 @@ public class SnappyInputStream extends RandomInputStream {
 	private int current_block_skip = 0;
 	private byte[] compressed_buf;
 	private int uncompressed_block_index = -1;
-	private byte[] uncompressed_buf;
+	private byte[] uncompressed_buf; // may be shared with the cache, do not write to it
 	private int uncompressed_len = -1; // -1 means not initialized
 
-	public SnappyInputStream(RandomAccessFileRandomInputStream input, long baseOffset, int block_size, int[] compressed_block_sizes, int[] compressed_block_offsets) throws IOException {
+	public SnappyInputStream(RandomInputStream input, long baseOffset, int block_size, int[] compressed_block_sizes, int[] compressed_block_offsets) throws IOException {
+		this(input, SnappyBlockCache.sourceIdFor(input.getSourceName(), input.getSourceIdentity(), baseOffset), baseOffset, block_size, compressed_block_sizes, compressed_block_offsets);
+	}
+
+	private SnappyInputStream(RandomInputStream input, int sourceId, long baseOffset, int block_size, int[] compressed_block_sizes, int[] compressed_block_offsets) throws IOException {
 		this.input = input;
 		this.block_size = block_size;
 		this.snappy = new Snappy.Factory().newInstance();
+		this.cache = SnappyBlockCache.getInstance();
+		this.sourceId = sourceId;
 		this.baseOffset = baseOffset;
 		this.compressed_block_sizes = compressed_block_sizes;
 		this.compressed_block_offsets = compressed_block_offsets;
 		this.compressed_buf = new byte[snappy.maxCompressedLength(block_size)];
-		this.uncompressed_buf = new byte[block_size];
 	}
 
 	@Override public void seek(long n) throws IOException {
@@ -51,12 +58,30 @@ public class SnappyInputStream extends RandomInputStream {
 		// if uncompressed_block_index is already equal to the requested block_index
 		// then we do not need to re-decompress again
 		if (uncompressed_block_index != block_index) {
-			input.seek(baseOffset + compressed_block_offsets[block_index]);
-			input.read(compressed_buf, 0, compressed_block_sizes[block_index]);
-			uncompressed_len = snappy.decompress(compressed_buf, 0, uncompressed_buf, 0, compressed_block_sizes[block_index]);
-			if (uncompressed_len < 0) {
-				throw new IOException("Error in decompressing: " + uncompressed_len);
+			// another stream may have decompressed this block recently
+			byte[] block = cache.get(sourceId, block_index);
+
+			if (block == null) {
+				// the input may be shared with other readers, so seek and read must not be interleaved
+				synchronized (input) {
+					input.seek(baseOffset + compressed_block_offsets[block_index]);
+					input.read(compressed_buf, 0, compressed_block_sizes[block_index]);
+				}
+
+				// a new array each time, because the cache keeps it
+				block = new byte[block_size];
+				final int len = snappy.decompress(compressed_buf, 0, block, 0, compressed_block_sizes[block_index]);
+				if (len < 0) {
+					throw new IOException("Error in decompressing: " + len);
+				}
+				if (len != block_size) { // only the last block
+					block = Arrays.copyOf(block, len);
+				}
+				cache.put(sourceId, block_index, block);
 			}
+
+			uncompressed_buf = block;
+			uncompressed_len = block.length;
 			uncompressed_block_index = block_index;
 		}
 	}
@@ -128,8 +153,25 @@ public class SnappyInputStream extends RandomInputStream {
 		seek(getFilePointer() + n);
 		return n;
 	}
+
+	/**
+	 * The duplicate shares decompressed blocks with this stream through {@link SnappyBlockCache}.
+	 * @return null if the underlying input does not support duplication.
+	 */
+	@Override public SnappyInputStream duplicate() {
+		final RandomInputStream inputDup = input.duplicate();
+		if (inputDup == null) {
+			return null;
+		}
+
+		try {
+			return new SnappyInputStream(inputDup, sourceId, baseOffset, block_size, compressed_block_sizes, compressed_block_offsets);
+		} catch (IOException e) {
+			return null;
+		}
+	}
 	
-	public static SnappyInputStream getInstanceFromAttributes(RandomAccessFileRandomInputStream input, ValueMap sectionAttributes, long sectionContentOffset) throws IOException {
+	public static SnappyInputStream getInstanceFromAttributes(RandomInputStream input, ValueMap sectionAttributes, long sectionContentOffset) throws IOException {
 		int compressionVersion = sectionAttributes.getInt("compression.version", 0);
 		if (compressionVersion > 1) {
 			throw new IOException("Compression version " + compressionVersion + " is not supported");
@@ -0,0 +1,119 @@
+package yuku.alkitab.yes2.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * {@link RandomInputStream} backed by a read-only memory-mapped file.
+ * Reads are served from the page cache without any system calls.
+ * <p>
+ * One instance must not be used by many threads at the same time, but {@link #duplicate()}
+ * is cheap (it only duplicates the buffer, not the mapping), so each thread can have its own cursor.
+ */
+public class MappedRandomInputStream extends RandomInputStream {
+	public static final String TAG = MappedRandomInputStream.class.getSimpleName();
+
+	private final MappedByteBuffer map;
+	private final ByteBuffer buf;
+	private final String sourceName;
+	private final String sourceIdentity;
+
+	public MappedRandomInputStream(String filename) throws IOException {
+		final RandomAccessFile f = new RandomAccessFile(filename, "r");
+		try {
+			final FileChannel channel = f.getChannel();
+			// the mapping stays valid after the channel is closed
+			this.map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} finally {
+			f.close();
+		}
+		this.buf = map.duplicate();
+		this.sourceName = new File(filename).getAbsolutePath();
+		this.sourceIdentity = fileIdentity(filename);
+	}
+
+	private MappedRandomInputStream(MappedByteBuffer map, String sourceName, String sourceIdentity) {
+		this.map = map;
+		this.buf = map.duplicate();
+		this.sourceName = sourceName;
+		this.sourceIdentity = sourceIdentity;
+	}
+
+	@Override public int read() throws IOException {
+		if (!buf.hasRemaining()) {
+			return -1;
+		}
+		return buf.get() & 0xff;
+	}
+
+	@Override public int read(byte[] buffer) throws IOException {
+		return read(buffer, 0, buffer.length);
+	}
+
+	@Override public int read(byte[] buffer, int offset, int length) throws IOException {
+		if (length == 0) {
+			return 0;
+		}
+
+		final int remaining = buf.remaining();
+		if (remaining == 0) {
+			return -1;
+		}
+
+		final int will_read = length > remaining ? remaining : length;
+		try {
+			buf.get(buffer, offset, will_read);
+		} catch (BufferUnderflowException e) {
+			throw new IOException(e);
+		}
+		return will_read;
+	}
+
+	@Override public long skip(long n) throws IOException {
+		if (n <= 0) {
+			return 0;
+		}
+		final int remaining = buf.remaining();
+		final int will_skip = n > remaining ? remaining : (int) n;
+		buf.position(buf.position() + will_skip);
+		return will_skip;
+	}
+
+	@Override public int available() throws IOException {
+		return buf.remaining();
+	}
+
+	@Override public void seek(long n) throws IOException {
+		if (n < 0 || n > buf.limit()) {
+			throw new IOException("seek to " + n + " is outside of the file (length " + buf.limit() + ")");
+		}
+		buf.position((int) n);
+	}
+
+	@Override public long getFilePointer() throws IOException {
+		return buf.position();
+	}
+
+	@Override public MappedRandomInputStream duplicate() {
+		return new MappedRandomInputStream(map, sourceName, sourceIdentity);
+	}
+
+	@Override public String getSourceName() {
+		return sourceName;
+	}
+
+	@Override public String getSourceIdentity() {
+		return sourceIdentity;
+	}
+
+	/**
+	 * Does nothing. The mapping is released when this object and all its duplicates are garbage-collected.
+	 */
+	@Override public void close() throws IOException {
+	}
+}
@@ -1,5 +1,6 @@
 package yuku.alkitab.yes2.io;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 
@@ -7,9 +8,13 @@ public class RandomAccessFileRandomInputStream extends RandomInputStream {
 	public static final String TAG = RandomAccessFileRandomInputStream.class.getSimpleName();
 
 	private final RandomAccessFile f;
+	private final String sourceName;
+	private final String sourceIdentity;
 
 	public RandomAccessFileRandomInputStream(String filename) throws IOException {
 		this.f = new RandomAccessFile(filename, "r");
+		this.sourceName = new File(filename).getAbsolutePath();
+		this.sourceIdentity = fileIdentity(filename);
 	}
 
 	@Override public int read() throws IOException {
@@ -40,6 +45,14 @@ public class RandomAccessFileRandomInputStream extends RandomInputStream {
 		f.close();
 	}
 
+	@Override public String getSourceName() {
+		return sourceName;
+	}
+
+	@Override public String getSourceIdentity() {
+		return sourceIdentity;
+	}
+
 	public RandomAccessFile getFile() {
 		return f;
 	}
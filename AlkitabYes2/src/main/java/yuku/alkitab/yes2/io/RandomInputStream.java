@@ -1,5 +1,6 @@
 package yuku.alkitab.yes2.io;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 
@@ -11,4 +12,34 @@ public abstract class RandomInputStream extends InputStream {
 	public abstract void seek(long n) throws IOException;
 
 	public abstract long getFilePointer() throws IOException;
+
+	/**
+	 * Creates another stream that reads the same data, but has its own file pointer,
+	 * so it can be used by another thread without interfering with this stream.
+	 * @return null if this stream does not support independent file pointers.
+	 */
+	public RandomInputStream duplicate() {
+		return null;
+	}
+
+	/**
+	 * @return the absolute path of the file this stream reads, or null if it does not read a file.
+	 */
+	public String getSourceName() {
+		return null;
+	}
+
+	/**
+	 * Identifies the data this stream reads, so that it is the same when the same file is opened again,
+	 * but not when the file is replaced.
+	 * @return null if the data has no such identity.
+	 */
+	public String getSourceIdentity() {
+		return null;
+	}
+
+	protected static String fileIdentity(String filename) {
+		final File file = new File(filename);
+		return file.getAbsolutePath() + ":" + file.length() + ":" + file.lastModified();
+	}
 }
@@ -0,0 +1,27 @@
+package yuku.alkitab.yes2.io;
+
+/**
+ * Gives each thread its own {@link RandomInputStream} over the same data, so that
+ * reads from many threads do not have to share one file pointer.
+ * <p>
+ * If the base stream does not support {@link RandomInputStream#duplicate()}, all threads get the base stream.
+ * Therefore, callers must always synchronize on the stream returned by {@link #get()} while they seek and read.
+ * For duplicated streams the lock is never contended.
+ */
+public class RandomInputStreamCursors {
+	private final RandomInputStream base;
+	private final ThreadLocal<RandomInputStream> cursors = new ThreadLocal<RandomInputStream>() {
+		@Override protected RandomInputStream initialValue() {
+			final RandomInputStream dup = base.duplicate();
+			return dup != null ? dup : base;
+		}
+	};
+
+	public RandomInputStreamCursors(RandomInputStream base) {
+		this.base = base;
+	}
+
+	public RandomInputStream get() {
+		return cursors.get();
+	}
+}
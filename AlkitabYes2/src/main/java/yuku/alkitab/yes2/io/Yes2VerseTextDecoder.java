@@ -1,11 +1,17 @@
 package yuku.alkitab.yes2.io;
 
 import yuku.alkitab.io.Utf8Decoder;
+import yuku.alkitab.model.ChapterCharView;
 import yuku.bintex.BintexReader;
 
 public interface Yes2VerseTextDecoder {
 	String[] separateIntoVerses(BintexReader br, int verse_count, boolean lowercased) throws Exception;
 	String makeIntoSingleString(BintexReader br, int verse_count, boolean lowercased) throws Exception;
+
+	/**
+	 * Decodes the verses into the view (which is reset first), without making Strings.
+	 */
+	void decodeIntoView(BintexReader br, int verse_count, boolean lowercased, ChapterCharView view) throws Exception;
 	
 	class Ascii implements Yes2VerseTextDecoder {
 		final ThreadLocal<byte[]> verseBuf_ = new ThreadLocal<byte[]>() {
@@ -49,6 +55,31 @@ public interface Yes2VerseTextDecoder {
 			}
 			return sb.toString();
 		}
+
+		@Override public void decodeIntoView(BintexReader br, int verse_count, boolean lowercased, ChapterCharView view) throws Exception {
+			byte[] verseBuf = verseBuf_.get();
+
+			view.reset();
+			for (int i = 0; i < verse_count; i++) {
+				int verse_len = br.readVarUint();
+
+				if (verse_len > verseBuf.length) {
+					verseBuf = new byte[verse_len + 1000];
+					verseBuf_.set(verseBuf);
+				}
+
+				br.readRaw(verseBuf, 0, verse_len);
+
+				//# WARNING: This will work only if all bytes are less than 0x80.
+				final char[] chars = view.reserve(verse_len);
+				final int start = view.length();
+				for (int j = 0; j < verse_len; j++) {
+					final char c = (char) (verseBuf[j] & 0xff);
+					chars[start + j] = lowercased && c >= 'A' && c <= 'Z' ? (char) (c | 0x20) : c;
+				}
+				view.commitVerse(verse_len);
+			}
+		}
 	}
 	
 	class Utf8 implements Yes2VerseTextDecoder {
@@ -89,5 +120,9 @@ public interface Yes2VerseTextDecoder {
 		@Override public String makeIntoSingleString(BintexReader br, int verse_count, boolean lowercased) throws Exception {
 			return Utf8Decoder.toStringFromVersesWithPrependedLengths(br, verse_count, lowercased);
 		}
+
+		@Override public void decodeIntoView(BintexReader br, int verse_count, boolean lowercased, ChapterCharView view) throws Exception {
+			Utf8Decoder.decodeVersesWithPrependedLengths(br, verse_count, lowercased, view);
+		}
 	}
 }
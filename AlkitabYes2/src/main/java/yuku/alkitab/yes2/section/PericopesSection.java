@@ -3,6 +3,7 @@ package yuku.alkitab.yes2.section;
 import yuku.alkitab.model.PericopeBlock;
 import yuku.alkitab.model.PericopeIndex;
 import yuku.alkitab.yes2.io.RandomInputStream;
+import yuku.alkitab.yes2.io.RandomInputStreamCursors;
 import yuku.alkitab.yes2.io.RandomOutputStream;
 import yuku.alkitab.yes2.model.PericopeData;
 import yuku.alkitab.yes2.model.PericopeData.Entry;
@@ -20,7 +21,7 @@ public class PericopesSection extends SectionContent implements SectionContent.W
 	PericopeData data_;
 	
 	// for reading:
-	RandomInputStream input_;
+	RandomInputStreamCursors cursors_;
 	int data_offset_ = 0;
 	PericopeIndex index_;
 
@@ -35,8 +36,11 @@ public class PericopesSection extends SectionContent implements SectionContent.W
 	
 	public Yes2PericopeBlock readBlock(int position) throws IOException {
 		int offset = index_.offsets[position];
-		input_.seek(data_offset_ + offset);
-		return Yes2PericopeBlock.read(input_);
+		final RandomInputStream input = cursors_.get();
+		synchronized (input) {
+			input.seek(data_offset_ + offset);
+			return Yes2PericopeBlock.read(input);
+		}
 	}
 	
 	@Override public void write(RandomOutputStream output) throws IOException {
@@ -179,7 +183,7 @@ public class PericopesSection extends SectionContent implements SectionContent.W
 				}
 			}
 			
-			res.input_ = input;
+			res.cursors_ = new RandomInputStreamCursors(input);
 			res.data_offset_ = (int) input.getFilePointer();
 			
 			return res;
@@ -187,39 +191,13 @@ public class PericopesSection extends SectionContent implements SectionContent.W
 	}
 
 	/**
+	 * Blocks are decoded only once, see {@link PericopeIndex#getPericopes(int, int, int[], PericopeBlock[], int, PericopeIndex.BlockReader)}.
 	 * @param aris (result param) the actual aris of the pericopes 
 	 * @param blocks (result param) the pericope blocks found
 	 * @param max maximum number of results to return, must be less than or equal to min(aris.length, blocks.length)
 	 * @return number of pericopes loaded by this method
 	 */
-	public int getPericopesForAris(int ari_from, int ari_to, int[] aris, PericopeBlock[] blocks, int max) throws IOException {
-		int first = index_.findFirst(ari_from, ari_to);
-		if (first == -1) {
-			return 0;
-		}
-
-		int cur = first;
-		int res = 0;
-
-		while (true) {
-			int ari = index_.getAri(cur);
-			if (ari >= ari_to) { // no more
-				break;
-			}
-			
-			Yes2PericopeBlock block = readBlock(cur);
-			cur++;
-			
-			if (res < max) {
-				aris[res] = ari;
-				blocks[res] = block;
-				res++;
-			} else {
-				break;
-			}
-		}
-		
-		return res;
+	public int getPericopesForChapter(int bookId, int chapter_1, int[] aris, PericopeBlock[] blocks, int max) throws IOException {
+		return index_.getPericopes(bookId, chapter_1, aris, blocks, max, this::readBlock);
 	}
 }
-
@@ -3,6 +3,7 @@ package yuku.alkitab.yes2.section;
 import android.util.Log;
 import yuku.alkitab.model.XrefEntry;
 import yuku.alkitab.yes2.io.RandomInputStream;
+import yuku.alkitab.yes2.io.RandomInputStreamCursors;
 import yuku.alkitab.yes2.section.base.SectionContent;
 import yuku.bintex.BintexReader;
 
@@ -24,7 +25,7 @@ public class XrefsSection extends SectionContent {
 	public static final String SECTION_NAME = "xrefs";
 
 	// for reading:
-	RandomInputStream input_;
+	RandomInputStreamCursors cursors_;
 	int entry_count;
 	int[] index_arifs; // ari to pos
 	int[] index_offset; // pos to content offset
@@ -52,7 +53,7 @@ public class XrefsSection extends SectionContent {
 		}
 
 		this.content_start_offset = (int) input.getFilePointer();
-		this.input_ = input;
+		this.cursors_ = new RandomInputStreamCursors(input);
 	}
 
 	public XrefEntry getXrefEntry(final int arif) {
@@ -65,10 +66,13 @@ public class XrefsSection extends SectionContent {
 		final int abs_offset = content_start_offset + offset;
 		try {
 			final XrefEntry res = new XrefEntry();
-			input_.seek(abs_offset);
-			final BintexReader br = new BintexReader(input_);
-			res.content = br.readValueString();
-			// do not close br, input is still needed elsewhere
+			final RandomInputStream input = cursors_.get();
+			synchronized (input) {
+				input.seek(abs_offset);
+				final BintexReader br = new BintexReader(input);
+				res.content = br.readValueString();
+				// do not close br, input is still needed elsewhere
+			}
 			return res;
 		} catch (IOException e) {
 			Log.e(TAG, "load xref failed", e);
@@ -0,0 +1,87 @@
+package yuku.alkitab.yes2.compress;
+
+import junit.framework.TestCase;
+
+public class SnappyBlockCacheTest extends TestCase {
+	public void testEvictsLeastRecentlyUsed() throws Exception {
+		final SnappyBlockCache cache = new SnappyBlockCache(300);
+
+		cache.put(1, 0, new byte[100]);
+		cache.put(1, 1, new byte[100]);
+		cache.put(2, 0, new byte[100]);
+		assertEquals(300, cache.getCurrentBytes());
+
+		// touch (1, 0) so (1, 1) becomes the eldest
+		assertNotNull(cache.get(1, 0));
+
+		cache.put(2, 1, new byte[100]);
+		assertEquals(300, cache.getCurrentBytes());
+		assertEquals(1, cache.getEvictionCount());
+		assertNull(cache.get(1, 1));
+		assertNotNull(cache.get(1, 0));
+		assertNotNull(cache.get(2, 0));
+		assertNotNull(cache.get(2, 1));
+
+		assertEquals(4, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+	}
+
+	public void testSourcesDoNotCollide() throws Exception {
+		final SnappyBlockCache cache = new SnappyBlockCache(1000);
+		final byte[] a = new byte[10];
+		final byte[] b = new byte[10];
+
+		cache.put(1, 2, a);
+		cache.put(2, 1, b);
+		assertSame(a, cache.get(1, 2));
+		assertSame(b, cache.get(2, 1));
+	}
+
+	public void testShrinkingBudget() throws Exception {
+		final SnappyBlockCache cache = new SnappyBlockCache(1000);
+		for (int i = 0; i < 10; i++) {
+			cache.put(1, i, new byte[100]);
+		}
+		assertEquals(1000, cache.getCurrentBytes());
+
+		cache.setMaxBytes(250);
+		assertEquals(200, cache.getCurrentBytes());
+		assertNotNull(cache.get(1, 9));
+		assertNull(cache.get(1, 0));
+
+		cache.setMaxBytes(0);
+		cache.put(1, 0, new byte[100]);
+		assertEquals(0, cache.getCurrentBytes());
+	}
+
+	public void testSourceIdIsStableForSameSource() throws Exception {
+		final int a = SnappyBlockCache.sourceIdFor("/sdcard/bible/a.yes", "/sdcard/bible/a.yes:1000:1", 12);
+		assertEquals(a, SnappyBlockCache.sourceIdFor("/sdcard/bible/a.yes", "/sdcard/bible/a.yes:1000:1", 12));
+
+		// another section
+		assertTrue(a != SnappyBlockCache.sourceIdFor("/sdcard/bible/a.yes", "/sdcard/bible/a.yes:1000:1", 500));
+
+		// no identity is never shared
+		assertTrue(SnappyBlockCache.sourceIdFor(null, null, 12) != SnappyBlockCache.sourceIdFor(null, null, 12));
+	}
+
+	public void testReplacedFileIsForgotten() throws Exception {
+		final SnappyBlockCache cache = SnappyBlockCache.getInstance();
+		final int fileCount = SnappyBlockCache.getFileCount();
+
+		final int a = SnappyBlockCache.sourceIdFor("/sdcard/bible/b.yes", "/sdcard/bible/b.yes:1000:1", 12);
+		cache.put(a, 0, new byte[10]);
+		assertEquals(fileCount + 1, SnappyBlockCache.getFileCount());
+
+		// the file replaced: new id, the old blocks are gone, and the old id is not kept
+		final int b = SnappyBlockCache.sourceIdFor("/sdcard/bible/b.yes", "/sdcard/bible/b.yes:2000:2", 12);
+		assertTrue(a != b);
+		assertNull(cache.get(a, 0));
+		assertEquals(fileCount + 1, SnappyBlockCache.getFileCount());
+
+		cache.put(b, 0, new byte[10]);
+		SnappyBlockCache.forgetFile("/sdcard/bible/b.yes");
+		assertNull(cache.get(b, 0));
+		assertEquals(fileCount, SnappyBlockCache.getFileCount());
+	}
+}
@@ -0,0 +1,76 @@
+package yuku.alkitab.yes2.io;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+
+public class MappedRandomInputStreamTest extends TestCase {
+	File file;
+	byte[] data;
+
+	@Override
+	protected void setUp() throws Exception {
+		data = new byte[100000];
+		new Random(1).nextBytes(data);
+
+		file = File.createTempFile("mapped", ".yes");
+		try (FileOutputStream os = new FileOutputStream(file)) {
+			os.write(data);
+		}
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		//noinspection ResultOfMethodCallIgnored
+		file.delete();
+	}
+
+	public void testSameAsRandomAccessFile() throws Exception {
+		final RandomAccessFileRandomInputStream raf = new RandomAccessFileRandomInputStream(file.getAbsolutePath());
+		final MappedRandomInputStream mapped = new MappedRandomInputStream(file.getAbsolutePath());
+
+		final Random r = new Random(2);
+		for (int i = 0; i < 1000; i++) {
+			final long pos = r.nextInt(data.length);
+			raf.seek(pos);
+			mapped.seek(pos);
+			assertEquals(raf.getFilePointer(), mapped.getFilePointer());
+			assertEquals(raf.read(), mapped.read());
+
+			final byte[] a = new byte[r.nextInt(300)];
+			final byte[] b = new byte[a.length];
+			assertEquals(raf.read(a), mapped.read(b));
+			assertArrayEquals(a, b);
+			assertEquals(raf.getFilePointer(), mapped.getFilePointer());
+		}
+
+		raf.close();
+		mapped.close();
+	}
+
+	public void testEof() throws Exception {
+		final MappedRandomInputStream mapped = new MappedRandomInputStream(file.getAbsolutePath());
+
+		mapped.seek(data.length - 2);
+		final byte[] buf = new byte[10];
+		assertEquals(2, mapped.read(buf));
+		assertEquals(-1, mapped.read(buf));
+		assertEquals(-1, mapped.read());
+	}
+
+	public void testDuplicateHasOwnFilePointer() throws Exception {
+		final MappedRandomInputStream mapped = new MappedRandomInputStream(file.getAbsolutePath());
+		final MappedRandomInputStream dup = mapped.duplicate();
+
+		mapped.seek(10);
+		dup.seek(5000);
+		assertEquals(data[10] & 0xff, mapped.read());
+		assertEquals(data[5000] & 0xff, dup.read());
+		assertEquals(11, mapped.getFilePointer());
+		assertEquals(5001, dup.getFilePointer());
+	}
+}
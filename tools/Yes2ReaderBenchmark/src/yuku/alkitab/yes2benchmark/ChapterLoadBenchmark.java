@@ -0,0 +1,110 @@
+package yuku.alkitab.yes2benchmark;
+
+import yuku.alkitab.model.Book;
+import yuku.alkitab.model.SingleChapterVerses;
+import yuku.alkitab.yes2.Yes2Reader;
+import yuku.alkitab.yes2.io.MappedRandomInputStream;
+import yuku.alkitab.yes2.io.RandomAccessFileRandomInputStream;
+import yuku.alkitab.yes2.io.RandomInputStream;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Compares chapter-load latency of {@link Yes2Reader} on top of {@link RandomAccessFileRandomInputStream}
+ * against {@link MappedRandomInputStream}.
+ * <p>
+ * Every chapter of the given yes file is loaded, first from one thread and then from several threads at once.
+ * Both backends must produce exactly the same verse texts, otherwise the benchmark fails.
+ * <p>
+ * Usage: ChapterLoadBenchmark &lt;yes-file&gt; [&lt;threads&gt; [&lt;iterations&gt;]]
+ * <p>
+ * Open the tools project and run the Yes2ReaderBenchmark run configuration after setting the yes file in its program parameters.
+ * The module only needs common-jvm and fakeandroid, like YetToYes2.
+ */
+public class ChapterLoadBenchmark {
+	static final int WARMUP_ITERATIONS = 3;
+
+	interface InputFactory {
+		RandomInputStream open(String filename) throws Exception;
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 1) {
+			System.err.println("Usage parameters: <yes-file> [<threads> [<iterations>]]");
+			System.exit(1);
+		}
+
+		final String filename = args[0];
+		final int threads = args.length >= 2 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		final int iterations = args.length >= 3 ? Integer.parseInt(args[2]) : 10;
+
+		final String[] expected = loadAllChapters(new Yes2Reader(new RandomAccessFileRandomInputStream(filename)));
+		System.err.println("file: " + filename + ", chapters: " + expected.length + ", threads: " + threads + ", iterations: " + iterations);
+
+		run("RandomAccessFile", RandomAccessFileRandomInputStream::new, filename, expected, threads, iterations);
+		run("MappedByteBuffer", MappedRandomInputStream::new, filename, expected, threads, iterations);
+	}
+
+	static void run(final String name, final InputFactory factory, final String filename, final String[] expected, final int threads, final int iterations) throws Exception {
+		final Yes2Reader reader = new Yes2Reader(factory.open(filename));
+
+		if (!Arrays.equals(expected, loadAllChapters(reader))) {
+			throw new RuntimeException(name + ": verse texts differ from RandomAccessFile");
+		}
+
+		// single thread
+		for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+			loadAllChapters(reader);
+		}
+		long start = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			loadAllChapters(reader);
+		}
+		final double singleUs = (System.nanoTime() - start) / 1000.0 / iterations / expected.length;
+
+		// many threads, each loading all chapters
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		final List<Callable<String[]>> tasks = new ArrayList<>();
+		for (int t = 0; t < threads; t++) {
+			tasks.add(() -> loadAllChapters(reader));
+		}
+		for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+			executor.invokeAll(tasks);
+		}
+		start = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			for (final Future<String[]> f : executor.invokeAll(tasks)) {
+				if (!Arrays.equals(expected, f.get())) {
+					throw new RuntimeException(name + ": verse texts differ when loaded concurrently");
+				}
+			}
+		}
+		final double multiUs = (System.nanoTime() - start) / 1000.0 / iterations / expected.length;
+		executor.shutdown();
+
+		System.out.printf("%-18s single thread: %8.2f us/chapter   %d threads: %8.2f us/chapter (wall clock)%n", name, singleUs, threads, multiUs);
+	}
+
+	static String[] loadAllChapters(final Yes2Reader reader) {
+		final List<String> res = new ArrayList<>();
+		for (final Book book : reader.loadBooks()) {
+			if (book == null) continue;
+
+			for (int chapter_1 = 1; chapter_1 <= book.chapter_count; chapter_1++) {
+				final SingleChapterVerses verses = reader.loadVerseText(book, chapter_1, false, false);
+				final StringBuilder sb = new StringBuilder();
+				for (int i = 0; i < verses.getVerseCount(); i++) {
+					sb.append(verses.getVerse(i)).append('\n');
+				}
+				res.add(sb.toString());
+			}
+		}
+		return res.toArray(new String[res.size()]);
+	}
+}